@@ -23,6 +23,7 @@ import io.netty.util.ResourceLeakDetector;
 import io.netty.util.ResourceLeakDetectorFactory;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SWARUtil;
 import io.netty.util.internal.StringUtil;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.logging.InternalLogger;
@@ -1262,8 +1263,19 @@ public abstract class AbstractByteBuf extends ByteBuf {
             return -1;
         }
         checkIndex(fromIndex, toIndex - fromIndex);
+        return firstIndexOf0(fromIndex, toIndex, value);
+    }
 
-        for (int i = fromIndex; i < toIndex; i ++) {
+    /**
+     * Returns the index of the first {@code value} in {@code [start, end)} or {@code -1}, the indices must have been
+     * checked before.
+     */
+    int firstIndexOf0(int start, int end, byte value) {
+        if (end - start >= ByteBufUtil.SWAR_MIN_LENGTH && ByteBufUtil.canScanWords(this)) {
+            long pattern = SWARUtil.compilePattern(value);
+            return ByteBufUtil.scanWords(this, start, end, pattern, pattern);
+        }
+        for (int i = start; i < end; i ++) {
             if (_getByte(i) == value) {
                 return i;
             }
@@ -1332,6 +1344,12 @@ public abstract class AbstractByteBuf extends ByteBuf {
     }
 
     int forEachByteAsc0(int start, int end, ByteProcessor processor) throws Exception {
+        if (end - start >= ByteBufUtil.SWAR_MIN_LENGTH && ByteBufUtil.canScanWords(this)) {
+            int index = ByteBufUtil.scanWords(this, start, end, processor);
+            if (index != -2) {
+                return index;
+            }
+        }
         for (; start < end; ++start) {
             if (!processor.process(_getByte(start))) {
                 return start;
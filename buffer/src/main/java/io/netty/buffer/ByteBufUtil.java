@@ -24,6 +24,7 @@ import io.netty.util.internal.ObjectPool;
 import io.netty.util.internal.ObjectPool.Handle;
 import io.netty.util.internal.ObjectPool.ObjectCreator;
 import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SWARUtil;
 import io.netty.util.internal.StringUtil;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.logging.InternalLogger;
@@ -100,6 +101,13 @@ public final class ByteBufUtil {
 
     static final int MAX_TL_ARRAY_LEN = 1024;
 
+    // Scanning a word at a time only pays off if there is at least one full word to scan.
+    static final int SWAR_MIN_LENGTH = 8;
+    private static final long CR_PATTERN = SWARUtil.compilePattern((byte) '\r');
+    private static final long LF_PATTERN = SWARUtil.compilePattern((byte) '\n');
+    // The highest bit of each byte, which is only set for non ASCII bytes.
+    private static final long NON_ASCII_MASK = 0x8080808080808080L;
+
     /**
      * Allocates a new array if minLength > {@link ByteBufUtil#MAX_TL_ARRAY_LEN}
      */
@@ -464,6 +472,151 @@ public final class ByteBufUtil {
         return buffer.forEachByte(fromIndex, toIndex - fromIndex, new ByteProcessor.IndexOfProcessor(value));
     }
 
+    /**
+     * Returns {@code true} if {@link #scanWords(AbstractByteBuf, int, int, long, long)} can be used for the given
+     * buffer, which is the case if its memory can be read a word at a time.
+     */
+    static boolean canScanWords(ByteBuf buffer) {
+        return PlatformDependent.isUnaligned() && (buffer.hasMemoryAddress() || buffer.hasArray());
+    }
+
+    /**
+     * Returns the index of the first byte in {@code [start, end)} which is one of the bytes of {@code pattern} and
+     * {@code pattern2} (see {@link SWARUtil#compilePattern(byte)}) or {@code -1}. The buffer is scanned a word at a
+     * time and must only be used if {@link #canScanWords(ByteBuf)} returns {@code true}. The indices must have been
+     * checked before.
+     */
+    static int scanWords(AbstractByteBuf buffer, int start, int end, long pattern, long pattern2) {
+        if (buffer.hasMemoryAddress()) {
+            long address = buffer.memoryAddress();
+            int index = scanWords(address + start, end - start, pattern, pattern2);
+            return index < 0 ? -1 : start + index;
+        }
+        int arrayOffset = buffer.arrayOffset();
+        int index = scanWords(buffer.array(), arrayOffset + start, arrayOffset + end, pattern, pattern2);
+        return index < 0 ? -1 : index - arrayOffset;
+    }
+
+    private static int scanWords(long address, int length, long pattern, long pattern2) {
+        int i = 0;
+        for (int words = length & ~7; i < words; i += 8) {
+            long word = PlatformDependent.getLong(address + i);
+            long result = SWARUtil.applyPattern(word, pattern) | SWARUtil.applyPattern(word, pattern2);
+            if (result != 0) {
+                return i + SWARUtil.getIndex(result, PlatformDependent.BIG_ENDIAN_NATIVE_ORDER);
+            }
+        }
+        byte value = (byte) pattern;
+        byte value2 = (byte) pattern2;
+        for (; i < length; i++) {
+            byte b = PlatformDependent.getByte(address + i);
+            if (b == value || b == value2) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int scanWords(byte[] array, int start, int end, long pattern, long pattern2) {
+        int i = start;
+        for (int wordsEnd = start + (end - start & ~7); i < wordsEnd; i += 8) {
+            long word = PlatformDependent.getLong(array, i);
+            long result = SWARUtil.applyPattern(word, pattern) | SWARUtil.applyPattern(word, pattern2);
+            if (result != 0) {
+                return i + SWARUtil.getIndex(result, PlatformDependent.BIG_ENDIAN_NATIVE_ORDER);
+            }
+        }
+        byte value = (byte) pattern;
+        byte value2 = (byte) pattern2;
+        for (; i < end; i++) {
+            byte b = array[i];
+            if (b == value || b == value2) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Scans {@code [start, end)} a word at a time if {@code processor} is one of the well known {@link ByteProcessor}
+     * constants that look for a single byte, {@link ByteProcessor#FIND_CRLF} or {@link ByteProcessor#FIND_NON_ASCII}.
+     * Returns {@code -2} if the processor
+     * is not known, otherwise the same as {@link ByteBuf#forEachByte(int, int, ByteProcessor)}.
+     */
+    static int scanWords(AbstractByteBuf buffer, int start, int end, ByteProcessor processor) {
+        final long pattern;
+        final long pattern2;
+        if (processor == ByteProcessor.FIND_LF) {
+            pattern = pattern2 = LF_PATTERN;
+        } else if (processor == ByteProcessor.FIND_CRLF) {
+            pattern = CR_PATTERN;
+            pattern2 = LF_PATTERN;
+        } else if (processor == ByteProcessor.FIND_CR) {
+            pattern = pattern2 = CR_PATTERN;
+        } else if (processor == ByteProcessor.FIND_NUL) {
+            pattern = pattern2 = 0;
+        } else if (processor == ByteProcessor.FIND_SEMI_COLON) {
+            pattern = pattern2 = SWARUtil.compilePattern((byte) ';');
+        } else if (processor == ByteProcessor.FIND_COMMA) {
+            pattern = pattern2 = SWARUtil.compilePattern((byte) ',');
+        } else if (processor == ByteProcessor.FIND_ASCII_SPACE) {
+            pattern = pattern2 = SWARUtil.compilePattern((byte) ' ');
+        } else if (processor == ByteProcessor.FIND_NON_ASCII) {
+            return indexOfNonAscii(buffer, start, end);
+        } else {
+            return -2;
+        }
+        return scanWords(buffer, start, end, pattern, pattern2);
+    }
+
+    private static int indexOfNonAscii(AbstractByteBuf buffer, int start, int end) {
+        if (buffer.hasMemoryAddress()) {
+            int index = indexOfNonAscii(buffer.memoryAddress() + start, end - start);
+            return index < 0 ? -1 : start + index;
+        }
+        int arrayOffset = buffer.arrayOffset();
+        int index = indexOfNonAscii(buffer.array(), arrayOffset + start, arrayOffset + end);
+        return index < 0 ? -1 : index - arrayOffset;
+    }
+
+    private static int indexOfNonAscii(long address, int length) {
+        int i = 0;
+        for (int words = length & ~7; i < words; i += 8) {
+            long result = PlatformDependent.getLong(address + i) & NON_ASCII_MASK;
+            if (result != 0) {
+                return i + SWARUtil.getIndex(result, PlatformDependent.BIG_ENDIAN_NATIVE_ORDER);
+            }
+        }
+        for (; i < length; i++) {
+            if (PlatformDependent.getByte(address + i) < 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the first byte in {@code [start, end)} of {@code array} which is not ASCII or {@code -1}.
+     * The array is scanned a word at a time if the platform supports unaligned access.
+     */
+    static int indexOfNonAscii(byte[] array, int start, int end) {
+        int i = start;
+        if (PlatformDependent.isUnaligned()) {
+            for (int wordsEnd = start + (end - start & ~7); i < wordsEnd; i += 8) {
+                long result = PlatformDependent.getLong(array, i) & NON_ASCII_MASK;
+                if (result != 0) {
+                    return i + SWARUtil.getIndex(result, PlatformDependent.BIG_ENDIAN_NATIVE_ORDER);
+                }
+            }
+        }
+        for (; i < end; i++) {
+            if (array[i] < 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     private static int lastIndexOf(ByteBuf buffer, int fromIndex, int toIndex, byte value) {
         int capacity = buffer.capacity();
         fromIndex = Math.min(fromIndex, capacity);
@@ -578,7 +731,10 @@ public final class ByteBufUtil {
         for (int i = start; i < end; i++) {
             char c = seq.charAt(i);
             if (c < 0x80) {
-                buffer._setByte(writerIndex++, (byte) c);
+                // Text is mostly made of ASCII runs, which are copied at once.
+                int asciiEnd = asciiRunEnd(seq, i + 1, end);
+                writerIndex = writeAsciiRun(buffer, writerIndex, seq, i, asciiEnd);
+                i = asciiEnd - 1;
             } else if (c < 0x800) {
                 buffer._setByte(writerIndex++, (byte) (0xc0 | (c >> 6)));
                 buffer._setByte(writerIndex++, (byte) (0x80 | (c & 0x3f)));
@@ -618,6 +774,66 @@ public final class ByteBufUtil {
         return writerIndex;
     }
 
+    /**
+     * Returns the index of the first char in {@code [start, end)} of {@code seq} which is not ASCII or {@code end}.
+     */
+    private static int asciiRunEnd(CharSequence seq, int start, int end) {
+        if (seq instanceof AsciiString) {
+            // The bytes of an AsciiString can be scanned a word at a time.
+            AsciiString asciiString = (AsciiString) seq;
+            int arrayOffset = asciiString.arrayOffset();
+            int index = indexOfNonAscii(asciiString.array(), arrayOffset + start, arrayOffset + end);
+            return index < 0 ? end : index - arrayOffset;
+        }
+        while (start < end && seq.charAt(start) < 0x80) {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * Writes the chars in {@code [start, end)} of {@code seq}, which must all be ASCII unless {@code seq} is an
+     * {@link AsciiString}, with as few index and bounds checks as possible and returns the new writer index.
+     */
+    @SuppressWarnings("deprecation")
+    private static int writeAsciiRun(AbstractByteBuf buffer, int writerIndex, CharSequence seq, int start, int end) {
+        final int length = end - start;
+        if (seq instanceof AsciiString) {
+            AsciiString asciiString = (AsciiString) seq;
+            buffer.setBytes(writerIndex, asciiString.array(), asciiString.arrayOffset() + start, length);
+        } else if (buffer.isReadOnly()) {
+            // A read-only view may expose the memory of the buffer it wraps, so let _setByte reject the write.
+            return writeAsciiRunSlow(buffer, writerIndex, seq, start, end);
+        } else if (buffer.hasArray()) {
+            byte[] array = buffer.array();
+            int arrayIndex = buffer.arrayOffset() + writerIndex;
+            if (seq instanceof String) {
+                // Copies the low byte of each char in one go, which is all there is to ASCII.
+                ((String) seq).getBytes(start, end, array, arrayIndex);
+            } else {
+                for (int i = start; i < end; i++) {
+                    array[arrayIndex++] = (byte) seq.charAt(i);
+                }
+            }
+        } else if (buffer.hasMemoryAddress()) {
+            long address = buffer.memoryAddress() + writerIndex;
+            for (int i = start; i < end; i++) {
+                PlatformDependent.putByte(address++, (byte) seq.charAt(i));
+            }
+        } else {
+            return writeAsciiRunSlow(buffer, writerIndex, seq, start, end);
+        }
+        return writerIndex + length;
+    }
+
+    private static int writeAsciiRunSlow(AbstractByteBuf buffer, int writerIndex, CharSequence seq, int start,
+                                         int end) {
+        for (int i = start; i < end; i++) {
+            buffer._setByte(writerIndex++, (byte) seq.charAt(i));
+        }
+        return writerIndex;
+    }
+
     /**
      * Returns max bytes length of UTF8 character sequence of the given length.
      */
@@ -753,11 +969,21 @@ public final class ByteBufUtil {
 
     // Fast-Path implementation
     static int writeAscii(AbstractByteBuf buffer, int writerIndex, CharSequence seq, int len) {
+        if (seq instanceof AsciiString) {
+            // Each char of an AsciiString is its byte already.
+            writeAsciiRun(buffer, writerIndex, seq, 0, len);
+            return len;
+        }
 
         // We can use the _set methods as these not need to do any index checks and reference checks.
         // This is possible as we called ensureWritable(...) before.
         for (int i = 0; i < len; i++) {
-            buffer._setByte(writerIndex++, AsciiString.c2b(seq.charAt(i)));
+            int asciiEnd = asciiRunEnd(seq, i, len);
+            writerIndex = writeAsciiRun(buffer, writerIndex, seq, i, asciiEnd);
+            if (asciiEnd < len) {
+                buffer._setByte(writerIndex++, AsciiString.c2b(seq.charAt(asciiEnd)));
+            }
+            i = asciiEnd;
         }
         return len;
     }
@@ -833,8 +1059,10 @@ public final class ByteBufUtil {
             offset = 0;
             src.getBytes(readerIndex, array, 0, len);
         }
-        if (CharsetUtil.US_ASCII.equals(charset)) {
-            // Fast-path for US-ASCII which is used frequently.
+        if (CharsetUtil.US_ASCII.equals(charset) || CharsetUtil.ISO_8859_1.equals(charset) ||
+                CharsetUtil.UTF_8.equals(charset) && indexOfNonAscii(array, offset, offset + len) == -1) {
+            // Fast-path for US-ASCII, ISO-8859-1 and UTF-8 encoded ASCII which are used frequently: each byte is
+            // the value of its char so no decoder is needed.
             return new String(array, 0, offset, len);
         }
         return new String(array, offset, len, charset);
@@ -1292,16 +1520,6 @@ public final class ByteBufUtil {
         }
     }
 
-    /**
-     * Aborts on a byte which is not a valid ASCII character.
-     */
-    private static final ByteProcessor FIND_NON_ASCII = new ByteProcessor() {
-        @Override
-        public boolean process(byte value) {
-            return value >= 0;
-        }
-    };
-
     /**
      * Returns {@code true} if the specified {@link ByteBuf} starting at {@code index} with {@code length} is valid
      * ASCII text, otherwise return {@code false}.
@@ -1311,7 +1529,7 @@ public final class ByteBufUtil {
      * @param length The length of the specified buffer.
      */
     private static boolean isAscii(ByteBuf buf, int index, int length) {
-        return buf.forEachByte(index, length, FIND_NON_ASCII) == -1;
+        return buf.forEachByte(index, length, ByteProcessor.FIND_NON_ASCII) == -1;
     }
 
     /**
@@ -1363,7 +1581,12 @@ public final class ByteBufUtil {
             byte b1 = buf.getByte(index++);
             byte b2, b3, b4;
             if ((b1 & 0x80) == 0) {
-                // 1 byte
+                // 1 byte, skip the rest of the ASCII run at once as it can be scanned a word at a time.
+                int nonAsciiIndex = buf.forEachByte(index, endIndex - index, ByteProcessor.FIND_NON_ASCII);
+                if (nonAsciiIndex == -1) {
+                    return true;
+                }
+                index = nonAsciiIndex;
                 continue;
             }
             if ((b1 & 0xE0) == 0xC0) {
@@ -657,6 +657,32 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         return componentCount == 0 ? EMPTY_ITERATOR : new CompositeByteBufIterator();
     }
 
+    @Override
+    int firstIndexOf0(int start, int end, byte value) {
+        if (end <= start) {
+            return -1;
+        }
+        for (int i = toComponentIndex0(start), length = end - start; length > 0; i++) {
+            Component c = components[i];
+            if (c.offset == c.endOffset) {
+                continue; // empty
+            }
+            ByteBuf s = c.buf;
+            int localStart = c.idx(start);
+            int localLength = Math.min(length, c.endOffset - start);
+            // avoid additional checks in AbstractByteBuf case
+            int result = s instanceof AbstractByteBuf
+                ? ((AbstractByteBuf) s).firstIndexOf0(localStart, localStart + localLength, value)
+                : s.indexOf(localStart, localStart + localLength, value);
+            if (result != -1) {
+                return result - c.adjustment;
+            }
+            start += localLength;
+            length -= localLength;
+        }
+        return -1;
+    }
+
     @Override
     protected int forEachByteAsc0(int start, int end, ByteProcessor processor) throws Exception {
         if (end <= start) {
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Provides the memory of the chunks of the direct arenas of a {@link PooledByteBufAllocator}. This allows to back
+ * chunks with memory that is obtained in a special way, for example memory mapped with huge pages.
+ *
+ * Implementations must be thread-safe.
+ */
+public interface DirectChunkProvider {
+
+    /**
+     * Allocate a direct {@link ByteBuffer} of exactly {@code capacity} bytes that will back a chunk, or return
+     * {@code null} if this provider can not serve the request. In the latter case the arena falls back to its default
+     * way of allocating direct memory.
+     */
+    ByteBuffer allocateChunk(int capacity);
+
+    /**
+     * Release a direct {@link ByteBuffer} that was returned by {@link #allocateChunk(int)} before.
+     */
+    void freeChunk(ByteBuffer memory);
+}
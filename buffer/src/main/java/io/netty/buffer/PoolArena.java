@@ -21,36 +21,29 @@ import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+import static io.netty.buffer.PoolChunk.isSubpage;
 import static java.lang.Math.max;
 
-abstract class PoolArena<T> implements PoolArenaMetric {
+abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
     static final boolean HAS_UNSAFE = PlatformDependent.hasUnsafe();
 
     enum SizeClass {
-        Tiny,
         Small,
         Normal
     }
 
-    static final int numTinySubpagePools = 512 >>> 4;
-
     final PooledByteBufAllocator parent;
 
-    private final int maxOrder;
-    final int pageSize;
-    final int pageShifts;
-    final int chunkSize;
-    final int subpageOverflowMask;
     final int numSmallSubpagePools;
     final int directMemoryCacheAlignment;
     final int directMemoryCacheAlignmentMask;
-    private final PoolSubpage<T>[] tinySubpagePools;
     private final PoolSubpage<T>[] smallSubpagePools;
 
     private final PoolChunkList<T> q050;
@@ -62,15 +55,24 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     private final List<PoolChunkListMetric> chunkListMetrics;
 
+    // Empty chunks that are kept around until their decay deadline passes, ordered from oldest to newest.
+    // Guarded by synchronized(this).
+    private final Deque<PoolChunk<T>> retainedChunks = new ArrayDeque<PoolChunk<T>>();
+    private final long chunkDecayNanos;
+    private long releasedChunks;
+    private long reusedChunks;
+
+    // Only set if instrumentation is enabled.
+    final PoolArenaStats stats;
+    private final boolean confinedRefCnt;
+
     // Metrics for allocations and deallocations
     private long allocationsNormal;
     // We need to use the LongCounter here as this is not guarded via synchronized block.
-    private final LongCounter allocationsTiny = PlatformDependent.newLongCounter();
     private final LongCounter allocationsSmall = PlatformDependent.newLongCounter();
     private final LongCounter allocationsHuge = PlatformDependent.newLongCounter();
     private final LongCounter activeBytesHuge = PlatformDependent.newLongCounter();
 
-    private long deallocationsTiny;
     private long deallocationsSmall;
     private long deallocationsNormal;
 
@@ -84,24 +86,19 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     //private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
 
     protected PoolArena(PooledByteBufAllocator parent, int pageSize,
-          int maxOrder, int pageShifts, int chunkSize, int cacheAlignment) {
+          int pageShifts, int chunkSize, int cacheAlignment, long chunkDecayNanos, boolean instrumented) {
+        super(pageSize, pageShifts, chunkSize, cacheAlignment);
         this.parent = parent;
-        this.pageSize = pageSize;
-        this.maxOrder = maxOrder;
-        this.pageShifts = pageShifts;
-        this.chunkSize = chunkSize;
+        this.chunkDecayNanos = chunkDecayNanos;
+        confinedRefCnt = parent != null && parent.confinedRefCnt;
+        stats = instrumented ? new PoolArenaStats(nSizes) : null;
         directMemoryCacheAlignment = cacheAlignment;
         directMemoryCacheAlignmentMask = cacheAlignment - 1;
-        subpageOverflowMask = ~(pageSize - 1);
-        tinySubpagePools = newSubpagePoolArray(numTinySubpagePools);
-        for (int i = 0; i < tinySubpagePools.length; i ++) {
-            tinySubpagePools[i] = newSubpagePoolHead(pageSize);
-        }
 
-        numSmallSubpagePools = pageShifts - 9;
+        numSmallSubpagePools = nSubpages;
         smallSubpagePools = newSubpagePoolArray(numSmallSubpagePools);
         for (int i = 0; i < smallSubpagePools.length; i ++) {
-            smallSubpagePools[i] = newSubpagePoolHead(pageSize);
+            smallSubpagePools[i] = newSubpagePoolHead();
         }
 
         q100 = new PoolChunkList<T>(this, null, 100, Integer.MAX_VALUE, chunkSize);
@@ -128,8 +125,8 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         chunkListMetrics = Collections.unmodifiableList(metrics);
     }
 
-    private PoolSubpage<T> newSubpagePoolHead(int pageSize) {
-        PoolSubpage<T> head = new PoolSubpage<T>(pageSize);
+    private PoolSubpage<T> newSubpagePoolHead() {
+        PoolSubpage<T> head = new PoolSubpage<T>();
         head.prev = head;
         head.next = head;
         return head;
@@ -144,118 +141,123 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     PooledByteBuf<T> allocate(PoolThreadCache cache, int reqCapacity, int maxCapacity) {
         PooledByteBuf<T> buf = newByteBuf(maxCapacity);
+        if (confinedRefCnt) {
+            buf.confineRefCnt();
+        }
         allocate(cache, buf, reqCapacity);
         return buf;
     }
 
-    static int tinyIdx(int normCapacity) {
-        return normCapacity >>> 4;
-    }
+    private void allocate(PoolThreadCache cache, PooledByteBuf<T> buf, final int reqCapacity) {
+        final int sizeIdx = size2SizeIdx(reqCapacity);
+        if (stats != null) {
+            stats.recordAllocation(reqCapacity);
+        }
 
-    static int smallIdx(int normCapacity) {
-        int tableIdx = 0;
-        int i = normCapacity >>> 10;
-        while (i != 0) {
-            i >>>= 1;
-            tableIdx ++;
+        if (sizeIdx <= smallMaxSizeIdx) {
+            tcacheAllocateSmall(cache, buf, reqCapacity, sizeIdx);
+        } else if (sizeIdx < nSizes) {
+            tcacheAllocateNormal(cache, buf, reqCapacity, sizeIdx);
+        } else {
+            int normCapacity = directMemoryCacheAlignment > 0
+                    ? alignCapacity(reqCapacity) : reqCapacity;
+            // Huge allocations are never served via the cache so just call allocateHuge
+            allocateHuge(buf, normCapacity);
         }
-        return tableIdx;
     }
 
-    // capacity < pageSize
-    boolean isTinyOrSmall(int normCapacity) {
-        return (normCapacity & subpageOverflowMask) == 0;
-    }
+    private void tcacheAllocateSmall(PoolThreadCache cache, PooledByteBuf<T> buf, final int reqCapacity,
+                                     final int sizeIdx) {
 
-    // normCapacity < 512
-    static boolean isTiny(int normCapacity) {
-        return (normCapacity & 0xFFFFFE00) == 0;
-    }
+        final PoolArenaStats stats = this.stats;
+        final boolean cached = cache.allocateSmall(this, buf, reqCapacity, sizeIdx);
+        if (stats != null) {
+            stats.recordCacheAllocation(sizeIdx, cached);
+        }
+        if (cached) {
+            // was able to allocate out of the cache so move on
+            return;
+        }
 
-    private void allocate(PoolThreadCache cache, PooledByteBuf<T> buf, final int reqCapacity) {
-        final int normCapacity = normalizeCapacity(reqCapacity);
-        if (isTinyOrSmall(normCapacity)) { // capacity < pageSize
-            int tableIdx;
-            PoolSubpage<T>[] table;
-            boolean tiny = isTiny(normCapacity);
-            if (tiny) { // < 512
-                if (cache.allocateTiny(this, buf, reqCapacity, normCapacity)) {
-                    // was able to allocate out of the cache so move on
-                    return;
-                }
-                tableIdx = tinyIdx(normCapacity);
-                table = tinySubpagePools;
-            } else {
-                if (cache.allocateSmall(this, buf, reqCapacity, normCapacity)) {
-                    // was able to allocate out of the cache so move on
-                    return;
-                }
-                tableIdx = smallIdx(normCapacity);
-                table = smallSubpagePools;
+        /**
+         * Synchronize on the head. This is needed as {@link PoolChunk#allocateSubpage(int)} and
+         * {@link PoolChunk#free(long, int, ByteBuffer)} may modify the doubly linked list as well.
+         */
+        final PoolSubpage<T> head = smallSubpagePools[sizeIdx];
+        final boolean needsNormalAllocation;
+        long lockStart = stats != null ? System.nanoTime() : 0;
+        synchronized (head) {
+            if (stats != null) {
+                stats.subpageLockAcquired(lockStart);
             }
-
-            final PoolSubpage<T> head = table[tableIdx];
-
-            /**
-             * Synchronize on the head. This is needed as {@link PoolChunk#allocateSubpage(int)} and
-             * {@link PoolChunk#free(long)} may modify the doubly linked list as well.
-             */
-            synchronized (head) {
-                final PoolSubpage<T> s = head.next;
-                if (s != head) {
-                    assert s.doNotDestroy && s.elemSize == normCapacity;
-                    long handle = s.allocate();
-                    assert handle >= 0;
-                    s.chunk.initBufWithSubpage(buf, null, handle, reqCapacity, cache);
-                    incTinySmallAllocation(tiny);
-                    return;
-                }
+            final PoolSubpage<T> s = head.next;
+            needsNormalAllocation = s == head;
+            if (!needsNormalAllocation) {
+                assert s.doNotDestroy && s.elemSize == sizeIdx2size(sizeIdx);
+                long handle = s.allocate();
+                assert handle >= 0;
+                s.chunk.initBufWithSubpage(buf, null, handle, reqCapacity, cache);
             }
+        }
+
+        if (needsNormalAllocation) {
+            lockStart = stats != null ? System.nanoTime() : 0;
             synchronized (this) {
-                allocateNormal(buf, reqCapacity, normCapacity, cache);
+                if (stats != null) {
+                    stats.arenaLockAcquired(lockStart);
+                }
+                allocateNormal(buf, reqCapacity, sizeIdx, cache);
             }
+        }
+
+        incSmallAllocation();
+    }
 
-            incTinySmallAllocation(tiny);
+    private void tcacheAllocateNormal(PoolThreadCache cache, PooledByteBuf<T> buf, final int reqCapacity,
+                                      final int sizeIdx) {
+        final PoolArenaStats stats = this.stats;
+        final boolean cached = cache.allocateNormal(this, buf, reqCapacity, sizeIdx);
+        if (stats != null) {
+            stats.recordCacheAllocation(sizeIdx, cached);
+        }
+        if (cached) {
+            // was able to allocate out of the cache so move on
             return;
         }
-        if (normCapacity <= chunkSize) {
-            if (cache.allocateNormal(this, buf, reqCapacity, normCapacity)) {
-                // was able to allocate out of the cache so move on
-                return;
-            }
-            synchronized (this) {
-                allocateNormal(buf, reqCapacity, normCapacity, cache);
-                ++allocationsNormal;
+        final long lockStart = stats != null ? System.nanoTime() : 0;
+        synchronized (this) {
+            if (stats != null) {
+                stats.arenaLockAcquired(lockStart);
             }
-        } else {
-            // Huge allocations are never served via the cache so just call allocateHuge
-            allocateHuge(buf, reqCapacity);
+            allocateNormal(buf, reqCapacity, sizeIdx, cache);
+            ++allocationsNormal;
         }
     }
 
-    // Method must be called inside synchronized(this) { ... } block
-    private void allocateNormal(PooledByteBuf<T> buf, int reqCapacity, int normCapacity, PoolThreadCache threadCache) {
-        if (q050.allocate(buf, reqCapacity, normCapacity, threadCache) ||
-            q025.allocate(buf, reqCapacity, normCapacity, threadCache) ||
-            q000.allocate(buf, reqCapacity, normCapacity, threadCache) ||
-            qInit.allocate(buf, reqCapacity, normCapacity, threadCache) ||
-            q075.allocate(buf, reqCapacity, normCapacity, threadCache)) {
+    // Method must be called inside synchronized(this) { ... } block
+    private void allocateNormal(PooledByteBuf<T> buf, int reqCapacity, int sizeIdx, PoolThreadCache threadCache) {
+        if (q050.allocate(buf, reqCapacity, sizeIdx, threadCache) ||
+            q025.allocate(buf, reqCapacity, sizeIdx, threadCache) ||
+            q000.allocate(buf, reqCapacity, sizeIdx, threadCache) ||
+            qInit.allocate(buf, reqCapacity, sizeIdx, threadCache) ||
+            q075.allocate(buf, reqCapacity, sizeIdx, threadCache)) {
             return;
         }
 
-        // Add a new chunk.
-        PoolChunk<T> c = newChunk(pageSize, maxOrder, pageShifts, chunkSize);
-        boolean success = c.allocate(buf, reqCapacity, normCapacity, threadCache);
+        // Add a new chunk, preferring the most recently emptied one that is still retained.
+        PoolChunk<T> c = retainedChunks.pollLast();
+        if (c != null) {
+            ++reusedChunks;
+        } else {
+            c = newChunk(pageSize, nPSizes, pageShifts, chunkSize);
+        }
+        boolean success = c.allocate(buf, reqCapacity, sizeIdx, threadCache);
         assert success;
         qInit.add(c);
     }
 
-    private void incTinySmallAllocation(boolean tiny) {
-        if (tiny) {
-            allocationsTiny.increment();
-        } else {
-            allocationsSmall.increment();
-        }
+    private void incSmallAllocation() {
+        allocationsSmall.increment();
     }
 
     private void allocateHuge(PooledByteBuf<T> buf, int reqCapacity) {
@@ -272,26 +274,30 @@ abstract class PoolArena<T> implements PoolArenaMetric {
             activeBytesHuge.add(-size);
             deallocationsHuge.increment();
         } else {
-            SizeClass sizeClass = sizeClass(normCapacity);
+            SizeClass sizeClass = sizeClass(handle);
             if (cache != null && cache.add(this, chunk, nioBuffer, handle, normCapacity, sizeClass)) {
                 // cached so not free it.
                 return;
             }
 
-            freeChunk(chunk, handle, sizeClass, nioBuffer, false);
+            freeChunk(chunk, handle, normCapacity, sizeClass, nioBuffer, false);
         }
     }
 
-    private SizeClass sizeClass(int normCapacity) {
-        if (!isTinyOrSmall(normCapacity)) {
-            return SizeClass.Normal;
-        }
-        return isTiny(normCapacity) ? SizeClass.Tiny : SizeClass.Small;
+    private static SizeClass sizeClass(long handle) {
+        return isSubpage(handle) ? SizeClass.Small : SizeClass.Normal;
     }
 
-    void freeChunk(PoolChunk<T> chunk, long handle, SizeClass sizeClass, ByteBuffer nioBuffer, boolean finalizer) {
-        final boolean destroyChunk;
+    void freeChunk(PoolChunk<T> chunk, long handle, int normCapacity, SizeClass sizeClass, ByteBuffer nioBuffer,
+                   boolean finalizer) {
+        boolean destroyChunk;
+        final PoolChunk<T> expiredChunk;
+        final PoolArenaStats stats = this.stats;
+        final long lockStart = stats != null ? System.nanoTime() : 0;
         synchronized (this) {
+            if (stats != null) {
+                stats.arenaLockAcquired(lockStart);
+            }
             // We only call this if freeChunk is not called because of the PoolThreadCache finalizer as otherwise this
             // may fail due lazy class-loading in for example tomcat.
             if (!finalizer) {
@@ -302,72 +308,62 @@ abstract class PoolArena<T> implements PoolArenaMetric {
                     case Small:
                         ++deallocationsSmall;
                         break;
-                    case Tiny:
-                        ++deallocationsTiny;
-                        break;
                     default:
                         throw new Error();
                 }
             }
-            destroyChunk = !chunk.parent.free(chunk, handle, nioBuffer);
+            destroyChunk = !chunk.parent.free(chunk, handle, normCapacity, nioBuffer);
+            if (destroyChunk) {
+                if (chunkDecayNanos > 0) {
+                    // Keep the empty chunk for a while so a following spike does not need to allocate it again.
+                    chunk.decayDeadlineNanos = System.nanoTime() + chunkDecayNanos;
+                    retainedChunks.offerLast(chunk);
+                    destroyChunk = false;
+                } else {
+                    ++releasedChunks;
+                }
+            }
+            // Release at most one expired chunk per call so the memory is given back gradually.
+            expiredChunk = pollExpiredChunk(System.nanoTime());
         }
+        // destroyChunk not need to be called while holding the synchronized lock.
         if (destroyChunk) {
-            // destroyChunk not need to be called while holding the synchronized lock.
             destroyChunk(chunk);
         }
-    }
-
-    PoolSubpage<T> findSubpagePoolHead(int elemSize) {
-        int tableIdx;
-        PoolSubpage<T>[] table;
-        if (isTiny(elemSize)) { // < 512
-            tableIdx = tinyIdx(elemSize);
-            table = tinySubpagePools;
-        } else {
-            tableIdx = smallIdx(elemSize);
-            table = smallSubpagePools;
+        if (expiredChunk != null) {
+            destroyChunk(expiredChunk);
         }
-
-        return table[tableIdx];
     }
 
-    int normalizeCapacity(int reqCapacity) {
-        checkPositiveOrZero(reqCapacity, "reqCapacity");
-
-        if (reqCapacity >= chunkSize) {
-            return directMemoryCacheAlignment == 0 ? reqCapacity : alignCapacity(reqCapacity);
+    // Method must be called inside synchronized(this) { ... } block
+    private PoolChunk<T> pollExpiredChunk(long nanoTime) {
+        PoolChunk<T> chunk = retainedChunks.peekFirst();
+        if (chunk == null || chunk.decayDeadlineNanos - nanoTime > 0) {
+            return null;
         }
+        retainedChunks.pollFirst();
+        ++releasedChunks;
+        return chunk;
+    }
 
-        if (!isTiny(reqCapacity)) { // >= 512
-            // Doubled
-
-            int normalizedCapacity = reqCapacity;
-            normalizedCapacity --;
-            normalizedCapacity |= normalizedCapacity >>>  1;
-            normalizedCapacity |= normalizedCapacity >>>  2;
-            normalizedCapacity |= normalizedCapacity >>>  4;
-            normalizedCapacity |= normalizedCapacity >>>  8;
-            normalizedCapacity |= normalizedCapacity >>> 16;
-            normalizedCapacity ++;
-
-            if (normalizedCapacity < 0) {
-                normalizedCapacity >>>= 1;
+    /**
+     * Destroy all retained empty chunks whose decay interval has passed.
+     */
+    void releaseExpiredChunks() {
+        for (;;) {
+            final PoolChunk<T> chunk;
+            synchronized (this) {
+                chunk = pollExpiredChunk(System.nanoTime());
             }
-            assert directMemoryCacheAlignment == 0 || (normalizedCapacity & directMemoryCacheAlignmentMask) == 0;
-
-            return normalizedCapacity;
-        }
-
-        if (directMemoryCacheAlignment > 0) {
-            return alignCapacity(reqCapacity);
-        }
-
-        // Quantum-spaced
-        if ((reqCapacity & 15) == 0) {
-            return reqCapacity;
+            if (chunk == null) {
+                return;
+            }
+            destroyChunk(chunk);
         }
+    }
 
-        return (reqCapacity & ~15) + 16;
+    PoolSubpage<T> findSubpagePoolHead(int sizeIdx) {
+        return smallSubpagePools[sizeIdx];
     }
 
     int alignCapacity(int reqCapacity) {
@@ -391,7 +387,17 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         int oldMaxLength = buf.maxLength;
 
         // This does not touch buf's reader/writer indices
-        allocate(parent.threadCache(), buf, newCapacity);
+        PoolCacheStripes cacheStripes = parent.cacheStripes;
+        if (cacheStripes == null) {
+            allocate(parent.threadCache(), buf, newCapacity);
+        } else {
+            int token = cacheStripes.acquire();
+            try {
+                allocate(cacheStripes.cache(token), buf, newCapacity);
+            } finally {
+                cacheStripes.release(token);
+            }
+        }
         int bytesToCopy;
         if (newCapacity > oldCapacity) {
             bytesToCopy = oldCapacity;
@@ -410,9 +416,10 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         return numThreadCaches.get();
     }
 
+    @Deprecated
     @Override
     public int numTinySubpages() {
-        return tinySubpagePools.length;
+        return 0;
     }
 
     @Override
@@ -425,9 +432,10 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         return chunkListMetrics.size();
     }
 
+    @Deprecated
     @Override
     public List<PoolSubpageMetric> tinySubpages() {
-        return subPageMetricList(tinySubpagePools);
+        return Collections.emptyList();
     }
 
     @Override
@@ -464,12 +472,13 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         synchronized (this) {
             allocsNormal = allocationsNormal;
         }
-        return allocationsTiny.value() + allocationsSmall.value() + allocsNormal + allocationsHuge.value();
+        return allocationsSmall.value() + allocsNormal + allocationsHuge.value();
     }
 
+    @Deprecated
     @Override
     public long numTinyAllocations() {
-        return allocationsTiny.value();
+        return 0;
     }
 
     @Override
@@ -486,14 +495,15 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     public long numDeallocations() {
         final long deallocs;
         synchronized (this) {
-            deallocs = deallocationsTiny + deallocationsSmall + deallocationsNormal;
+            deallocs = deallocationsSmall + deallocationsNormal;
         }
         return deallocs + deallocationsHuge.value();
     }
 
+    @Deprecated
     @Override
-    public synchronized long numTinyDeallocations() {
-        return deallocationsTiny;
+    public long numTinyDeallocations() {
+        return 0;
     }
 
     @Override
@@ -518,17 +528,18 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     @Override
     public  long numActiveAllocations() {
-        long val = allocationsTiny.value() + allocationsSmall.value() + allocationsHuge.value()
+        long val = allocationsSmall.value() + allocationsHuge.value()
                 - deallocationsHuge.value();
         synchronized (this) {
-            val += allocationsNormal - (deallocationsTiny + deallocationsSmall + deallocationsNormal);
+            val += allocationsNormal - (deallocationsSmall + deallocationsNormal);
         }
         return max(val, 0);
     }
 
+    @Deprecated
     @Override
     public long numActiveTinyAllocations() {
-        return max(numTinyAllocations() - numTinyDeallocations(), 0);
+        return 0;
     }
 
     @Override
@@ -550,6 +561,59 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         return max(numHugeAllocations() - numHugeDeallocations(), 0);
     }
 
+    @Override
+    public synchronized int numRetainedChunks() {
+        return retainedChunks.size();
+    }
+
+    @Override
+    public synchronized long numReleasedChunks() {
+        return releasedChunks;
+    }
+
+    @Override
+    public synchronized long numReusedChunks() {
+        return reusedChunks;
+    }
+
+    @Override
+    public boolean isInstrumented() {
+        return stats != null;
+    }
+
+    @Override
+    public long[] allocationSizeHistogram() {
+        return stats != null ? stats.allocationSizeHistogram() : new long[PoolArenaStats.NUM_SIZE_BUCKETS];
+    }
+
+    @Override
+    public long numThreadCacheHits(int sizeIdx) {
+        checkSizeIdx(sizeIdx);
+        return stats != null ? stats.numCacheHits(sizeIdx) : 0;
+    }
+
+    @Override
+    public long numThreadCacheMisses(int sizeIdx) {
+        checkSizeIdx(sizeIdx);
+        return stats != null ? stats.numCacheMisses(sizeIdx) : 0;
+    }
+
+    private void checkSizeIdx(int sizeIdx) {
+        if (sizeIdx < 0 || sizeIdx >= nSizes) {
+            throw new IllegalArgumentException("sizeIdx: " + sizeIdx + " (expected: 0-" + (nSizes - 1) + ')');
+        }
+    }
+
+    @Override
+    public long arenaLockWaitNanos() {
+        return stats != null ? stats.arenaLockWaitNanos() : 0;
+    }
+
+    @Override
+    public long subpageLockWaitNanos() {
+        return stats != null ? stats.subpageLockWaitNanos() : 0;
+    }
+
     @Override
     public long numActiveBytes() {
         long val = activeBytesHuge.value();
@@ -563,7 +627,7 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         return max(0, val);
     }
 
-    protected abstract PoolChunk<T> newChunk(int pageSize, int maxOrder, int pageShifts, int chunkSize);
+    protected abstract PoolChunk<T> newChunk(int pageSize, int maxPageIdx, int pageShifts, int chunkSize);
     protected abstract PoolChunk<T> newUnpooledChunk(int capacity);
     protected abstract PooledByteBuf<T> newByteBuf(int maxCapacity);
     protected abstract void memoryCopy(T src, int srcOffset, PooledByteBuf<T> dst, int length);
@@ -596,10 +660,7 @@ abstract class PoolArena<T> implements PoolArenaMetric {
             .append(StringUtil.NEWLINE)
             .append(q100)
             .append(StringUtil.NEWLINE)
-            .append("tiny subpages:");
-        appendPoolSubPages(buf, tinySubpagePools);
-        buf.append(StringUtil.NEWLINE)
-           .append("small subpages:");
+            .append("small subpages:");
         appendPoolSubPages(buf, smallSubpagePools);
         buf.append(StringUtil.NEWLINE);
 
@@ -633,8 +694,10 @@ abstract class PoolArena<T> implements PoolArenaMetric {
             super.finalize();
         } finally {
             destroyPoolSubPages(smallSubpagePools);
-            destroyPoolSubPages(tinySubpagePools);
             destroyPoolChunkLists(qInit, q000, q025, q050, q075, q100);
+            for (PoolChunk<T> chunk : retainedChunks) {
+                destroyChunk(chunk);
+            }
         }
     }
 
@@ -652,10 +715,15 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     static final class HeapArena extends PoolArena<byte[]> {
 
-        HeapArena(PooledByteBufAllocator parent, int pageSize, int maxOrder,
-                int pageShifts, int chunkSize, int directMemoryCacheAlignment) {
-            super(parent, pageSize, maxOrder, pageShifts, chunkSize,
-                    directMemoryCacheAlignment);
+        HeapArena(PooledByteBufAllocator parent, int pageSize, int pageShifts,
+                int chunkSize, int directMemoryCacheAlignment) {
+            this(parent, pageSize, pageShifts, chunkSize, directMemoryCacheAlignment, 0, false);
+        }
+
+        HeapArena(PooledByteBufAllocator parent, int pageSize, int pageShifts,
+                int chunkSize, int directMemoryCacheAlignment, long chunkDecayNanos, boolean instrumented) {
+            super(parent, pageSize, pageShifts, chunkSize,
+                    directMemoryCacheAlignment, chunkDecayNanos, instrumented);
         }
 
         private static byte[] newByteArray(int size) {
@@ -668,8 +736,8 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         }
 
         @Override
-        protected PoolChunk<byte[]> newChunk(int pageSize, int maxOrder, int pageShifts, int chunkSize) {
-            return new PoolChunk<byte[]>(this, newByteArray(chunkSize), pageSize, maxOrder, pageShifts, chunkSize, 0);
+        protected PoolChunk<byte[]> newChunk(int pageSize, int maxPageIdx, int pageShifts, int chunkSize) {
+            return new PoolChunk<byte[]>(this, newByteArray(chunkSize), pageSize, pageShifts, chunkSize, maxPageIdx, 0);
         }
 
         @Override
@@ -700,10 +768,20 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     static final class DirectArena extends PoolArena<ByteBuffer> {
 
-        DirectArena(PooledByteBufAllocator parent, int pageSize, int maxOrder,
-                int pageShifts, int chunkSize, int directMemoryCacheAlignment) {
-            super(parent, pageSize, maxOrder, pageShifts, chunkSize,
-                    directMemoryCacheAlignment);
+        // May be null, in which case the memory of all chunks is allocated by allocateDirect(int).
+        private final DirectChunkProvider chunkProvider;
+
+        DirectArena(PooledByteBufAllocator parent, int pageSize, int pageShifts,
+                int chunkSize, int directMemoryCacheAlignment) {
+            this(parent, pageSize, pageShifts, chunkSize, directMemoryCacheAlignment, 0, false, null);
+        }
+
+        DirectArena(PooledByteBufAllocator parent, int pageSize, int pageShifts,
+                int chunkSize, int directMemoryCacheAlignment, long chunkDecayNanos, boolean instrumented,
+                DirectChunkProvider chunkProvider) {
+            super(parent, pageSize, pageShifts, chunkSize,
+                    directMemoryCacheAlignment, chunkDecayNanos, instrumented);
+            this.chunkProvider = chunkProvider;
         }
 
         @Override
@@ -724,18 +802,20 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         }
 
         @Override
-        protected PoolChunk<ByteBuffer> newChunk(int pageSize, int maxOrder,
+        protected PoolChunk<ByteBuffer> newChunk(int pageSize, int maxPageIdx,
                 int pageShifts, int chunkSize) {
-            if (directMemoryCacheAlignment == 0) {
-                return new PoolChunk<ByteBuffer>(this,
-                        allocateDirect(chunkSize), pageSize, maxOrder,
-                        pageShifts, chunkSize, 0);
+            final int capacity = directMemoryCacheAlignment == 0 ? chunkSize : chunkSize + directMemoryCacheAlignment;
+            ByteBuffer memory = chunkProvider == null ? null : chunkProvider.allocateChunk(capacity);
+            final boolean provided = memory != null;
+            if (provided) {
+                assert memory.isDirect() && memory.capacity() == capacity;
+            } else {
+                memory = allocateDirect(capacity);
             }
-            final ByteBuffer memory = allocateDirect(chunkSize
-                    + directMemoryCacheAlignment);
-            return new PoolChunk<ByteBuffer>(this, memory, pageSize,
-                    maxOrder, pageShifts, chunkSize,
-                    offsetCacheLine(memory));
+            PoolChunk<ByteBuffer> chunk = new PoolChunk<ByteBuffer>(this, memory, pageSize, pageShifts,
+                    chunkSize, maxPageIdx, directMemoryCacheAlignment == 0 ? 0 : offsetCacheLine(memory));
+            chunk.provided = provided;
+            return chunk;
         }
 
         @Override
@@ -757,7 +837,9 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
         @Override
         protected void destroyChunk(PoolChunk<ByteBuffer> chunk) {
-            if (PlatformDependent.useDirectBufferNoCleaner()) {
+            if (chunk.provided) {
+                chunkProvider.freeChunk(chunk.memory);
+            } else if (PlatformDependent.useDirectBufferNoCleaner()) {
                 PlatformDependent.freeDirectNoCleaner(chunk.memory);
             } else {
                 PlatformDependent.freeDirectBuffer(chunk.memory);
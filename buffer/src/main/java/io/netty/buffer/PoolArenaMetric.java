@@ -21,7 +21,7 @@ import java.util.List;
 /**
  * Expose metrics for an arena.
  */
-public interface PoolArenaMetric {
+public interface PoolArenaMetric extends SizeClassesMetric {
 
     /**
      * Returns the number of thread caches backed by this arena.
@@ -30,7 +30,10 @@ public interface PoolArenaMetric {
 
     /**
      * Returns the number of tiny sub-pages for the arena.
+     *
+     * @deprecated Tiny sub-pages have been merged into small sub-pages.
      */
+    @Deprecated
     int numTinySubpages();
 
     /**
@@ -45,7 +48,10 @@ public interface PoolArenaMetric {
 
     /**
      * Returns an unmodifiable {@link List} which holds {@link PoolSubpageMetric}s for tiny sub-pages.
+     *
+     * @deprecated Tiny sub-pages have been merged into small sub-pages.
      */
+    @Deprecated
     List<PoolSubpageMetric> tinySubpages();
 
     /**
@@ -65,7 +71,10 @@ public interface PoolArenaMetric {
 
     /**
      * Return the number of tiny allocations done via the arena.
+     *
+     * @deprecated Tiny sub-pages have been merged into small sub-pages.
      */
+    @Deprecated
     long numTinyAllocations();
 
     /**
@@ -90,7 +99,10 @@ public interface PoolArenaMetric {
 
     /**
      * Return the number of tiny deallocations done via the arena.
+     *
+     * @deprecated Tiny sub-pages have been merged into small sub-pages.
      */
+    @Deprecated
     long numTinyDeallocations();
 
     /**
@@ -115,7 +127,10 @@ public interface PoolArenaMetric {
 
     /**
      * Return the number of currently active tiny allocations.
+     *
+     * @deprecated Tiny sub-pages have been merged into small sub-pages.
      */
+    @Deprecated
     long numActiveTinyAllocations();
 
     /**
@@ -133,6 +148,63 @@ public interface PoolArenaMetric {
      */
     long numActiveHugeAllocations();
 
+    /**
+     * Return the number of empty chunks that are retained by the arena until their decay interval passes.
+     */
+    int numRetainedChunks();
+
+    /**
+     * Return the number of chunks that were released by the arena and so given back to the system.
+     */
+    long numReleasedChunks();
+
+    /**
+     * Return the number of retained empty chunks that were reused by the arena instead of allocating a new chunk.
+     */
+    long numReusedChunks();
+
+    /**
+     * Returns {@code true} if the arena collects the allocation histogram, thread cache and lock wait metrics
+     * below. These are only collected if {@code io.netty.allocator.instrumentation} is set to {@code true}.
+     */
+    boolean isInstrumented();
+
+    /**
+     * Return a snapshot of the requested allocation sizes. The element at index {@code i} is the number of
+     * allocations with a requested capacity in {@code [2^i, 2^(i+1))}, index {@code 0} also counts empty requests.
+     * All elements are {@code 0} if the arena is not instrumented.
+     */
+    long[] allocationSizeHistogram();
+
+    /**
+     * Return the number of allocations of the given size class that were served by a thread cache.
+     *
+     * @param sizeIdx the index of the size class, see {@link #size2SizeIdx(int)}.
+     * @throws IllegalArgumentException if {@code sizeIdx} is not the index of a size class, like the one
+     *         {@link #size2SizeIdx(int)} returns for huge sizes.
+     */
+    long numThreadCacheHits(int sizeIdx);
+
+    /**
+     * Return the number of allocations of the given size class that could not be served by a thread cache and so
+     * needed to be served by the arena.
+     *
+     * @param sizeIdx the index of the size class, see {@link #size2SizeIdx(int)}.
+     * @throws IllegalArgumentException if {@code sizeIdx} is not the index of a size class, like the one
+     *         {@link #size2SizeIdx(int)} returns for huge sizes.
+     */
+    long numThreadCacheMisses(int sizeIdx);
+
+    /**
+     * Return the cumulative time in nanoseconds threads spent acquiring the lock of the arena.
+     */
+    long arenaLockWaitNanos();
+
+    /**
+     * Return the cumulative time in nanoseconds threads spent acquiring the locks of the subpage pools.
+     */
+    long subpageLockWaitNanos();
+
     /**
      * Return the number of active bytes that are currently allocated by the arena.
      */
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
+
+import static io.netty.buffer.PoolThreadCache.log2;
+
+/**
+ * Optional instrumentation of a {@link PoolArena}. All counters are {@link LongCounter}s as they are updated
+ * concurrently and may be read at any time without taking any lock of the arena.
+ */
+final class PoolArenaStats {
+
+    // Bucket i counts requests with a capacity in [2^i, 2^(i+1)), bucket 0 also counts empty requests.
+    static final int NUM_SIZE_BUCKETS = Integer.SIZE - 1;
+
+    private final LongCounter[] allocationSizes = newCounters(NUM_SIZE_BUCKETS);
+    private final LongCounter[] cacheHits;
+    private final LongCounter[] cacheMisses;
+    private final LongCounter arenaLockWaitNanos = PlatformDependent.newLongCounter();
+    private final LongCounter subpageLockWaitNanos = PlatformDependent.newLongCounter();
+
+    PoolArenaStats(int nSizes) {
+        cacheHits = newCounters(nSizes);
+        cacheMisses = newCounters(nSizes);
+    }
+
+    private static LongCounter[] newCounters(int size) {
+        LongCounter[] counters = new LongCounter[size];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = PlatformDependent.newLongCounter();
+        }
+        return counters;
+    }
+
+    void recordAllocation(int reqCapacity) {
+        allocationSizes[reqCapacity <= 1 ? 0 : log2(reqCapacity)].increment();
+    }
+
+    void recordCacheAllocation(int sizeIdx, boolean hit) {
+        (hit ? cacheHits : cacheMisses)[sizeIdx].increment();
+    }
+
+    /**
+     * Must be called right after the lock of the arena was acquired, with the {@link System#nanoTime()} that was
+     * taken before trying to acquire it.
+     */
+    void arenaLockAcquired(long startNanos) {
+        arenaLockWaitNanos.add(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Must be called right after the lock of a {@link PoolSubpage} head was acquired, with the
+     * {@link System#nanoTime()} that was taken before trying to acquire it.
+     */
+    void subpageLockAcquired(long startNanos) {
+        subpageLockWaitNanos.add(System.nanoTime() - startNanos);
+    }
+
+    long[] allocationSizeHistogram() {
+        long[] histogram = new long[allocationSizes.length];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = allocationSizes[i].value();
+        }
+        return histogram;
+    }
+
+    long numCacheHits(int sizeIdx) {
+        return cacheHits[sizeIdx].value();
+    }
+
+    long numCacheMisses(int sizeIdx) {
+        return cacheMisses[sizeIdx].value();
+    }
+
+    long arenaLockWaitNanos() {
+        return arenaLockWaitNanos.value();
+    }
+
+    long subpageLockWaitNanos() {
+        return subpageLockWaitNanos.value();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.MathUtil;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Replaces the per-{@link Thread} {@link PoolThreadCache}s of a {@link PooledByteBufAllocator} with a fixed number
+ * of stripes. Each stripe pairs a heap and a direct {@link PoolArena} with one bounded, shared
+ * {@link PoolThreadCache} (the magazine) that is guarded by a try-lock.
+ *
+ * A thread picks its stripe through a probe value and only moves to another stripe when the one it probed is busy,
+ * in the same way {@code java.util.concurrent.atomic.LongAdder} spreads contended updates. This keeps the memory
+ * retained by caches bounded by the number of stripes no matter how many threads use the allocator, while still
+ * letting the allocation rate scale with the number of cores.
+ */
+final class PoolCacheStripes {
+
+    // How often a contended thread re-probes before it gives up on the magazines and hits the arena directly.
+    private static final int MAX_PROBES = 4;
+
+    private static final FastThreadLocal<int[]> PROBE = new FastThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            // Multiply by the golden ratio so consecutive thread ids spread over the stripes. Never zero as the
+            // constant is odd and the id is positive.
+            return new int[] { (int) Thread.currentThread().getId() * 0x9E3779B9 };
+        }
+    };
+
+    private final Stripe[] stripes;
+    private final int mask;
+
+    PoolCacheStripes(PoolArena<byte[]>[] heapArenas, PoolArena<ByteBuffer>[] directArenas,
+                     int smallCacheSize, int normalCacheSize, int maxCachedBufferCapacity,
+                     int freeSweepAllocationThreshold) {
+        int numHeapArenas = heapArenas == null ? 0 : heapArenas.length;
+        int numDirectArenas = directArenas == null ? 0 : directArenas.length;
+        int numStripes = MathUtil.findNextPositivePowerOfTwo(Math.max(1, Math.max(numHeapArenas, numDirectArenas)));
+
+        stripes = new Stripe[numStripes];
+        mask = numStripes - 1;
+        for (int i = 0; i < numStripes; i++) {
+            PoolArena<byte[]> heapArena = numHeapArenas == 0 ? null : heapArenas[i % numHeapArenas];
+            PoolArena<ByteBuffer> directArena = numDirectArenas == 0 ? null : directArenas[i % numDirectArenas];
+            stripes[i] = new Stripe(
+                    new PoolThreadCache(heapArena, directArena, smallCacheSize, normalCacheSize,
+                            maxCachedBufferCapacity, freeSweepAllocationThreshold),
+                    new PoolThreadCache(heapArena, directArena, 0, 0, 0, 0));
+        }
+    }
+
+    /**
+     * Returns the number of stripes.
+     */
+    int numStripes() {
+        return stripes.length;
+    }
+
+    /**
+     * Acquire a stripe for the calling thread and return a token which must be passed to {@link #cache(int)} and
+     * {@link #release(int)}. A non-negative token means the magazine of the stripe is owned by the caller, a negative
+     * token means all probed stripes were busy and allocations should bypass the magazine.
+     */
+    int acquire() {
+        int[] probe = PROBE.get();
+        int h = probe[0];
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int idx = h & mask;
+            if (stripes[idx].tryLock()) {
+                if (i != 0) {
+                    probe[0] = h;
+                }
+                return idx;
+            }
+            h = advanceProbe(h);
+        }
+        probe[0] = h;
+        return ~(h & mask);
+    }
+
+    /**
+     * Returns the {@link PoolThreadCache} to use for the given token obtained by {@link #acquire()}.
+     */
+    PoolThreadCache cache(int token) {
+        return token >= 0 ? stripes[token].magazine : stripes[~token].uncached;
+    }
+
+    /**
+     * Release the stripe that was acquired by {@link #acquire()}.
+     */
+    void release(int token) {
+        if (token >= 0) {
+            stripes[token].unlock();
+        }
+    }
+
+    /**
+     * Trim the magazines of all stripes that are not in use at the moment.
+     */
+    void trim() {
+        for (Stripe stripe : stripes) {
+            if (stripe.tryLock()) {
+                try {
+                    stripe.magazine.trim();
+                } finally {
+                    stripe.unlock();
+                }
+            }
+        }
+    }
+
+    // Marsaglia xorshift, as used by Striped64.
+    private static int advanceProbe(int h) {
+        h ^= h << 13;
+        h ^= h >>> 17;
+        h ^= h << 5;
+        return h;
+    }
+
+    private static final class Stripe extends AtomicBoolean {
+        private static final long serialVersionUID = -1385498574356342826L;
+
+        final PoolThreadCache magazine;
+        final PoolThreadCache uncached;
+
+        Stripe(PoolThreadCache magazine, PoolThreadCache uncached) {
+            this.magazine = magazine;
+            this.uncached = uncached;
+        }
+
+        boolean tryLock() {
+            return !get() && compareAndSet(false, true);
+        }
+
+        void unlock() {
+            set(false);
+        }
+    }
+}
@@ -16,7 +16,13 @@
 
 package io.netty.buffer;
 
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
 import io.netty.util.internal.ObjectPool.Handle;
+import io.netty.util.internal.ThreadExecutorMap;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -25,9 +31,24 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ScatteringByteChannel;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
 
 abstract class PooledByteBuf<T> extends AbstractReferenceCountedByteBuf {
 
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<PooledByteBuf> SHARED_REF_CNT_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(PooledByteBuf.class, "sharedRefCnt");
+
+    // Flags of sharedRefCnt, the count itself is stored shifted by SHARED_REF_CNT_SHIFT and may be negative as long
+    // as the count is not merged.
+    private static final int MERGED = 1;
+    private static final int MERGE_SCHEDULED = 2;
+    private static final int SHARED_REF_CNT_SHIFT = 2;
+    private static final int MAX_SHARED_REF_CNT = Integer.MAX_VALUE >> SHARED_REF_CNT_SHIFT;
+
     private final Handle<PooledByteBuf<T>> recyclerHandle;
 
     protected PoolChunk<T> chunk;
@@ -40,6 +61,15 @@ abstract class PooledByteBuf<T> extends AbstractReferenceCountedByteBuf {
     ByteBuffer tmpNioBuf;
     private ByteBufAllocator allocator;
 
+    // If confined the reference count is biased towards the event loop thread that allocated the buffer: the owner
+    // updates biasedRefCnt with plain reads and writes while all other threads update sharedRefCnt atomically. Once
+    // the owner is done with the buffer both counts are merged into sharedRefCnt and only atomic updates are used.
+    private boolean confined;
+    private Thread owner;
+    private EventExecutor ownerExecutor;
+    private int biasedRefCnt;
+    private volatile int sharedRefCnt;
+
     @SuppressWarnings("unchecked")
     protected PooledByteBuf(Handle<? extends PooledByteBuf<T>> recyclerHandle, int maxCapacity) {
         super(maxCapacity);
@@ -77,10 +107,198 @@ abstract class PooledByteBuf<T> extends AbstractReferenceCountedByteBuf {
     final void reuse(int maxCapacity) {
         maxCapacity(maxCapacity);
         resetRefCnt();
+        confined = false;
+        owner = null;
+        ownerExecutor = null;
         setIndex0(0, 0);
         discardMarks();
     }
 
+    /**
+     * Confine the reference count to the calling thread if it is the thread of a {@link SingleThreadEventExecutor}.
+     * Must be called right after {@link #reuse(int)} and before the buffer is handed to any other thread.
+     */
+    final void confineRefCnt() {
+        EventExecutor executor = ThreadExecutorMap.currentExecutor();
+        if (executor instanceof SingleThreadEventExecutor && executor.inEventLoop()) {
+            confined = true;
+            owner = Thread.currentThread();
+            ownerExecutor = executor;
+            biasedRefCnt = 1;
+            SHARED_REF_CNT_UPDATER.lazySet(this, 0);
+        }
+    }
+
+    /**
+     * Returns {@code true} if the reference count is still biased towards the thread that allocated the buffer.
+     */
+    final boolean isRefCntBiased() {
+        return confined && (sharedRefCnt & MERGED) == 0;
+    }
+
+    @Override
+    boolean isAccessible() {
+        return confined ? refCnt() != 0 : super.isAccessible();
+    }
+
+    @Override
+    public int refCnt() {
+        if (!confined) {
+            return super.refCnt();
+        }
+        int rawCnt = sharedRefCnt;
+        int refCnt = rawCnt >> SHARED_REF_CNT_SHIFT;
+        if ((rawCnt & MERGED) == 0) {
+            // Only exact if called by the owner, otherwise this is a best-effort guess like isAccessible().
+            refCnt += biasedRefCnt;
+        }
+        return Math.max(refCnt, 0);
+    }
+
+    @Override
+    public ByteBuf retain() {
+        return retain(1);
+    }
+
+    @Override
+    public ByteBuf retain(int increment) {
+        if (!confined) {
+            return super.retain(increment);
+        }
+        checkPositive(increment, "increment");
+        if (owner == Thread.currentThread()) {
+            int biased = biasedRefCnt;
+            int refCnt = biased + (sharedRefCnt >> SHARED_REF_CNT_SHIFT);
+            if (refCnt <= 0) {
+                throw new IllegalReferenceCountException(0, increment);
+            }
+            if (biased + increment < biased) {
+                throw new IllegalReferenceCountException(refCnt, increment);
+            }
+            biasedRefCnt = biased + increment;
+            return this;
+        }
+        for (;;) {
+            int rawCnt = sharedRefCnt;
+            int refCnt = rawCnt >> SHARED_REF_CNT_SHIFT;
+            if ((rawCnt & MERGED) != 0 && refCnt <= 0) {
+                throw new IllegalReferenceCountException(0, increment);
+            }
+            if (increment > MAX_SHARED_REF_CNT - refCnt) {
+                throw new IllegalReferenceCountException(refCnt, increment);
+            }
+            int flags = rawCnt & (MERGED | MERGE_SCHEDULED);
+            if (SHARED_REF_CNT_UPDATER.compareAndSet(this, rawCnt, refCnt + increment << SHARED_REF_CNT_SHIFT | flags)) {
+                return this;
+            }
+        }
+    }
+
+    @Override
+    public boolean release() {
+        return release(1);
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        if (!confined) {
+            return super.release(decrement);
+        }
+        checkPositive(decrement, "decrement");
+        if (owner == Thread.currentThread()) {
+            int biased = biasedRefCnt;
+            int refCnt = biased + (sharedRefCnt >> SHARED_REF_CNT_SHIFT);
+            if (refCnt < decrement) {
+                throw new IllegalReferenceCountException(Math.max(refCnt, 0), -decrement);
+            }
+            biased -= decrement;
+            if (biased > 0 && refCnt > decrement) {
+                biasedRefCnt = biased;
+                return false;
+            }
+            // Either the buffer is not referenced anymore or the owner released more than it retained itself.
+            if (mergeRefCnt(biased) != 0) {
+                return false;
+            }
+            deallocate();
+            return true;
+        }
+        for (;;) {
+            int rawCnt = sharedRefCnt;
+            int refCnt = rawCnt >> SHARED_REF_CNT_SHIFT;
+            if ((rawCnt & MERGED) != 0) {
+                if (refCnt < decrement) {
+                    throw new IllegalReferenceCountException(Math.max(refCnt, 0), -decrement);
+                }
+                if (SHARED_REF_CNT_UPDATER.compareAndSet(
+                        this, rawCnt, refCnt - decrement << SHARED_REF_CNT_SHIFT | MERGED)) {
+                    if (refCnt != decrement) {
+                        return false;
+                    }
+                    deallocate();
+                    return true;
+                }
+            } else {
+                // The shared count becomes negative if the references taken by the owner are released by another
+                // thread, in this case only the owner can tell if the buffer must be deallocated.
+                boolean scheduleMerge = refCnt - decrement < 0 && (rawCnt & MERGE_SCHEDULED) == 0;
+                int flags = rawCnt & MERGE_SCHEDULED | (scheduleMerge ? MERGE_SCHEDULED : 0);
+                if (SHARED_REF_CNT_UPDATER.compareAndSet(
+                        this, rawCnt, refCnt - decrement << SHARED_REF_CNT_SHIFT | flags)) {
+                    if (scheduleMerge) {
+                        scheduleMerge();
+                    }
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Merge the biased count into the shared count. Must only be called by the owner or after the owner terminated.
+     */
+    private int mergeRefCnt(int biased) {
+        biasedRefCnt = 0;
+        owner = null;
+        for (;;) {
+            int rawCnt = sharedRefCnt;
+            int refCnt = (rawCnt >> SHARED_REF_CNT_SHIFT) + biased;
+            if (SHARED_REF_CNT_UPDATER.compareAndSet(this, rawCnt, refCnt << SHARED_REF_CNT_SHIFT | MERGED)) {
+                return refCnt;
+            }
+        }
+    }
+
+    private void scheduleMerge() {
+        final Thread owner = this.owner;
+        final EventExecutor ownerExecutor = this.ownerExecutor;
+        if (owner == null) {
+            // Merged concurrently by the owner, which took our update into account.
+            return;
+        }
+        final Runnable merge = new Runnable() {
+            @Override
+            public void run() {
+                // The buffer may have been merged, deallocated and even reused by the owner in the meantime.
+                if (PooledByteBuf.this.owner == owner && mergeRefCnt(biasedRefCnt) == 0) {
+                    deallocate();
+                }
+            }
+        };
+        try {
+            ownerExecutor.execute(merge);
+        } catch (RejectedExecutionException e) {
+            // The owner is shutting down. Once it terminated it can not touch the biased count anymore, so it is
+            // safe to merge from whatever thread notifies the listener.
+            ownerExecutor.terminationFuture().addListener(new FutureListener<Object>() {
+                @Override
+                public void operationComplete(Future<Object> future) {
+                    merge.run();
+                }
+            });
+        }
+    }
+
     @Override
     public final int capacity() {
         return length;
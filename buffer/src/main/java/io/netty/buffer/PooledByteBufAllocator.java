@@ -43,13 +43,16 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
 
     private static final int DEFAULT_PAGE_SIZE;
     private static final int DEFAULT_MAX_ORDER; // 8192 << 11 = 16 MiB per chunk
-    private static final int DEFAULT_TINY_CACHE_SIZE;
     private static final int DEFAULT_SMALL_CACHE_SIZE;
     private static final int DEFAULT_NORMAL_CACHE_SIZE;
     private static final int DEFAULT_MAX_CACHED_BUFFER_CAPACITY;
     private static final int DEFAULT_CACHE_TRIM_INTERVAL;
     private static final long DEFAULT_CACHE_TRIM_INTERVAL_MILLIS;
     private static final boolean DEFAULT_USE_CACHE_FOR_ALL_THREADS;
+    private static final boolean DEFAULT_USE_STRIPED_CACHES;
+    private static final long DEFAULT_CHUNK_DECAY_MILLIS;
+    private static final boolean DEFAULT_INSTRUMENTATION;
+    private static final boolean DEFAULT_CONFINED_REF_CNT;
     private static final int DEFAULT_DIRECT_MEMORY_CACHE_ALIGNMENT;
     static final int DEFAULT_MAX_CACHED_BYTEBUFFERS_PER_CHUNK;
 
@@ -111,7 +114,6 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
                                 PlatformDependent.maxDirectMemory() / defaultChunkSize / 2 / 3)));
 
         // cache sizes
-        DEFAULT_TINY_CACHE_SIZE = SystemPropertyUtil.getInt("io.netty.allocator.tinyCacheSize", 512);
         DEFAULT_SMALL_CACHE_SIZE = SystemPropertyUtil.getInt("io.netty.allocator.smallCacheSize", 256);
         DEFAULT_NORMAL_CACHE_SIZE = SystemPropertyUtil.getInt("io.netty.allocator.normalCacheSize", 64);
 
@@ -144,6 +146,18 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         DEFAULT_USE_CACHE_FOR_ALL_THREADS = SystemPropertyUtil.getBoolean(
                 "io.netty.allocator.useCacheForAllThreads", true);
 
+        DEFAULT_USE_STRIPED_CACHES = SystemPropertyUtil.getBoolean(
+                "io.netty.allocator.useStripedCaches", false);
+
+        // How long an empty chunk is retained before it is released, 0 releases it right away.
+        DEFAULT_CHUNK_DECAY_MILLIS = Math.max(0, SystemPropertyUtil.getLong(
+                "io.netty.allocator.chunkDecayMillis", 0));
+
+        DEFAULT_INSTRUMENTATION = SystemPropertyUtil.getBoolean("io.netty.allocator.instrumentation", false);
+
+        // Use plain instead of atomic reference count updates for buffers that stay on the event loop allocating them.
+        DEFAULT_CONFINED_REF_CNT = SystemPropertyUtil.getBoolean("io.netty.allocator.confinedRefCnt", false);
+
         DEFAULT_DIRECT_MEMORY_CACHE_ALIGNMENT = SystemPropertyUtil.getInt(
                 "io.netty.allocator.directMemoryCacheAlignment", 0);
 
@@ -166,13 +180,16 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
                 logger.debug("-Dio.netty.allocator.maxOrder: {}", DEFAULT_MAX_ORDER, maxOrderFallbackCause);
             }
             logger.debug("-Dio.netty.allocator.chunkSize: {}", DEFAULT_PAGE_SIZE << DEFAULT_MAX_ORDER);
-            logger.debug("-Dio.netty.allocator.tinyCacheSize: {}", DEFAULT_TINY_CACHE_SIZE);
             logger.debug("-Dio.netty.allocator.smallCacheSize: {}", DEFAULT_SMALL_CACHE_SIZE);
             logger.debug("-Dio.netty.allocator.normalCacheSize: {}", DEFAULT_NORMAL_CACHE_SIZE);
             logger.debug("-Dio.netty.allocator.maxCachedBufferCapacity: {}", DEFAULT_MAX_CACHED_BUFFER_CAPACITY);
             logger.debug("-Dio.netty.allocator.cacheTrimInterval: {}", DEFAULT_CACHE_TRIM_INTERVAL);
             logger.debug("-Dio.netty.allocator.cacheTrimIntervalMillis: {}", DEFAULT_CACHE_TRIM_INTERVAL_MILLIS);
             logger.debug("-Dio.netty.allocator.useCacheForAllThreads: {}", DEFAULT_USE_CACHE_FOR_ALL_THREADS);
+            logger.debug("-Dio.netty.allocator.useStripedCaches: {}", DEFAULT_USE_STRIPED_CACHES);
+            logger.debug("-Dio.netty.allocator.chunkDecayMillis: {}", DEFAULT_CHUNK_DECAY_MILLIS);
+            logger.debug("-Dio.netty.allocator.instrumentation: {}", DEFAULT_INSTRUMENTATION);
+            logger.debug("-Dio.netty.allocator.confinedRefCnt: {}", DEFAULT_CONFINED_REF_CNT);
             logger.debug("-Dio.netty.allocator.maxCachedByteBuffersPerChunk: {}",
                     DEFAULT_MAX_CACHED_BYTEBUFFERS_PER_CHUNK);
         }
@@ -183,12 +200,13 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
 
     private final PoolArena<byte[]>[] heapArenas;
     private final PoolArena<ByteBuffer>[] directArenas;
-    private final int tinyCacheSize;
     private final int smallCacheSize;
     private final int normalCacheSize;
     private final List<PoolArenaMetric> heapArenaMetrics;
     private final List<PoolArenaMetric> directArenaMetrics;
     private final PoolThreadLocalCache threadCache;
+    final PoolCacheStripes cacheStripes;
+    final boolean confinedRefCnt = DEFAULT_CONFINED_REF_CNT;
     private final int chunkSize;
     private final PooledByteBufAllocatorMetric metric;
 
@@ -208,40 +226,99 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
 
     /**
      * @deprecated use
-     * {@link PooledByteBufAllocator#PooledByteBufAllocator(boolean, int, int, int, int, int, int, int, boolean)}
+     * {@link PooledByteBufAllocator#PooledByteBufAllocator(boolean, int, int, int, int, int, int, boolean)}
      */
     @Deprecated
     public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder) {
         this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
-                DEFAULT_TINY_CACHE_SIZE, DEFAULT_SMALL_CACHE_SIZE, DEFAULT_NORMAL_CACHE_SIZE);
+                DEFAULT_SMALL_CACHE_SIZE, DEFAULT_NORMAL_CACHE_SIZE, DEFAULT_USE_CACHE_FOR_ALL_THREADS);
     }
 
     /**
      * @deprecated use
-     * {@link PooledByteBufAllocator#PooledByteBufAllocator(boolean, int, int, int, int, int, int, int, boolean)}
+     * {@link PooledByteBufAllocator#PooledByteBufAllocator(boolean, int, int, int, int, int, int, boolean)}
      */
     @Deprecated
     public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
                                   int tinyCacheSize, int smallCacheSize, int normalCacheSize) {
-        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder, tinyCacheSize, smallCacheSize,
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder, smallCacheSize,
                 normalCacheSize, DEFAULT_USE_CACHE_FOR_ALL_THREADS, DEFAULT_DIRECT_MEMORY_CACHE_ALIGNMENT);
     }
 
+    /**
+     * @deprecated use
+     * {@link PooledByteBufAllocator#PooledByteBufAllocator(boolean, int, int, int, int, int, int, boolean)}
+     */
+    @Deprecated
     public PooledByteBufAllocator(boolean preferDirect, int nHeapArena,
                                   int nDirectArena, int pageSize, int maxOrder, int tinyCacheSize,
                                   int smallCacheSize, int normalCacheSize,
                                   boolean useCacheForAllThreads) {
         this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
-                tinyCacheSize, smallCacheSize, normalCacheSize,
+                smallCacheSize, normalCacheSize, useCacheForAllThreads);
+    }
+
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena,
+                                  int nDirectArena, int pageSize, int maxOrder,
+                                  int smallCacheSize, int normalCacheSize,
+                                  boolean useCacheForAllThreads) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
+                smallCacheSize, normalCacheSize,
                 useCacheForAllThreads, DEFAULT_DIRECT_MEMORY_CACHE_ALIGNMENT);
     }
 
+    /**
+     * @deprecated use
+     * {@link PooledByteBufAllocator#PooledByteBufAllocator(boolean, int, int, int, int, int, int, boolean, int)}
+     */
+    @Deprecated
     public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
                                   int tinyCacheSize, int smallCacheSize, int normalCacheSize,
                                   boolean useCacheForAllThreads, int directMemoryCacheAlignment) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
+                smallCacheSize, normalCacheSize,
+                useCacheForAllThreads, directMemoryCacheAlignment);
+    }
+
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                                  int smallCacheSize, int normalCacheSize,
+                                  boolean useCacheForAllThreads, int directMemoryCacheAlignment) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
+                smallCacheSize, normalCacheSize,
+                useCacheForAllThreads, directMemoryCacheAlignment, DEFAULT_USE_STRIPED_CACHES);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param useStripedCaches if {@code true} arenas are picked by a striped probe and cached buffers are kept in
+     *                         a bounded number of shared caches (one per stripe) instead of one cache per
+     *                         {@link Thread}. In this mode {@code useCacheForAllThreads} has no effect.
+     */
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                                  int smallCacheSize, int normalCacheSize,
+                                  boolean useCacheForAllThreads, int directMemoryCacheAlignment,
+                                  boolean useStripedCaches) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
+                smallCacheSize, normalCacheSize,
+                useCacheForAllThreads, directMemoryCacheAlignment, useStripedCaches, null);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param useStripedCaches see
+     *        {@link #PooledByteBufAllocator(boolean, int, int, int, int, int, int, boolean, int, boolean)}.
+     * @param directChunkProvider the {@link DirectChunkProvider} which provides the memory of the chunks of the
+     *                            direct arenas or {@code null} if {@link ByteBuffer#allocateDirect(int)} should be
+     *                            used.
+     */
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                                  int smallCacheSize, int normalCacheSize,
+                                  boolean useCacheForAllThreads, int directMemoryCacheAlignment,
+                                  boolean useStripedCaches, DirectChunkProvider directChunkProvider) {
         super(preferDirect);
         threadCache = new PoolThreadLocalCache(useCacheForAllThreads);
-        this.tinyCacheSize = tinyCacheSize;
         this.smallCacheSize = smallCacheSize;
         this.normalCacheSize = normalCacheSize;
         chunkSize = validateAndCalculateChunkSize(pageSize, maxOrder);
@@ -260,14 +337,15 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         }
 
         int pageShifts = validateAndCalculatePageShifts(pageSize);
+        long chunkDecayNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_CHUNK_DECAY_MILLIS);
 
         if (nHeapArena > 0) {
             heapArenas = newArenaArray(nHeapArena);
             List<PoolArenaMetric> metrics = new ArrayList<PoolArenaMetric>(heapArenas.length);
             for (int i = 0; i < heapArenas.length; i ++) {
                 PoolArena.HeapArena arena = new PoolArena.HeapArena(this,
-                        pageSize, maxOrder, pageShifts, chunkSize,
-                        directMemoryCacheAlignment);
+                        pageSize, pageShifts, chunkSize,
+                        directMemoryCacheAlignment, chunkDecayNanos, DEFAULT_INSTRUMENTATION);
                 heapArenas[i] = arena;
                 metrics.add(arena);
             }
@@ -282,7 +360,8 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             List<PoolArenaMetric> metrics = new ArrayList<PoolArenaMetric>(directArenas.length);
             for (int i = 0; i < directArenas.length; i ++) {
                 PoolArena.DirectArena arena = new PoolArena.DirectArena(
-                        this, pageSize, maxOrder, pageShifts, chunkSize, directMemoryCacheAlignment);
+                        this, pageSize, pageShifts, chunkSize, directMemoryCacheAlignment, chunkDecayNanos,
+                        DEFAULT_INSTRUMENTATION, directChunkProvider);
                 directArenas[i] = arena;
                 metrics.add(arena);
             }
@@ -291,6 +370,9 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             directArenas = null;
             directArenaMetrics = Collections.emptyList();
         }
+
+        cacheStripes = useStripedCaches ? new PoolCacheStripes(heapArenas, directArenas,
+                smallCacheSize, normalCacheSize, DEFAULT_MAX_CACHED_BUFFER_CAPACITY, DEFAULT_CACHE_TRIM_INTERVAL) : null;
         metric = new PooledByteBufAllocatorMetric(this);
     }
 
@@ -331,6 +413,10 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
 
     @Override
     protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
+        PoolCacheStripes cacheStripes = this.cacheStripes;
+        if (cacheStripes != null) {
+            return newStripedHeapBuffer(cacheStripes, initialCapacity, maxCapacity);
+        }
         PoolThreadCache cache = threadCache.get();
         PoolArena<byte[]> heapArena = cache.heapArena;
 
@@ -348,6 +434,10 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
 
     @Override
     protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
+        PoolCacheStripes cacheStripes = this.cacheStripes;
+        if (cacheStripes != null) {
+            return newStripedDirectBuffer(cacheStripes, initialCapacity, maxCapacity);
+        }
         PoolThreadCache cache = threadCache.get();
         PoolArena<ByteBuffer> directArena = cache.directArena;
 
@@ -363,6 +453,40 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         return toLeakAwareBuffer(buf);
     }
 
+    private ByteBuf newStripedHeapBuffer(PoolCacheStripes cacheStripes, int initialCapacity, int maxCapacity) {
+        if (heapArenas == null) {
+            return toLeakAwareBuffer(PlatformDependent.hasUnsafe() ?
+                    new UnpooledUnsafeHeapByteBuf(this, initialCapacity, maxCapacity) :
+                    new UnpooledHeapByteBuf(this, initialCapacity, maxCapacity));
+        }
+        final ByteBuf buf;
+        int token = cacheStripes.acquire();
+        try {
+            PoolThreadCache cache = cacheStripes.cache(token);
+            buf = cache.heapArena.allocate(cache, initialCapacity, maxCapacity);
+        } finally {
+            cacheStripes.release(token);
+        }
+        return toLeakAwareBuffer(buf);
+    }
+
+    private ByteBuf newStripedDirectBuffer(PoolCacheStripes cacheStripes, int initialCapacity, int maxCapacity) {
+        if (directArenas == null) {
+            return toLeakAwareBuffer(PlatformDependent.hasUnsafe() ?
+                    UnsafeByteBufUtil.newUnsafeDirectByteBuf(this, initialCapacity, maxCapacity) :
+                    new UnpooledDirectByteBuf(this, initialCapacity, maxCapacity));
+        }
+        final ByteBuf buf;
+        int token = cacheStripes.acquire();
+        try {
+            PoolThreadCache cache = cacheStripes.cache(token);
+            buf = cache.directArena.allocate(cache, initialCapacity, maxCapacity);
+        } finally {
+            cacheStripes.release(token);
+        }
+        return toLeakAwareBuffer(buf);
+    }
+
     /**
      * Default number of heap arenas - System Property: io.netty.allocator.numHeapArenas - default 2 * cores
      */
@@ -398,6 +522,27 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         return DEFAULT_USE_CACHE_FOR_ALL_THREADS;
     }
 
+    /**
+     * Default use striped caches - System Property: io.netty.allocator.useStripedCaches - default false
+     */
+    public static boolean defaultUseStripedCaches() {
+        return DEFAULT_USE_STRIPED_CACHES;
+    }
+
+    /**
+     * Default chunk decay interval - System Property: io.netty.allocator.chunkDecayMillis - default 0
+     */
+    public static long defaultChunkDecayMillis() {
+        return DEFAULT_CHUNK_DECAY_MILLIS;
+    }
+
+    /**
+     * Default confined reference counting - System Property: io.netty.allocator.confinedRefCnt - default false
+     */
+    public static boolean defaultConfinedRefCnt() {
+        return DEFAULT_CONFINED_REF_CNT;
+    }
+
     /**
      * Default prefer direct - System Property: io.netty.noPreferDirect - default false
      */
@@ -406,10 +551,13 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
     }
 
     /**
-     * Default tiny cache size - System Property: io.netty.allocator.tinyCacheSize - default 512
+     * Default tiny cache size - default 0
+     *
+     * @deprecated Tiny caches have been merged into small caches.
      */
+    @Deprecated
     public static int defaultTinyCacheSize() {
-        return DEFAULT_TINY_CACHE_SIZE;
+        return 0;
     }
 
     /**
@@ -470,7 +618,7 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             final Thread current = Thread.currentThread();
             if (useCacheForAllThreads || current instanceof FastThreadLocalThread) {
                 final PoolThreadCache cache = new PoolThreadCache(
-                        heapArena, directArena, tinyCacheSize, smallCacheSize, normalCacheSize,
+                        heapArena, directArena, smallCacheSize, normalCacheSize,
                         DEFAULT_MAX_CACHED_BUFFER_CAPACITY, DEFAULT_CACHE_TRIM_INTERVAL);
 
                 if (DEFAULT_CACHE_TRIM_INTERVAL_MILLIS > 0) {
@@ -483,7 +631,7 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
                 return cache;
             }
             // No caching so just use 0 as sizes.
-            return new PoolThreadCache(heapArena, directArena, 0, 0, 0, 0, 0);
+            return new PoolThreadCache(heapArena, directArena, 0, 0, 0, 0);
         }
 
         @Override
@@ -576,11 +724,11 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
     /**
      * Return the size of the tiny cache.
      *
-     * @deprecated use {@link PooledByteBufAllocatorMetric#tinyCacheSize()}.
+     * @deprecated Tiny caches have been merged into small caches.
      */
     @Deprecated
     public int tinyCacheSize() {
-        return tinyCacheSize;
+        return 0;
     }
 
     /**
@@ -648,6 +796,11 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
      * Returns {@code true} if a cache for the current {@link Thread} exists and so was trimmed, false otherwise.
      */
     public boolean trimCurrentThreadCache() {
+        if (cacheStripes != null) {
+            // There are no thread local caches in this mode, trim the shared ones instead.
+            cacheStripes.trim();
+            return false;
+        }
         PoolThreadCache cache = threadCache.getIfExists();
         if (cache != null) {
             cache.trim();
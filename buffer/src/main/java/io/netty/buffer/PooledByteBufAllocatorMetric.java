@@ -68,7 +68,10 @@ public final class PooledByteBufAllocatorMetric implements ByteBufAllocatorMetri
 
     /**
      * Return the size of the tiny cache.
+     *
+     * @deprecated Tiny caches have been merged into small caches.
      */
+    @Deprecated
     public int tinyCacheSize() {
         return allocator.tinyCacheSize();
     }
@@ -94,6 +97,48 @@ public final class PooledByteBufAllocatorMetric implements ByteBufAllocatorMetri
         return allocator.chunkSize();
     }
 
+    /**
+     * Return the number of empty chunks that are currently retained by all arenas until their decay interval passes.
+     */
+    public long numRetainedChunks() {
+        long total = 0;
+        for (PoolArenaMetric arena : heapArenas()) {
+            total += arena.numRetainedChunks();
+        }
+        for (PoolArenaMetric arena : directArenas()) {
+            total += arena.numRetainedChunks();
+        }
+        return total;
+    }
+
+    /**
+     * Return the number of chunks that were released by all arenas and so given back to the system.
+     */
+    public long numReleasedChunks() {
+        long total = 0;
+        for (PoolArenaMetric arena : heapArenas()) {
+            total += arena.numReleasedChunks();
+        }
+        for (PoolArenaMetric arena : directArenas()) {
+            total += arena.numReleasedChunks();
+        }
+        return total;
+    }
+
+    /**
+     * Return the number of retained empty chunks that were reused by all arenas instead of allocating a new chunk.
+     */
+    public long numReusedChunks() {
+        long total = 0;
+        for (PoolArenaMetric arena : heapArenas()) {
+            total += arena.numReusedChunks();
+        }
+        for (PoolArenaMetric arena : directArenas()) {
+            total += arena.numReusedChunks();
+        }
+        return total;
+    }
+
     @Override
     public long usedHeapMemory() {
         return allocator.usedHeapMemory();
@@ -112,10 +157,10 @@ public final class PooledByteBufAllocatorMetric implements ByteBufAllocatorMetri
                 .append("; usedDirectMemory: ").append(usedDirectMemory())
                 .append("; numHeapArenas: ").append(numHeapArenas())
                 .append("; numDirectArenas: ").append(numDirectArenas())
-                .append("; tinyCacheSize: ").append(tinyCacheSize())
                 .append("; smallCacheSize: ").append(smallCacheSize())
                 .append("; normalCacheSize: ").append(normalCacheSize())
                 .append("; numThreadLocalCaches: ").append(numThreadLocalCaches())
+                .append("; numRetainedChunks: ").append(numRetainedChunks())
                 .append("; chunkSize: ").append(chunkSize()).append(')');
         return sb.toString();
     }
@@ -89,11 +89,18 @@ class SimpleLeakAwareByteBuf extends WrappedByteBuf {
 
     @Override
     public ByteBuf touch() {
+        // Only the last access is kept when leaks are aggregated by site, so recording it is cheap enough.
+        if (ResourceLeakDetector.isAggregateSites()) {
+            leak.record();
+        }
         return this;
     }
 
     @Override
     public ByteBuf touch(Object hint) {
+        if (ResourceLeakDetector.isAggregateSites()) {
+            leak.record(hint);
+        }
         return this;
     }
 
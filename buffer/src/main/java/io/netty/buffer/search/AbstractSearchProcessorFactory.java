@@ -112,4 +112,48 @@ public abstract class AbstractSearchProcessorFactory implements SearchProcessorF
         return new BitapSearchProcessorFactory(needle);
     }
 
+    /**
+     * Creates a {@link SearchProcessorFactory} based on
+     * <a href="https://en.wikipedia.org/wiki/Boyer%E2%80%93Moore%E2%80%93Horspool_algorithm">Boyer-Moore-Horspool</a>
+     * string search algorithm. It is a good choice for long needles, as long as the search is done with
+     * {@link BoyerMooreHorspoolSearchProcessorFactory#indexOf}, which skips up to {@code needle.length} bytes of the
+     * {@link io.netty.buffer.ByteBuf} at a time.
+     * <br>
+     * Precomputation (this method) time is linear in the size of input ({@code O(|needle|)}).
+     * <br>
+     * The factory allocates and retains an int[256] array, and retains a copy of the {@code needle}.
+     * <br>
+     * Search time is sublinear ({@code O(|haystack| / |needle|)}) on typical inputs, but quadratic in the worst case
+     * ({@code O(|haystack| * |needle|)}). The {@link SearchProcessor} allocates an array of size
+     * {@code needle.length} and processes every byte, but only compares the {@code needle} at the positions the
+     * algorithm would jump to.
+     *
+     * @param needle a non-empty array of bytes to search for
+     * @return a new instance of {@link BoyerMooreHorspoolSearchProcessorFactory} precomputed for the given
+     *         {@code needle}
+     */
+    public static BoyerMooreHorspoolSearchProcessorFactory newBoyerMooreHorspoolSearchProcessorFactory(byte[] needle) {
+        return new BoyerMooreHorspoolSearchProcessorFactory(needle);
+    }
+
+    /**
+     * Creates a {@link SearchProcessorFactory} which searches with a word-wide prefilter on the first and the last
+     * byte of the {@code needle}, see {@link SwarSearchProcessorFactory#indexOf}. It is a good choice for short and
+     * medium sized needles whose first and last bytes are not too frequent in the {@link io.netty.buffer.ByteBuf}.
+     * <br>
+     * Precomputation (this method) time is linear in the size of input ({@code O(|needle|)}).
+     * <br>
+     * The factory retains a copy of the {@code needle} and a {@link KmpSearchProcessorFactory} which is used for the
+     * {@link SearchProcessor}s that process the {@link io.netty.buffer.ByteBuf} byte by byte.
+     * <br>
+     * Search time is linear in the size of the {@link io.netty.buffer.ByteBuf} ({@code O(|haystack|)}) on typical
+     * inputs, with 8 bytes being checked at once, but quadratic in the worst case.
+     *
+     * @param needle a non-empty array of bytes to search for
+     * @return a new instance of {@link SwarSearchProcessorFactory} precomputed for the given {@code needle}
+     */
+    public static SwarSearchProcessorFactory newSwarSearchProcessorFactory(byte[] needle) {
+        return new SwarSearchProcessorFactory(needle);
+    }
+
 }
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.netty.buffer.search;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * Implements <a href="https://en.wikipedia.org/wiki/Boyer%E2%80%93Moore%E2%80%93Horspool_algorithm">
+ * Boyer-Moore-Horspool</a> string search algorithm.
+ * Use static {@link AbstractSearchProcessorFactory#newBoyerMooreHorspoolSearchProcessorFactory}
+ * to create an instance of this factory.
+ * <br>
+ * The algorithm only pays off with random access to the {@code haystack}, which is what
+ * {@link #indexOf(ByteBuf, int, int)} does: it compares the last byte of the {@code needle} first and skips up to
+ * {@code needle.length} bytes on a mismatch, so most of the {@code haystack} is never read for long needles.
+ * The {@link Processor} returned by {@link #newSearchProcessor} is driven byte by byte like any other
+ * {@link SearchProcessor}, but also only compares the {@code needle} at the positions the algorithm would jump to.
+ * @see AbstractSearchProcessorFactory
+ */
+public class BoyerMooreHorspoolSearchProcessorFactory extends AbstractSearchProcessorFactory {
+
+    private final byte[] needle;
+    private final int[] shiftTable = new int[256];
+
+    public static class Processor implements SearchProcessor {
+
+        private final byte[] needle;
+        private final int[] shiftTable;
+        // The last needle.length processed bytes, window[windowIndex] is the oldest one.
+        private final byte[] window;
+        private int windowIndex;
+        private long skip;
+
+        Processor(byte[] needle, int[] shiftTable) {
+            this.needle = needle;
+            this.shiftTable = shiftTable;
+            window = new byte[needle.length];
+            skip = needle.length;
+        }
+
+        @Override
+        public boolean process(byte value) {
+            window[windowIndex] = value;
+            if (++windowIndex == window.length) {
+                windowIndex = 0;
+            }
+            if (--skip > 0) {
+                return true;
+            }
+            skip = PlatformDependent.getInt(shiftTable, value & 0xffL);
+            return value != needle[needle.length - 1] || !windowMatches();
+        }
+
+        private boolean windowMatches() {
+            int tail = window.length - windowIndex;
+            for (int i = 0; i < tail; i++) {
+                if (window[windowIndex + i] != needle[i]) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < windowIndex; i++) {
+                if (window[i] != needle[tail + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void reset() {
+            windowIndex = 0;
+            skip = needle.length;
+        }
+    }
+
+    BoyerMooreHorspoolSearchProcessorFactory(byte[] needle) {
+        if (needle.length == 0) {
+            throw new IllegalArgumentException("needle must not be empty");
+        }
+        this.needle = needle.clone();
+
+        int last = needle.length - 1;
+        for (int i = 0; i < shiftTable.length; i++) {
+            shiftTable[i] = needle.length;
+        }
+        for (int i = 0; i < last; i++) {
+            shiftTable[needle[i] & 0xff] = last - i;
+        }
+    }
+
+    /**
+     * Returns a new {@link Processor}.
+     */
+    @Override
+    public Processor newSearchProcessor() {
+        return new Processor(needle, shiftTable);
+    }
+
+    /**
+     * Returns the index of the first byte of the first occurrence of the {@code needle} which lies completely within
+     * {@code [fromIndex, toIndex)} of the {@code haystack}, or {@code -1} if there is none. Unlike the
+     * {@link SearchProcessor}s this is the index of the <b>first</b> byte, the same as returned by
+     * {@link io.netty.buffer.ByteBufUtil#indexOf(ByteBuf, ByteBuf)}, and searching again from the returned index
+     * {@code + 1} finds overlapping occurrences.
+     * <br>
+     * This method does not modify the {@code haystack} and may be used concurrently.
+     */
+    public int indexOf(ByteBuf haystack, int fromIndex, int toIndex) {
+        fromIndex = Math.max(fromIndex, 0);
+        toIndex = Math.min(toIndex, haystack.capacity());
+        if (toIndex - fromIndex < needle.length) {
+            return -1;
+        }
+        if (haystack.hasArray()) {
+            int arrayOffset = haystack.arrayOffset();
+            int index = indexOf(haystack.array(), arrayOffset + fromIndex, arrayOffset + toIndex);
+            return index < 0 ? -1 : index - arrayOffset;
+        }
+        if (haystack.hasMemoryAddress() && PlatformDependent.hasUnsafe()) {
+            int index = indexOf(haystack.memoryAddress() + fromIndex, toIndex - fromIndex);
+            return index < 0 ? -1 : fromIndex + index;
+        }
+        return indexOf0(haystack, fromIndex, toIndex);
+    }
+
+    private int indexOf(byte[] haystack, int fromIndex, int toIndex) {
+        final byte[] needle = this.needle;
+        final int last = needle.length - 1;
+        final byte lastByte = needle[last];
+        for (int i = fromIndex + last; i < toIndex;) {
+            byte value = haystack[i];
+            if (value == lastByte) {
+                int start = i - last;
+                int j = 0;
+                while (j < last && haystack[start + j] == needle[j]) {
+                    j++;
+                }
+                if (j == last) {
+                    return start;
+                }
+            }
+            i += shiftTable[value & 0xff];
+        }
+        return -1;
+    }
+
+    private int indexOf(long address, int length) {
+        final byte[] needle = this.needle;
+        final int last = needle.length - 1;
+        final byte lastByte = needle[last];
+        for (int i = last; i < length;) {
+            byte value = PlatformDependent.getByte(address + i);
+            if (value == lastByte) {
+                int start = i - last;
+                int j = 0;
+                while (j < last && PlatformDependent.getByte(address + start + j) == needle[j]) {
+                    j++;
+                }
+                if (j == last) {
+                    return start;
+                }
+            }
+            i += shiftTable[value & 0xff];
+        }
+        return -1;
+    }
+
+    private int indexOf0(ByteBuf haystack, int fromIndex, int toIndex) {
+        final byte[] needle = this.needle;
+        final int last = needle.length - 1;
+        final byte lastByte = needle[last];
+        for (int i = fromIndex + last; i < toIndex;) {
+            byte value = haystack.getByte(i);
+            if (value == lastByte) {
+                int start = i - last;
+                int j = 0;
+                while (j < last && haystack.getByte(start + j) == needle[j]) {
+                    j++;
+                }
+                if (j == last) {
+                    return start;
+                }
+            }
+            i += shiftTable[value & 0xff];
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.netty.buffer.search;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SWARUtil;
+
+/**
+ * Implements a string search with a word-wide prefilter on the first and the last byte of the {@code needle}: the
+ * {@code haystack} is read 8 bytes at a time at two offsets {@code needle.length - 1} apart, and only the positions at
+ * which both the first and the last byte match are compared with the whole {@code needle}.
+ * Use static {@link AbstractSearchProcessorFactory#newSwarSearchProcessorFactory}
+ * to create an instance of this factory.
+ * <br>
+ * The prefilter needs random access to the {@code haystack}, which is what {@link #indexOf(ByteBuf, int, int)} does.
+ * It works best for short and medium sized needles, for long needles
+ * {@link BoyerMooreHorspoolSearchProcessorFactory} skips more of the {@code haystack}. The {@link SearchProcessor}
+ * returned by {@link #newSearchProcessor} is driven byte by byte and uses
+ * <a href="https://en.wikipedia.org/wiki/Knuth%E2%80%93Morris%E2%80%93Pratt_algorithm">Knuth-Morris-Pratt</a>.
+ * @see AbstractSearchProcessorFactory
+ */
+public class SwarSearchProcessorFactory extends AbstractSearchProcessorFactory {
+
+    private final byte[] needle;
+    private final long firstPattern;
+    private final long lastPattern;
+    private final KmpSearchProcessorFactory kmpFactory;
+
+    SwarSearchProcessorFactory(byte[] needle) {
+        if (needle.length == 0) {
+            throw new IllegalArgumentException("needle must not be empty");
+        }
+        this.needle = needle.clone();
+        firstPattern = SWARUtil.compilePattern(needle[0]);
+        lastPattern = SWARUtil.compilePattern(needle[needle.length - 1]);
+        kmpFactory = new KmpSearchProcessorFactory(needle);
+    }
+
+    /**
+     * Returns a new {@link KmpSearchProcessorFactory.Processor}.
+     */
+    @Override
+    public KmpSearchProcessorFactory.Processor newSearchProcessor() {
+        return kmpFactory.newSearchProcessor();
+    }
+
+    /**
+     * Returns the index of the first byte of the first occurrence of the {@code needle} which lies completely within
+     * {@code [fromIndex, toIndex)} of the {@code haystack}, or {@code -1} if there is none. Unlike the
+     * {@link SearchProcessor}s this is the index of the <b>first</b> byte, the same as returned by
+     * {@link io.netty.buffer.ByteBufUtil#indexOf(ByteBuf, ByteBuf)}, and searching again from the returned index
+     * {@code + 1} finds overlapping occurrences.
+     * <br>
+     * This method does not modify the {@code haystack} and may be used concurrently.
+     */
+    public int indexOf(ByteBuf haystack, int fromIndex, int toIndex) {
+        fromIndex = Math.max(fromIndex, 0);
+        toIndex = Math.min(toIndex, haystack.capacity());
+        if (toIndex - fromIndex < needle.length) {
+            return -1;
+        }
+        if (PlatformDependent.isUnaligned()) {
+            if (haystack.hasArray()) {
+                int arrayOffset = haystack.arrayOffset();
+                int index = indexOf(haystack.array(), arrayOffset + fromIndex, arrayOffset + toIndex);
+                return index < 0 ? -1 : index - arrayOffset;
+            }
+            if (haystack.hasMemoryAddress()) {
+                int index = indexOf(haystack.memoryAddress() + fromIndex, toIndex - fromIndex);
+                return index < 0 ? -1 : fromIndex + index;
+            }
+        }
+        return indexOf0(haystack, fromIndex, toIndex);
+    }
+
+    private int indexOf(byte[] haystack, int fromIndex, int toIndex) {
+        final int last = needle.length - 1;
+        int i = fromIndex;
+        // Both words must lie within the haystack.
+        for (int wordsEnd = toIndex - last - 7; i < wordsEnd; i += 8) {
+            long result = SWARUtil.applyPattern(PlatformDependent.getLong(haystack, i), firstPattern) &
+                    SWARUtil.applyPattern(PlatformDependent.getLong(haystack, i + last), lastPattern);
+            while (result != 0) {
+                int start = i + SWARUtil.getIndex(result, PlatformDependent.BIG_ENDIAN_NATIVE_ORDER);
+                if (matches(haystack, start)) {
+                    return start;
+                }
+                result = clearFirstMatch(result);
+            }
+        }
+        for (int end = toIndex - last; i < end; i++) {
+            if (haystack[i] == needle[0] && haystack[i + last] == needle[last] && matches(haystack, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(byte[] haystack, int start) {
+        for (int j = 1; j < needle.length - 1; j++) {
+            if (haystack[start + j] != needle[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(long address, int length) {
+        final int last = needle.length - 1;
+        int i = 0;
+        for (int wordsEnd = length - last - 7; i < wordsEnd; i += 8) {
+            long result = SWARUtil.applyPattern(PlatformDependent.getLong(address + i), firstPattern) &
+                    SWARUtil.applyPattern(PlatformDependent.getLong(address + i + last), lastPattern);
+            while (result != 0) {
+                int start = i + SWARUtil.getIndex(result, PlatformDependent.BIG_ENDIAN_NATIVE_ORDER);
+                if (matches(address + start)) {
+                    return start;
+                }
+                result = clearFirstMatch(result);
+            }
+        }
+        for (int end = length - last; i < end; i++) {
+            if (PlatformDependent.getByte(address + i) == needle[0] &&
+                    PlatformDependent.getByte(address + i + last) == needle[last] && matches(address + i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(long address) {
+        for (int j = 1; j < needle.length - 1; j++) {
+            if (PlatformDependent.getByte(address + j) != needle[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf0(ByteBuf haystack, int fromIndex, int toIndex) {
+        final int last = needle.length - 1;
+        for (int i = fromIndex, end = toIndex - last; i < end; i++) {
+            // ByteBuf.indexOf scans a word at a time itself where possible.
+            i = haystack.indexOf(i, end, needle[0]);
+            if (i < 0) {
+                return -1;
+            }
+            if (haystack.getByte(i + last) == needle[last] && matches(haystack, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(ByteBuf haystack, int start) {
+        for (int j = 1; j < needle.length - 1; j++) {
+            if (haystack.getByte(start + j) != needle[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long clearFirstMatch(long result) {
+        // The first byte in memory is the lowest one on little endian and the highest one on big endian systems.
+        return PlatformDependent.BIG_ENDIAN_NATIVE_ORDER ? result ^ Long.highestOneBit(result) : result & result - 1;
+    }
+}
@@ -2172,6 +2172,49 @@ public abstract class AbstractByteBufTest {
         }
     }
 
+    @Test
+    public void testIndexOfWordAtATime() {
+        buffer.clear();
+        buffer.setZero(0, 64);
+        for (int start = 0; start < 9; start++) {
+            for (int index = start; index < 48; index++) {
+                buffer.setByte(index, 1);
+                assertEquals(index, buffer.indexOf(start, 48, (byte) 1));
+                assertEquals(index < 40 ? index : -1, buffer.indexOf(start, 40, (byte) 1));
+                buffer.setByte(index, 0);
+            }
+            assertEquals(-1, buffer.indexOf(start, 48, (byte) 1));
+        }
+    }
+
+    @Test
+    public void testForEachByteWellKnownProcessors() {
+        buffer.clear();
+        buffer.setZero(0, 64);
+        buffer.setByte(63, 1);
+        // Also make sure bytes which only differ in the highest bit do not match.
+        buffer.setByte(2, 0x80 | '\n');
+        buffer.setByte(5, 0x80);
+        for (int start = 0; start < 9; start++) {
+            for (int index = start; index < 48; index++) {
+                buffer.setByte(index, '\n');
+                assertEquals(index, buffer.forEachByte(start, 48 - start, ByteProcessor.FIND_LF));
+                assertEquals(index, buffer.forEachByte(start, 48 - start, ByteProcessor.FIND_CRLF));
+                assertEquals(-1, buffer.forEachByte(start, 48 - start, ByteProcessor.FIND_CR));
+                buffer.setByte(index, '\r');
+                assertEquals(index, buffer.forEachByte(start, 48 - start, ByteProcessor.FIND_CR));
+                assertEquals(index, buffer.forEachByte(start, 48 - start, ByteProcessor.FIND_CRLF));
+                buffer.setByte(index, 0);
+                assertEquals(index, buffer.forEachByte(start, 48 - start, ByteProcessor.FIND_NUL));
+                buffer.setByte(index, 1);
+            }
+            assertEquals(-1, buffer.forEachByte(start, 48 - start, ByteProcessor.FIND_CRLF));
+            buffer.setZero(0, 63);
+            buffer.setByte(2, 0x80 | '\n');
+            buffer.setByte(5, 0x80);
+        }
+    }
+
     @Test
     public void testNioBuffer1() {
         assumeTrue(buffer.nioBufferCount() == 1);
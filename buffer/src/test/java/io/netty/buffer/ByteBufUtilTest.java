@@ -16,10 +16,12 @@
 package io.netty.buffer;
 
 import io.netty.util.AsciiString;
+import io.netty.util.ByteProcessor;
 import io.netty.util.CharsetUtil;
 import org.junit.Test;
 
 import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -476,6 +478,109 @@ public class ByteBufUtilTest {
         buf2.release();
     }
 
+    @Test
+    public void testWriteUtf8AsciiRuns() {
+        Random random = new Random(42);
+        String[] alphabet = { "a", "Z", "0", " ", "\u00e9", "\u20ac", "\uD83D\uDE00", "\u0800" };
+        for (int run = 0; run < 100; run++) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = random.nextInt(64); i > 0; i--) {
+                // Mostly ASCII with sporadic multi byte chars and surrogate pairs.
+                builder.append(alphabet[random.nextInt(10) < 8 ? random.nextInt(4) : 4 + random.nextInt(4)]);
+            }
+            String string = builder.toString();
+            byte[] expected = string.getBytes(CharsetUtil.UTF_8);
+            assertEquals(expected.length, ByteBufUtil.utf8Bytes(string));
+            for (CharSequence seq : new CharSequence[] { string, builder }) {
+                assertWriteUtf8(expected, Unpooled.buffer(1), seq);
+                assertWriteUtf8(expected, Unpooled.directBuffer(1), seq);
+                assertWriteUtf8(expected, Unpooled.compositeBuffer(), seq);
+            }
+        }
+    }
+
+    private static void assertWriteUtf8(byte[] expected, ByteBuf buffer, CharSequence seq) {
+        try {
+            buffer.writeByte('!');
+            assertEquals(expected.length, ByteBufUtil.writeUtf8(buffer, seq));
+            assertEquals('!', buffer.readByte());
+            assertArrayEquals(expected, ByteBufUtil.getBytes(buffer));
+            assertEquals(new String(expected, CharsetUtil.UTF_8), buffer.toString(CharsetUtil.UTF_8));
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    public void testWriteUtf8AsciiString() {
+        AsciiString asciiString = new AsciiString("!0123456789abcdef0123456789abcdef").subSequence(1, 33, false);
+        ByteBuf heap = Unpooled.buffer(32);
+        ByteBuf direct = Unpooled.directBuffer(32);
+        try {
+            assertEquals(32, ByteBufUtil.writeUtf8(heap, asciiString));
+            assertEquals(32, ByteBufUtil.writeUtf8(direct, asciiString));
+            assertEquals(asciiString.toString(), heap.toString(CharsetUtil.UTF_8));
+            assertEquals(asciiString.toString(), direct.toString(CharsetUtil.UTF_8));
+        } finally {
+            heap.release();
+            direct.release();
+        }
+    }
+
+    @Test
+    public void testWriteUtf8ReadOnlyDirectBuffer() {
+        testWriteReadOnlyDirectBuffer(true);
+    }
+
+    @Test
+    public void testWriteAsciiReadOnlyDirectBuffer() {
+        testWriteReadOnlyDirectBuffer(false);
+    }
+
+    private static void testWriteReadOnlyDirectBuffer(boolean utf8) {
+        ByteBuf buf = Unpooled.directBuffer(16);
+        ByteBuf readOnly = buf.asReadOnly();
+        try {
+            if (utf8) {
+                ByteBufUtil.writeUtf8(readOnly, "abc");
+            } else {
+                ByteBufUtil.writeAscii(readOnly, "abc");
+            }
+            fail();
+        } catch (ReadOnlyBufferException expected) {
+            // The memory of the wrapped buffer must not be changed.
+            assertEquals(0, buf.writerIndex());
+            assertEquals(0, buf.getByte(0));
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testDecodeUtf8MixedAscii() {
+        for (int i = 0; i < 40; i++) {
+            char[] chars = new char[40];
+            Arrays.fill(chars, 'a');
+            // The only non ASCII char is found by the word at a time scan in every possible position.
+            chars[i] = '\u00e9';
+            String expected = new String(chars);
+            ByteBuf heap = Unpooled.copiedBuffer(expected, CharsetUtil.UTF_8);
+            ByteBuf direct = Unpooled.directBuffer().writeBytes(heap, 0, heap.readableBytes());
+            try {
+                assertEquals(expected, heap.toString(CharsetUtil.UTF_8));
+                assertEquals(expected, direct.toString(CharsetUtil.UTF_8));
+                assertEquals(expected.substring(0, i), heap.toString(0, i, CharsetUtil.UTF_8));
+                assertTrue(ByteBufUtil.isText(heap, CharsetUtil.UTF_8));
+                assertFalse(ByteBufUtil.isText(direct, CharsetUtil.US_ASCII));
+                assertTrue(ByteBufUtil.isText(direct, 0, i, CharsetUtil.US_ASCII));
+                assertEquals(i, direct.forEachByte(ByteProcessor.FIND_NON_ASCII));
+            } finally {
+                heap.release();
+                direct.release();
+            }
+        }
+    }
+
     @Test
     public void testWriteUsAsciiString() {
         AsciiString usAscii = new AsciiString("NettyRocks");
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LongPriorityQueueTest {
+
+    @Test
+    public void mustThrowWhenAddingNoValue() {
+        LongPriorityQueue pq = new LongPriorityQueue();
+        try {
+            pq.offer(LongPriorityQueue.NO_VALUE);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void mustReturnValuesInOrder() {
+        ThreadLocalRandom tlr = ThreadLocalRandom.current();
+        int initialValues = tlr.nextInt(5, 30);
+        List<Long> values = new ArrayList<Long>();
+        for (int i = 0; i < initialValues; i++) {
+            values.add(tlr.nextLong(0, Long.MAX_VALUE));
+        }
+        LongPriorityQueue pq = new LongPriorityQueue();
+        assertTrue(pq.isEmpty());
+        for (Long value : values) {
+            pq.offer(value);
+        }
+        Collections.sort(values);
+        int valuesToRemove = initialValues / 2;
+        for (int i = 0; i < valuesToRemove; i++) {
+            assertFalse(pq.isEmpty());
+            assertEquals((long) values.get(i), pq.peek());
+            assertEquals((long) values.get(i), pq.poll());
+        }
+        for (int i = valuesToRemove; i < initialValues; i++) {
+            assertEquals((long) values.get(i), pq.poll());
+        }
+        assertTrue(pq.isEmpty());
+        assertEquals(LongPriorityQueue.NO_VALUE, pq.peek());
+        assertEquals(LongPriorityQueue.NO_VALUE, pq.poll());
+    }
+
+    @Test
+    public void internalRemoveOfAllElements() {
+        ThreadLocalRandom tlr = ThreadLocalRandom.current();
+        int initialValues = tlr.nextInt(5, 30);
+        long[] values = new long[initialValues];
+        LongPriorityQueue pq = new LongPriorityQueue();
+        for (int i = 0; i < initialValues; i++) {
+            values[i] = tlr.nextLong(0, Long.MAX_VALUE);
+            pq.offer(values[i]);
+        }
+        for (long value : values) {
+            pq.remove(value);
+        }
+        assertTrue(pq.isEmpty());
+        assertEquals(LongPriorityQueue.NO_VALUE, pq.poll());
+    }
+
+    @Test
+    public void randomOperationsMustMatchPriorityQueue() {
+        ThreadLocalRandom tlr = ThreadLocalRandom.current();
+        LongPriorityQueue pq = new LongPriorityQueue();
+        PriorityQueue<Long> expected = new PriorityQueue<Long>();
+        for (int i = 0; i < 10000; i++) {
+            int op = tlr.nextInt(3);
+            if (op == 0 || expected.isEmpty()) {
+                long value = tlr.nextLong(0, 1000);
+                pq.offer(value);
+                expected.offer(value);
+            } else if (op == 1) {
+                assertEquals((long) expected.poll(), pq.poll());
+            } else {
+                Long value = expected.peek();
+                expected.remove(value);
+                pq.remove(value);
+            }
+            assertEquals(expected.isEmpty() ? LongPriorityQueue.NO_VALUE : expected.peek(), pq.peek());
+        }
+    }
+}
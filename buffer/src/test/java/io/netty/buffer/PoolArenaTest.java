@@ -23,26 +23,83 @@ import org.junit.Test;
 import static org.junit.Assume.assumeTrue;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
 
 public class PoolArenaTest {
 
+    private static final int PAGE_SIZE = 8192;
+    private static final int PAGE_SHIFTS = 13;
+    // chunkSize = pageSize << maxOrder(11)
+    private static final int CHUNK_SIZE = 16777216;
+
     @Test
-    public void testNormalizeCapacity() throws Exception {
-        PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, 0, 0, 9, 999999, 0);
+    public void testNormalizeCapacity() {
+        PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, PAGE_SIZE, PAGE_SHIFTS, CHUNK_SIZE, 0);
         int[] reqCapacities = {0, 15, 510, 1024, 1023, 1025};
-        int[] expectedResult = {0, 16, 512, 1024, 1024, 2048};
+        int[] expectedResult = {16, 16, 512, 1024, 1024, 1280};
         for (int i = 0; i < reqCapacities.length; i ++) {
-            Assert.assertEquals(expectedResult[i], arena.normalizeCapacity(reqCapacities[i]));
+            Assert.assertEquals(expectedResult[i], arena.sizeIdx2size(arena.size2SizeIdx(reqCapacities[i])));
         }
     }
 
     @Test
-    public void testNormalizeAlignedCapacity() throws Exception {
-        PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, 0, 0, 9, 999999, 64);
+    public void testNormalizeAlignedCapacity() {
+        PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, PAGE_SIZE, PAGE_SHIFTS, CHUNK_SIZE, 64);
         int[] reqCapacities = {0, 15, 510, 1024, 1023, 1025};
-        int[] expectedResult = {0, 64, 512, 1024, 1024, 2048};
+        int[] expectedResult = {16, 64, 512, 1024, 1024, 1280};
         for (int i = 0; i < reqCapacities.length; i ++) {
-            Assert.assertEquals(expectedResult[i], arena.normalizeCapacity(reqCapacities[i]));
+            Assert.assertEquals(expectedResult[i], arena.sizeIdx2size(arena.size2SizeIdx(reqCapacities[i])));
+        }
+    }
+
+    @Test
+    public void testSize2SizeIdx() {
+        PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, PAGE_SIZE, PAGE_SHIFTS, CHUNK_SIZE, 0);
+
+        for (int sz = 0; sz <= CHUNK_SIZE; sz++) {
+            int sizeIdx = arena.size2SizeIdx(sz);
+            Assert.assertTrue(sz <= arena.sizeIdx2size(sizeIdx));
+            if (sizeIdx > 0) {
+                Assert.assertTrue(sz > arena.sizeIdx2size(sizeIdx - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testPages2PageIdx() {
+        int pageShifts = PAGE_SHIFTS;
+
+        PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, PAGE_SIZE, PAGE_SHIFTS, CHUNK_SIZE, 0);
+
+        int maxPages = CHUNK_SIZE >> pageShifts;
+        for (int pages = 1; pages <= maxPages; pages++) {
+            int pageIdxFloor = arena.pages2pageIdxFloor(pages);
+            Assert.assertTrue(pages << pageShifts >= arena.pageIdx2size(pageIdxFloor));
+            if (pageIdxFloor > 0 && pages < maxPages) {
+                Assert.assertTrue(pages << pageShifts < arena.pageIdx2size(pageIdxFloor + 1));
+            }
+
+            int pageIdxCeiling = arena.pages2pageIdx(pages);
+            Assert.assertTrue(pages << pageShifts <= arena.pageIdx2size(pageIdxCeiling));
+            if (pageIdxCeiling > 0) {
+                Assert.assertTrue(pages << pageShifts > arena.pageIdx2size(pageIdxCeiling - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testSizeIdx2size() {
+        PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, PAGE_SIZE, PAGE_SHIFTS, CHUNK_SIZE, 0);
+        for (int i = 0; i < arena.nSizes; i++) {
+            Assert.assertEquals(arena.sizeIdx2sizeCompute(i), arena.sizeIdx2size(i));
+        }
+    }
+
+    @Test
+    public void testPageIdx2size() {
+        PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, PAGE_SIZE, PAGE_SHIFTS, CHUNK_SIZE, 0);
+        for (int i = 0; i < arena.nPSizes; i++) {
+            Assert.assertEquals(arena.pageIdx2sizeCompute(i), arena.pageIdx2size(i));
         }
     }
 
@@ -57,7 +114,7 @@ public class PoolArenaTest {
                     ? PlatformDependent.allocateDirectNoCleaner(capacity + alignment)
                     : ByteBuffer.allocateDirect(capacity + alignment);
 
-            PoolArena.DirectArena arena = new PoolArena.DirectArena(null, 0, 0, 9, 9, alignment);
+            PoolArena.DirectArena arena = new PoolArena.DirectArena(null, 512, 9, 512, alignment);
             int offset = arena.offsetCacheLine(bb);
             long address = PlatformDependent.directBufferAddress(bb);
 
@@ -74,43 +131,127 @@ public class PoolArenaTest {
                 1,      // nDirectArena
                 8192,   // pageSize
                 11,     // maxOrder
-                0,      // tinyCacheSize
                 0,      // smallCacheSize
                 0,      // normalCacheSize
                 true    // useCacheForAllThreads
                 );
 
-        // create tiny buffer
-        final ByteBuf b1 = allocator.directBuffer(24);
         // create small buffer
-        final ByteBuf b2 = allocator.directBuffer(800);
+        final ByteBuf b1 = allocator.directBuffer(800);
         // create normal buffer
-        final ByteBuf b3 = allocator.directBuffer(8192 * 2);
+        final ByteBuf b2 = allocator.directBuffer(8192 * 5);
 
         Assert.assertNotNull(b1);
         Assert.assertNotNull(b2);
-        Assert.assertNotNull(b3);
 
         // then release buffer to deallocated memory while threadlocal cache has been disabled
         // allocations counter value must equals deallocations counter value
         Assert.assertTrue(b1.release());
         Assert.assertTrue(b2.release());
-        Assert.assertTrue(b3.release());
 
         Assert.assertTrue(allocator.directArenas().size() >= 1);
         final PoolArenaMetric metric = allocator.directArenas().get(0);
 
-        Assert.assertEquals(3, metric.numDeallocations());
-        Assert.assertEquals(3, metric.numAllocations());
+        Assert.assertEquals(2, metric.numDeallocations());
+        Assert.assertEquals(2, metric.numAllocations());
 
-        Assert.assertEquals(1, metric.numTinyDeallocations());
-        Assert.assertEquals(1, metric.numTinyAllocations());
         Assert.assertEquals(1, metric.numSmallDeallocations());
         Assert.assertEquals(1, metric.numSmallAllocations());
         Assert.assertEquals(1, metric.numNormalDeallocations());
         Assert.assertEquals(1, metric.numNormalAllocations());
     }
 
+    @Test
+    public void testEmptyChunkDecay() throws Exception {
+        PoolArena<byte[]> arena = new PoolArena.HeapArena(null, PAGE_SIZE, PAGE_SHIFTS, CHUNK_SIZE, 0,
+                TimeUnit.MILLISECONDS.toNanos(100), false);
+        PoolThreadCache cache = new PoolThreadCache(arena, null, 0, 0, 0, 0);
+
+        // A whole chunk moves the chunk to q100, so releasing it empties the chunk and would destroy it.
+        ByteBuf buf = arena.allocate(cache, CHUNK_SIZE, CHUNK_SIZE);
+        Assert.assertTrue(buf.release());
+        Assert.assertEquals(1, arena.numRetainedChunks());
+        Assert.assertEquals(0, arena.numReleasedChunks());
+
+        // The retained chunk is reused instead of allocating a new one.
+        buf = arena.allocate(cache, CHUNK_SIZE, CHUNK_SIZE);
+        Assert.assertEquals(0, arena.numRetainedChunks());
+        Assert.assertEquals(1, arena.numReusedChunks());
+        Assert.assertTrue(buf.release());
+        Assert.assertEquals(1, arena.numRetainedChunks());
+
+        // Nothing is released before the decay interval passed.
+        arena.releaseExpiredChunks();
+        Assert.assertEquals(1, arena.numRetainedChunks());
+
+        Thread.sleep(200);
+        arena.releaseExpiredChunks();
+        Assert.assertEquals(0, arena.numRetainedChunks());
+        Assert.assertEquals(1, arena.numReleasedChunks());
+    }
+
+    @Test
+    public void testEmptyChunkReleasedWithoutDecay() {
+        PoolArena<byte[]> arena = new PoolArena.HeapArena(null, PAGE_SIZE, PAGE_SHIFTS, CHUNK_SIZE, 0);
+        PoolThreadCache cache = new PoolThreadCache(arena, null, 0, 0, 0, 0);
+
+        ByteBuf buf = arena.allocate(cache, CHUNK_SIZE, CHUNK_SIZE);
+        Assert.assertTrue(buf.release());
+        Assert.assertEquals(0, arena.numRetainedChunks());
+        Assert.assertEquals(1, arena.numReleasedChunks());
+    }
+
+    @Test
+    public void testInstrumentation() {
+        PoolArena<byte[]> arena = new PoolArena.HeapArena(null, PAGE_SIZE, PAGE_SHIFTS, CHUNK_SIZE, 0, 0, true);
+        PoolThreadCache cache = new PoolThreadCache(arena, null, 16, 16, 32 * 1024, 8192);
+        Assert.assertTrue(arena.isInstrumented());
+
+        // First allocation misses the thread cache, the second one is served by it.
+        Assert.assertTrue(arena.allocate(cache, 100, 100).release());
+        Assert.assertTrue(arena.allocate(cache, 100, 100).release());
+        Assert.assertTrue(arena.allocate(cache, 16 * 1024, 16 * 1024).release());
+
+        int sizeIdx = arena.size2SizeIdx(100);
+        Assert.assertEquals(1, arena.numThreadCacheMisses(sizeIdx));
+        Assert.assertEquals(1, arena.numThreadCacheHits(sizeIdx));
+        Assert.assertEquals(1, arena.numThreadCacheMisses(arena.size2SizeIdx(16 * 1024)));
+
+        long[] histogram = arena.allocationSizeHistogram();
+        Assert.assertEquals(2, histogram[6]);
+        Assert.assertEquals(1, histogram[14]);
+        Assert.assertTrue(arena.arenaLockWaitNanos() >= 0);
+        Assert.assertTrue(arena.subpageLockWaitNanos() >= 0);
+
+        cache.free(false);
+    }
+
+    @Test
+    public void testNoInstrumentation() {
+        PoolArena<byte[]> arena = new PoolArena.HeapArena(null, PAGE_SIZE, PAGE_SHIFTS, CHUNK_SIZE, 0);
+        PoolThreadCache cache = new PoolThreadCache(arena, null, 0, 0, 0, 0);
+        Assert.assertFalse(arena.isInstrumented());
+        Assert.assertTrue(arena.allocate(cache, 100, 100).release());
+
+        for (long count : arena.allocationSizeHistogram()) {
+            Assert.assertEquals(0, count);
+        }
+        Assert.assertEquals(0, arena.numThreadCacheMisses(arena.size2SizeIdx(100)));
+        Assert.assertEquals(0, arena.arenaLockWaitNanos());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeSizeIdx() {
+        PoolArena<byte[]> arena = new PoolArena.HeapArena(null, PAGE_SIZE, PAGE_SHIFTS, CHUNK_SIZE, 0);
+        arena.numThreadCacheHits(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHugeSizeIdx() {
+        PoolArena<byte[]> arena = new PoolArena.HeapArena(null, PAGE_SIZE, PAGE_SHIFTS, CHUNK_SIZE, 0);
+        arena.numThreadCacheMisses(arena.size2SizeIdx(CHUNK_SIZE + 1));
+    }
+
     @Test
     public void testDirectArenaMemoryCopy() {
         ByteBuf src = PooledByteBufAllocator.DEFAULT.directBuffer(512);
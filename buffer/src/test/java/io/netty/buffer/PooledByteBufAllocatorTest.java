@@ -23,12 +23,15 @@ import io.netty.util.internal.SystemPropertyUtil;
 import org.junit.Assume;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
+import java.util.Random;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.LockSupport;
 
@@ -36,6 +39,7 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<PooledByteBufAllocator> {
@@ -121,7 +125,6 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
                 /*nDirectArena=*/ 1,
                 /*pageSize=*/8192,
                 /*maxOrder=*/ 11,
-                /*tinyCacheSize=*/ 0,
                 /*smallCacheSize=*/ 0,
                 /*normalCacheSize=*/ 0,
                 /*useCacheForAllThreads=*/ false);
@@ -131,24 +134,67 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
 
     @Test
     public void testArenaMetricsNoCache() {
-        testArenaMetrics0(new PooledByteBufAllocator(true, 2, 2, 8192, 11, 0, 0, 0), 100, 0, 100, 100);
+        testArenaMetrics0(new PooledByteBufAllocator(true, 2, 2, 8192, 11, 0, 0, true), 100, 0, 100, 100);
     }
 
     @Test
     public void testArenaMetricsCache() {
-        testArenaMetrics0(new PooledByteBufAllocator(true, 2, 2, 8192, 11, 1000, 1000, 1000), 100, 1, 1, 0);
+        testArenaMetrics0(new PooledByteBufAllocator(true, 2, 2, 8192, 11, 1000, 1000, true), 100, 1, 1, 0);
     }
 
     @Test
     public void testArenaMetricsNoCacheAlign() {
         Assume.assumeTrue(PooledByteBufAllocator.isDirectMemoryCacheAlignmentSupported());
-        testArenaMetrics0(new PooledByteBufAllocator(true, 2, 2, 8192, 11, 0, 0, 0, true, 64), 100, 0, 100, 100);
+        testArenaMetrics0(new PooledByteBufAllocator(true, 2, 2, 8192, 11, 0, 0, true, 64), 100, 0, 100, 100);
     }
 
     @Test
     public void testArenaMetricsCacheAlign() {
         Assume.assumeTrue(PooledByteBufAllocator.isDirectMemoryCacheAlignmentSupported());
-        testArenaMetrics0(new PooledByteBufAllocator(true, 2, 2, 8192, 11, 1000, 1000, 1000, true, 64), 100, 1, 1, 0);
+        testArenaMetrics0(new PooledByteBufAllocator(true, 2, 2, 8192, 11, 1000, 1000, true, 64), 100, 1, 1, 0);
+    }
+
+    @Test
+    public void testArenaMetricsStripedCache() {
+        testArenaMetrics0(new PooledByteBufAllocator(true, 2, 2, 8192, 11, 1000, 1000, true, 0, true), 100, 1, 1, 0);
+    }
+
+    @Test
+    public void testStripedCachesDoNotGrowWithThreads() throws Exception {
+        final PooledByteBufAllocator allocator =
+                new PooledByteBufAllocator(true, 2, 2, 8192, 11, 1000, 1000, true, 0, true);
+        final int numStripes = allocator.cacheStripes.numStripes();
+        assertEquals(2, numStripes);
+        // Each stripe holds one caching and one non-caching PoolThreadCache per arena type.
+        final int expectedCaches = numStripes * 2;
+        assertEquals(expectedCaches, allocator.metric().numThreadLocalCaches());
+
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 32; i++) {
+            Thread thread = new FastThreadLocalThread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 1000; j++) {
+                            ByteBuf buf = allocator.directBuffer(j % 2 == 0 ? 256 : 64 * 1024);
+                            buf.capacity(buf.capacity() * 2);
+                            assertTrue(buf.release());
+                        }
+                        assertFalse(allocator.hasThreadLocalCache());
+                    } catch (Throwable cause) {
+                        error.compareAndSet(null, cause);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(error.get());
+        assertEquals(expectedCaches, allocator.metric().numThreadLocalCaches());
     }
 
     private static void testArenaMetrics0(
@@ -201,7 +247,7 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
 
     @Test
     public void testSmallSubpageMetric() {
-        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 1, 1, 8192, 11, 0, 0, 0);
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 1, 1, 8192, 11, 0, 0, true);
         ByteBuf buffer = allocator.heapBuffer(500);
         try {
             PoolArenaMetric metric = allocator.metric().heapArenas().get(0);
@@ -212,29 +258,15 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
         }
     }
 
-    @Test
-    public void testTinySubpageMetric() {
-        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 1, 1, 8192, 11, 0, 0, 0);
-        ByteBuf buffer = allocator.heapBuffer(1);
-        try {
-            PoolArenaMetric metric = allocator.metric().heapArenas().get(0);
-            PoolSubpageMetric subpageMetric = metric.tinySubpages().get(0);
-            assertEquals(1, subpageMetric.maxNumElements() - subpageMetric.numAvailable());
-        } finally {
-            buffer.release();
-        }
-    }
-
     @Test
     public void testAllocNotNull() {
-        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 1, 1, 8192, 11, 0, 0, 0);
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 1, 1, 8192, 11, 0, 0, true);
         // Huge allocation
         testAllocNotNull(allocator, allocator.metric().chunkSize() + 1);
         // Normal allocation
         testAllocNotNull(allocator, 1024);
         // Small allocation
         testAllocNotNull(allocator, 512);
-        // Tiny allocation
         testAllocNotNull(allocator, 1);
     }
 
@@ -248,7 +280,7 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
     @Test
     public void testFreePoolChunk() {
         int chunkSize = 16 * 1024 * 1024;
-        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 1, 0, 8192, 11, 0, 0, 0);
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 1, 0, 8192, 11, 0, 0, true);
         ByteBuf buffer = allocator.heapBuffer(chunkSize);
         List<PoolArenaMetric> arenas = allocator.metric().heapArenas();
         assertEquals(1, arenas.size());
@@ -274,6 +306,87 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
         assertFalse(lists.get(5).iterator().hasNext());
     }
 
+    @Test
+    public void testAllocateAndFreeRuns() {
+        // No thread caches so every release goes straight back to the chunk and runs get collapsed. Only sizes
+        // above the subpage limit are used as the last subpage of every size class is never handed back.
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 1, 0, 8192, 11, 0, 0, false);
+        Random random = new Random(42);
+        List<ByteBuf> buffers = new ArrayList<ByteBuf>();
+        for (int round = 0; round < 8; round++) {
+            for (int i = 0; i < 256; i++) {
+                int capacity = 32 * 1024 + 1 + random.nextInt(random.nextBoolean() ? 8192 : 256 * 1024);
+                ByteBuf buffer = allocator.heapBuffer(capacity);
+                buffer.writerIndex(buffer.capacity());
+                buffer.setByte(0, i);
+                buffer.setByte(buffer.capacity() - 1, i);
+                buffers.add(buffer);
+            }
+            for (int i = buffers.size() - 1; i >= 0; i -= 2) {
+                ByteBuf buffer = buffers.remove(i);
+                assertEquals(buffer.getByte(0), buffer.getByte(buffer.capacity() - 1));
+                assertTrue(buffer.release());
+            }
+        }
+        for (ByteBuf buffer : buffers) {
+            assertEquals(buffer.getByte(0), buffer.getByte(buffer.capacity() - 1));
+            assertTrue(buffer.release());
+        }
+        PoolArenaMetric arena = allocator.metric().heapArenas().get(0);
+        assertEquals(0, arena.numActiveAllocations());
+        for (PoolChunkListMetric list : arena.chunkLists()) {
+            for (PoolChunkMetric chunk : list) {
+                assertEquals(chunk.chunkSize(), chunk.freeBytes());
+            }
+        }
+    }
+
+    @Test
+    public void testDirectChunkProvider() {
+        final AtomicInteger allocated = new AtomicInteger();
+        final AtomicInteger freed = new AtomicInteger();
+        DirectChunkProvider provider = new DirectChunkProvider() {
+            @Override
+            public ByteBuffer allocateChunk(int capacity) {
+                allocated.incrementAndGet();
+                return ByteBuffer.allocateDirect(capacity);
+            }
+
+            @Override
+            public void freeChunk(ByteBuffer memory) {
+                freed.incrementAndGet();
+            }
+        };
+        int chunkSize = 16 * 1024 * 1024;
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                true, 0, 1, 8192, 11, 0, 0, false, 0, false, provider);
+        ByteBuf buffer = allocator.directBuffer(chunkSize);
+        assertEquals(1, allocated.get());
+        assertEquals(0, freed.get());
+        assertTrue(buffer.release());
+        assertEquals(1, freed.get());
+    }
+
+    @Test
+    public void testDirectChunkProviderFallback() {
+        DirectChunkProvider provider = new DirectChunkProvider() {
+            @Override
+            public ByteBuffer allocateChunk(int capacity) {
+                return null;
+            }
+
+            @Override
+            public void freeChunk(ByteBuffer memory) {
+                throw new AssertionError();
+            }
+        };
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                true, 0, 1, 8192, 11, 0, 0, false, 0, false, provider);
+        ByteBuf buffer = allocator.directBuffer(16 * 1024 * 1024);
+        assertTrue(buffer.isDirect());
+        assertTrue(buffer.release());
+    }
+
     @Test (timeout = 4000)
     public void testThreadCacheDestroyedByThreadCleaner() throws InterruptedException {
         testThreadCacheDestroyed(false);
@@ -449,7 +562,7 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
 
         // We use no caches and only one arena to maximize the chance of hitting the race-condition we
         // had before.
-        ByteBufAllocator allocator = new PooledByteBufAllocator(true, 1, 1, 8192, 11, 0, 0, 0);
+        ByteBufAllocator allocator = new PooledByteBufAllocator(true, 1, 1, 8192, 11, 0, 0, true);
         List<AllocationThread> threads = new ArrayList<AllocationThread>();
         try {
             for (int i = 0; i < 512; i++) {
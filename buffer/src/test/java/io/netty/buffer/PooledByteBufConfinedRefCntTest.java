@@ -0,0 +1,177 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.EventExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PooledByteBufConfinedRefCntTest {
+
+    private final PooledByteBufAllocator allocator = new PooledByteBufAllocator(false);
+    private EventExecutor executor;
+
+    @Before
+    public void setUp() {
+        executor = new DefaultEventExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+    }
+
+    private PooledByteBuf<byte[]> newConfinedBuffer() throws Exception {
+        return executor.submit(new Callable<PooledByteBuf<byte[]>>() {
+            @Override
+            public PooledByteBuf<byte[]> call() {
+                return newBuffer();
+            }
+        }).get();
+    }
+
+    private PooledByteBuf<byte[]> newBuffer() {
+        PoolThreadCache cache = allocator.threadCache();
+        PooledByteBuf<byte[]> buf = cache.heapArena.allocate(cache, 256, Integer.MAX_VALUE);
+        buf.confineRefCnt();
+        return buf;
+    }
+
+    private void runOnOwner(Runnable task) throws Exception {
+        executor.submit(task).sync();
+    }
+
+    @Test
+    public void testNotConfinedOutsideEventLoop() {
+        PooledByteBuf<byte[]> buf = newBuffer();
+        assertFalse(buf.isRefCntBiased());
+        assertEquals(1, buf.refCnt());
+        assertTrue(buf.release());
+    }
+
+    @Test
+    public void testOwnerRetainRelease() throws Exception {
+        final PooledByteBuf<byte[]> buf = newConfinedBuffer();
+        runOnOwner(new Runnable() {
+            @Override
+            public void run() {
+                assertTrue(buf.isRefCntBiased());
+                buf.retain().retain(2);
+                assertEquals(4, buf.refCnt());
+                assertFalse(buf.release(3));
+                assertTrue(buf.isRefCntBiased());
+                assertTrue(buf.release());
+                assertEquals(0, buf.refCnt());
+                try {
+                    buf.release();
+                    fail();
+                } catch (IllegalReferenceCountException expected) {
+                    // expected
+                }
+                try {
+                    buf.retain();
+                    fail();
+                } catch (IllegalReferenceCountException expected) {
+                    // expected
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testReleasedByOtherThread() throws Exception {
+        PooledByteBuf<byte[]> buf = newConfinedBuffer();
+        // The owner still holds the biased reference, so it has to merge and deallocate the buffer.
+        assertFalse(buf.release());
+        runOnOwner(new Runnable() {
+            @Override
+            public void run() {
+                // Nothing to do, just make sure the merge task ran.
+            }
+        });
+        assertFalse(buf.isRefCntBiased());
+        assertEquals(0, buf.refCnt());
+        try {
+            buf.release();
+            fail();
+        } catch (IllegalReferenceCountException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testRetainedByOtherThread() throws Exception {
+        final PooledByteBuf<byte[]> buf = newConfinedBuffer();
+        buf.retain();
+        assertEquals(2, buf.refCnt());
+        runOnOwner(new Runnable() {
+            @Override
+            public void run() {
+                // The owner drops its reference, the one of the other thread is still alive.
+                assertFalse(buf.release());
+                assertFalse(buf.isRefCntBiased());
+                assertEquals(1, buf.refCnt());
+            }
+        });
+        assertTrue(buf.release());
+        assertEquals(0, buf.refCnt());
+    }
+
+    @Test
+    public void testReleaseMoreThanOwnerRetained() throws Exception {
+        final PooledByteBuf<byte[]> buf = newConfinedBuffer();
+        buf.retain(2);
+        runOnOwner(new Runnable() {
+            @Override
+            public void run() {
+                assertFalse(buf.release(2));
+                assertEquals(1, buf.refCnt());
+            }
+        });
+        try {
+            buf.release(2);
+            fail();
+        } catch (IllegalReferenceCountException expected) {
+            // expected
+        }
+        assertTrue(buf.release());
+    }
+
+    @Test
+    public void testMergeAfterOwnerTerminated() throws Exception {
+        PooledByteBuf<byte[]> buf = newConfinedBuffer();
+        executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        assertFalse(buf.release());
+        // The merge is done by the listener of the termination future.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (buf.isRefCntBiased() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(buf.isRefCntBiased());
+        assertEquals(0, buf.refCnt());
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.netty.buffer.search;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the random access {@code indexOf} of {@link BoyerMooreHorspoolSearchProcessorFactory} and
+ * {@link SwarSearchProcessorFactory}.
+ */
+@RunWith(Parameterized.class)
+public class IndexOfSearchTest {
+
+    private enum Algorithm {
+        BOYER_MOORE_HORSPOOL {
+            @Override
+            int indexOf(byte[] needle, ByteBuf haystack, int fromIndex, int toIndex) {
+                return AbstractSearchProcessorFactory.newBoyerMooreHorspoolSearchProcessorFactory(needle)
+                        .indexOf(haystack, fromIndex, toIndex);
+            }
+        },
+        SWAR {
+            @Override
+            int indexOf(byte[] needle, ByteBuf haystack, int fromIndex, int toIndex) {
+                return AbstractSearchProcessorFactory.newSwarSearchProcessorFactory(needle)
+                        .indexOf(haystack, fromIndex, toIndex);
+            }
+        };
+        abstract int indexOf(byte[] needle, ByteBuf haystack, int fromIndex, int toIndex);
+    }
+
+    private enum BufferType {
+        HEAP {
+            @Override
+            ByteBuf newBuffer(byte[] bytes) {
+                return Unpooled.wrappedBuffer(bytes);
+            }
+        },
+        DIRECT {
+            @Override
+            ByteBuf newBuffer(byte[] bytes) {
+                return Unpooled.directBuffer(bytes.length).writeBytes(bytes);
+            }
+        },
+        COMPOSITE {
+            @Override
+            ByteBuf newBuffer(byte[] bytes) {
+                CompositeByteBuf buffer = Unpooled.compositeBuffer();
+                for (int i = 0; i < bytes.length; i += 7) {
+                    buffer.addComponent(true,
+                            Unpooled.wrappedBuffer(Arrays.copyOfRange(bytes, i, Math.min(bytes.length, i + 7))));
+                }
+                return buffer;
+            }
+        };
+        abstract ByteBuf newBuffer(byte[] bytes);
+    }
+
+    @Parameters(name = "{0} {1}")
+    public static List<Object[]> parameters() {
+        List<Object[]> parameters = new ArrayList<Object[]>();
+        for (Algorithm algorithm : Algorithm.values()) {
+            for (BufferType bufferType : BufferType.values()) {
+                parameters.add(new Object[] { algorithm, bufferType });
+            }
+        }
+        return parameters;
+    }
+
+    @Parameter(0)
+    public Algorithm algorithm;
+
+    @Parameter(1)
+    public BufferType bufferType;
+
+    @Test
+    public void testIndexOf() {
+        ByteBuf haystack = bufferType.newBuffer("abc☺ababab".getBytes(CharsetUtil.UTF_8));
+        int length = haystack.readableBytes();
+        try {
+            assertEquals(0, indexOf("a", haystack, 0, length));
+            assertEquals(0, indexOf("abc☺", haystack, 0, length));
+            assertEquals(3, indexOf("☺", haystack, 0, length));
+            assertEquals(-1, indexOf("☺☺", haystack, 0, length));
+            assertEquals(-1, indexOf("abc☺", haystack, 1, length));
+            assertEquals(-1, indexOf("abc☺", haystack, 0, 5));
+            assertEquals(0, indexOf("abc☺", haystack, 0, 6));
+
+            // Overlapping occurrences are found when continuing from the returned index + 1.
+            assertEquals(7, indexOf("bab", haystack, 0, length));
+            assertEquals(9, indexOf("bab", haystack, 8, length));
+            assertEquals(-1, indexOf("bab", haystack, 10, length));
+        } finally {
+            haystack.release();
+        }
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(42);
+        for (int run = 0; run < 200; run++) {
+            byte[] haystackBytes = new byte[random.nextInt(200)];
+            for (int i = 0; i < haystackBytes.length; i++) {
+                // A small alphabet produces a lot of partial matches.
+                haystackBytes[i] = (byte) (random.nextInt(3) == 0 ? 0x80 : 'a' + random.nextInt(2));
+            }
+            byte[] needle = new byte[1 + random.nextInt(12)];
+            for (int i = 0; i < needle.length; i++) {
+                needle[i] = (byte) (random.nextInt(3) == 0 ? 0x80 : 'a' + random.nextInt(2));
+            }
+            int fromIndex = haystackBytes.length == 0 ? 0 : random.nextInt(haystackBytes.length);
+            ByteBuf haystack = bufferType.newBuffer(haystackBytes);
+            try {
+                assertEquals(naiveIndexOf(needle, haystackBytes, fromIndex),
+                        algorithm.indexOf(needle, haystack, fromIndex, haystackBytes.length));
+            } finally {
+                haystack.release();
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectEmptyNeedle() {
+        algorithm.indexOf(new byte[0], Unpooled.EMPTY_BUFFER, 0, 0);
+    }
+
+    private int indexOf(String needle, ByteBuf haystack, int fromIndex, int toIndex) {
+        return algorithm.indexOf(needle.getBytes(CharsetUtil.UTF_8), haystack, fromIndex, toIndex);
+    }
+
+    private static int naiveIndexOf(byte[] needle, byte[] haystack, int fromIndex) {
+        outer:
+        for (int i = fromIndex; i <= haystack.length - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -49,6 +49,18 @@ public class SearchProcessorTest {
             SearchProcessorFactory newFactory(byte[] needle) {
                 return AbstractMultiSearchProcessorFactory.newAhoCorasicSearchProcessorFactory(needle);
             }
+        },
+        BOYER_MOORE_HORSPOOL {
+            @Override
+            SearchProcessorFactory newFactory(byte[] needle) {
+                return AbstractSearchProcessorFactory.newBoyerMooreHorspoolSearchProcessorFactory(needle);
+            }
+        },
+        SWAR {
+            @Override
+            SearchProcessorFactory newFactory(byte[] needle) {
+                return AbstractSearchProcessorFactory.newSwarSearchProcessorFactory(needle);
+            }
         };
         abstract SearchProcessorFactory newFactory(byte[] needle);
     }
@@ -70,7 +70,23 @@ final class Utf8Validator implements ByteProcessor {
 
     public void check(ByteBuf buffer) {
         checking = true;
-        buffer.forEachByte(this);
+        int index = buffer.readerIndex();
+        final int endIndex = buffer.writerIndex();
+        while (index < endIndex) {
+            if (state == UTF8_ACCEPT) {
+                // ASCII bytes never change the state, so runs of them are skipped and scanned a word at a time.
+                index = buffer.forEachByte(index, endIndex - index, ByteProcessor.FIND_NON_ASCII);
+                if (index == -1) {
+                    return;
+                }
+            }
+            // Stops right after an ASCII byte which follows a complete character.
+            index = buffer.forEachByte(index, endIndex - index, this);
+            if (index == -1) {
+                return;
+            }
+            index++;
+        }
     }
 
     public void finish() {
@@ -96,7 +112,7 @@ final class Utf8Validator implements ByteProcessor {
             throw new CorruptedWebSocketFrameException(
                 WebSocketCloseStatus.INVALID_PAYLOAD_DATA, "bytes are not UTF-8");
         }
-        return true;
+        return b < 0 || state != UTF8_ACCEPT;
     }
 
     public boolean isChecking() {
@@ -19,6 +19,7 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.util.CharsetUtil;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -34,6 +35,26 @@ public class WebSocketUtf8FrameValidatorTest {
         assertCorruptedFrameExceptionHandling(new byte[]{-8, -120, -128, -128, -128});
     }
 
+    @Test
+    public void testCorruptedFrameExceptionAfterAsciiRun() {
+        byte[] data = "0123456789abcdef\u00e9".getBytes(CharsetUtil.UTF_8);
+        // Truncate the last char and follow it with an ASCII byte again.
+        data[data.length - 1] = 'x';
+        assertCorruptedFrameExceptionHandling(data);
+    }
+
+    @Test
+    public void testValidMixedText() {
+        EmbeddedChannel channel = new EmbeddedChannel(new Utf8FrameValidator());
+        TextWebSocketFrame frame = new TextWebSocketFrame(
+                "0123456789abcdef\u00e9\u20ac 0123456789abcdef \uD83D\uDE00 01234567");
+        Assert.assertTrue(channel.writeInbound(frame));
+        TextWebSocketFrame read = channel.readInbound();
+        Assert.assertSame(frame, read);
+        read.release();
+        Assert.assertFalse(channel.finish());
+    }
+
     private void assertCorruptedFrameExceptionHandling(byte[] data) {
         EmbeddedChannel channel = new EmbeddedChannel(new Utf8FrameValidator());
         TextWebSocketFrame frame = new TextWebSocketFrame(Unpooled.copiedBuffer(data));
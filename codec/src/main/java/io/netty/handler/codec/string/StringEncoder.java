@@ -22,6 +22,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
 import io.netty.handler.codec.LineBasedFrameDecoder;
 import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.util.CharsetUtil;
 import io.netty.util.internal.ObjectUtil;
 
 import java.nio.CharBuffer;
@@ -74,6 +75,27 @@ public class StringEncoder extends MessageToMessageEncoder<CharSequence> {
             return;
         }
 
+        if (CharsetUtil.UTF_8.equals(charset) && !hasUnpairedSurrogate(msg)) {
+            // Fast-path which copies ASCII runs at once and does not need a CharsetEncoder. Unpaired surrogates are
+            // left to the CharsetEncoder, as ByteBufUtil replaces them differently.
+            int length = ByteBufUtil.utf8Bytes(msg);
+            ByteBuf buf = ctx.alloc().buffer(length);
+            ByteBufUtil.reserveAndWriteUtf8(buf, msg, length);
+            out.add(buf);
+            return;
+        }
         out.add(ByteBufUtil.encodeString(ctx.alloc(), CharBuffer.wrap(msg), charset));
     }
+
+    private static boolean hasUnpairedSurrogate(CharSequence msg) {
+        for (int i = 0, length = msg.length(); i < length; i++) {
+            char c = msg.charAt(i);
+            if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                if (!Character.isHighSurrogate(c) || ++i == length || !Character.isLowSurrogate(msg.charAt(i))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 }
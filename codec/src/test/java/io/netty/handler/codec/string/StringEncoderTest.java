@@ -36,4 +36,19 @@ public class StringEncoderTest {
         Assert.assertNull(channel.readOutbound());
         buf.release();
     }
+
+    @Test
+    public void testEncodeUtf8() {
+        // ASCII runs, multi byte chars and a malformed surrogate pair must be encoded like the JDK does.
+        String msg = "Test \u00e9\u20ac \uD83D\uDE00 broken \uD800\u00e9 done";
+        EmbeddedChannel channel = new EmbeddedChannel(new StringEncoder(CharsetUtil.UTF_8));
+        Assert.assertTrue(channel.writeOutbound(msg));
+        Assert.assertTrue(channel.finish());
+        ByteBuf buf = channel.readOutbound();
+        byte[] data = new byte[buf.readableBytes()];
+        buf.readBytes(data);
+        Assert.assertArrayEquals(msg.getBytes(CharsetUtil.UTF_8), data);
+        Assert.assertNull(channel.readOutbound());
+        buf.release();
+    }
 }
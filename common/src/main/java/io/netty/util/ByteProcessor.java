@@ -140,6 +140,16 @@ public interface ByteProcessor {
         }
     };
 
+    /**
+     * Aborts on a byte which is not a valid ASCII character (its highest bit is set).
+     */
+    ByteProcessor FIND_NON_ASCII = new ByteProcessor() {
+        @Override
+        public boolean process(byte value) {
+            return value >= 0;
+        }
+    };
+
     /**
      * @return {@code true} if the processor wants to continue the loop and handle the next byte in the buffer.
      *         {@code false} if the processor wants to stop handling bytes and abort the loop.
@@ -18,6 +18,7 @@ package io.netty.util;
 
 import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.internal.ObjectPool;
+import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
@@ -25,8 +26,10 @@ import io.netty.util.internal.logging.InternalLoggerFactory;
 import java.lang.ref.WeakReference;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.Queue;
 import java.util.WeakHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import static io.netty.util.internal.MathUtil.safeFindNextPositivePowerOfTwo;
 import static java.lang.Math.max;
@@ -58,6 +61,7 @@ public abstract class Recycler<T> {
     private static final int LINK_CAPACITY;
     private static final int RATIO;
     private static final int DELAYED_QUEUE_RATIO;
+    private static final boolean USE_MPSC_QUEUE;
 
     static {
         // In the future, we might have different maxCapacity for different object types.
@@ -89,6 +93,10 @@ public abstract class Recycler<T> {
         RATIO = max(0, SystemPropertyUtil.getInt("io.netty.recycler.ratio", 8));
         DELAYED_QUEUE_RATIO = max(0, SystemPropertyUtil.getInt("io.netty.recycler.delayedQueue.ratio", RATIO));
 
+        // Objects which are recycled by other threads are handed back through a MPSC queue per owner thread instead
+        // of a WeakOrderQueue per (owner, recycler) pair.
+        USE_MPSC_QUEUE = SystemPropertyUtil.getBoolean("io.netty.recycler.useMpscQueue", false);
+
         if (logger.isDebugEnabled()) {
             if (DEFAULT_MAX_CAPACITY_PER_THREAD == 0) {
                 logger.debug("-Dio.netty.recycler.maxCapacityPerThread: disabled");
@@ -96,12 +104,14 @@ public abstract class Recycler<T> {
                 logger.debug("-Dio.netty.recycler.linkCapacity: disabled");
                 logger.debug("-Dio.netty.recycler.ratio: disabled");
                 logger.debug("-Dio.netty.recycler.delayedQueue.ratio: disabled");
+                logger.debug("-Dio.netty.recycler.useMpscQueue: disabled");
             } else {
                 logger.debug("-Dio.netty.recycler.maxCapacityPerThread: {}", DEFAULT_MAX_CAPACITY_PER_THREAD);
                 logger.debug("-Dio.netty.recycler.maxSharedCapacityFactor: {}", MAX_SHARED_CAPACITY_FACTOR);
                 logger.debug("-Dio.netty.recycler.linkCapacity: {}", LINK_CAPACITY);
                 logger.debug("-Dio.netty.recycler.ratio: {}", RATIO);
                 logger.debug("-Dio.netty.recycler.delayedQueue.ratio: {}", DELAYED_QUEUE_RATIO);
+                logger.debug("-Dio.netty.recycler.useMpscQueue: {}", USE_MPSC_QUEUE);
             }
         }
 
@@ -113,6 +123,15 @@ public abstract class Recycler<T> {
     private final int interval;
     private final int maxDelayedQueuesPerThread;
     private final int delayedQueueInterval;
+    private final boolean useMpscQueue;
+
+    private final FastThreadLocal<LocalPool<T>> localPool = new FastThreadLocal<LocalPool<T>>() {
+        @Override
+        protected LocalPool<T> initialValue() {
+            return new LocalPool<T>(Recycler.this, Thread.currentThread(), maxCapacityPerThread,
+                    maxSharedCapacityFactor, interval, maxDelayedQueuesPerThread, delayedQueueInterval);
+        }
+    };
 
     private final FastThreadLocal<Stack<T>> threadLocal = new FastThreadLocal<Stack<T>>() {
         @Override
@@ -152,6 +171,20 @@ public abstract class Recycler<T> {
 
     protected Recycler(int maxCapacityPerThread, int maxSharedCapacityFactor,
                        int ratio, int maxDelayedQueuesPerThread, int delayedQueueRatio) {
+        this(maxCapacityPerThread, maxSharedCapacityFactor, ratio, maxDelayedQueuesPerThread, delayedQueueRatio,
+                USE_MPSC_QUEUE);
+    }
+
+    /**
+     * @param useMpscQueue if {@code true} objects which are recycled by another thread than the one that got them are
+     *                     handed back through a bounded MPSC queue of the owner thread, which costs the recycling thread
+     *                     a single offer and does not allocate. {@code maxSharedCapacityFactor} bounds the capacity of
+     *                     that queue and {@code maxDelayedQueuesPerThread} only tells if recycling from other threads
+     *                     is allowed at all.
+     */
+    protected Recycler(int maxCapacityPerThread, int maxSharedCapacityFactor,
+                       int ratio, int maxDelayedQueuesPerThread, int delayedQueueRatio, boolean useMpscQueue) {
+        this.useMpscQueue = useMpscQueue;
         interval = max(0, ratio);
         delayedQueueInterval = max(0, delayedQueueRatio);
         if (maxCapacityPerThread <= 0) {
@@ -170,6 +203,15 @@ public abstract class Recycler<T> {
         if (maxCapacityPerThread == 0) {
             return newObject((Handle<T>) NOOP_HANDLE);
         }
+        if (useMpscQueue) {
+            LocalPool<T> pool = localPool.get();
+            PooledHandle<T> handle = pool.claim();
+            if (handle == null) {
+                handle = pool.newHandle();
+                handle.value = newObject(handle);
+            }
+            return (T) handle.value;
+        }
         Stack<T> stack = threadLocal.get();
         DefaultHandle<T> handle = stack.pop();
         if (handle == null) {
@@ -188,6 +230,15 @@ public abstract class Recycler<T> {
             return false;
         }
 
+        if (handle instanceof PooledHandle) {
+            PooledHandle<T> h = (PooledHandle<T>) handle;
+            if (h.pool.parent != this) {
+                return false;
+            }
+            h.recycle(o);
+            return true;
+        }
+
         DefaultHandle<T> h = (DefaultHandle<T>) handle;
         if (h.stack.parent != this) {
             return false;
@@ -198,11 +249,11 @@ public abstract class Recycler<T> {
     }
 
     final int threadLocalCapacity() {
-        return threadLocal.get().elements.length;
+        return useMpscQueue ? localPool.get().elements.length : threadLocal.get().elements.length;
     }
 
     final int threadLocalSize() {
-        return threadLocal.get().size;
+        return useMpscQueue ? localPool.get().size : threadLocal.get().size;
     }
 
     protected abstract T newObject(Handle<T> handle);
@@ -722,4 +773,155 @@ public abstract class Recycler<T> {
             return new DefaultHandle<T>(this);
         }
     }
+
+    private static final class PooledHandle<T> implements Handle<T> {
+        private static final int STATE_CLAIMED = 0;
+        private static final int STATE_AVAILABLE = 1;
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<PooledHandle> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(PooledHandle.class, "state");
+
+        @SuppressWarnings("unused")
+        private volatile int state; // STATE_CLAIMED as long as the object is in use.
+        // Only accessed by the thread that owns the pool.
+        boolean hasBeenRecycled;
+
+        final LocalPool<T> pool;
+        Object value;
+
+        PooledHandle(LocalPool<T> pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public void recycle(Object object) {
+            if (object != value) {
+                throw new IllegalArgumentException("object does not belong to handle");
+            }
+            // Detects multiple recycles also if they happen in different threads.
+            if (STATE_UPDATER.getAndSet(this, STATE_AVAILABLE) == STATE_AVAILABLE) {
+                throw new IllegalStateException("recycled already");
+            }
+            pool.release(this);
+        }
+
+        void toClaimed() {
+            assert state == STATE_AVAILABLE;
+            STATE_UPDATER.lazySet(this, STATE_CLAIMED);
+        }
+    }
+
+    /**
+     * The objects of one thread if the MPSC queue is used: a plain array stack which only the owner thread
+     * touches, and a MPSC queue through which other threads hand back objects. The owner drains the queue into the
+     * stack once the stack is empty, so recycling from another thread costs a single offer, never allocates and is
+     * never blocked by the owner.
+     */
+    private static final class LocalPool<T> {
+        final Recycler<T> parent;
+
+        // We store the Thread in a WeakReference for the same reason as Stack does.
+        private final WeakReference<Thread> threadRef;
+        // null if recycling from other threads is not allowed.
+        private final Queue<PooledHandle<T>> foreignHandles;
+        private final int maxCapacity;
+        private final int interval;
+        private final int foreignInterval;
+        PooledHandle<?>[] elements;
+        int size;
+        private int handleRecycleCount;
+        private int foreignHandleRecycleCount;
+
+        LocalPool(Recycler<T> parent, Thread thread, int maxCapacity, int maxSharedCapacityFactor,
+                  int interval, int maxDelayedQueues, int foreignInterval) {
+            this.parent = parent;
+            threadRef = new WeakReference<Thread>(thread);
+            this.maxCapacity = maxCapacity;
+            this.interval = interval;
+            this.foreignInterval = foreignInterval;
+            // Start at interval so the first one will be recycled.
+            handleRecycleCount = interval;
+            foreignHandleRecycleCount = foreignInterval;
+            elements = new PooledHandle[min(INITIAL_CAPACITY, maxCapacity)];
+            // The queue grows in chunks of LINK_CAPACITY, so it costs little for threads which are never recycled to.
+            foreignHandles = maxDelayedQueues == 0 ? null : PlatformDependent.<PooledHandle<T>>newMpscQueue(
+                    LINK_CAPACITY, max(maxCapacity / maxSharedCapacityFactor, LINK_CAPACITY));
+        }
+
+        @SuppressWarnings("unchecked")
+        PooledHandle<T> claim() {
+            int size = this.size;
+            if (size == 0) {
+                size = drainForeignHandles();
+                if (size == 0) {
+                    return null;
+                }
+            }
+            size--;
+            PooledHandle<T> handle = (PooledHandle<T>) elements[size];
+            elements[size] = null;
+            this.size = size;
+            handle.toClaimed();
+            return handle;
+        }
+
+        private int drainForeignHandles() {
+            Queue<PooledHandle<T>> foreignHandles = this.foreignHandles;
+            if (foreignHandles == null) {
+                return 0;
+            }
+            // The queue is bounded, and so is the time spent here.
+            PooledHandle<T> handle;
+            while (size < maxCapacity && (handle = foreignHandles.poll()) != null) {
+                // Apply the same ratios as a WeakOrderQueue and its transfer to the Stack do.
+                if (foreignHandleRecycleCount < foreignInterval) {
+                    foreignHandleRecycleCount++;
+                    // Drop the object.
+                    continue;
+                }
+                foreignHandleRecycleCount = 0;
+                if (!dropHandle(handle)) {
+                    push(handle);
+                }
+            }
+            return size;
+        }
+
+        void release(PooledHandle<T> handle) {
+            if (threadRef.get() == Thread.currentThread()) {
+                if (size < maxCapacity && !dropHandle(handle)) {
+                    push(handle);
+                }
+            } else if (foreignHandles != null) {
+                // If the queue is full the object is dropped, just like when the stack is full.
+                foreignHandles.offer(handle);
+            }
+        }
+
+        private void push(PooledHandle<T> handle) {
+            int size = this.size;
+            if (size == elements.length) {
+                elements = Arrays.copyOf(elements, min(size << 1, maxCapacity));
+            }
+            elements[size] = handle;
+            this.size = size + 1;
+        }
+
+        private boolean dropHandle(PooledHandle<T> handle) {
+            if (!handle.hasBeenRecycled) {
+                if (handleRecycleCount < interval) {
+                    handleRecycleCount++;
+                    // Drop the object.
+                    return true;
+                }
+                handleRecycleCount = 0;
+                handle.hasBeenRecycled = true;
+            }
+            return false;
+        }
+
+        PooledHandle<T> newHandle() {
+            return new PooledHandle<T>(this);
+        }
+    }
 }
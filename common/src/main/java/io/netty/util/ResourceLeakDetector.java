@@ -33,6 +33,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
@@ -53,8 +54,15 @@ public class ResourceLeakDetector<T> {
     // There is a minor performance benefit in TLR if this is a power of 2.
     private static final int DEFAULT_SAMPLING_INTERVAL = 128;
 
+    private static final String PROP_AGGREGATE_SITES = "io.netty.leakDetection.aggregateSites";
+    private static final boolean DEFAULT_AGGREGATE_SITES = false;
+
+    private static final String PROP_MAX_SITES = "io.netty.leakDetection.maxSites";
+    private static final int DEFAULT_MAX_SITES = 256;
+
     private static final int TARGET_RECORDS;
     static final int SAMPLING_INTERVAL;
+    static final int MAX_SITES;
 
     /**
      * Represents the level of resource leak detection.
@@ -98,6 +106,7 @@ public class ResourceLeakDetector<T> {
     }
 
     private static Level level;
+    private static boolean aggregateSites;
 
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(ResourceLeakDetector.class);
 
@@ -124,11 +133,15 @@ public class ResourceLeakDetector<T> {
 
         TARGET_RECORDS = SystemPropertyUtil.getInt(PROP_TARGET_RECORDS, DEFAULT_TARGET_RECORDS);
         SAMPLING_INTERVAL = SystemPropertyUtil.getInt(PROP_SAMPLING_INTERVAL, DEFAULT_SAMPLING_INTERVAL);
+        MAX_SITES = Math.max(1, SystemPropertyUtil.getInt(PROP_MAX_SITES, DEFAULT_MAX_SITES));
 
         ResourceLeakDetector.level = level;
+        aggregateSites = SystemPropertyUtil.getBoolean(PROP_AGGREGATE_SITES, DEFAULT_AGGREGATE_SITES);
         if (logger.isDebugEnabled()) {
             logger.debug("-D{}: {}", PROP_LEVEL, level.name().toLowerCase());
             logger.debug("-D{}: {}", PROP_TARGET_RECORDS, TARGET_RECORDS);
+            logger.debug("-D{}: {}", PROP_AGGREGATE_SITES, aggregateSites);
+            logger.debug("-D{}: {}", PROP_MAX_SITES, MAX_SITES);
         }
     }
 
@@ -161,6 +174,29 @@ public class ResourceLeakDetector<T> {
         return level;
     }
 
+    /**
+     * Enables or disables the aggregation of leaks by site.
+     * <p>
+     * If enabled, a tracked object only keeps the record of where it was created and the most recent one of where it
+     * was accessed, so the cost of a tracked object stays the same however often it is accessed. Leaks are counted
+     * in a bounded table of distinct sites (creation and last access) together with the leaked bytes, and a site is
+     * reported again each time its count doubles instead of once per distinct leak. This keeps the overhead and the
+     * amount of logging low enough to leave sampling leak detection on under full load. Objects which are tracked
+     * while this is disabled are not affected.
+     */
+    public static void setAggregateSites(boolean aggregateSites) {
+        ResourceLeakDetector.aggregateSites = aggregateSites;
+    }
+
+    /**
+     * Returns {@code true} if leaks are aggregated by site.
+     *
+     * @see #setAggregateSites(boolean)
+     */
+    public static boolean isAggregateSites() {
+        return aggregateSites;
+    }
+
     /** the collection of active resources */
     private final Set<DefaultResourceLeak<?>> allLeaks =
             Collections.newSetFromMap(new ConcurrentHashMap<DefaultResourceLeak<?>, Boolean>());
@@ -168,6 +204,9 @@ public class ResourceLeakDetector<T> {
     private final ReferenceQueue<Object> refQueue = new ReferenceQueue<Object>();
     private final Set<String> reportedLeaks =
             Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final ConcurrentMap<String, LeakSite> leakSites = new ConcurrentHashMap<String, LeakSite>();
+    // Counts the leaks of all sites which did not fit into leakSites anymore.
+    private final LeakSite otherLeakSite = new LeakSite();
 
     private final String resourceType;
     private final int samplingInterval;
@@ -232,7 +271,7 @@ public class ResourceLeakDetector<T> {
      */
     @Deprecated
     public final ResourceLeak open(T obj) {
-        return track0(obj);
+        return track0(obj, 0);
     }
 
     /**
@@ -243,11 +282,22 @@ public class ResourceLeakDetector<T> {
      */
     @SuppressWarnings("unchecked")
     public final ResourceLeakTracker<T> track(T obj) {
-        return track0(obj);
+        return track0(obj, 0);
+    }
+
+    /**
+     * Creates a new {@link ResourceLeakTracker} like {@link #track(Object)} for a resource of the given size, which
+     * is summed up per site if leaks are aggregated by site (see {@link #setAggregateSites(boolean)}).
+     *
+     * @return the {@link ResourceLeakTracker} or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public final ResourceLeakTracker<T> track(T obj, long bytes) {
+        return track0(obj, bytes);
     }
 
     @SuppressWarnings("unchecked")
-    private DefaultResourceLeak track0(T obj) {
+    private DefaultResourceLeak track0(T obj, long bytes) {
         Level level = ResourceLeakDetector.level;
         if (level == Level.DISABLED) {
             return null;
@@ -256,12 +306,12 @@ public class ResourceLeakDetector<T> {
         if (level.ordinal() < Level.PARANOID.ordinal()) {
             if ((PlatformDependent.threadLocalRandom().nextInt(samplingInterval)) == 0) {
                 reportLeak();
-                return new DefaultResourceLeak(obj, refQueue, allLeaks);
+                return new DefaultResourceLeak(obj, refQueue, allLeaks, aggregateSites, bytes);
             }
             return null;
         }
         reportLeak();
-        return new DefaultResourceLeak(obj, refQueue, allLeaks);
+        return new DefaultResourceLeak(obj, refQueue, allLeaks, aggregateSites, bytes);
     }
 
     private void clearRefQueue() {
@@ -301,6 +351,11 @@ public class ResourceLeakDetector<T> {
                 continue;
             }
 
+            if (ref.aggregateSites) {
+                reportLeakSite(ref);
+                continue;
+            }
+
             String records = ref.toString();
             if (reportedLeaks.add(records)) {
                 if (records.isEmpty()) {
@@ -312,6 +367,43 @@ public class ResourceLeakDetector<T> {
         }
     }
 
+    private void reportLeakSite(DefaultResourceLeak<?> ref) {
+        String records = ref.toString();
+        LeakSite site = leakSites.get(records);
+        if (site == null) {
+            if (leakSites.size() < MAX_SITES) {
+                LeakSite newSite = new LeakSite();
+                site = leakSites.putIfAbsent(records, newSite);
+                if (site == null) {
+                    site = newSite;
+                }
+            } else {
+                site = otherLeakSite;
+                records = NEWLINE + "Leaks of sites which were not recorded because the number of sites is limited " +
+                        "to " + MAX_SITES + ". Use system property " + PROP_MAX_SITES + " to increase the limit.";
+            }
+        }
+        long bytes = site.bytes.addAndGet(ref.bytes);
+        long count = site.count.incrementAndGet();
+        // Report the first leak of a site and then every time the count doubles, so a busy site can not flood the log.
+        if ((count & count - 1) == 0) {
+            reportAggregatedLeak(resourceType, records, count, bytes);
+        }
+    }
+
+    /**
+     * This method is called when a leak is detected while leaks are aggregated by site (see
+     * {@link #setAggregateSites(boolean)}), for the first leak of a site and each time the number of leaks of the
+     * site doubled. {@code count} and {@code bytes} are the totals of the site so far. It can be overridden for
+     * tracking how many times leaks have been detected.
+     */
+    protected void reportAggregatedLeak(String resourceType, String records, long count, long bytes) {
+        logger.error(
+                "LEAK: {}.release() was not called before it's garbage-collected, {} times ({} bytes) for this site " +
+                "so far. See https://netty.io/wiki/reference-counted-objects.html for more information.{}",
+                resourceType, count, bytes, records);
+    }
+
     /**
      * This method is called when a traced leak is detected. It can be overridden for tracking how many times leaks
      * have been detected.
@@ -343,6 +435,11 @@ public class ResourceLeakDetector<T> {
     protected void reportInstancesLeak(String resourceType) {
     }
 
+    private static final class LeakSite {
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+    }
+
     @SuppressWarnings("deprecation")
     private static final class DefaultResourceLeak<T>
             extends WeakReference<Object> implements ResourceLeakTracker<T>, ResourceLeak {
@@ -364,11 +461,17 @@ public class ResourceLeakDetector<T> {
 
         private final Set<DefaultResourceLeak<?>> allLeaks;
         private final int trackedHash;
+        final boolean aggregateSites;
+        final long bytes;
+        // Only used if aggregateSites is true, as then it is the only record which is kept besides the head.
+        private final Record creationRecord;
 
         DefaultResourceLeak(
                 Object referent,
                 ReferenceQueue<Object> refQueue,
-                Set<DefaultResourceLeak<?>> allLeaks) {
+                Set<DefaultResourceLeak<?>> allLeaks,
+                boolean aggregateSites,
+                long bytes) {
             super(referent, refQueue);
 
             assert referent != null;
@@ -377,9 +480,12 @@ public class ResourceLeakDetector<T> {
             // It's important that we not store a reference to the referent as this would disallow it from
             // be collected via the WeakReference.
             trackedHash = System.identityHashCode(referent);
+            this.aggregateSites = aggregateSites;
+            this.bytes = bytes;
             allLeaks.add(this);
             // Create a new Record so we always have the creation stacktrace included.
-            headUpdater.set(this, new Record(Record.BOTTOM));
+            creationRecord = new Record(Record.BOTTOM);
+            headUpdater.set(this, creationRecord);
             this.allLeaks = allLeaks;
         }
 
@@ -420,6 +526,19 @@ public class ResourceLeakDetector<T> {
          * thread won the race.
          */
         private void record0(Object hint) {
+            if (aggregateSites) {
+                // Only keep the creation record and the most recent one, so this is cheap however often it is called.
+                // This is not a separate method so the stack traces of all records have the same depth.
+                Record newHead = hint != null ? new Record(creationRecord, hint) : new Record(creationRecord);
+                Record oldHead;
+                do {
+                    if ((oldHead = headUpdater.get(this)) == null) {
+                        // already closed.
+                        return;
+                    }
+                } while (!headUpdater.compareAndSet(this, oldHead, newHead));
+                return;
+            }
             // Check TARGET_RECORDS > 0 here to avoid similar check before remove from and add to lastRecords
             if (TARGET_RECORDS > 0) {
                 Record oldHead;
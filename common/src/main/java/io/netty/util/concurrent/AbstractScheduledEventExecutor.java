@@ -18,6 +18,9 @@ package io.netty.util.concurrent;
 import io.netty.util.internal.DefaultPriorityQueue;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PriorityQueue;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import static io.netty.util.concurrent.ScheduledFutureTask.deadlineNanos;
 
@@ -30,6 +33,23 @@ import java.util.concurrent.TimeUnit;
  * Abstract base class for {@link EventExecutor}s that want to support scheduling.
  */
 public abstract class AbstractScheduledEventExecutor extends AbstractEventExecutor {
+    private static final InternalLogger logger =
+            InternalLoggerFactory.getInstance(AbstractScheduledEventExecutor.class);
+
+    private static final boolean DEFAULT_TIMING_WHEEL_SCHEDULED_TASK_QUEUE =
+            SystemPropertyUtil.getBoolean("io.netty.eventexecutor.timingWheelScheduledTaskQueue", false);
+    private static final long TIMING_WHEEL_TICK_NANOS = TimeUnit.MICROSECONDS.toNanos(Math.max(1,
+            SystemPropertyUtil.getLong("io.netty.eventexecutor.timingWheelTickMicros", 1000)));
+
+    static {
+        if (logger.isDebugEnabled()) {
+            logger.debug("-Dio.netty.eventexecutor.timingWheelScheduledTaskQueue: {}",
+                    DEFAULT_TIMING_WHEEL_SCHEDULED_TASK_QUEUE);
+            logger.debug("-Dio.netty.eventexecutor.timingWheelTickMicros: {}",
+                    TimeUnit.NANOSECONDS.toMicros(TIMING_WHEEL_TICK_NANOS));
+        }
+    }
+
     private static final Comparator<ScheduledFutureTask<?>> SCHEDULED_FUTURE_TASK_COMPARATOR =
             new Comparator<ScheduledFutureTask<?>>() {
                 @Override
@@ -78,14 +98,33 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
 
     PriorityQueue<ScheduledFutureTask<?>> scheduledTaskQueue() {
         if (scheduledTaskQueue == null) {
-            scheduledTaskQueue = new DefaultPriorityQueue<ScheduledFutureTask<?>>(
-                    SCHEDULED_FUTURE_TASK_COMPARATOR,
-                    // Use same initial capacity as java.util.PriorityQueue
-                    11);
+            if (useTimingWheelScheduledTaskQueue()) {
+                scheduledTaskQueue = new TimingWheelScheduledTaskQueue(
+                        SCHEDULED_FUTURE_TASK_COMPARATOR, TIMING_WHEEL_TICK_NANOS);
+            } else {
+                scheduledTaskQueue = new DefaultPriorityQueue<ScheduledFutureTask<?>>(
+                        SCHEDULED_FUTURE_TASK_COMPARATOR,
+                        // Use same initial capacity as java.util.PriorityQueue
+                        11);
+            }
         }
         return scheduledTaskQueue;
     }
 
+    /**
+     * Returns {@code true} if the scheduled tasks should be kept in timing wheels instead of a single binary heap.
+     * Only the tasks which are due within the next tick (see {@code io.netty.eventexecutor.timingWheelTickMicros})
+     * are kept in a heap then, so scheduling and cancelling the many long timeouts of an {@link EventExecutor} which
+     * serves a lot of connections is {@code O(1)}. The tasks are still run in the same order and not before their
+     * deadline. The default is given by the {@code io.netty.eventexecutor.timingWheelScheduledTaskQueue} system
+     * property.
+     * <p>
+     * This method is called once, when the first task is scheduled.
+     */
+    protected boolean useTimingWheelScheduledTaskQueue() {
+        return DEFAULT_TIMING_WHEEL_SCHEDULED_TASK_QUEUE;
+    }
+
     private static boolean isNullOrEmpty(Queue<ScheduledFutureTask<?>> queue) {
         return queue == null || queue.isEmpty();
     }
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A task queue for a {@link SingleThreadEventExecutor} with many producers and the executor thread as its only
+ * consumer.
+ * <ul>
+ *     <li>The consumer moves up to {@code batchSize} tasks at once from the shared queue into a private buffer and
+ *     serves the following {@link #poll()}s from it.</li>
+ *     <li>Producers only wake up the consumer if it is actually parked in {@link #take()} or
+ *     {@link #poll(long, TimeUnit)}, and only the first producer which sees it parked does, so a burst of tasks
+ *     costs one wakeup.</li>
+ *     <li>Before parking, the consumer polls the queue up to {@code maxSpins} times. The number of spins adapts: it
+ *     grows when spinning found a task and shrinks when it did not.</li>
+ * </ul>
+ * Producers never block, {@link #offer(Runnable)} returns {@code false} if the queue is full. All methods which
+ * remove tasks, as well as {@link #peek()} and {@link #iterator()}, must only be called by the consumer.
+ * {@link #remove(Object)} and {@link #contains(Object)} only see the tasks which were not moved into the buffer yet.
+ * {@link #size()} and {@link #isEmpty()} may be called by any thread, but for other threads than the consumer they are
+ * only an estimate while the consumer moves tasks into its buffer.
+ */
+@UnstableApi
+public final class AdaptiveSpinTaskQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    private static final AtomicReferenceFieldUpdater<AdaptiveSpinTaskQueue, Thread> WAITER_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(AdaptiveSpinTaskQueue.class, Thread.class, "waiter");
+    private static final AtomicIntegerFieldUpdater<AdaptiveSpinTaskQueue> BATCH_REMAINING_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(AdaptiveSpinTaskQueue.class, "batchRemaining");
+
+    private final Queue<Runnable> queue;
+    private final int maxCapacity;
+    private final int maxSpins;
+    private final int minSpins;
+
+    // Only accessed by the consumer.
+    private final Runnable[] batch;
+    private int batchIndex;
+    private int batchSize;
+    private int spins;
+
+    // The number of tasks left in the buffer, only written by the consumer but read by size() from any thread.
+    private volatile int batchRemaining;
+
+    // The consumer thread while it is parked or about to park.
+    private volatile Thread waiter;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxCapacity the maximum number of tasks which are not in the buffer of the consumer yet.
+     * @param batchSize the maximum number of tasks which the consumer takes from the shared queue at once.
+     * @param maxSpins the maximum number of times the consumer polls the queue before it parks, {@code 0} to park
+     *                 right away.
+     */
+    public AdaptiveSpinTaskQueue(int maxCapacity, int batchSize, int maxSpins) {
+        this.maxCapacity = ObjectUtil.checkPositive(maxCapacity, "maxCapacity");
+        ObjectUtil.checkPositive(batchSize, "batchSize");
+        this.maxSpins = ObjectUtil.checkPositiveOrZero(maxSpins, "maxSpins");
+        queue = maxCapacity == Integer.MAX_VALUE ? PlatformDependent.<Runnable>newMpscQueue()
+                : PlatformDependent.<Runnable>newMpscQueue(maxCapacity);
+        batch = new Runnable[batchSize];
+        minSpins = maxSpins == 0 ? 0 : Math.max(1, maxSpins >>> 4);
+        spins = maxSpins;
+    }
+
+    @Override
+    public boolean offer(Runnable task) {
+        if (!queue.offer(ObjectUtil.checkNotNull(task, "task"))) {
+            return false;
+        }
+        // The consumer publishes itself before checking the queue for the last time, so either it sees the task
+        // or we see it.
+        Thread waiter = this.waiter;
+        if (waiter != null && WAITER_UPDATER.compareAndSet(this, waiter, null)) {
+            LockSupport.unpark(waiter);
+        }
+        return true;
+    }
+
+    /**
+     * Same as {@link #offer(Runnable)}, producers are never blocked.
+     */
+    @Override
+    public boolean offer(Runnable task, long timeout, TimeUnit unit) {
+        return offer(task);
+    }
+
+    @Override
+    public void put(Runnable task) throws InterruptedException {
+        while (!offer(task)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            Thread.yield();
+        }
+    }
+
+    @Override
+    public Runnable poll() {
+        if (batchIndex == batchSize && !fillBatch()) {
+            return null;
+        }
+        Runnable task = batch[batchIndex];
+        batch[batchIndex++] = null;
+        BATCH_REMAINING_UPDATER.lazySet(this, batchSize - batchIndex);
+        return task;
+    }
+
+    @Override
+    public Runnable peek() {
+        if (batchIndex == batchSize && !fillBatch()) {
+            return null;
+        }
+        return batch[batchIndex];
+    }
+
+    private boolean fillBatch() {
+        Runnable[] batch = this.batch;
+        int size = 0;
+        Runnable task;
+        while (size < batch.length && (task = queue.poll()) != null) {
+            batch[size++] = task;
+        }
+        batchIndex = 0;
+        batchSize = size;
+        BATCH_REMAINING_UPDATER.lazySet(this, size);
+        return size != 0;
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        return await(false, 0);
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return await(true, unit.toNanos(timeout));
+    }
+
+    private Runnable await(boolean timed, long timeoutNanos) throws InterruptedException {
+        Runnable task = poll();
+        if (task != null) {
+            return task;
+        }
+        task = spin();
+        if (task != null) {
+            return task;
+        }
+
+        final long deadline = timed ? System.nanoTime() + timeoutNanos : 0;
+        final Thread current = Thread.currentThread();
+        for (;;) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            waiter = current;
+            task = poll();
+            if (task != null) {
+                waiter = null;
+                return task;
+            }
+            if (timed) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    waiter = null;
+                    return null;
+                }
+                LockSupport.parkNanos(this, remaining);
+            } else {
+                LockSupport.park(this);
+            }
+            waiter = null;
+        }
+    }
+
+    private Runnable spin() {
+        int spins = this.spins;
+        for (int i = 0; i < spins; i++) {
+            Runnable task = poll();
+            if (task != null) {
+                // Spinning paid off, it may do so again for the next burst.
+                this.spins = Math.min(maxSpins, spins << 1);
+                return task;
+            }
+        }
+        this.spins = Math.max(minSpins, spins >>> 1);
+        return null;
+    }
+
+    /**
+     * Returns the number of tasks in the buffer of the consumer and in the shared queue. For other threads than the
+     * consumer this misses the tasks which the consumer is moving into its buffer right now.
+     */
+    @Override
+    public int size() {
+        return batchRemaining + queue.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return batchRemaining == 0 && queue.isEmpty();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, maxCapacity - queue.size());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return queue.remove(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return queue.contains(o);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        ObjectUtil.checkNotNull(c, "c");
+        if (c == this) {
+            throw new IllegalArgumentException("c");
+        }
+        int drained = 0;
+        Runnable task;
+        while (drained < maxElements && (task = poll()) != null) {
+            c.add(task);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Returns a snapshot of the tasks. The returned {@link Iterator} does not support removal.
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        List<Runnable> tasks = new ArrayList<Runnable>(size());
+        for (int i = batchIndex; i < batchSize; i++) {
+            tasks.add(batch[i]);
+        }
+        for (Runnable task: queue) {
+            tasks.add(task);
+        }
+        return Collections.unmodifiableList(tasks).iterator();
+    }
+}
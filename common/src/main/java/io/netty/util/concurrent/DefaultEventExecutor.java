@@ -63,7 +63,12 @@ public final class DefaultEventExecutor extends SingleThreadEventExecutor {
         for (;;) {
             Runnable task = takeTask();
             if (task != null) {
-                task.run();
+                workStarted();
+                try {
+                    task.run();
+                } finally {
+                    workCompleted();
+                }
                 updateLastExecutionTime();
             }
 
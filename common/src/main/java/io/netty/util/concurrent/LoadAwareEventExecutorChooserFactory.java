@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.Random;
+
+/**
+ * {@link EventExecutorChooserFactory} which chooses the less loaded of two randomly picked {@link EventExecutor}s
+ * ("power of two choices"). Unlike always picking the least loaded {@link EventExecutor}, this does not send a burst
+ * of new work to the same {@link EventExecutor} while its load is not updated yet, and it only looks at two
+ * {@link EventExecutor}s per call.
+ */
+@UnstableApi
+public final class LoadAwareEventExecutorChooserFactory implements EventExecutorChooserFactory {
+
+    /**
+     * Estimates the current load of an {@link EventExecutor}.
+     */
+    public interface LoadEstimator {
+        /**
+         * Returns the load of the given {@link EventExecutor}, higher values mean more load. This method is called
+         * from arbitrary threads so the returned value is a best effort.
+         */
+        long load(EventExecutor executor);
+    }
+
+    /**
+     * Uses the number of pending tasks of a {@link SingleThreadEventExecutor} as its load.
+     */
+    public static final LoadEstimator PENDING_TASKS = new LoadEstimator() {
+        @Override
+        public long load(EventExecutor executor) {
+            return executor instanceof SingleThreadEventExecutor ?
+                    ((SingleThreadEventExecutor) executor).pendingTasks() : 0;
+        }
+    };
+
+    /**
+     * Chooses by the number of pending tasks.
+     */
+    public static final LoadAwareEventExecutorChooserFactory INSTANCE =
+            new LoadAwareEventExecutorChooserFactory(PENDING_TASKS);
+
+    private final LoadEstimator estimator;
+
+    /**
+     * Creates a new instance which uses the given {@link LoadEstimator}.
+     */
+    public LoadAwareEventExecutorChooserFactory(LoadEstimator estimator) {
+        this.estimator = ObjectUtil.checkNotNull(estimator, "estimator");
+    }
+
+    @Override
+    public EventExecutorChooser newChooser(EventExecutor[] executors) {
+        if (executors.length == 1) {
+            return new SingleEventExecutorChooser(executors[0]);
+        }
+        return new PowerOfTwoChoicesEventExecutorChooser(executors, estimator);
+    }
+
+    private static final class SingleEventExecutorChooser implements EventExecutorChooser {
+        private final EventExecutor executor;
+
+        SingleEventExecutorChooser(EventExecutor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public EventExecutor next() {
+            return executor;
+        }
+    }
+
+    private static final class PowerOfTwoChoicesEventExecutorChooser implements EventExecutorChooser {
+        private final EventExecutor[] executors;
+        private final LoadEstimator estimator;
+
+        PowerOfTwoChoicesEventExecutorChooser(EventExecutor[] executors, LoadEstimator estimator) {
+            this.executors = executors;
+            this.estimator = estimator;
+        }
+
+        @Override
+        public EventExecutor next() {
+            EventExecutor[] executors = this.executors;
+            Random random = PlatformDependent.threadLocalRandom();
+            int first = random.nextInt(executors.length);
+            int second = random.nextInt(executors.length - 1);
+            if (second >= first) {
+                second++;
+            }
+            EventExecutor a = executors[first];
+            EventExecutor b = executors[second];
+            return estimator.load(b) < estimator.load(a) ? b : a;
+        }
+    }
+}
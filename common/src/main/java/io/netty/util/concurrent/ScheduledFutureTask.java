@@ -50,6 +50,10 @@ final class ScheduledFutureTask<V> extends PromiseTask<V> implements ScheduledFu
 
     private int queueIndex = INDEX_NOT_IN_QUEUE;
 
+    // The bucket of a TimingWheelScheduledTaskQueue in which the task is kept, if any. The index of the task in the
+    // bucket is stored in queueIndex.
+    TimingWheelScheduledTaskQueue.Bucket bucket;
+
     ScheduledFutureTask(AbstractScheduledEventExecutor executor,
             Runnable runnable, long nanoTime) {
 
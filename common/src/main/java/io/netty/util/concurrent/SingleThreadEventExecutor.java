@@ -41,6 +41,7 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
@@ -76,9 +77,15 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
 
     private final Queue<Runnable> taskQueue;
 
+    private static final AtomicLongFieldUpdater<SingleThreadEventExecutor> WORK_START_TIME_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(SingleThreadEventExecutor.class, "workStartTime");
+
     private volatile Thread thread;
     @SuppressWarnings("unused")
     private volatile ThreadProperties threadProperties;
+    volatile StallDetector stallDetector;
+    // Only updated while a StallDetector watches this executor, 0 while no task or I/O is processed.
+    private volatile long workStartTime;
     private final Executor executor;
     private volatile boolean interrupted;
 
@@ -306,7 +313,7 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
             return false;
         }
         do {
-            safeExecute(scheduledTask);
+            runTask(scheduledTask);
         } while ((scheduledTask = pollScheduledTask(nanoTime)) != null);
         return true;
     }
@@ -425,7 +432,7 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
             return false;
         }
         for (;;) {
-            safeExecute(task);
+            runTask(task);
             task = pollTaskFrom(taskQueue);
             if (task == null) {
                 return true;
@@ -444,11 +451,11 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
             return false;
         }
         int remaining = Math.min(maxPendingTasks, taskQueue.size());
-        safeExecute(task);
+        runTask(task);
         // Use taskQueue.poll() directly rather than pollTaskFrom() since the latter may
         // silently consume more than one item from the queue (skips over WAKEUP_TASK instances)
         while (remaining-- > 0 && (task = taskQueue.poll()) != null) {
-            safeExecute(task);
+            runTask(task);
         }
         return true;
     }
@@ -469,7 +476,7 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         long runTasks = 0;
         long lastExecutionTime;
         for (;;) {
-            safeExecute(task);
+            runTask(task);
 
             runTasks ++;
 
@@ -494,6 +501,58 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         return true;
     }
 
+    private void runTask(Runnable task) {
+        if (stallDetector == null && workStartTime == 0) {
+            safeExecute(task);
+        } else {
+            workStarted();
+            try {
+                safeExecute(task);
+            } finally {
+                workCompleted();
+            }
+        }
+    }
+
+    /**
+     * Marks the start of processing something which the executor thread may get stuck in, like a task or a batch of
+     * I/O events, so that a {@link StallDetector} which watches this executor can tell for how long it is running
+     * already. {@link #runAllTasks()} and {@link #runAllTasks(long)} mark each task they run automatically.
+     */
+    @UnstableApi
+    protected final void workStarted() {
+        if (stallDetector != null) {
+            // 0 means idle, so never use it as start time.
+            WORK_START_TIME_UPDATER.lazySet(this, Math.max(1, nanoTime()));
+        }
+    }
+
+    /**
+     * Marks the end of the processing which was started by {@link #workStarted()}.
+     */
+    @UnstableApi
+    protected final void workCompleted() {
+        // Check the timestamp rather than the detector, the executor may have been unwatched in the meantime.
+        if (workStartTime != 0) {
+            WORK_START_TIME_UPDATER.lazySet(this, 0);
+        }
+    }
+
+    /**
+     * Returns the time at which the executor thread started the work it is busy with right now, or {@code 0} if it
+     * is idle or no {@link StallDetector} watches this executor.
+     */
+    final long workStartTime() {
+        return workStartTime;
+    }
+
+    /**
+     * Returns the executor thread, or {@code null} if it was not started yet.
+     */
+    final Thread executorThread() {
+        return thread;
+    }
+
     /**
      * Invoked before returning from {@link #runAllTasks()} and {@link #runAllTasks(long)}.
      */
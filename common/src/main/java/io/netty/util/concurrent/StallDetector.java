@@ -0,0 +1,278 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Detects {@link SingleThreadEventExecutor}s whose thread is stuck in a single task or batch of I/O events for
+ * longer than a threshold, for example because a handler does blocking I/O or a lot of computation.
+ * <p>
+ * The watched executors record when their thread starts running a task, see
+ * {@link SingleThreadEventExecutor#workStarted()}. A daemon thread checks these timestamps periodically, and once
+ * one is older than the threshold it captures the stack trace of the stuck thread. The stack traces are aggregated
+ * by their top frames into {@link StallSite}s, and each stall is reported to the {@link StallListener}.
+ * <p>
+ * Unlike BlockHound this does not instrument any bytecode, so it can be used in production: watching an executor
+ * costs two timestamps per task, and the stack of a thread is only captured when it stalled.
+ */
+@UnstableApi
+public final class StallDetector {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(StallDetector.class);
+
+    private static final long MIN_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final AtomicReferenceFieldUpdater<SingleThreadEventExecutor, StallDetector> DETECTOR_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(SingleThreadEventExecutor.class, StallDetector.class,
+                    "stallDetector");
+
+    private static final Comparator<StallSite> BY_COUNT = new Comparator<StallSite>() {
+        @Override
+        public int compare(StallSite o1, StallSite o2) {
+            long c1 = o1.count();
+            long c2 = o2.count();
+            return c1 < c2 ? 1 : c1 == c2 ? 0 : -1;
+        }
+    };
+
+    /**
+     * Is notified about every detected stall.
+     */
+    public interface StallListener {
+        /**
+         * Called from the thread of the {@link StallDetector} when the thread of the {@link EventExecutor} is stuck
+         * in the same task or batch of I/O events for {@code stallNanos} already.
+         *
+         * @param executor the stalled {@link EventExecutor}.
+         * @param stallNanos for how long the {@link EventExecutor} is stalled.
+         * @param stackTrace the stack trace of the thread of the {@link EventExecutor}.
+         * @param site the {@link StallSite} of the stack trace, which includes this stall.
+         */
+        void stallDetected(EventExecutor executor, long stallNanos, StackTraceElement[] stackTrace, StallSite site);
+    }
+
+    /**
+     * The stalls which happened at the same code location, identified by the top frames of the stack trace.
+     */
+    public static final class StallSite {
+        private final List<StackTraceElement> frames;
+        private final AtomicLong count = new AtomicLong();
+
+        StallSite(List<StackTraceElement> frames) {
+            this.frames = frames;
+        }
+
+        /**
+         * The top frames of the stack traces of this site.
+         */
+        public List<StackTraceElement> frames() {
+            return frames;
+        }
+
+        /**
+         * The number of stalls at this site.
+         */
+        public long count() {
+            return count.get();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder buf = new StringBuilder(64 * (frames.size() + 1));
+            buf.append("StallSite(count: ").append(count()).append(')');
+            for (StackTraceElement frame: frames) {
+                buf.append("\n\tat ").append(frame);
+            }
+            return buf.toString();
+        }
+    }
+
+    private final Runnable checkTask = new Runnable() {
+        @Override
+        public void run() {
+            // Runs until stop() or another start() replaced the thread.
+            while (thread == Thread.currentThread()) {
+                check(AbstractScheduledEventExecutor.nanoTime());
+                LockSupport.parkNanos(this, checkIntervalNanos);
+            }
+        }
+    };
+
+    private final long thresholdNanos;
+    private final long checkIntervalNanos;
+    private final int maxFrames;
+    private final StallListener listener;
+    // The value is the start time of the work which was reported last.
+    private final ConcurrentMap<SingleThreadEventExecutor, Long> executors =
+            new ConcurrentHashMap<SingleThreadEventExecutor, Long>();
+    private final ConcurrentMap<List<StackTraceElement>, StallSite> sites =
+            new ConcurrentHashMap<List<StackTraceElement>, StallSite>();
+
+    private volatile Thread thread;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param threshold for how long a task or batch of I/O events may run before it is reported as stall.
+     * @param unit the {@link TimeUnit} of {@code threshold}.
+     * @param maxFrames the number of top frames of the stack traces which identify a {@link StallSite}.
+     * @param listener the {@link StallListener} which is notified about the stalls.
+     */
+    public StallDetector(long threshold, TimeUnit unit, int maxFrames, StallListener listener) {
+        thresholdNanos = ObjectUtil.checkNotNull(unit, "unit").toNanos(
+                ObjectUtil.checkPositive(threshold, "threshold"));
+        checkIntervalNanos = Math.max(MIN_CHECK_INTERVAL_NANOS, thresholdNanos / 4);
+        this.maxFrames = ObjectUtil.checkPositive(maxFrames, "maxFrames");
+        this.listener = ObjectUtil.checkNotNull(listener, "listener");
+    }
+
+    /**
+     * Starts watching all {@link SingleThreadEventExecutor}s of the given {@link EventExecutorGroup}. Other
+     * {@link EventExecutor}s are ignored.
+     */
+    public void watch(EventExecutorGroup group) {
+        for (EventExecutor executor: group) {
+            if (executor instanceof SingleThreadEventExecutor) {
+                watch((SingleThreadEventExecutor) executor);
+            }
+        }
+    }
+
+    /**
+     * Starts watching the {@link SingleThreadEventExecutor}.
+     *
+     * @throws IllegalStateException if another {@link StallDetector} watches it already.
+     */
+    public void watch(SingleThreadEventExecutor executor) {
+        ObjectUtil.checkNotNull(executor, "executor");
+        if (!DETECTOR_UPDATER.compareAndSet(executor, null, this) && executor.stallDetector != this) {
+            throw new IllegalStateException("executor is watched by another StallDetector already");
+        }
+        executors.putIfAbsent(executor, 0L);
+    }
+
+    /**
+     * Stops watching the {@link SingleThreadEventExecutor}.
+     */
+    public void unwatch(SingleThreadEventExecutor executor) {
+        ObjectUtil.checkNotNull(executor, "executor");
+        if (executors.remove(executor) != null) {
+            DETECTOR_UPDATER.compareAndSet(executor, this, null);
+        }
+    }
+
+    /**
+     * Starts the thread which checks the watched {@link SingleThreadEventExecutor}s.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("already started");
+        }
+        Thread thread = new DefaultThreadFactory("stallDetector", true).newThread(checkTask);
+        this.thread = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the thread which checks the watched {@link SingleThreadEventExecutor}s. The executors are still watched
+     * and the detector can be started again.
+     */
+    public synchronized void stop() {
+        Thread thread = this.thread;
+        if (thread != null) {
+            this.thread = null;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Returns the {@link StallSite}s seen so far, the ones with the most stalls first.
+     */
+    public List<StallSite> stallSites() {
+        List<StallSite> sites = new ArrayList<StallSite>(this.sites.values());
+        Collections.sort(sites, BY_COUNT);
+        return sites;
+    }
+
+    /**
+     * Checks all watched {@link SingleThreadEventExecutor}s once and returns the number of stalls found.
+     * This method is visible for testing!
+     */
+    int check(long now) {
+        int stalls = 0;
+        for (Map.Entry<SingleThreadEventExecutor, Long> entry: executors.entrySet()) {
+            SingleThreadEventExecutor executor = entry.getKey();
+            Long reportedStartTime = entry.getValue();
+            long startTime = executor.workStartTime();
+            if (startTime == 0 || now - startTime < thresholdNanos || startTime == reportedStartTime) {
+                continue;
+            }
+            Thread executorThread = executor.executorThread();
+            if (executorThread == null) {
+                continue;
+            }
+            StackTraceElement[] stackTrace = executorThread.getStackTrace();
+            if (executor.workStartTime() != startTime || stackTrace.length == 0) {
+                // The executor made progress while the stack trace was captured, so it does not show the stall.
+                continue;
+            }
+            if (!executors.replace(executor, reportedStartTime, startTime)) {
+                // Not watched anymore.
+                continue;
+            }
+            stalls++;
+
+            StallSite site = site(stackTrace);
+            site.count.incrementAndGet();
+            try {
+                listener.stallDetected(executor, now - startTime, stackTrace, site);
+            } catch (Throwable t) {
+                logger.warn("An exception was thrown by {}.stallDetected()", listener.getClass().getName(), t);
+            }
+        }
+        return stalls;
+    }
+
+    private StallSite site(StackTraceElement[] stackTrace) {
+        List<StackTraceElement> frames = Collections.unmodifiableList(
+                Arrays.asList(Arrays.copyOf(stackTrace, Math.min(maxFrames, stackTrace.length))));
+        StallSite site = sites.get(frames);
+        if (site == null) {
+            site = new StallSite(frames);
+            StallSite old = sites.putIfAbsent(frames, site);
+            if (old != null) {
+                site = old;
+            }
+        }
+        return site;
+    }
+}
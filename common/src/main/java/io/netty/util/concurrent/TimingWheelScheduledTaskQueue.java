@@ -0,0 +1,335 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.DefaultPriorityQueue;
+import io.netty.util.internal.PriorityQueue;
+import io.netty.util.internal.PriorityQueueNode;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A {@link PriorityQueue} of {@link ScheduledFutureTask}s which only keeps the tasks that are due within the next
+ * tick in a binary heap. All other tasks are kept in hierarchical timing wheels, each wheel has {@value #WHEEL_SIZE}
+ * buckets and a bucket of the next coarser wheel spans one rotation of the finer one.
+ * <p>
+ * Adding a task to a wheel and cancelling it is {@code O(1)}. Only the non-empty buckets are ordered, by the start
+ * of the time span they cover, so the heap of buckets never holds more than {@value #WHEEL_SIZE} buckets per wheel.
+ * When the earliest bucket may contain the earliest task it is flushed: its tasks are moved to the heap or cascaded
+ * into a finer wheel. Tasks are therefore still returned in exactly the same order as by a single heap, the tick
+ * only controls how many tasks are kept in the heap.
+ * <p>
+ * This class is not thread-safe and must only be used from the {@link EventExecutor} thread, like the heap it
+ * replaces.
+ */
+final class TimingWheelScheduledTaskQueue extends AbstractQueue<ScheduledFutureTask<?>>
+        implements PriorityQueue<ScheduledFutureTask<?>> {
+
+    private static final int WHEEL_BITS = 6;
+    static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private static final Comparator<Bucket> BUCKET_COMPARATOR = new Comparator<Bucket>() {
+        @Override
+        public int compare(Bucket o1, Bucket o2) {
+            return o1.expiration < o2.expiration ? -1 : o1.expiration > o2.expiration ? 1 : 0;
+        }
+    };
+
+    private final DefaultPriorityQueue<ScheduledFutureTask<?>> heap;
+    private final DefaultPriorityQueue<Bucket> buckets =
+            new DefaultPriorityQueue<Bucket>(BUCKET_COMPARATOR, WHEEL_SIZE);
+    private final Wheel wheel;
+    private int wheelSize;
+
+    /**
+     * @param comparator the order of the tasks.
+     * @param tickNanos the time span of a bucket of the finest wheel, rounded up to a power of two.
+     */
+    TimingWheelScheduledTaskQueue(Comparator<ScheduledFutureTask<?>> comparator, long tickNanos) {
+        heap = new DefaultPriorityQueue<ScheduledFutureTask<?>>(comparator, 11);
+        int tickShift = 64 - Long.numberOfLeadingZeros(Math.max(1, tickNanos) - 1);
+        wheel = new Wheel(Math.min(tickShift, 62), ScheduledFutureTask.nanoTime());
+    }
+
+    @Override
+    public boolean offer(ScheduledFutureTask<?> task) {
+        if (task.bucket != null || task.priorityQueueIndex(heap) != PriorityQueueNode.INDEX_NOT_IN_QUEUE) {
+            throw new IllegalArgumentException("task is already queued: " + task);
+        }
+        if (buckets.isEmpty()) {
+            // Nothing is in the wheels, catch up with the time so the task lands in a bucket as fine as possible.
+            wheel.advance(ScheduledFutureTask.nanoTime());
+        }
+        if (wheel.add(task)) {
+            wheelSize++;
+        } else {
+            heap.add(task);
+        }
+        return true;
+    }
+
+    @Override
+    public ScheduledFutureTask<?> peek() {
+        for (;;) {
+            Bucket bucket = buckets.peek();
+            ScheduledFutureTask<?> task = heap.peek();
+            // All tasks in a bucket are due at or after its expiration. Tasks which are due at the same time are
+            // ordered by their id, so the bucket must be flushed if a task of it could come first.
+            if (bucket == null || task != null && task.deadlineNanos() < bucket.expiration) {
+                return task;
+            }
+            flush(buckets.poll());
+        }
+    }
+
+    @Override
+    public ScheduledFutureTask<?> poll() {
+        return peek() != null ? heap.poll() : null;
+    }
+
+    private void flush(Bucket bucket) {
+        wheel.advance(bucket.expiration);
+        ScheduledFutureTask<?>[] tasks = bucket.tasks;
+        int size = bucket.size;
+        bucket.size = 0;
+        wheelSize -= size;
+        for (int i = 0; i < size; i++) {
+            ScheduledFutureTask<?> task = tasks[i];
+            tasks[i] = null;
+            task.bucket = null;
+            task.priorityQueueIndex(heap, PriorityQueueNode.INDEX_NOT_IN_QUEUE);
+            offer(task);
+        }
+        bucket.trim();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof ScheduledFutureTask && removeTyped((ScheduledFutureTask<?>) o);
+    }
+
+    @Override
+    public boolean removeTyped(ScheduledFutureTask<?> task) {
+        Bucket bucket = task.bucket;
+        if (bucket == null) {
+            return heap.removeTyped(task);
+        }
+        if (bucket.owner != this) {
+            return false;
+        }
+        bucket.remove(task);
+        wheelSize--;
+        if (bucket.size == 0) {
+            buckets.removeTyped(bucket);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof ScheduledFutureTask && containsTyped((ScheduledFutureTask<?>) o);
+    }
+
+    @Override
+    public boolean containsTyped(ScheduledFutureTask<?> task) {
+        Bucket bucket = task.bucket;
+        return bucket == null ? heap.containsTyped(task) : bucket.owner == this;
+    }
+
+    @Override
+    public void priorityChanged(ScheduledFutureTask<?> task) {
+        if (task.bucket == null) {
+            heap.priorityChanged(task);
+        } else if (removeTyped(task)) {
+            offer(task);
+        }
+    }
+
+    @Override
+    public int size() {
+        return heap.size() + wheelSize;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return heap.isEmpty() && wheelSize == 0;
+    }
+
+    @Override
+    public void clear() {
+        heap.clear();
+        for (Bucket bucket : buckets) {
+            for (int i = 0; i < bucket.size; i++) {
+                ScheduledFutureTask<?> task = bucket.tasks[i];
+                task.bucket = null;
+                task.priorityQueueIndex(heap, PriorityQueueNode.INDEX_NOT_IN_QUEUE);
+            }
+            bucket.clear();
+        }
+        buckets.clear();
+        wheelSize = 0;
+    }
+
+    @Override
+    public void clearIgnoringIndexes() {
+        heap.clearIgnoringIndexes();
+        for (Bucket bucket : buckets) {
+            bucket.clear();
+        }
+        buckets.clear();
+        wheelSize = 0;
+    }
+
+    /**
+     * Returns the tasks in no particular order. The returned {@link Iterator} does not support removal.
+     */
+    @Override
+    public Iterator<ScheduledFutureTask<?>> iterator() {
+        List<ScheduledFutureTask<?>> tasks = new ArrayList<ScheduledFutureTask<?>>(size());
+        tasks.addAll(heap);
+        for (Bucket bucket : buckets) {
+            tasks.addAll(Arrays.asList(bucket.tasks).subList(0, bucket.size));
+        }
+        return Collections.unmodifiableList(tasks).iterator();
+    }
+
+    private final class Wheel {
+        private final int tickShift;
+        private final long tick;
+        private final long interval;
+        private final Bucket[] slots = new Bucket[WHEEL_SIZE];
+        // The start of the tick in which the wheel currently is.
+        private long currentTime;
+        private Wheel overflowWheel;
+
+        Wheel(int tickShift, long currentTime) {
+            this.tickShift = tickShift;
+            tick = 1L << tickShift;
+            // The coarsest wheel covers all possible deadlines.
+            interval = tickShift + WHEEL_BITS >= 63 ? Long.MAX_VALUE : tick << WHEEL_BITS;
+            this.currentTime = currentTime & -tick;
+        }
+
+        /**
+         * Adds the {@code task} to this or a coarser wheel. Returns {@code false} if it is due within the current tick
+         * and must be added to the heap.
+         */
+        boolean add(ScheduledFutureTask<?> task) {
+            long deadline = task.deadlineNanos();
+            long delta = deadline - currentTime;
+            if (delta < tick) {
+                return false;
+            }
+            if (delta < interval || overflowWheel == null && interval == Long.MAX_VALUE) {
+                long virtualId = deadline >>> tickShift;
+                Bucket bucket = slots[(int) (virtualId & WHEEL_MASK)];
+                if (bucket == null) {
+                    bucket = slots[(int) (virtualId & WHEEL_MASK)] = new Bucket(TimingWheelScheduledTaskQueue.this);
+                }
+                if (bucket.size == 0) {
+                    bucket.expiration = virtualId << tickShift;
+                    buckets.add(bucket);
+                }
+                assert bucket.expiration == virtualId << tickShift;
+                bucket.add(task);
+                return true;
+            }
+            if (overflowWheel == null) {
+                overflowWheel = new Wheel(tickShift + WHEEL_BITS, currentTime);
+            }
+            return overflowWheel.add(task);
+        }
+
+        void advance(long time) {
+            if (time - currentTime >= tick) {
+                currentTime = time & -tick;
+                if (overflowWheel != null) {
+                    overflowWheel.advance(currentTime);
+                }
+            }
+        }
+    }
+
+    /**
+     * An unordered set of the tasks which are due within one tick of a wheel. The index of a task in the bucket is
+     * kept in the same field as its index in the heap, as a task is never in both at once.
+     */
+    static final class Bucket implements PriorityQueueNode {
+        private static final int INITIAL_CAPACITY = 8;
+
+        final TimingWheelScheduledTaskQueue owner;
+        ScheduledFutureTask<?>[] tasks = new ScheduledFutureTask<?>[INITIAL_CAPACITY];
+        int size;
+        long expiration;
+        private int queueIndex = INDEX_NOT_IN_QUEUE;
+
+        Bucket(TimingWheelScheduledTaskQueue owner) {
+            this.owner = owner;
+        }
+
+        void add(ScheduledFutureTask<?> task) {
+            if (size == tasks.length) {
+                tasks = Arrays.copyOf(tasks, size << 1);
+            }
+            task.bucket = this;
+            task.priorityQueueIndex(owner.heap, size);
+            tasks[size++] = task;
+        }
+
+        void remove(ScheduledFutureTask<?> task) {
+            int index = task.priorityQueueIndex(owner.heap);
+            assert tasks[index] == task;
+            ScheduledFutureTask<?> last = tasks[--size];
+            tasks[size] = null;
+            if (last != task) {
+                tasks[index] = last;
+                last.priorityQueueIndex(owner.heap, index);
+            }
+            task.bucket = null;
+            task.priorityQueueIndex(owner.heap, INDEX_NOT_IN_QUEUE);
+        }
+
+        void clear() {
+            Arrays.fill(tasks, 0, size, null);
+            size = 0;
+            trim();
+        }
+
+        void trim() {
+            // Do not hold on to the memory of a burst of tasks forever.
+            if (tasks.length > INITIAL_CAPACITY) {
+                tasks = new ScheduledFutureTask<?>[INITIAL_CAPACITY];
+            }
+        }
+
+        @Override
+        public int priorityQueueIndex(DefaultPriorityQueue<?> queue) {
+            return queueIndex;
+        }
+
+        @Override
+        public void priorityQueueIndex(DefaultPriorityQueue<?> queue, int i) {
+            queueIndex = i;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.NettyRuntime;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link EventExecutorGroup} for handlers which block, for example because they call a database or read files.
+ * Add the handlers with {@code ChannelPipeline.addLast(group, handler)} as with a {@link DefaultEventExecutorGroup}.
+ * <p>
+ * Every {@link EventExecutor} of this group is a {@link DefaultEventExecutor}, so all events of a handler are
+ * still processed one after another in order. If the JDK provides virtual threads (Java 21 or later) the
+ * executors run on virtual threads: a handler which blocks only parks its virtual thread and not the carrier
+ * thread, so many more executors, and therefore many more blocking calls in flight, are affordable than with
+ * platform threads. On older JDKs, or if {@code -Dio.netty.eventExecutor.virtualThreads=false} is set, the group
+ * falls back to {@code fallbackThreads} executors running on platform threads, just like a
+ * {@link DefaultEventExecutorGroup}.
+ * <p>
+ * Note that a virtual thread which blocks while holding a monitor, for example in
+ * {@link Future#sync()}, pins its carrier thread on older JDKs.
+ */
+@UnstableApi
+public final class VirtualThreadEventExecutorGroup extends MultithreadEventExecutorGroup {
+    private static final InternalLogger logger =
+            InternalLoggerFactory.getInstance(VirtualThreadEventExecutorGroup.class);
+
+    private static final int DEFAULT_EXECUTORS = Math.max(1, SystemPropertyUtil.getInt(
+            "io.netty.eventExecutor.virtualThreads.executors", 1024));
+    private static final int DEFAULT_FALLBACK_THREADS = NettyRuntime.availableProcessors() * 2;
+
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+
+    static {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderFactory = null;
+        if (PlatformDependent.javaVersion() >= 21 &&
+                SystemPropertyUtil.getBoolean("io.netty.eventExecutor.virtualThreads", true)) {
+            try {
+                Method method = Thread.class.getMethod("ofVirtual");
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                builderName = builderClass.getMethod("name", String.class, long.class);
+                builderFactory = builderClass.getMethod("factory");
+                ofVirtual = method;
+            } catch (Throwable cause) {
+                logger.debug("Virtual threads are not available", cause);
+            }
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_FACTORY = builderFactory;
+        logger.debug("-Dio.netty.eventExecutor.virtualThreads: {}", OF_VIRTUAL != null);
+        logger.debug("-Dio.netty.eventExecutor.virtualThreads.executors: {}", DEFAULT_EXECUTORS);
+    }
+
+    private static final AtomicInteger poolId = new AtomicInteger();
+
+    private final boolean virtualThreads;
+
+    /**
+     * Creates a new instance with the default number of executors, see
+     * {@link #VirtualThreadEventExecutorGroup(int, int)}.
+     */
+    public VirtualThreadEventExecutorGroup() {
+        this(DEFAULT_EXECUTORS, DEFAULT_FALLBACK_THREADS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param executors         the number of {@link EventExecutor}s if virtual threads are used. This is the
+     *                          number of handlers which can block at the same time.
+     * @param fallbackThreads   the number of {@link EventExecutor}s, and therefore platform threads, if virtual
+     *                          threads are not available.
+     */
+    public VirtualThreadEventExecutorGroup(int executors, int fallbackThreads) {
+        this(executors, fallbackThreads, SingleThreadEventExecutor.DEFAULT_MAX_PENDING_EXECUTOR_TASKS,
+                RejectedExecutionHandlers.reject());
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param executors         the number of {@link EventExecutor}s if virtual threads are used.
+     * @param fallbackThreads   the number of {@link EventExecutor}s if virtual threads are not available.
+     * @param maxPendingTasks   the maximum number of pending tasks before new tasks will be rejected.
+     * @param rejectedHandler   the {@link RejectedExecutionHandler} to use.
+     */
+    public VirtualThreadEventExecutorGroup(int executors, int fallbackThreads, int maxPendingTasks,
+                                           RejectedExecutionHandler rejectedHandler) {
+        this(newVirtualThreadFactory(), executors, fallbackThreads, maxPendingTasks, rejectedHandler);
+    }
+
+    private VirtualThreadEventExecutorGroup(ThreadFactory virtualThreadFactory, int executors, int fallbackThreads,
+                                            int maxPendingTasks, RejectedExecutionHandler rejectedHandler) {
+        super(virtualThreadFactory != null ? ObjectUtil.checkPositive(executors, "executors") :
+                        ObjectUtil.checkPositive(fallbackThreads, "fallbackThreads"),
+                virtualThreadFactory != null ? virtualThreadFactory :
+                        new DefaultThreadFactory(VirtualThreadEventExecutorGroup.class),
+                maxPendingTasks, rejectedHandler);
+        virtualThreads = virtualThreadFactory != null;
+    }
+
+    /**
+     * Returns {@code true} if the {@link EventExecutor}s of this group run on virtual threads, {@code false} if
+     * the group fell back to platform threads.
+     */
+    public boolean isUsingVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Returns {@code true} if virtual threads are available, so new instances will use them.
+     */
+    public static boolean isVirtualThreadsAvailable() {
+        return OF_VIRTUAL != null;
+    }
+
+    @Override
+    protected EventExecutor newChild(Executor executor, Object... args) throws Exception {
+        return new DefaultEventExecutor(this, executor, (Integer) args[0], (RejectedExecutionHandler) args[1]);
+    }
+
+    private static ThreadFactory newVirtualThreadFactory() {
+        if (OF_VIRTUAL == null) {
+            return null;
+        }
+        String prefix = StringUtil.simpleClassName(VirtualThreadEventExecutorGroup.class) + '-' +
+                poolId.incrementAndGet() + '-';
+        try {
+            Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 1L);
+            return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+        } catch (Throwable cause) {
+            logger.debug("Failed to create a virtual thread factory, falling back to platform threads", cause);
+            return null;
+        }
+    }
+}
@@ -511,6 +511,10 @@ public final class PlatformDependent {
         return PlatformDependent0.getInt(address);
     }
 
+    public static int getIntVolatile(long address) {
+        return PlatformDependent0.getIntVolatile(address);
+    }
+
     public static long getLong(long address) {
         return PlatformDependent0.getLong(address);
     }
@@ -651,6 +655,10 @@ public final class PlatformDependent {
         PlatformDependent0.putInt(address, value);
     }
 
+    public static void putIntOrdered(long address, int value) {
+        PlatformDependent0.putIntOrdered(address, value);
+    }
+
     public static void putLong(long address, long value) {
         PlatformDependent0.putLong(address, value);
     }
@@ -930,6 +938,14 @@ public final class PlatformDependent {
                                                 : new MpscGrowableAtomicArrayQueue<T>(MPSC_CHUNK_SIZE, capacity);
         }
 
+        static <T> Queue<T> newChunkedMpscQueue(final int chunkSize, final int maxCapacity) {
+            final int initialCapacity = max(chunkSize, 2);
+            // The max capacity must be at least twice the rounded up initial capacity.
+            final int capacity = max(min(maxCapacity, MAX_ALLOWED_MPSC_CAPACITY), initialCapacity * 2);
+            return USE_MPSC_CHUNKED_ARRAY_QUEUE ? new MpscChunkedArrayQueue<T>(initialCapacity, capacity)
+                                                : new MpscGrowableAtomicArrayQueue<T>(initialCapacity, capacity);
+        }
+
         static <T> Queue<T> newMpscQueue() {
             return USE_MPSC_CHUNKED_ARRAY_QUEUE ? new MpscUnboundedArrayQueue<T>(MPSC_CHUNK_SIZE)
                                                 : new MpscUnboundedAtomicArrayQueue<T>(MPSC_CHUNK_SIZE);
@@ -953,6 +969,15 @@ public final class PlatformDependent {
         return Mpsc.newMpscQueue(maxCapacity);
     }
 
+    /**
+     * Create a new {@link Queue} which is safe to use for multiple producers (different threads) and a single
+     * consumer (one thread!). The queue grows in chunks of {@code chunkSize} up to {@code maxCapacity}, so it is cheap
+     * to create even if it is hardly used.
+     */
+    public static <T> Queue<T> newMpscQueue(final int chunkSize, final int maxCapacity) {
+        return Mpsc.newChunkedMpscQueue(chunkSize, maxCapacity);
+    }
+
     /**
      * Create a new {@link Queue} which is safe to use for single producer (one thread!) and a single
      * consumer (one thread!).
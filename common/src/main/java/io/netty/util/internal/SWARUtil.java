@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.internal;
+
+/**
+ * Utility methods to process the 8 bytes of a {@code long} at once ("SIMD within a register").
+ */
+public final class SWARUtil {
+
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    private SWARUtil() { }
+
+    /**
+     * Returns a {@code long} which contains {@code value} in each of its bytes.
+     */
+    public static long compilePattern(byte value) {
+        return (value & 0xFFL) * 0x0101010101010101L;
+    }
+
+    /**
+     * Returns a {@code long} which has the highest bit of each byte set for which the byte of {@code word} equals the
+     * byte of {@code pattern}, and all other bits cleared. Unlike the classic {@code (x - 0x01..) & ~x & 0x80..} trick
+     * this never reports false positives, so more than one match can be told apart.
+     */
+    public static long applyPattern(long word, long pattern) {
+        long input = word ^ pattern;
+        long tmp = (input & LOW_BITS) + LOW_BITS;
+        return ~(tmp | input | LOW_BITS);
+    }
+
+    /**
+     * Returns the index of the first matching byte of a non-zero result of {@link #applyPattern(long, long)}, where
+     * the first byte is the one that is stored at the lowest address if the {@code word} was read from memory in the
+     * byte order given by {@code isBigEndian}.
+     */
+    public static int getIndex(long result, boolean isBigEndian) {
+        return isBigEndian ? Long.numberOfLeadingZeros(result) >>> 3 : Long.numberOfTrailingZeros(result) >>> 3;
+    }
+}
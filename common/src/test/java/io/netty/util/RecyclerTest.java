@@ -17,7 +17,11 @@ package io.netty.util;
 
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -26,15 +30,19 @@ import static org.junit.Assert.*;
 
 public class RecyclerTest {
 
-    private static Recycler<HandledObject> newRecycler(int maxCapacityPerThread) {
+    protected boolean useMpscQueue() {
+        return false;
+    }
+
+    private Recycler<HandledObject> newRecycler(int maxCapacityPerThread) {
         return newRecycler(maxCapacityPerThread, 2, 8, 2, 8);
     }
 
-    private static Recycler<HandledObject> newRecycler(int maxCapacityPerThread, int maxSharedCapacityFactor,
-                                                       int ratio, int maxDelayedQueuesPerThread,
-                                                       int delayedQueueRatio) {
+    private Recycler<HandledObject> newRecycler(int maxCapacityPerThread, int maxSharedCapacityFactor,
+                                                int ratio, int maxDelayedQueuesPerThread,
+                                                int delayedQueueRatio) {
         return new Recycler<HandledObject>(maxCapacityPerThread, maxSharedCapacityFactor, ratio,
-                maxDelayedQueuesPerThread, delayedQueueRatio) {
+                maxDelayedQueuesPerThread, delayedQueueRatio, useMpscQueue()) {
             @Override
             protected HandledObject newObject(
                     Recycler.Handle<HandledObject> handle) {
@@ -187,7 +195,7 @@ public class RecyclerTest {
         }
     }
 
-    private static void testMaxCapacity(int maxCapacity) {
+    private void testMaxCapacity(int maxCapacity) {
         Recycler<HandledObject> recycler = newRecycler(maxCapacity);
         HandledObject[] objects = new HandledObject[maxCapacity * 3];
         for (int i = 0; i < objects.length; i++) {
@@ -264,6 +272,40 @@ public class RecyclerTest {
         assertEquals(0, recycler.threadLocalSize());
     }
 
+    @Test
+    public void testConcurrentRecycleAtDifferentThreads() throws Exception {
+        final Recycler<HandledObject> recycler = newRecycler(1024, 2, 0, 8, 0);
+        final HandledObject[] array = new HandledObject[256];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = recycler.get();
+        }
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = offset; i < array.length; i += 4) {
+                        array[i].recycle();
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Every object which is handed out again must be handed out only once.
+        Set<HandledObject> seen = Collections.newSetFromMap(new IdentityHashMap<HandledObject, Boolean>());
+        for (int i = 0; i < array.length; i++) {
+            assertTrue(seen.add(recycler.get()));
+        }
+        seen.retainAll(Arrays.asList(array));
+        assertFalse(seen.isEmpty());
+    }
+
     @Test
     public void testDiscardingExceedingElementsWithRecycleAtDifferentThread() throws Exception {
         final int maxCapacity = 32;
@@ -18,11 +18,20 @@ package io.netty.util;
 import org.junit.Test;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 public class ResourceLeakDetectorTest {
 
     @Test(timeout = 60000)
@@ -95,6 +104,76 @@ public class ResourceLeakDetectorTest {
         assertNoErrors(error);
     }
 
+    @Test(timeout = 60000)
+    public void testLeaksAggregatedBySite() throws Exception {
+        boolean aggregateSites = ResourceLeakDetector.isAggregateSites();
+        ResourceLeakDetector.Level level = ResourceLeakDetector.getLevel();
+        ResourceLeakDetector.setAggregateSites(true);
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.SIMPLE);
+        try {
+            AggregatingResourceLeakDetector detector = new AggregatingResourceLeakDetector();
+            for (int i = 0; i < 4; i++) {
+                leak(detector, 16, "first hint", "last hint");
+            }
+            awaitReports(detector, 3);
+            // The first leak of the site and each time the count doubled.
+            assertEquals(Arrays.asList(1L, 2L, 4L), detector.counts);
+            assertEquals(64L, (long) detector.bytes.get(2));
+            // Only the creation record and the last access are kept.
+            String records = detector.records.get(0);
+            assertTrue(records, records.contains("last hint"));
+            assertFalse(records, records.contains("first hint"));
+            assertTrue(records, records.contains("Created at:"));
+            assertEquals(1, new HashSet<String>(detector.records).size());
+
+            // A leak from another site is reported on its own.
+            leak(detector, 8, "other hint", "other hint");
+            awaitReports(detector, 4);
+            assertEquals(1L, (long) detector.counts.get(3));
+            assertEquals(8L, (long) detector.bytes.get(3));
+            assertTrue(detector.records.get(3).contains("other hint"));
+        } finally {
+            ResourceLeakDetector.setAggregateSites(aggregateSites);
+            ResourceLeakDetector.setLevel(level);
+        }
+    }
+
+    private static void leak(ResourceLeakDetector<Object> detector, int bytes, String firstHint, String lastHint) {
+        ResourceLeakTracker<Object> leak = detector.track(new Object(), bytes);
+        leak.record(firstHint);
+        leak.record(lastHint);
+    }
+
+    private static void awaitReports(AggregatingResourceLeakDetector detector, int reports)
+            throws InterruptedException {
+        while (detector.counts.size() < reports) {
+            System.gc();
+            Thread.sleep(10);
+            // Leaks are reported when the next object is tracked.
+            Object resource = new Object();
+            detector.track(resource).close(resource);
+        }
+    }
+
+    private static final class AggregatingResourceLeakDetector extends ResourceLeakDetector<Object> {
+        final List<String> records = Collections.synchronizedList(new ArrayList<String>());
+        final List<Long> counts = Collections.synchronizedList(new ArrayList<Long>());
+        final List<Long> bytes = Collections.synchronizedList(new ArrayList<Long>());
+
+        AggregatingResourceLeakDetector() {
+            // Sample every allocation
+            super(Object.class, 1);
+        }
+
+        @Override
+        protected void reportAggregatedLeak(String resourceType, String records, long count, long bytes) {
+            this.records.add(records);
+            this.bytes.add(bytes);
+            // Added last as the test waits for it.
+            counts.add(count);
+        }
+    }
+
     // Mimic the way how we implement our classes that should help with leak detection
     private static final  class LeakAwareResource implements Resource {
         private final Resource resource;
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AdaptiveSpinTaskQueueTest {
+
+    @Test
+    public void testFifoAcrossBatches() {
+        AdaptiveSpinTaskQueue queue = new AdaptiveSpinTaskQueue(Integer.MAX_VALUE, 4, 0);
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        for (int i = 0; i < 10; i++) {
+            Runnable task = new NoopTask();
+            tasks.add(task);
+            assertTrue(queue.offer(task));
+        }
+        assertEquals(10, queue.size());
+
+        assertSame(tasks.get(0), queue.peek());
+        assertSame(tasks.get(0), queue.poll());
+        // The rest of the first batch is buffered, but still counted.
+        assertEquals(9, queue.size());
+        Runnable late = new NoopTask();
+        queue.offer(late);
+        tasks.add(late);
+
+        for (int i = 1; i < tasks.size(); i++) {
+            assertSame(tasks.get(i), queue.poll());
+        }
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        assertNull(queue.peek());
+    }
+
+    @Test
+    public void testBoundedCapacity() {
+        AdaptiveSpinTaskQueue queue = new AdaptiveSpinTaskQueue(4096, 8, 0);
+        int offered = 0;
+        while (queue.offer(new NoopTask())) {
+            offered++;
+        }
+        assertEquals(4096, offered);
+        assertEquals(0, queue.remainingCapacity());
+        assertFalse(queue.offer(new NoopTask(), 1, TimeUnit.SECONDS));
+
+        List<Runnable> drained = new ArrayList<Runnable>();
+        assertEquals(4096, queue.drainTo(drained));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testPollTimesOut() throws Exception {
+        AdaptiveSpinTaskQueue queue = new AdaptiveSpinTaskQueue(16, 8, 64);
+        long start = System.nanoTime();
+        assertNull(queue.poll(50, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test(timeout = 5000)
+    public void testTakeIsWokenUpByProducers() throws Exception {
+        final AdaptiveSpinTaskQueue queue = new AdaptiveSpinTaskQueue(1024, 16, 16);
+        final int producers = 4;
+        final int tasksPerProducer = 10000;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < producers; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < tasksPerProducer; i++) {
+                            queue.put(new NoopTask());
+                            if ((i & 127) == 0) {
+                                // Give the consumer a chance to park.
+                                Thread.sleep(1);
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (int i = 0; i < producers * tasksPerProducer; i++) {
+            queue.take().run();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(timeout = 5000)
+    public void testSizeFromOtherThread() throws Exception {
+        final AdaptiveSpinTaskQueue queue = new AdaptiveSpinTaskQueue(Integer.MAX_VALUE, 16, 0);
+        final int tasks = 100000;
+        for (int i = 0; i < tasks; i++) {
+            queue.offer(new NoopTask());
+        }
+        final AtomicInteger badSize = new AtomicInteger(-1);
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread sampler = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!done.get()) {
+                    int size = queue.size();
+                    if (size < 0 || size > tasks) {
+                        badSize.set(size);
+                    }
+                }
+            }
+        });
+        sampler.start();
+        for (int i = 0; i < tasks; i++) {
+            queue.poll().run();
+        }
+        done.set(true);
+        sampler.join();
+        assertEquals(-1, badSize.get());
+        assertEquals(0, queue.size());
+    }
+
+    @Test(timeout = 5000)
+    public void testTakeIsInterruptible() throws Exception {
+        final AdaptiveSpinTaskQueue queue = new AdaptiveSpinTaskQueue(16, 8, 0);
+        final Thread consumer = Thread.currentThread();
+        Thread interrupter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignore) {
+                    // ignore
+                }
+                consumer.interrupt();
+            }
+        });
+        interrupter.start();
+        try {
+            queue.take();
+            fail();
+        } catch (InterruptedException expected) {
+            // expected
+        }
+        interrupter.join();
+    }
+
+    private static final class NoopTask implements Runnable {
+        @Override
+        public void run() {
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.concurrent.EventExecutorChooserFactory.EventExecutorChooser;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LoadAwareEventExecutorChooserFactoryTest {
+
+    private final List<EventExecutor> executors = new ArrayList<EventExecutor>();
+    private final Map<EventExecutor, Long> loads = new IdentityHashMap<EventExecutor, Long>();
+    private final LoadAwareEventExecutorChooserFactory factory = new LoadAwareEventExecutorChooserFactory(
+            new LoadAwareEventExecutorChooserFactory.LoadEstimator() {
+                @Override
+                public long load(EventExecutor executor) {
+                    return loads.get(executor);
+                }
+            });
+
+    @Test
+    public void testSingleExecutor() {
+        EventExecutor executor = ImmediateEventExecutor.INSTANCE;
+        EventExecutorChooser chooser = factory.newChooser(new EventExecutor[] { executor });
+        assertSame(executor, chooser.next());
+    }
+
+    @Test
+    public void testTwoExecutorsAlwaysPicksTheLessLoaded() {
+        EventExecutor[] executors = newExecutors(2);
+        loads.put(executors[0], 10L);
+        loads.put(executors[1], 3L);
+        EventExecutorChooser chooser = factory.newChooser(executors);
+        for (int i = 0; i < 100; i++) {
+            assertSame(executors[1], chooser.next());
+        }
+    }
+
+    @Test
+    public void testNeverPicksTheMostLoaded() {
+        EventExecutor[] executors = newExecutors(5);
+        for (int i = 0; i < executors.length; i++) {
+            loads.put(executors[i], (long) i);
+        }
+        EventExecutorChooser chooser = factory.newChooser(executors);
+        Map<EventExecutor, Integer> counts = new IdentityHashMap<EventExecutor, Integer>();
+        for (int i = 0; i < 10000; i++) {
+            EventExecutor executor = chooser.next();
+            assertNotSame(executors[executors.length - 1], executor);
+            Integer count = counts.get(executor);
+            counts.put(executor, count == null ? 1 : count + 1);
+        }
+        // Every other executor is less loaded than at least one other, so all of them are picked.
+        assertEquals(executors.length - 1, counts.size());
+        assertTrue(counts.get(executors[0]) > counts.get(executors[executors.length - 2]));
+    }
+
+    @Test
+    public void testPendingTasks() throws Exception {
+        final DefaultEventExecutor executor = new DefaultEventExecutor();
+        try {
+            assertEquals(0, LoadAwareEventExecutorChooserFactory.PENDING_TASKS.load(executor));
+            final Promise<Void> blocked = executor.newPromise();
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    blocked.awaitUninterruptibly();
+                }
+            });
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+            assertTrue(LoadAwareEventExecutorChooserFactory.PENDING_TASKS.load(executor) > 0);
+            blocked.setSuccess(null);
+            // Once a task submitted last has run, all the tasks before it were taken from the queue as well.
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).sync();
+            assertEquals(0, LoadAwareEventExecutorChooserFactory.PENDING_TASKS.load(executor));
+        } finally {
+            executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (EventExecutor executor : executors) {
+            executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    private EventExecutor[] newExecutors(int count) {
+        EventExecutor[] executors = new EventExecutor[count];
+        for (int i = 0; i < count; i++) {
+            executors[i] = new DefaultEventExecutor();
+            this.executors.add(executors[i]);
+        }
+        return executors;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StallDetectorTest {
+
+    private final DefaultEventExecutorGroup group = new DefaultEventExecutorGroup(1);
+    private final SingleThreadEventExecutor executor = (SingleThreadEventExecutor) group.next();
+    private final BlockingQueue<StallDetector.StallSite> stalls = new LinkedBlockingQueue<StallDetector.StallSite>();
+    private final StallDetector.StallListener listener = new StallDetector.StallListener() {
+        @Override
+        public void stallDetected(EventExecutor executor, long stallNanos, StackTraceElement[] stackTrace,
+                                  StallDetector.StallSite site) {
+            assertSame(StallDetectorTest.this.executor, executor);
+            assertTrue(stallNanos >= TimeUnit.MILLISECONDS.toNanos(50));
+            stalls.add(site);
+        }
+    };
+
+    @After
+    public void tearDown() {
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Test(timeout = 10000)
+    public void testDetectsStall() throws Exception {
+        StallDetector detector = new StallDetector(50, TimeUnit.MILLISECONDS, 32, listener);
+        detector.watch(group);
+        detector.start();
+        try {
+            for (int i = 0; i < 2; i++) {
+                final CountDownLatch latch = new CountDownLatch(1);
+                Future<?> future = executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        blockOn(latch);
+                    }
+                });
+                StallDetector.StallSite site = stalls.take();
+                latch.countDown();
+                future.syncUninterruptibly();
+
+                assertEquals(i + 1, site.count());
+                assertTrue(site.toString(), containsMethod(site.frames(), "blockOn"));
+            }
+            List<StallDetector.StallSite> sites = detector.stallSites();
+            assertEquals(1, sites.size());
+            assertEquals(2, sites.get(0).count());
+        } finally {
+            detector.stop();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testReportsStallOnce() throws Exception {
+        StallDetector detector = new StallDetector(50, TimeUnit.MILLISECONDS, 8, listener);
+        detector.watch(executor);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        Future<?> future = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                blockOn(latch);
+            }
+        });
+        started.await();
+        long now = AbstractScheduledEventExecutor.nanoTime();
+        assertEquals(0, detector.check(now));
+        assertEquals(1, detector.check(now + TimeUnit.SECONDS.toNanos(1)));
+        assertEquals(0, detector.check(now + TimeUnit.SECONDS.toNanos(2)));
+        assertEquals(1, stalls.size());
+
+        // Nothing is reported once the executor is not watched anymore.
+        detector.unwatch(executor);
+        latch.countDown();
+        future.syncUninterruptibly();
+        awaitIdle(executor);
+        assertEquals(0, detector.check(now + TimeUnit.SECONDS.toNanos(3)));
+    }
+
+    @Test(timeout = 10000)
+    public void testIdleExecutorIsNotReported() throws Exception {
+        StallDetector detector = new StallDetector(50, TimeUnit.MILLISECONDS, 8, listener);
+        detector.watch(executor);
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).syncUninterruptibly();
+        awaitIdle(executor);
+        assertEquals(0, detector.check(AbstractScheduledEventExecutor.nanoTime() + TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWatchedByOtherDetector() {
+        new StallDetector(1, TimeUnit.SECONDS, 8, listener).watch(executor);
+        new StallDetector(1, TimeUnit.SECONDS, 8, listener).watch(executor);
+    }
+
+    private static void awaitIdle(SingleThreadEventExecutor executor) throws InterruptedException {
+        // The future of a task is completed before the executor marks the task as done.
+        while (executor.workStartTime() != 0) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static void blockOn(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean containsMethod(List<StackTraceElement> frames, String methodName) {
+        for (StackTraceElement frame: frames) {
+            if (frame.getMethodName().equals(methodName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.DefaultPriorityQueue;
+import io.netty.util.internal.PriorityQueue;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelScheduledTaskQueueTest {
+    private static final Runnable TEST_RUNNABLE = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private static final Comparator<ScheduledFutureTask<?>> COMPARATOR = new Comparator<ScheduledFutureTask<?>>() {
+        @Override
+        public int compare(ScheduledFutureTask<?> o1, ScheduledFutureTask<?> o2) {
+            return o1.compareTo(o2);
+        }
+    };
+
+    private final TestScheduledEventExecutor executor = new TestScheduledEventExecutor(false);
+    private final Map<ScheduledFutureTask<?>, ScheduledFutureTask<?>> heapTasksByWheelTask =
+            new IdentityHashMap<ScheduledFutureTask<?>, ScheduledFutureTask<?>>();
+    private long nextId;
+
+    @Test
+    public void testSameOrderAsHeap() {
+        Random random = new Random(42);
+        TimingWheelScheduledTaskQueue wheel =
+                new TimingWheelScheduledTaskQueue(COMPARATOR, TimeUnit.MICROSECONDS.toNanos(100));
+        DefaultPriorityQueue<ScheduledFutureTask<?>> heap =
+                new DefaultPriorityQueue<ScheduledFutureTask<?>>(COMPARATOR, 11);
+        List<ScheduledFutureTask<?>> wheelTasks = new ArrayList<ScheduledFutureTask<?>>();
+        List<ScheduledFutureTask<?>> heapTasks = new ArrayList<ScheduledFutureTask<?>>();
+
+        for (int round = 0; round < 20000; round++) {
+            int action = random.nextInt(10);
+            if (action < 6) {
+                long deadline = randomDeadline(random);
+                long id = ++nextId;
+                ScheduledFutureTask<?> wheelTask = newTask(deadline, id);
+                ScheduledFutureTask<?> heapTask = newTask(deadline, id);
+                assertTrue(wheel.add(wheelTask));
+                assertTrue(heap.add(heapTask));
+                heapTasksByWheelTask.put(wheelTask, heapTask);
+                wheelTasks.add(wheelTask);
+                heapTasks.add(heapTask);
+            } else if (action < 8 && !wheelTasks.isEmpty()) {
+                int index = random.nextInt(wheelTasks.size());
+                assertEquals(heap.removeTyped(heapTasks.remove(index)), wheel.removeTyped(wheelTasks.remove(index)));
+            } else {
+                assertSameTask(heap.poll(), wheel.poll());
+            }
+            assertEquals(heap.size(), wheel.size());
+        }
+        while (!heap.isEmpty()) {
+            assertSameTask(heap.poll(), wheel.poll());
+        }
+        assertTrue(wheel.isEmpty());
+        assertNull(wheel.poll());
+    }
+
+    @Test
+    public void testRemoveAndContains() {
+        TimingWheelScheduledTaskQueue queue =
+                new TimingWheelScheduledTaskQueue(COMPARATOR, TimeUnit.MILLISECONDS.toNanos(1));
+        long now = ScheduledFutureTask.nanoTime();
+        ScheduledFutureTask<?> near = newTask(now, ++nextId);
+        ScheduledFutureTask<?> far = newTask(now + TimeUnit.HOURS.toNanos(1), ++nextId);
+        ScheduledFutureTask<?> farthest = newTask(Long.MAX_VALUE, ++nextId);
+        queue.add(near);
+        queue.add(far);
+        queue.add(farthest);
+        assertEquals(3, queue.size());
+        assertTrue(queue.containsTyped(far));
+        assertEquals(3, queue.toArray().length);
+
+        assertTrue(queue.removeTyped(far));
+        assertFalse(queue.containsTyped(far));
+        assertFalse(queue.removeTyped(far));
+        assertEquals(2, queue.size());
+
+        assertSame(near, queue.poll());
+        assertSame(farthest, queue.peek());
+        assertTrue(queue.removeTyped(farthest));
+        assertTrue(queue.isEmpty());
+
+        // Removed tasks can be added again.
+        queue.add(far);
+        assertSame(far, queue.poll());
+    }
+
+    @Test
+    public void testClear() {
+        TimingWheelScheduledTaskQueue queue =
+                new TimingWheelScheduledTaskQueue(COMPARATOR, TimeUnit.MILLISECONDS.toNanos(1));
+        long now = ScheduledFutureTask.nanoTime();
+        ScheduledFutureTask<?> task = newTask(now + TimeUnit.MINUTES.toNanos(1), ++nextId);
+        queue.add(newTask(now, ++nextId));
+        queue.add(task);
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.peek());
+        queue.add(task);
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void testExecutorUsesTimingWheel() {
+        TestScheduledEventExecutor executor = new TestScheduledEventExecutor(true);
+        ScheduledFuture<?> future = executor.schedule(TEST_RUNNABLE, 1, TimeUnit.HOURS);
+        executor.schedule(TEST_RUNNABLE, 0, TimeUnit.NANOSECONDS);
+        PriorityQueue<ScheduledFutureTask<?>> queue = executor.scheduledTaskQueue();
+        assertTrue(queue instanceof TimingWheelScheduledTaskQueue);
+        assertEquals(2, queue.size());
+
+        assertTrue(future.cancel(false));
+        assertEquals(1, queue.size());
+        assertNotNull(executor.pollScheduledTask());
+        assertNull(executor.pollScheduledTask());
+        assertTrue(queue.isEmpty());
+    }
+
+    private static long randomDeadline(Random random) {
+        long now = ScheduledFutureTask.nanoTime();
+        switch (random.nextInt(6)) {
+            case 0:
+                // Already due, or even consumed.
+                return random.nextBoolean() ? 0 : Math.max(0, now - random.nextInt(1000000));
+            case 1:
+                return now + random.nextInt(1000000);
+            case 2:
+                return now + (long) random.nextInt(100000) * 1000000;
+            case 3:
+                return now + (random.nextLong() >>> 8);
+            case 4:
+                return Long.MAX_VALUE;
+            default:
+                // Many tasks which are due at the same time.
+                return now + TimeUnit.SECONDS.toNanos(random.nextInt(4));
+        }
+    }
+
+    private ScheduledFutureTask<?> newTask(long deadline, long id) {
+        return new ScheduledFutureTask<Void>(executor, TEST_RUNNABLE, deadline).setId(id);
+    }
+
+    private void assertSameTask(ScheduledFutureTask<?> expected, ScheduledFutureTask<?> actual) {
+        if (expected == null) {
+            assertNull(actual);
+        } else {
+            assertSame(expected, heapTasksByWheelTask.get(actual));
+        }
+    }
+
+    private static final class TestScheduledEventExecutor extends AbstractScheduledEventExecutor {
+        private final boolean timingWheel;
+
+        TestScheduledEventExecutor(boolean timingWheel) {
+            this.timingWheel = timingWheel;
+        }
+
+        @Override
+        protected boolean useTimingWheelScheduledTaskQueue() {
+            return timingWheel;
+        }
+
+        @Override
+        public boolean isShuttingDown() {
+            return false;
+        }
+
+        @Override
+        public boolean inEventLoop(Thread thread) {
+            return true;
+        }
+
+        @Override
+        public void shutdown() {
+            // NOOP
+        }
+
+        @Override
+        public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Future<?> terminationFuture() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
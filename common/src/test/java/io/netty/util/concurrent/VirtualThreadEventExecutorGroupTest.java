@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VirtualThreadEventExecutorGroupTest {
+
+    @Test(timeout = 10000)
+    public void testExecutorCount() {
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup(8, 2);
+        try {
+            assertEquals(VirtualThreadEventExecutorGroup.isVirtualThreadsAvailable(), group.isUsingVirtualThreads());
+            int executors = 0;
+            for (EventExecutor executor: group) {
+                assertTrue(executor instanceof OrderedEventExecutor);
+                executors++;
+            }
+            assertEquals(group.isUsingVirtualThreads() ? 8 : 2, executors);
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTasksOfExecutorRunInOrder() throws Exception {
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup(4, 2);
+        try {
+            EventExecutor executor = group.next();
+            final List<Integer> order = new ArrayList<Integer>();
+            for (int i = 0; i < 1000; i++) {
+                final int n = i;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        order.add(n);
+                    }
+                });
+            }
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).sync();
+            assertEquals(1000, order.size());
+            for (int i = 0; i < order.size(); i++) {
+                assertEquals(i, (int) order.get(i));
+            }
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testBlockingTaskDoesNotBlockOtherExecutors() throws Exception {
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup(2, 2);
+        try {
+            EventExecutor blocked = group.next();
+            EventExecutor other = group.next();
+            assertFalse(blocked == other);
+
+            final CountDownLatch latch = new CountDownLatch(1);
+            Future<?> blocking = blocked.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    latch.await();
+                    return null;
+                }
+            });
+            Future<Boolean> otherTask = other.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return true;
+                }
+            });
+            assertTrue(otherTask.sync().getNow());
+            assertFalse(blocking.isDone());
+            latch.countDown();
+            blocking.sync();
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+}
@@ -25,6 +25,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
 import io.netty.util.internal.ObjectUtil;
 
 import java.util.concurrent.ScheduledFuture;
@@ -93,6 +94,14 @@ import java.util.concurrent.TimeUnit;
  * ...
  * </pre>
  *
+ * <h3>Coalesced idle checks</h3>
+ * By default up to three tasks are scheduled per channel and rescheduled whenever they expire. When
+ * {@code -Dio.netty.handler.timeout.coalesceIdleChecks=true} is set, all the channels of an {@link EventLoop} are
+ * checked by a single periodic task of that {@link EventLoop} instead, which saves the scheduled tasks of many
+ * mostly idle connections. The events are then fired up to
+ * {@code -Dio.netty.handler.timeout.idleCheckIntervalMillis} (default: {@code 100}) late. Timeouts which are shorter
+ * than ten of these intervals are still scheduled one by one.
+ *
  * @see ReadTimeoutHandler
  * @see WriteTimeoutHandler
  */
@@ -124,7 +133,9 @@ public class IdleStateHandler extends ChannelDuplexHandler {
     private ScheduledFuture<?> allIdleTimeout;
     private boolean firstAllIdleEvent = true;
 
-    private byte state; // 0 - none, 1 - initialized, 2 - destroyed
+    private IdleCheck idleCheck;
+
+    private byte state; // 0 - none, 1 - initialized, 2 - destroyed, 3 - suspended
     private boolean reading;
 
     private long lastChangeCheckTimeStamp;
@@ -262,6 +273,17 @@ public class IdleStateHandler extends ChannelDuplexHandler {
         super.channelRegistered(ctx);
     }
 
+    @Override
+    public void channelUnregistered(ChannelHandlerContext ctx) throws Exception {
+        // The channel may be registered with another EventLoop later on, see ChannelMigration. The timeouts are
+        // scheduled again by channelRegistered() then.
+        if (state == 1) {
+            cancelTimeouts();
+            state = 3;
+        }
+        super.channelUnregistered(ctx);
+    }
+
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
         // This method will be invoked only if this handler was added
@@ -312,23 +334,34 @@ public class IdleStateHandler extends ChannelDuplexHandler {
         case 1:
         case 2:
             return;
+        case 3:
+            // Registered again, keep counting from the last read and write.
+            state = 1;
+            break;
+        default:
+            state = 1;
+            initOutputChanged(ctx);
+            lastReadTime = lastWriteTime = ticksInNanos();
+            break;
         }
 
-        state = 1;
-        initOutputChanged(ctx);
-
-        lastReadTime = lastWriteTime = ticksInNanos();
+        IdleStateSweeper sweeper = sweeper(ctx);
+        if (sweeper != null) {
+            idleCheck = new IdleCheck(ctx, sweeper);
+            return;
+        }
+        long now = ticksInNanos();
         if (readerIdleTimeNanos > 0) {
             readerIdleTimeout = schedule(ctx, new ReaderIdleTimeoutTask(ctx),
-                    readerIdleTimeNanos, TimeUnit.NANOSECONDS);
+                    readerIdleDelay(now), TimeUnit.NANOSECONDS);
         }
         if (writerIdleTimeNanos > 0) {
             writerIdleTimeout = schedule(ctx, new WriterIdleTimeoutTask(ctx),
-                    writerIdleTimeNanos, TimeUnit.NANOSECONDS);
+                    writerIdleDelay(now), TimeUnit.NANOSECONDS);
         }
         if (allIdleTimeNanos > 0) {
             allIdleTimeout = schedule(ctx, new AllIdleTimeoutTask(ctx),
-                    allIdleTimeNanos, TimeUnit.NANOSECONDS);
+                    allIdleDelay(now), TimeUnit.NANOSECONDS);
         }
     }
 
@@ -346,9 +379,29 @@ public class IdleStateHandler extends ChannelDuplexHandler {
         return ctx.executor().schedule(task, delay, unit);
     }
 
+    /**
+     * This method is visible for testing!
+     */
+    IdleStateSweeper sweeper(ChannelHandlerContext ctx) {
+        long minTimeoutNanos = Long.MAX_VALUE;
+        if (readerIdleTimeNanos > 0) {
+            minTimeoutNanos = readerIdleTimeNanos;
+        }
+        if (writerIdleTimeNanos > 0) {
+            minTimeoutNanos = Math.min(minTimeoutNanos, writerIdleTimeNanos);
+        }
+        if (allIdleTimeNanos > 0) {
+            minTimeoutNanos = Math.min(minTimeoutNanos, allIdleTimeNanos);
+        }
+        return minTimeoutNanos == Long.MAX_VALUE ? null : IdleStateSweeper.sweeper(ctx.executor(), minTimeoutNanos);
+    }
+
     private void destroy() {
         state = 2;
+        cancelTimeouts();
+    }
 
+    private void cancelTimeouts() {
         if (readerIdleTimeout != null) {
             readerIdleTimeout.cancel(false);
             readerIdleTimeout = null;
@@ -361,6 +414,10 @@ public class IdleStateHandler extends ChannelDuplexHandler {
             allIdleTimeout.cancel(false);
             allIdleTimeout = null;
         }
+        if (idleCheck != null) {
+            idleCheck.sweeper.remove(idleCheck);
+            idleCheck = null;
+        }
     }
 
     /**
@@ -459,6 +516,70 @@ public class IdleStateHandler extends ChannelDuplexHandler {
         return false;
     }
 
+    private long readerIdleDelay(long now) {
+        long nextDelay = readerIdleTimeNanos;
+        if (!reading) {
+            nextDelay -= now - lastReadTime;
+        }
+        return nextDelay;
+    }
+
+    private long writerIdleDelay(long now) {
+        return writerIdleTimeNanos - (now - lastWriteTime);
+    }
+
+    private long allIdleDelay(long now) {
+        long nextDelay = allIdleTimeNanos;
+        if (!reading) {
+            nextDelay -= now - Math.max(lastReadTime, lastWriteTime);
+        }
+        return nextDelay;
+    }
+
+    private void fireReaderIdle(ChannelHandlerContext ctx) {
+        boolean first = firstReaderIdleEvent;
+        firstReaderIdleEvent = false;
+
+        try {
+            IdleStateEvent event = newIdleStateEvent(IdleState.READER_IDLE, first);
+            channelIdle(ctx, event);
+        } catch (Throwable t) {
+            ctx.fireExceptionCaught(t);
+        }
+    }
+
+    private void fireWriterIdle(ChannelHandlerContext ctx) {
+        boolean first = firstWriterIdleEvent;
+        firstWriterIdleEvent = false;
+
+        try {
+            if (hasOutputChanged(ctx, first)) {
+                return;
+            }
+
+            IdleStateEvent event = newIdleStateEvent(IdleState.WRITER_IDLE, first);
+            channelIdle(ctx, event);
+        } catch (Throwable t) {
+            ctx.fireExceptionCaught(t);
+        }
+    }
+
+    private void fireAllIdle(ChannelHandlerContext ctx) {
+        boolean first = firstAllIdleEvent;
+        firstAllIdleEvent = false;
+
+        try {
+            if (hasOutputChanged(ctx, first)) {
+                return;
+            }
+
+            IdleStateEvent event = newIdleStateEvent(IdleState.ALL_IDLE, first);
+            channelIdle(ctx, event);
+        } catch (Throwable t) {
+            ctx.fireExceptionCaught(t);
+        }
+    }
+
     private abstract static class AbstractIdleTask implements Runnable {
 
         private final ChannelHandlerContext ctx;
@@ -487,24 +608,11 @@ public class IdleStateHandler extends ChannelDuplexHandler {
 
         @Override
         protected void run(ChannelHandlerContext ctx) {
-            long nextDelay = readerIdleTimeNanos;
-            if (!reading) {
-                nextDelay -= ticksInNanos() - lastReadTime;
-            }
-
+            long nextDelay = readerIdleDelay(ticksInNanos());
             if (nextDelay <= 0) {
                 // Reader is idle - set a new timeout and notify the callback.
                 readerIdleTimeout = schedule(ctx, this, readerIdleTimeNanos, TimeUnit.NANOSECONDS);
-
-                boolean first = firstReaderIdleEvent;
-                firstReaderIdleEvent = false;
-
-                try {
-                    IdleStateEvent event = newIdleStateEvent(IdleState.READER_IDLE, first);
-                    channelIdle(ctx, event);
-                } catch (Throwable t) {
-                    ctx.fireExceptionCaught(t);
-                }
+                fireReaderIdle(ctx);
             } else {
                 // Read occurred before the timeout - set a new timeout with shorter delay.
                 readerIdleTimeout = schedule(ctx, this, nextDelay, TimeUnit.NANOSECONDS);
@@ -520,26 +628,11 @@ public class IdleStateHandler extends ChannelDuplexHandler {
 
         @Override
         protected void run(ChannelHandlerContext ctx) {
-
-            long lastWriteTime = IdleStateHandler.this.lastWriteTime;
-            long nextDelay = writerIdleTimeNanos - (ticksInNanos() - lastWriteTime);
+            long nextDelay = writerIdleDelay(ticksInNanos());
             if (nextDelay <= 0) {
                 // Writer is idle - set a new timeout and notify the callback.
                 writerIdleTimeout = schedule(ctx, this, writerIdleTimeNanos, TimeUnit.NANOSECONDS);
-
-                boolean first = firstWriterIdleEvent;
-                firstWriterIdleEvent = false;
-
-                try {
-                    if (hasOutputChanged(ctx, first)) {
-                        return;
-                    }
-
-                    IdleStateEvent event = newIdleStateEvent(IdleState.WRITER_IDLE, first);
-                    channelIdle(ctx, event);
-                } catch (Throwable t) {
-                    ctx.fireExceptionCaught(t);
-                }
+                fireWriterIdle(ctx);
             } else {
                 // Write occurred before the timeout - set a new timeout with shorter delay.
                 writerIdleTimeout = schedule(ctx, this, nextDelay, TimeUnit.NANOSECONDS);
@@ -555,29 +648,12 @@ public class IdleStateHandler extends ChannelDuplexHandler {
 
         @Override
         protected void run(ChannelHandlerContext ctx) {
-
-            long nextDelay = allIdleTimeNanos;
-            if (!reading) {
-                nextDelay -= ticksInNanos() - Math.max(lastReadTime, lastWriteTime);
-            }
+            long nextDelay = allIdleDelay(ticksInNanos());
             if (nextDelay <= 0) {
                 // Both reader and writer are idle - set a new timeout and
                 // notify the callback.
                 allIdleTimeout = schedule(ctx, this, allIdleTimeNanos, TimeUnit.NANOSECONDS);
-
-                boolean first = firstAllIdleEvent;
-                firstAllIdleEvent = false;
-
-                try {
-                    if (hasOutputChanged(ctx, first)) {
-                        return;
-                    }
-
-                    IdleStateEvent event = newIdleStateEvent(IdleState.ALL_IDLE, first);
-                    channelIdle(ctx, event);
-                } catch (Throwable t) {
-                    ctx.fireExceptionCaught(t);
-                }
+                fireAllIdle(ctx);
             } else {
                 // Either read or write occurred before the timeout - set a new
                 // timeout with shorter delay.
@@ -585,4 +661,82 @@ public class IdleStateHandler extends ChannelDuplexHandler {
             }
         }
     }
+
+    /**
+     * Checks all idle states of a channel when it is swept by the {@link IdleStateSweeper} of its {@link EventLoop},
+     * remembering for each state when it has to be checked next just like the scheduled tasks would.
+     */
+    private final class IdleCheck extends IdleStateSweeper.Entry {
+
+        private final ChannelHandlerContext ctx;
+        private final IdleStateSweeper sweeper;
+        private long nextReaderCheck;
+        private long nextWriterCheck;
+        private long nextAllCheck;
+
+        IdleCheck(ChannelHandlerContext ctx, IdleStateSweeper sweeper) {
+            this.ctx = ctx;
+            this.sweeper = sweeper;
+            long now = ticksInNanos();
+            nextReaderCheck = now + readerIdleDelay(now);
+            nextWriterCheck = now + writerIdleDelay(now);
+            nextAllCheck = now + allIdleDelay(now);
+            sweeper.add(this, nextCheck() - now);
+        }
+
+        @Override
+        long sweep() {
+            if (!ctx.channel().isOpen()) {
+                return -1;
+            }
+
+            // The events may remove this handler or close the channel, stop as soon as that happened.
+            long now = ticksInNanos();
+            if (readerIdleTimeNanos > 0 && nextReaderCheck - now <= 0) {
+                long nextDelay = readerIdleDelay(now);
+                if (nextDelay <= 0) {
+                    nextReaderCheck = now + readerIdleTimeNanos;
+                    fireReaderIdle(ctx);
+                } else {
+                    nextReaderCheck = now + nextDelay;
+                }
+            }
+            if (state == 1 && writerIdleTimeNanos > 0 && nextWriterCheck - now <= 0) {
+                long nextDelay = writerIdleDelay(now);
+                if (nextDelay <= 0) {
+                    nextWriterCheck = now + writerIdleTimeNanos;
+                    fireWriterIdle(ctx);
+                } else {
+                    nextWriterCheck = now + nextDelay;
+                }
+            }
+            if (state == 1 && allIdleTimeNanos > 0 && nextAllCheck - now <= 0) {
+                long nextDelay = allIdleDelay(now);
+                if (nextDelay <= 0) {
+                    nextAllCheck = now + allIdleTimeNanos;
+                    fireAllIdle(ctx);
+                } else {
+                    nextAllCheck = now + nextDelay;
+                }
+            }
+            return state == 1 ? nextCheck() - now : -1;
+        }
+
+        private long nextCheck() {
+            long nextCheck = 0;
+            boolean found = false;
+            if (readerIdleTimeNanos > 0) {
+                nextCheck = nextReaderCheck;
+                found = true;
+            }
+            if (writerIdleTimeNanos > 0 && (!found || nextWriterCheck - nextCheck < 0)) {
+                nextCheck = nextWriterCheck;
+                found = true;
+            }
+            if (allIdleTimeNanos > 0 && (!found || nextAllCheck - nextCheck < 0)) {
+                nextCheck = nextAllCheck;
+            }
+            return nextCheck;
+        }
+    }
 }
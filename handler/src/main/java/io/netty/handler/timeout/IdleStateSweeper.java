@@ -0,0 +1,252 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.timeout;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the idleness of all the channels of an {@link EventExecutor} with a single periodic task, instead of
+ * scheduling one task per channel and idle state which is rescheduled on every expiry.
+ * <p>
+ * The time at which each tracked {@link Entry} must be looked at next is kept in a {@code long[]}, so a tick only
+ * walks over an array and touches the channels which may have become idle. The entries are visited in batches of
+ * {@code io.netty.handler.timeout.idleCheckBatchSize} which are submitted as separate tasks so that a sweep over
+ * many channels does not delay I/O. Idleness is detected up to one tick of
+ * {@code io.netty.handler.timeout.idleCheckIntervalMillis} late, which is why timeouts shorter than
+ * {@value #MIN_TICKS_PER_TIMEOUT} ticks keep using their own scheduled tasks.
+ * <p>
+ * This class is not thread-safe and must only be used from the thread of its {@link EventExecutor}.
+ */
+class IdleStateSweeper {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(IdleStateSweeper.class);
+
+    private static final int MIN_TICKS_PER_TIMEOUT = 10;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final boolean ENABLED;
+    private static final long DEFAULT_TICK_NANOS;
+    private static final int DEFAULT_BATCH_SIZE;
+
+    private static final FastThreadLocal<IdleStateSweeper> SWEEPERS = new FastThreadLocal<IdleStateSweeper>();
+
+    static {
+        ENABLED = SystemPropertyUtil.getBoolean("io.netty.handler.timeout.coalesceIdleChecks", false);
+        DEFAULT_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(
+                Math.max(1, SystemPropertyUtil.getInt("io.netty.handler.timeout.idleCheckIntervalMillis", 100)));
+        DEFAULT_BATCH_SIZE = Math.max(1, SystemPropertyUtil.getInt("io.netty.handler.timeout.idleCheckBatchSize",
+                4096));
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("-Dio.netty.handler.timeout.coalesceIdleChecks: {}", ENABLED);
+            logger.debug("-Dio.netty.handler.timeout.idleCheckIntervalMillis: {}",
+                    TimeUnit.NANOSECONDS.toMillis(DEFAULT_TICK_NANOS));
+            logger.debug("-Dio.netty.handler.timeout.idleCheckBatchSize: {}", DEFAULT_BATCH_SIZE);
+        }
+    }
+
+    /**
+     * Returns the {@link IdleStateSweeper} of the given {@link EventExecutor} or {@code null} if the timeouts should
+     * be scheduled one by one, because coalescing is disabled or the shortest timeout is too short for it.
+     * Must be called from the thread of the {@link EventExecutor}.
+     */
+    static IdleStateSweeper sweeper(EventExecutor executor, long minTimeoutNanos) {
+        if (!ENABLED || minTimeoutNanos < DEFAULT_TICK_NANOS * MIN_TICKS_PER_TIMEOUT || !executor.inEventLoop()) {
+            return null;
+        }
+        IdleStateSweeper sweeper = SWEEPERS.getIfExists();
+        if (sweeper == null || sweeper.executor != executor) {
+            if (sweeper != null && sweeper.size != 0) {
+                // The thread runs more than one executor, like the EmbeddedEventLoop does.
+                return null;
+            }
+            sweeper = new IdleStateSweeper(executor, DEFAULT_TICK_NANOS, DEFAULT_BATCH_SIZE);
+            SWEEPERS.set(sweeper);
+        }
+        return sweeper;
+    }
+
+    private final Runnable tickTask = new Runnable() {
+        @Override
+        public void run() {
+            tick();
+        }
+    };
+
+    private final Runnable continueSweepTask = new Runnable() {
+        @Override
+        public void run() {
+            sweep();
+        }
+    };
+
+    private final EventExecutor executor;
+    private final long tickNanos;
+    private final int batchSize;
+
+    private Entry[] entries = new Entry[INITIAL_CAPACITY];
+    private long[] deadlines = new long[INITIAL_CAPACITY];
+    private int size;
+
+    private ScheduledFuture<?> tickFuture;
+    private boolean sweeping;
+    private int cursor;
+
+    IdleStateSweeper(EventExecutor executor, long tickNanos, int batchSize) {
+        this.executor = executor;
+        this.tickNanos = tickNanos;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Starts tracking the {@link Entry} which will be swept for the first time after {@code delayNanos}.
+     */
+    void add(Entry entry, long delayNanos) {
+        assert executor.inEventLoop();
+        if (entry.index >= 0) {
+            throw new IllegalStateException("entry is already tracked");
+        }
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, size << 1);
+            deadlines = Arrays.copyOf(deadlines, size << 1);
+        }
+        entry.index = size;
+        entries[size] = entry;
+        deadlines[size] = ticksInNanos() + delayNanos;
+        size++;
+
+        if (tickFuture == null) {
+            tickFuture = executor.scheduleAtFixedRate(tickTask, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Stops tracking the {@link Entry}. Does nothing if it is not tracked.
+     */
+    void remove(Entry entry) {
+        assert executor.inEventLoop();
+        int index = entry.index;
+        if (index < 0) {
+            return;
+        }
+        entry.index = -1;
+
+        int last = --size;
+        if (index != last) {
+            Entry moved = entries[last];
+            entries[index] = moved;
+            deadlines[index] = deadlines[last];
+            moved.index = index;
+        }
+        entries[last] = null;
+
+        if (size == 0 && tickFuture != null) {
+            tickFuture.cancel(false);
+            tickFuture = null;
+        }
+    }
+
+    /**
+     * Returns the number of tracked entries.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * This method is visible for testing!
+     */
+    long ticksInNanos() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Starts a new sweep unless the previous one is still in progress. Called once per tick.
+     */
+    void tick() {
+        if (!sweeping) {
+            sweeping = true;
+            cursor = 0;
+            sweep();
+        }
+    }
+
+    private void sweep() {
+        long now = ticksInNanos();
+        int end = cursor + batchSize;
+        while (cursor < size && cursor < end) {
+            int index = cursor;
+            if (deadlines[index] - now > 0) {
+                cursor++;
+                continue;
+            }
+
+            Entry entry = entries[index];
+            long nextDelay;
+            try {
+                nextDelay = entry.sweep();
+            } catch (Throwable t) {
+                logger.warn("An exception was thrown by {}.sweep()", entry.getClass().getName(), t);
+                nextDelay = -1;
+            }
+
+            if (entry.index != index) {
+                // The entry was removed while it was swept and another one took its slot, check that one next.
+                continue;
+            }
+            if (nextDelay < 0) {
+                remove(entry);
+            } else {
+                deadlines[index] = now + nextDelay;
+                cursor++;
+            }
+        }
+
+        if (cursor < size) {
+            // Let the executor run other tasks and I/O before sweeping the next batch.
+            executor.execute(continueSweepTask);
+        } else {
+            sweeping = false;
+        }
+    }
+
+    /**
+     * Something which is checked for idleness by an {@link IdleStateSweeper}.
+     */
+    abstract static class Entry {
+        private int index = -1;
+
+        /**
+         * Returns {@code true} if this entry is tracked by an {@link IdleStateSweeper}.
+         */
+        final boolean isTracked() {
+            return index >= 0;
+        }
+
+        /**
+         * Checks for idleness and fires the events if needed. Returns the nanoseconds after which this method must
+         * be called again, or a negative value to stop tracking this entry.
+         */
+        abstract long sweep();
+    }
+}
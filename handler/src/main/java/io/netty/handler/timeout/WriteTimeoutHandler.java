@@ -24,6 +24,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
 import io.netty.util.internal.ObjectUtil;
 
 import java.util.concurrent.ScheduledFuture;
@@ -60,6 +61,10 @@ import java.util.concurrent.TimeUnit;
  * bootstrap.childHandler(new MyChannelInitializer());
  * ...
  * </pre>
+ *
+ * When {@code -Dio.netty.handler.timeout.coalesceIdleChecks=true} is set, the pending writes are checked by the same
+ * periodic task of the {@link EventLoop} as the {@link IdleStateHandler}s, instead of scheduling a task per write.
+ *
  * @see ReadTimeoutHandler
  * @see IdleStateHandler
  */
@@ -73,6 +78,8 @@ public class WriteTimeoutHandler extends ChannelOutboundHandlerAdapter {
      */
     private WriteTimeoutTask lastTask;
 
+    private WriteTimeoutCheck timeoutCheck;
+
     private boolean closed;
 
     /**
@@ -117,17 +124,54 @@ public class WriteTimeoutHandler extends ChannelOutboundHandlerAdapter {
         WriteTimeoutTask task = lastTask;
         lastTask = null;
         while (task != null) {
-            task.scheduledFuture.cancel(false);
+            if (task.scheduledFuture != null) {
+                task.scheduledFuture.cancel(false);
+            }
             WriteTimeoutTask prev = task.prev;
             task.prev = null;
             task.next = null;
             task = prev;
         }
+        if (timeoutCheck != null) {
+            timeoutCheck.sweeper.remove(timeoutCheck);
+            timeoutCheck = null;
+        }
+    }
+
+    @Override
+    public void deregister(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        if (timeoutCheck != null) {
+            // The channel may be registered with another EventLoop, which has its own IdleStateSweeper. Schedule
+            // the pending writes one by one instead, they are handed over to the new EventLoop when they run.
+            timeoutCheck.sweeper.remove(timeoutCheck);
+            timeoutCheck = null;
+            long now = ticksInNanos();
+            for (WriteTimeoutTask task = lastTask; task != null; task = task.prev) {
+                task.scheduledFuture = ctx.executor().schedule(task, task.deadline - now, TimeUnit.NANOSECONDS);
+            }
+        }
+        ctx.deregister(promise);
     }
 
     private void scheduleTimeout(final ChannelHandlerContext ctx, final ChannelPromise promise) {
         // Schedule a timeout.
         final WriteTimeoutTask task = new WriteTimeoutTask(ctx, promise);
+        if (timeoutCheck == null) {
+            IdleStateSweeper sweeper = sweeper(ctx);
+            if (sweeper != null) {
+                timeoutCheck = new WriteTimeoutCheck(sweeper);
+            }
+        }
+        if (timeoutCheck != null) {
+            task.deadline = ticksInNanos() + timeoutNanos;
+            addWriteTimeoutTask(task);
+            promise.addListener(task);
+            if (!timeoutCheck.isTracked()) {
+                timeoutCheck.sweeper.add(timeoutCheck, timeoutNanos);
+            }
+            return;
+        }
+
         task.scheduledFuture = ctx.executor().schedule(task, timeoutNanos, TimeUnit.NANOSECONDS);
 
         if (!task.scheduledFuture.isDone()) {
@@ -138,6 +182,20 @@ public class WriteTimeoutHandler extends ChannelOutboundHandlerAdapter {
         }
     }
 
+    /**
+     * This method is visible for testing!
+     */
+    long ticksInNanos() {
+        return System.nanoTime();
+    }
+
+    /**
+     * This method is visible for testing!
+     */
+    IdleStateSweeper sweeper(ChannelHandlerContext ctx) {
+        return IdleStateSweeper.sweeper(ctx.executor(), timeoutNanos);
+    }
+
     private void addWriteTimeoutTask(WriteTimeoutTask task) {
         if (lastTask != null) {
             lastTask.next = task;
@@ -188,7 +246,9 @@ public class WriteTimeoutHandler extends ChannelOutboundHandlerAdapter {
         WriteTimeoutTask prev;
         WriteTimeoutTask next;
 
+        // Either scheduledFuture is set, or deadline if the task is checked by the WriteTimeoutCheck.
         ScheduledFuture<?> scheduledFuture;
+        long deadline;
 
         WriteTimeoutTask(ChannelHandlerContext ctx, ChannelPromise promise) {
             this.ctx = ctx;
@@ -197,6 +257,11 @@ public class WriteTimeoutHandler extends ChannelOutboundHandlerAdapter {
 
         @Override
         public void run() {
+            if (!ctx.executor().inEventLoop()) {
+                // The channel was moved to another EventLoop after this task was scheduled.
+                ctx.executor().execute(this);
+                return;
+            }
             // Was not written yet so issue a write timeout
             // The promise itself will be failed with a ClosedChannelException once the close() was issued
             // See https://github.com/netty/netty/issues/2159
@@ -212,9 +277,43 @@ public class WriteTimeoutHandler extends ChannelOutboundHandlerAdapter {
 
         @Override
         public void operationComplete(ChannelFuture future) throws Exception {
-            // scheduledFuture has already be set when reaching here
-            scheduledFuture.cancel(false);
+            // scheduledFuture has already be set when reaching here, unless the task is swept
+            if (scheduledFuture != null) {
+                scheduledFuture.cancel(false);
+            }
             removeWriteTimeoutTask(this);
         }
     }
+
+    /**
+     * Times out the pending writes when the channel is swept by the {@link IdleStateSweeper} of its
+     * {@link EventLoop}. Stops being tracked once there are no pending writes left.
+     */
+    private final class WriteTimeoutCheck extends IdleStateSweeper.Entry {
+
+        private final IdleStateSweeper sweeper;
+
+        WriteTimeoutCheck(IdleStateSweeper sweeper) {
+            this.sweeper = sweeper;
+        }
+
+        @Override
+        long sweep() {
+            long now = ticksInNanos();
+            long nextDelay = timeoutNanos;
+            WriteTimeoutTask task = lastTask;
+            while (task != null) {
+                // Timing out a write closes the channel, which may remove the other tasks from the list.
+                WriteTimeoutTask prev = task.prev;
+                long delay = task.deadline - now;
+                if (delay <= 0) {
+                    task.run();
+                } else {
+                    nextDelay = Math.min(nextDelay, delay);
+                }
+                task = prev;
+            }
+            return lastTask == null ? -1 : nextDelay;
+        }
+    }
 }
@@ -325,6 +325,36 @@ public class IdleStateHandlerTest {
         }
     }
 
+    @Test
+    public void testReregister() throws Exception {
+        TestableIdleStateHandler idleStateHandler = new TestableIdleStateHandler(
+                false, 5L, 0L, 0L, TimeUnit.SECONDS);
+
+        final List<Object> events = new ArrayList<Object>();
+        ChannelInboundHandlerAdapter handler = new ChannelInboundHandlerAdapter() {
+            @Override
+            public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+                events.add(evt);
+            }
+        };
+
+        EmbeddedChannel channel = new EmbeddedChannel(idleStateHandler, handler);
+        try {
+            idleStateHandler.tick(3L, TimeUnit.SECONDS);
+            channel.deregister().syncUninterruptibly();
+            idleStateHandler.tick(1L, TimeUnit.SECONDS);
+            channel.eventLoop().register(channel).syncUninterruptibly();
+
+            // The channel has been idle for 4 seconds already, so the timeout is scheduled for the remaining second.
+            assertEquals(1L, idleStateHandler.delay(TimeUnit.SECONDS));
+            idleStateHandler.tickRun();
+            assertEquals(1, events.size());
+            assertSame(IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT, events.get(0));
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
     private static void assertNotNullAndRelease(Object msg) {
         assertNotNull(msg);
         ReferenceCountUtil.release(msg);
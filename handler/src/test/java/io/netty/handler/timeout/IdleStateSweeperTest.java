@@ -0,0 +1,300 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.timeout;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.EventExecutor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IdleStateSweeperTest {
+
+    @Test
+    public void testDisabledByDefault() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        assertNull(IdleStateSweeper.sweeper(channel.eventLoop(), TimeUnit.HOURS.toNanos(1)));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testReaderIdle() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        TestSweeper sweeper = new TestSweeper(channel.eventLoop(), 16);
+        EventRecorder events = new EventRecorder();
+        channel.pipeline().addLast(new SweptIdleStateHandler(sweeper, 10, 0, 0), events);
+        assertEquals(1, sweeper.size());
+
+        sweeper.tickAt(5);
+        assertTrue(events.events.isEmpty());
+
+        sweeper.tickAt(10);
+        assertEquals(1, events.events.size());
+        assertSame(IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT, events.events.remove(0));
+
+        sweeper.now = TimeUnit.SECONDS.toNanos(12);
+        assertTrue(channel.writeInbound(Unpooled.EMPTY_BUFFER));
+        assertSame(Unpooled.EMPTY_BUFFER, channel.readInbound());
+
+        // The read moved the deadline to 22 seconds.
+        sweeper.tickAt(20);
+        assertTrue(events.events.isEmpty());
+        sweeper.tickAt(22);
+        assertEquals(1, events.events.size());
+        assertSame(IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT, events.events.remove(0));
+
+        sweeper.tickAt(32);
+        assertEquals(1, events.events.size());
+        assertSame(IdleStateEvent.READER_IDLE_STATE_EVENT, events.events.remove(0));
+
+        assertFalse(channel.finish());
+        assertEquals(0, sweeper.size());
+    }
+
+    @Test
+    public void testAllIdleStates() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        TestSweeper sweeper = new TestSweeper(channel.eventLoop(), 16);
+        EventRecorder events = new EventRecorder();
+        channel.pipeline().addLast(new SweptIdleStateHandler(sweeper, 10, 20, 30), events);
+
+        sweeper.tickAt(30);
+        assertEquals(3, events.events.size());
+        assertSame(IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT, events.events.get(0));
+        assertSame(IdleStateEvent.FIRST_WRITER_IDLE_STATE_EVENT, events.events.get(1));
+        assertSame(IdleStateEvent.FIRST_ALL_IDLE_STATE_EVENT, events.events.get(2));
+        events.events.clear();
+
+        // Removing the handler stops the checks.
+        channel.pipeline().remove(SweptIdleStateHandler.class);
+        assertEquals(0, sweeper.size());
+        sweeper.tickAt(100);
+        assertTrue(events.events.isEmpty());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testSweepsInBatches() {
+        EmbeddedChannel[] channels = new EmbeddedChannel[5];
+        channels[0] = new EmbeddedChannel();
+        TestSweeper sweeper = new TestSweeper(channels[0].eventLoop(), 2);
+        EventRecorder events = new EventRecorder();
+        channels[0].pipeline().addLast(new SweptIdleStateHandler(sweeper, 10, 0, 0), events);
+        for (int i = 1; i < channels.length; i++) {
+            channels[i] = new EmbeddedChannel();
+            channels[i].pipeline().addLast(new SweptIdleStateHandler(sweeper, 10, 0, 0), events);
+        }
+        assertEquals(channels.length, sweeper.size());
+
+        sweeper.tickAt(10);
+        assertEquals(2, events.events.size());
+
+        // A tick does not start another sweep while one is in progress.
+        sweeper.tick();
+        assertEquals(2, events.events.size());
+
+        // The rest is swept by tasks of the executor.
+        channels[0].runPendingTasks();
+        assertEquals(channels.length, events.events.size());
+
+        for (EmbeddedChannel channel : channels) {
+            assertFalse(channel.finish());
+        }
+        assertEquals(0, sweeper.size());
+    }
+
+    @Test
+    public void testClosingChannelWhileSweeping() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        EmbeddedChannel other = new EmbeddedChannel();
+        TestSweeper sweeper = new TestSweeper(channel.eventLoop(), 16);
+        EventRecorder events = new EventRecorder();
+        channel.pipeline().addLast(new SweptIdleStateHandler(sweeper, 10, 0, 0), new ChannelInboundHandlerAdapter() {
+            @Override
+            public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+                ctx.close();
+            }
+        });
+        other.pipeline().addLast(new SweptIdleStateHandler(sweeper, 10, 0, 0), events);
+
+        sweeper.tickAt(10);
+        assertFalse(channel.isOpen());
+        // The entry of the other channel took the slot of the closed one and was still swept.
+        assertEquals(1, events.events.size());
+        assertEquals(1, sweeper.size());
+
+        assertFalse(other.finish());
+        assertEquals(0, sweeper.size());
+    }
+
+    @Test
+    public void testWriteTimeout() {
+        EmbeddedChannel channel = new PendingWritesChannel();
+        TestSweeper sweeper = new TestSweeper(channel.eventLoop(), 16);
+        channel.pipeline().addLast(new SweptWriteTimeoutHandler(sweeper, 10));
+
+        channel.writeAndFlush(Unpooled.EMPTY_BUFFER);
+        assertEquals(1, sweeper.size());
+        sweeper.tickAt(5);
+        channel.writeAndFlush(Unpooled.EMPTY_BUFFER);
+        channel.checkException();
+        assertTrue(channel.isOpen());
+
+        sweeper.tickAt(10);
+        try {
+            channel.checkException();
+            fail();
+        } catch (WriteTimeoutException expected) {
+            // expected
+        }
+        assertFalse(channel.isOpen());
+        assertEquals(0, sweeper.size());
+    }
+
+    @Test
+    public void testCompletedWritesAreNotTracked() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        TestSweeper sweeper = new TestSweeper(channel.eventLoop(), 16);
+        channel.pipeline().addLast(new SweptWriteTimeoutHandler(sweeper, 10));
+
+        assertTrue(channel.writeOutbound(Unpooled.EMPTY_BUFFER));
+        assertSame(Unpooled.EMPTY_BUFFER, channel.readOutbound());
+        assertEquals(1, sweeper.size());
+
+        // There is nothing pending anymore, so the handler stops being tracked.
+        sweeper.tickAt(10);
+        channel.checkException();
+        assertTrue(channel.isOpen());
+        assertEquals(0, sweeper.size());
+
+        assertTrue(channel.writeOutbound(Unpooled.EMPTY_BUFFER));
+        assertSame(Unpooled.EMPTY_BUFFER, channel.readOutbound());
+        assertEquals(1, sweeper.size());
+        assertFalse(channel.finish());
+        assertEquals(0, sweeper.size());
+    }
+
+    @Test
+    public void testReregister() {
+        EmbeddedChannel channel = new PendingWritesChannel();
+        TestSweeper sweeper = new TestSweeper(channel.eventLoop(), 16);
+        EventRecorder events = new EventRecorder();
+        channel.pipeline().addLast(new SweptIdleStateHandler(sweeper, 10, 0, 0), events,
+                new SweptWriteTimeoutHandler(sweeper, 10));
+        channel.writeAndFlush(Unpooled.EMPTY_BUFFER);
+        assertEquals(2, sweeper.size());
+
+        // Deregistering stops the checks, the pending write is timed out by a scheduled task instead.
+        channel.deregister().syncUninterruptibly();
+        assertEquals(0, sweeper.size());
+        channel.eventLoop().register(channel).syncUninterruptibly();
+        assertEquals(1, sweeper.size());
+
+        sweeper.tickAt(10);
+        assertEquals(1, events.events.size());
+        assertSame(IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT, events.events.get(0));
+        assertTrue(channel.isOpen());
+        channel.close().syncUninterruptibly();
+        assertEquals(0, sweeper.size());
+    }
+
+    private static final class TestSweeper extends IdleStateSweeper {
+        long now;
+
+        TestSweeper(EventExecutor executor, int batchSize) {
+            super(executor, TimeUnit.HOURS.toNanos(1), batchSize);
+        }
+
+        void tickAt(long seconds) {
+            now = TimeUnit.SECONDS.toNanos(seconds);
+            tick();
+        }
+
+        @Override
+        long ticksInNanos() {
+            return now;
+        }
+    }
+
+    private static final class SweptIdleStateHandler extends IdleStateHandler {
+        private final TestSweeper sweeper;
+
+        SweptIdleStateHandler(TestSweeper sweeper, long readerIdleTime, long writerIdleTime, long allIdleTime) {
+            super(readerIdleTime, writerIdleTime, allIdleTime, TimeUnit.SECONDS);
+            this.sweeper = sweeper;
+        }
+
+        @Override
+        long ticksInNanos() {
+            return sweeper.now;
+        }
+
+        @Override
+        IdleStateSweeper sweeper(ChannelHandlerContext ctx) {
+            return sweeper;
+        }
+    }
+
+    private static final class SweptWriteTimeoutHandler extends WriteTimeoutHandler {
+        private final TestSweeper sweeper;
+
+        SweptWriteTimeoutHandler(TestSweeper sweeper, long timeout) {
+            super(timeout, TimeUnit.SECONDS);
+            this.sweeper = sweeper;
+        }
+
+        @Override
+        long ticksInNanos() {
+            return sweeper.now;
+        }
+
+        @Override
+        IdleStateSweeper sweeper(ChannelHandlerContext ctx) {
+            return sweeper;
+        }
+    }
+
+    @ChannelHandler.Sharable
+    private static final class EventRecorder extends ChannelInboundHandlerAdapter {
+        final List<Object> events = new ArrayList<Object>();
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+            events.add(evt);
+        }
+    }
+
+    private static final class PendingWritesChannel extends EmbeddedChannel {
+        @Override
+        protected void doWrite(ChannelOutboundBuffer in) {
+            // Keep the messages in the ChannelOutboundBuffer so the writes never complete.
+        }
+    }
+}
@@ -17,8 +17,11 @@ package io.netty.microbench.buffer;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.AsciiString;
+import io.netty.util.ByteProcessor;
 import io.netty.util.CharsetUtil;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Measurement;
@@ -28,6 +31,8 @@ import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Warmup;
 
+import java.util.Arrays;
+
 
 @State(Scope.Benchmark)
 @Warmup(iterations = 5)
@@ -35,12 +40,19 @@ import org.openjdk.jmh.annotations.Warmup;
 public class
     ByteBufUtilBenchmark extends AbstractMicrobenchmark {
     private ByteBuf buffer;
+    private ByteBuf heapBuffer;
     private ByteBuf wrapped;
     private ByteBuf asciiBuffer;
     private ByteBuf utf8Buffer;
 
+    // A line of 1023 'a' characters terminated by '\n', to measure the byte scanning of the line based decoders.
+    private ByteBuf heapLine;
+    private ByteBuf directLine;
+    private CompositeByteBuf compositeLine;
+
     private StringBuilder asciiSequence;
     private String ascii;
+    private AsciiString asciiString;
 
     private StringBuilder utf8Sequence;
     private String utf8;
@@ -49,12 +61,14 @@ public class
     public void setup() {
         // Use buffer sizes that will also allow to write UTF-8 without grow the buffer
         buffer = Unpooled.directBuffer(512);
+        heapBuffer = Unpooled.buffer(512);
         wrapped = Unpooled.unreleasableBuffer(Unpooled.directBuffer(512));
         asciiSequence = new StringBuilder(128);
         for (int i = 0; i < 128; i++) {
             asciiSequence.append('a');
         }
         ascii = asciiSequence.toString();
+        asciiString = new AsciiString(ascii);
 
         // Generate some mixed UTF-8 String for benchmark
         utf8Sequence = new StringBuilder(128);
@@ -67,14 +81,28 @@ public class
 
         asciiBuffer = Unpooled.copiedBuffer(ascii, CharsetUtil.US_ASCII);
         utf8Buffer = Unpooled.copiedBuffer(utf8, CharsetUtil.UTF_8);
+
+        byte[] line = new byte[1024];
+        Arrays.fill(line, (byte) 'a');
+        line[line.length - 1] = '\n';
+        heapLine = Unpooled.wrappedBuffer(line);
+        directLine = Unpooled.directBuffer(line.length).writeBytes(line);
+        compositeLine = Unpooled.compositeBuffer();
+        for (int i = 0; i < line.length; i += 256) {
+            compositeLine.addComponent(true, Unpooled.directBuffer(256).writeBytes(line, i, 256));
+        }
     }
 
     @TearDown
     public void tearDown() {
         buffer.release();
+        heapBuffer.release();
         wrapped.release();
         asciiBuffer.release();
         utf8Buffer.release();
+        heapLine.release();
+        directLine.release();
+        compositeLine.release();
     }
 
     @Benchmark
@@ -173,6 +201,24 @@ public class
         ByteBufUtil.writeUtf8(wrapped, utf8Sequence);
     }
 
+    @Benchmark
+    public void writeUtf8AsciiStringHeap() {
+        heapBuffer.resetWriterIndex();
+        ByteBufUtil.writeUtf8(heapBuffer, ascii);
+    }
+
+    @Benchmark
+    public void writeUtf8AsciiString() {
+        buffer.resetWriterIndex();
+        ByteBufUtil.writeUtf8(buffer, ascii);
+    }
+
+    @Benchmark
+    public void writeUtf8AsciiStringSource() {
+        buffer.resetWriterIndex();
+        ByteBufUtil.writeUtf8(buffer, asciiString);
+    }
+
     @Benchmark
     public String decodeStringAscii() {
         return asciiBuffer.toString(CharsetUtil.US_ASCII);
@@ -182,4 +228,50 @@ public class
     public String decodeStringUtf8() {
         return utf8Buffer.toString(CharsetUtil.UTF_8);
     }
+
+    @Benchmark
+    public String decodeStringUtf8OfAscii() {
+        return asciiBuffer.toString(CharsetUtil.UTF_8);
+    }
+
+    @Benchmark
+    public boolean isTextUtf8OfAscii() {
+        return ByteBufUtil.isText(asciiBuffer, CharsetUtil.UTF_8);
+    }
+
+    @Benchmark
+    public int indexOfHeap() {
+        return heapLine.indexOf(0, heapLine.capacity(), (byte) '\n');
+    }
+
+    @Benchmark
+    public int indexOfDirect() {
+        return directLine.indexOf(0, directLine.capacity(), (byte) '\n');
+    }
+
+    @Benchmark
+    public int indexOfComposite() {
+        return compositeLine.indexOf(0, compositeLine.capacity(), (byte) '\n');
+    }
+
+    @Benchmark
+    public int forEachByteFindLfHeap() {
+        return heapLine.forEachByte(ByteProcessor.FIND_LF);
+    }
+
+    @Benchmark
+    public int forEachByteFindCrlfDirect() {
+        return directLine.forEachByte(ByteProcessor.FIND_CRLF);
+    }
+
+    @Benchmark
+    public int forEachByteFindCrlfComposite() {
+        return compositeLine.forEachByte(ByteProcessor.FIND_CRLF);
+    }
+
+    @Benchmark
+    public int forEachByteCustomProcessorDirect() {
+        // Not one of the well known processors, so this is still scanned one byte at a time.
+        return directLine.forEachByte(new ByteProcessor.IndexOfProcessor((byte) '\n'));
+    }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DirectChunkProvider;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.unix.HugePageChunkProvider;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares random accesses spread over a large amount of pooled direct memory that is either allocated the default
+ * way or mapped with huge pages by {@link HugePageChunkProvider}.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class HugePageChunkProviderBenchmark extends AbstractMicrobenchmark {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Param({ "default", "thp", "hugetlb" })
+    public String provider;
+
+    @Param({ "64", "256" })
+    public int totalSizeMb;
+
+    private ByteBuf[] buffers;
+    private int index;
+
+    @Setup
+    public void setup() {
+        Epoll.ensureAvailability();
+        DirectChunkProvider chunkProvider;
+        if ("thp".equals(provider)) {
+            chunkProvider = new HugePageChunkProvider(false);
+        } else if ("hugetlb".equals(provider)) {
+            chunkProvider = new HugePageChunkProvider(true);
+        } else {
+            chunkProvider = null;
+        }
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                true, 0, 1, 8192, 11, 0, 0, false, 0, false, chunkProvider);
+        buffers = new ByteBuf[totalSizeMb * 1024 * 1024 / BUFFER_SIZE];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = allocator.directBuffer(BUFFER_SIZE, BUFFER_SIZE);
+            // Touch every page so page faults are not measured.
+            for (int j = 0; j < BUFFER_SIZE; j += 4096) {
+                buffers[i].setLong(j, j);
+            }
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        for (ByteBuf buffer : buffers) {
+            buffer.release();
+        }
+    }
+
+    @Benchmark
+    public long randomReadWrite() {
+        // Linear congruential step, so consecutive accesses hit different pages of different buffers.
+        index = index * 1103515245 + 12345;
+        ByteBuf buffer = buffers[(index >>> 8) % buffers.length];
+        int offset = (index & BUFFER_SIZE - 1) & ~7;
+        long value = buffer.getLong(offset);
+        buffer.setLong(offset, value + 1);
+        return value;
+    }
+}
@@ -14,6 +14,9 @@
  */
 package io.netty.microbench.concurrent;
 
+import io.netty.channel.AdaptiveSpinTaskQueueFactory;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.DefaultSelectStrategyFactory;
 import io.netty.channel.epoll.Epoll;
 import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.kqueue.KQueue;
@@ -21,6 +24,8 @@ import io.netty.channel.kqueue.KQueueEventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.microbench.util.AbstractMicrobenchmark;
 import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.DefaultEventExecutorChooserFactory;
+import io.netty.util.concurrent.RejectedExecutionHandlers;
 import io.netty.util.internal.PlatformDependent;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
@@ -34,6 +39,7 @@ import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.infra.Blackhole;
 
+import java.nio.channels.spi.SelectorProvider;
 import java.util.Collection;
 import java.util.List;
 import java.util.Queue;
@@ -170,13 +176,16 @@ public class BurstCostExecutorsBenchmark extends AbstractMicrobenchmark {
         defaultEventExecutor,
         juc,
         nioEventLoop,
+        adaptiveSpinNioEventLoop,
+        adaptiveSpinEventLoop,
         epollEventLoop,
         kqueueEventLoop
     }
 
     @Param({ "1", "10" })
     private int burstLength;
-    @Param({ "spinning", "epollEventLoop", "nioEventLoop", "defaultEventExecutor", "juc", "kqueueEventLoop" })
+    @Param({ "spinning", "epollEventLoop", "nioEventLoop", "adaptiveSpinNioEventLoop", "adaptiveSpinEventLoop",
+            "defaultEventExecutor", "juc", "kqueueEventLoop" })
     private String executorType;
     @Param({ "0", "10" })
     private int work;
@@ -210,6 +219,22 @@ public class BurstCostExecutorsBenchmark extends AbstractMicrobenchmark {
             executor = nioEventLoopGroup.next();
             executorToShutdown = nioEventLoopGroup;
             break;
+        case adaptiveSpinNioEventLoop:
+            NioEventLoopGroup batchingNioEventLoopGroup = new NioEventLoopGroup(1, null,
+                    DefaultEventExecutorChooserFactory.INSTANCE, SelectorProvider.provider(),
+                    DefaultSelectStrategyFactory.INSTANCE, RejectedExecutionHandlers.reject(),
+                    new AdaptiveSpinTaskQueueFactory());
+            batchingNioEventLoopGroup.setIoRatio(1);
+            executor = batchingNioEventLoopGroup.next();
+            executorToShutdown = batchingNioEventLoopGroup;
+            break;
+        case adaptiveSpinEventLoop:
+            // Batches, spins before parking and coalesces the wakeups of the producers.
+            DefaultEventLoopGroup defaultEventLoopGroup =
+                    new DefaultEventLoopGroup(1, null, new AdaptiveSpinTaskQueueFactory());
+            executor = defaultEventLoopGroup.next();
+            executorToShutdown = defaultEventLoopGroup;
+            break;
         case epollEventLoop:
             Epoll.ensureAvailability();
             EpollEventLoopGroup epollEventLoopGroup = new EpollEventLoopGroup(1);
@@ -33,11 +33,13 @@ import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Compares the binary heap and the timing wheels which can be used to keep the scheduled tasks of an
+ * {@link EventLoop}, see {@code io.netty.eventexecutor.timingWheelScheduledTaskQueue}.
+ */
 @State(Scope.Benchmark)
 public class ScheduledFutureTaskBenchmark extends AbstractMicrobenchmark {
 
-    static final EventLoop executor = new DefaultEventLoop();
-
     @State(Scope.Thread)
     public static class FuturesHolder {
 
@@ -51,8 +53,29 @@ public class ScheduledFutureTaskBenchmark extends AbstractMicrobenchmark {
         @Param({ "100", "1000", "10000", "100000" })
         int num;
 
+        @Param({ "false", "true" })
+        boolean timingWheel;
+
+        EventLoop executor;
+
         final List<ScheduledFuture<Void>> futures = new ArrayList<ScheduledFuture<Void>>();
 
+        @Setup(Level.Trial)
+        public void start() {
+            final boolean timingWheel = this.timingWheel;
+            executor = new DefaultEventLoop() {
+                @Override
+                protected boolean useTimingWheelScheduledTaskQueue() {
+                    return timingWheel;
+                }
+            };
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            executor.shutdownGracefully().syncUninterruptibly();
+        }
+
         @Setup(Level.Invocation)
         public void reset() {
             futures.clear();
@@ -65,16 +88,23 @@ public class ScheduledFutureTaskBenchmark extends AbstractMicrobenchmark {
                 }
             }).syncUninterruptibly();
         }
-    }
 
-    @TearDown(Level.Trial)
-    public void stop() throws Exception {
-        executor.shutdownGracefully().syncUninterruptibly();
+        @TearDown(Level.Invocation)
+        public void cancelAll() {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (ScheduledFuture<Void> future : futures) {
+                        future.cancel(false);
+                    }
+                }
+            }).syncUninterruptibly();
+        }
     }
 
     @Benchmark
     public Future<?> cancelInOrder(final FuturesHolder futuresHolder) {
-        return executor.submit(new Runnable() {
+        return futuresHolder.executor.submit(new Runnable() {
             @Override
             public void run() {
                 for (int i = 0; i < futuresHolder.num; i++) {
@@ -86,7 +116,7 @@ public class ScheduledFutureTaskBenchmark extends AbstractMicrobenchmark {
 
     @Benchmark
     public Future<?> cancelInReverseOrder(final FuturesHolder futuresHolder) {
-        return executor.submit(new Runnable() {
+        return futuresHolder.executor.submit(new Runnable() {
             @Override
             public void run() {
                 for (int i = futuresHolder.num - 1; i >= 0; i--) {
@@ -95,4 +125,22 @@ public class ScheduledFutureTaskBenchmark extends AbstractMicrobenchmark {
             }
         }).syncUninterruptibly();
     }
+
+    /**
+     * Cancels every task and schedules a new one in its place, like an idle or read timeout which is reset whenever
+     * there is activity on its channel.
+     */
+    @Benchmark
+    public Future<?> cancelAndReschedule(final FuturesHolder futuresHolder) {
+        return futuresHolder.executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                List<ScheduledFuture<Void>> futures = futuresHolder.futures;
+                for (int i = 0; i < futuresHolder.num; i++) {
+                    futures.get(i).cancel(false);
+                    futures.set(i, futuresHolder.executor.schedule(FuturesHolder.NO_OP, i + 1, TimeUnit.HOURS));
+                }
+            }
+        }).syncUninterruptibly();
+    }
 }
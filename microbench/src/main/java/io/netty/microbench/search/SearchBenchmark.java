@@ -20,7 +20,9 @@ import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.buffer.search.AbstractMultiSearchProcessorFactory;
 import io.netty.buffer.search.AbstractSearchProcessorFactory;
+import io.netty.buffer.search.BoyerMooreHorspoolSearchProcessorFactory;
 import io.netty.buffer.search.SearchProcessorFactory;
+import io.netty.buffer.search.SwarSearchProcessorFactory;
 import io.netty.microbench.util.AbstractMicrobenchmark;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.CompilerControl;
@@ -122,6 +124,8 @@ public class SearchBenchmark extends AbstractMicrobenchmark {
     private ByteBuf needle, haystack;
     private byte[] needleBytes, haystackBytes;
     private SearchProcessorFactory kmpFactory, bitapFactory, ahoCorasicFactory;
+    private BoyerMooreHorspoolSearchProcessorFactory bmhFactory;
+    private SwarSearchProcessorFactory swarFactory;
 
     @Setup
     public void setup() {
@@ -135,6 +139,8 @@ public class SearchBenchmark extends AbstractMicrobenchmark {
 
         kmpFactory = AbstractSearchProcessorFactory.newKmpSearchProcessorFactory(needleBytes);
         ahoCorasicFactory = AbstractMultiSearchProcessorFactory.newAhoCorasicSearchProcessorFactory(needleBytes);
+        bmhFactory = AbstractSearchProcessorFactory.newBoyerMooreHorspoolSearchProcessorFactory(needleBytes);
+        swarFactory = AbstractSearchProcessorFactory.newSwarSearchProcessorFactory(needleBytes);
 
         if (needleBytes.length <= 64) {
             bitapFactory = AbstractSearchProcessorFactory.newBitapSearchProcessorFactory(needleBytes);
@@ -171,6 +177,24 @@ public class SearchBenchmark extends AbstractMicrobenchmark {
         return haystack.forEachByte(ahoCorasicFactory.newSearchProcessor());
     }
 
+    @Benchmark
+    @CompilerControl(Mode.DONT_INLINE)
+    public int boyerMooreHorspool() {
+        return haystack.forEachByte(bmhFactory.newSearchProcessor());
+    }
+
+    @Benchmark
+    @CompilerControl(Mode.DONT_INLINE)
+    public int boyerMooreHorspoolIndexOf() {
+        return bmhFactory.indexOf(haystack, haystack.readerIndex(), haystack.writerIndex());
+    }
+
+    @Benchmark
+    @CompilerControl(Mode.DONT_INLINE)
+    public int swarIndexOf() {
+        return swarFactory.indexOf(haystack, haystack.readerIndex(), haystack.writerIndex());
+    }
+
     private static byte[] randomBytes(Random rnd, int size, int from, int to) {
         byte[] bytes = new byte[size];
         for (int i = 0; i < size; i++) {
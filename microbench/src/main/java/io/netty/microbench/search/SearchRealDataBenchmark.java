@@ -18,8 +18,10 @@ package io.netty.microbench.search;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.search.AbstractMultiSearchProcessorFactory;
 import io.netty.buffer.search.AbstractSearchProcessorFactory;
+import io.netty.buffer.search.BoyerMooreHorspoolSearchProcessorFactory;
 import io.netty.buffer.search.SearchProcessor;
 import io.netty.buffer.search.SearchProcessorFactory;
+import io.netty.buffer.search.SwarSearchProcessorFactory;
 import io.netty.microbench.util.AbstractMicrobenchmark;
 import io.netty.util.internal.ResourcesUtil;
 import org.openjdk.jmh.annotations.Benchmark;
@@ -67,8 +69,37 @@ public class SearchRealDataBenchmark extends AbstractMicrobenchmark {
             SearchProcessorFactory newFactory(byte[] needle) {
                 return AbstractSearchProcessorFactory.newBitapSearchProcessorFactory(needle);
             }
+        },
+        BOYER_MOORE_HORSPOOL {
+            @Override
+            SearchProcessorFactory newFactory(byte[] needle) {
+                return AbstractSearchProcessorFactory.newBoyerMooreHorspoolSearchProcessorFactory(needle);
+            }
+            @Override
+            int indexOf(SearchProcessorFactory factory, ByteBuf haystack, int fromIndex, int toIndex) {
+                return ((BoyerMooreHorspoolSearchProcessorFactory) factory).indexOf(haystack, fromIndex, toIndex);
+            }
+        },
+        SWAR {
+            @Override
+            SearchProcessorFactory newFactory(byte[] needle) {
+                return AbstractSearchProcessorFactory.newSwarSearchProcessorFactory(needle);
+            }
+            @Override
+            int indexOf(SearchProcessorFactory factory, ByteBuf haystack, int fromIndex, int toIndex) {
+                return ((SwarSearchProcessorFactory) factory).indexOf(haystack, fromIndex, toIndex);
+            }
         };
         abstract SearchProcessorFactory newFactory(byte[] needle);
+
+        /**
+         * Searches with random access if the algorithm supports it, otherwise byte by byte with a new
+         * {@link SearchProcessor}. Returns the index of the first byte of the needle in the former and of the last
+         * byte in the latter case.
+         */
+        int indexOf(SearchProcessorFactory factory, ByteBuf haystack, int fromIndex, int toIndex) {
+            return haystack.forEachByte(fromIndex, toIndex - fromIndex, factory.newSearchProcessor());
+        }
     }
 
     @Param
@@ -137,6 +168,22 @@ public class SearchRealDataBenchmark extends AbstractMicrobenchmark {
                 searchFrom, haystackLength - searchFrom, searchProcessorFactory.newSearchProcessor());
     }
 
+    @Benchmark
+    @CompilerControl(Mode.DONT_INLINE)
+    public int findFirstIndexOf() {
+        return algorithm.indexOf(searchProcessorFactory, haystack, 0, haystackLength);
+    }
+
+    @Benchmark
+    @CompilerControl(Mode.DONT_INLINE)
+    public void findAllIndexOf(Blackhole blackHole) {
+        int pos = 0;
+        do {
+            pos = algorithm.indexOf(searchProcessorFactory, haystack, pos, haystackLength) + 1;
+            blackHole.consume(pos);
+        } while (pos > 0);
+    }
+
     @Benchmark
     @CompilerControl(Mode.DONT_INLINE)
     public void findAll(Blackhole blackHole) {
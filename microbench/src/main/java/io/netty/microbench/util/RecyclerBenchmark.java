@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.util;
+
+import io.netty.util.Recycler;
+import io.netty.util.internal.PlatformDependent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link Recycler} implementations for the allocation patterns found in Netty itself: objects which are
+ * recycled by the thread that got them, like {@code ChannelOutboundBuffer.Entry}, and objects which are recycled by
+ * another thread, like {@code PooledByteBuf} instances released after being handed off. Run with {@code -prof gc}
+ * to see the allocation rate of each implementation.
+ */
+@State(Scope.Group)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RecyclerBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "false", "true" })
+    public boolean useMpscQueue;
+
+    @Param({ "16" })
+    public int burst;
+
+    private Recycler<DummyObject> recycler;
+    private DummyObject[] objects;
+    private Queue<DummyObject> handoff;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        recycler = new Recycler<DummyObject>(4096, 2, 8, Runtime.getRuntime().availableProcessors() * 2, 8,
+                useMpscQueue) {
+            @Override
+            protected DummyObject newObject(Handle<DummyObject> handle) {
+                return new DummyObject(handle);
+            }
+        };
+        objects = new DummyObject[burst];
+        handoff = PlatformDependent.newFixedMpscQueue(1024);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        // Objects that are left over are simply garbage collected.
+        handoff.clear();
+    }
+
+    @Benchmark
+    @Group("sameThread")
+    @GroupThreads(1)
+    public DummyObject getAndRecycle() {
+        DummyObject object = recycler.get();
+        object.recycle();
+        return object;
+    }
+
+    @Benchmark
+    @Group("sameThreadBurst")
+    @GroupThreads(1)
+    public DummyObject getAndRecycleBurst() {
+        DummyObject[] objects = this.objects;
+        for (int i = 0; i < objects.length; i++) {
+            objects[i] = recycler.get();
+        }
+        for (int i = 0; i < objects.length; i++) {
+            objects[i].recycle();
+        }
+        return objects[0];
+    }
+
+    @Benchmark
+    @Group("crossThread")
+    @GroupThreads(1)
+    public DummyObject producer() {
+        DummyObject object = recycler.get();
+        if (!handoff.offer(object)) {
+            // The consumer could not keep up, do not let the queue grow without bounds.
+            object.recycle();
+        }
+        return object;
+    }
+
+    @Benchmark
+    @Group("crossThread")
+    @GroupThreads(1)
+    public DummyObject consumer() {
+        DummyObject object = handoff.poll();
+        if (object != null) {
+            object.recycle();
+        }
+        return object;
+    }
+
+    static final class DummyObject {
+        private final Recycler.Handle<DummyObject> handle;
+        // Roughly the footprint of a ChannelOutboundBuffer.Entry.
+        Object msg;
+        long progress;
+        long total;
+        int pendingSize;
+
+        DummyObject(Recycler.Handle<DummyObject> handle) {
+            this.handle = handle;
+        }
+
+        void recycle() {
+            msg = null;
+            progress = 0;
+            total = 0;
+            pendingSize = 0;
+            handle.recycle(this);
+        }
+    }
+}
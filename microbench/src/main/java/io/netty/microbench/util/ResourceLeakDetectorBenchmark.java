@@ -16,21 +16,62 @@
 package io.netty.microbench.util;
 
 import io.netty.util.ResourceLeakDetector;
+import io.netty.util.ResourceLeakHint;
+import io.netty.util.ResourceLeakTracker;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
 
 public class ResourceLeakDetectorBenchmark extends AbstractMicrobenchmark {
 
     private static final Object DUMMY = new Object();
+    private static final ResourceLeakHint HINT = new ResourceLeakHint() {
+        @Override
+        public String toHintString() {
+            return "BenchmarkHint";
+        }
+    };
+
+    @Param({ "false", "true" })
+    private boolean aggregateSites;
+    // The number of accesses of each object, like the touches of a message which passes through a pipeline.
+    @Param({ "4" })
+    private int recordTimes;
+
     private ResourceLeakDetector<Object> detector;
+    private boolean oldAggregateSites;
 
-    @Setup
+    @Setup(Level.Trial)
     public void setup() {
         detector = new ResourceLeakDetector<Object>(getClass(), 128, Long.MAX_VALUE);
+        oldAggregateSites = ResourceLeakDetector.isAggregateSites();
+        ResourceLeakDetector.setAggregateSites(aggregateSites);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        ResourceLeakDetector.setAggregateSites(oldAggregateSites);
     }
 
     @Benchmark
     public Object open() {
         return detector.open(DUMMY);
     }
+
+    /**
+     * The average cost per object with the default sampling interval, which is what leak detection costs under load.
+     */
+    @Benchmark
+    public boolean trackRecordAndClose() {
+        ResourceLeakTracker<Object> tracker = detector.track(DUMMY, 256);
+        if (tracker == null) {
+            return false;
+        }
+        for (int i = 0; i < recordTimes; i++) {
+            tracker.record(HINT);
+        }
+        return tracker.close(DUMMY);
+    }
 }
@@ -27,6 +27,8 @@
 #include <netinet/in.h>
 #include <sys/sendfile.h>
 #include <linux/tcp.h> // TCP_NOTSENT_LOWAT is a linux specific define
+#include <linux/errqueue.h>
+#include <linux/filter.h>
 
 #include "netty_epoll_linuxsocket.h"
 #include "netty_unix_errors.h"
@@ -55,6 +57,41 @@
 #define SO_BUSY_POLL 46
 #endif
 
+// SOL_UDP is defined in linux 4.18 and UDP_GRO in linux 5.0. We define these here so older kernels can compile.
+#ifndef SOL_UDP
+#define SOL_UDP 17
+#endif // SOL_UDP
+
+#ifndef UDP_GRO
+#define UDP_GRO 104
+#endif // UDP_GRO
+
+// SO_ZEROCOPY, MSG_ZEROCOPY and the zerocopy notification codes are defined in linux 4.14. We define these here so
+// older kernels can compile.
+#ifndef SO_ZEROCOPY
+#define SO_ZEROCOPY 60
+#endif
+
+#ifndef MSG_ZEROCOPY
+#define MSG_ZEROCOPY 0x4000000
+#endif
+
+#ifndef SO_EE_ORIGIN_ZEROCOPY
+#define SO_EE_ORIGIN_ZEROCOPY 5
+#endif
+
+// SO_ATTACH_REUSEPORT_CBPF is defined in linux 4.5. We define this here so older kernels can compile.
+#ifndef SO_ATTACH_REUSEPORT_CBPF
+#define SO_ATTACH_REUSEPORT_CBPF 51
+#endif
+
+#ifndef SO_EE_CODE_ZEROCOPY_COPIED
+#define SO_EE_CODE_ZEROCOPY_COPIED 1
+#endif
+
+// Large enough for a sock_extended_err and the address of the offender.
+#define NETTY_ZEROCOPY_CONTROL_SIZE 128
+
 static jclass peerCredentialsClass = NULL;
 static jmethodID peerCredentialsMethodId = NULL;
 
@@ -154,6 +191,56 @@ static void netty_epoll_linuxsocket_setIpRecvOrigDestAddr(JNIEnv* env, jclass cl
     netty_unix_socket_setOption(env, fd, IPPROTO_IP, IP_RECVORIGDSTADDR, &optval, sizeof(optval));
 }
 
+static void netty_epoll_linuxsocket_setUdpGro(JNIEnv* env, jclass clazz, jint fd, jint optval) {
+    netty_unix_socket_setOption(env, fd, SOL_UDP, UDP_GRO, &optval, sizeof(optval));
+}
+
+static void netty_epoll_linuxsocket_setSoZeroCopy(JNIEnv* env, jclass clazz, jint fd, jint optval) {
+    netty_unix_socket_setOption(env, fd, SOL_SOCKET, SO_ZEROCOPY, &optval, sizeof(optval));
+}
+
+static void netty_epoll_linuxsocket_attachReusePortCpuSteering(JNIEnv* env, jclass clazz, jint fd, jintArray cpuToIndex) {
+    jsize len = (*env)->GetArrayLength(env, cpuToIndex);
+    jint* elements = (*env)->GetIntArrayElements(env, cpuToIndex, NULL);
+    if (elements == NULL) {
+        // An OutOfMemoryError was thrown already.
+        return;
+    }
+    int mapped = 0;
+    int i;
+    for (i = 0; i < len; i++) {
+        if (elements[i] >= 0) {
+            mapped++;
+        }
+    }
+    // Load the CPU which received the packet, then compare it against every mapped CPU and return the index of the
+    // socket in the SO_REUSEPORT group which belongs to it. The kernel falls back to its hash based selection if the
+    // returned index is out of range, which is used for all CPUs which are not mapped.
+    struct sock_filter* code = malloc(sizeof(struct sock_filter) * (2 * mapped + 2));
+    if (code == NULL) {
+        (*env)->ReleaseIntArrayElements(env, cpuToIndex, elements, JNI_ABORT);
+        netty_unix_errors_throwOutOfMemoryError(env);
+        return;
+    }
+    int n = 0;
+    code[n++] = (struct sock_filter) BPF_STMT(BPF_LD | BPF_W | BPF_ABS, SKF_AD_OFF + SKF_AD_CPU);
+    for (i = 0; i < len; i++) {
+        if (elements[i] >= 0) {
+            // If equal fall through to the return, otherwise skip it.
+            code[n++] = (struct sock_filter) BPF_JUMP(BPF_JMP | BPF_JEQ | BPF_K, (__u32) i, 0, 1);
+            code[n++] = (struct sock_filter) BPF_STMT(BPF_RET | BPF_K, (__u32) elements[i]);
+        }
+    }
+    code[n++] = (struct sock_filter) BPF_STMT(BPF_RET | BPF_K, 0xffffffff);
+    (*env)->ReleaseIntArrayElements(env, cpuToIndex, elements, JNI_ABORT);
+
+    struct sock_fprog prog;
+    prog.len = n;
+    prog.filter = code;
+    netty_unix_socket_setOption(env, fd, SOL_SOCKET, SO_ATTACH_REUSEPORT_CBPF, &prog, sizeof(prog));
+    free(code);
+}
+
 static void netty_epoll_linuxsocket_setSoBusyPoll(JNIEnv* env, jclass clazz, jint fd, jint optval) {
     netty_unix_socket_setOption(env, fd, SOL_SOCKET, SO_BUSY_POLL, &optval, sizeof(optval));
 }
@@ -519,6 +606,14 @@ static jint netty_epoll_linuxsocket_isIpRecvOrigDestAddr(JNIEnv* env, jclass cla
      return optval;
 }
 
+static jint netty_epoll_linuxsocket_isUdpGro(JNIEnv* env, jclass clazz, jint fd) {
+     int optval;
+     if (netty_unix_socket_getOption(env, fd, SOL_UDP, UDP_GRO, &optval, sizeof(optval)) == -1) {
+         return -1;
+     }
+     return optval;
+}
+
 static void netty_epoll_linuxsocket_getTcpInfo(JNIEnv* env, jclass clazz, jint fd, jlongArray array) {
      struct tcp_info tcp_info;
      if (netty_unix_socket_getOption(env, fd, IPPROTO_TCP, TCP_INFO, &tcp_info, sizeof(tcp_info)) == -1) {
@@ -570,6 +665,14 @@ static jint netty_epoll_linuxsocket_isTcpCork(JNIEnv* env, jclass clazz, jint fd
     return optval;
 }
 
+static jint netty_epoll_linuxsocket_isSoZeroCopy(JNIEnv* env, jclass clazz, jint fd) {
+    int optval;
+    if (netty_unix_socket_getOption(env, fd, SOL_SOCKET, SO_ZEROCOPY, &optval, sizeof(optval)) == -1) {
+        return -1;
+    }
+    return optval;
+}
+
 static jint netty_epoll_linuxsocket_getSoBusyPoll(JNIEnv* env, jclass clazz, jint fd) {
     int optval;
     if (netty_unix_socket_getOption(env, fd, SOL_SOCKET, SO_BUSY_POLL, &optval, sizeof(optval)) == -1) {
@@ -658,6 +761,64 @@ static jlong netty_epoll_linuxsocket_sendFile(JNIEnv* env, jclass clazz, jint fd
 
     return res;
 }
+
+static jlong netty_epoll_linuxsocket_sendmsgZeroCopy(JNIEnv* env, jclass clazz, jint fd, jlong iovAddress, jint iovcnt) {
+    struct msghdr m = { 0 };
+    m.msg_iov = (struct iovec*) (intptr_t) iovAddress;
+    m.msg_iovlen = (size_t) iovcnt;
+
+    ssize_t res;
+    int err;
+    do {
+        res = sendmsg(fd, &m, MSG_ZEROCOPY);
+        // keep on writing if it was interrupted
+    } while (res == -1 && ((err = errno) == EINTR));
+
+    if (res < 0) {
+        return -err;
+    }
+    return (jlong) res;
+}
+
+// Reads the next zerocopy notification from the error queue of the socket and stores the first and last id of the
+// completed sends and whether the kernel copied the data into range. Returns 1 if a notification was read and -errno
+// otherwise, which is -EAGAIN if the error queue is empty.
+static jint netty_epoll_linuxsocket_recvZeroCopyNotification(JNIEnv* env, jclass clazz, jint fd, jintArray range) {
+    char control[NETTY_ZEROCOPY_CONTROL_SIZE];
+    for (;;) {
+        struct msghdr m = { 0 };
+        m.msg_control = control;
+        m.msg_controllen = sizeof(control);
+
+        ssize_t res;
+        int err;
+        do {
+            res = recvmsg(fd, &m, MSG_ERRQUEUE);
+            // Keep on reading if it was interrupted
+        } while (res == -1 && ((err = errno) == EINTR));
+
+        if (res < 0) {
+            return -err;
+        }
+
+        struct cmsghdr* cmsg;
+        for (cmsg = CMSG_FIRSTHDR(&m); cmsg != NULL; cmsg = CMSG_NXTHDR(&m, cmsg)) {
+            if ((cmsg->cmsg_level == SOL_IP && cmsg->cmsg_type == IP_RECVERR) ||
+                    (cmsg->cmsg_level == SOL_IPV6 && cmsg->cmsg_type == IPV6_RECVERR)) {
+                struct sock_extended_err* serr = (struct sock_extended_err*) CMSG_DATA(cmsg);
+                if (serr->ee_errno == 0 && serr->ee_origin == SO_EE_ORIGIN_ZEROCOPY) {
+                    jint values[3];
+                    values[0] = (jint) serr->ee_info;
+                    values[1] = (jint) serr->ee_data;
+                    values[2] = (serr->ee_code & SO_EE_CODE_ZEROCOPY_COPIED) != 0 ? 1 : 0;
+                    (*env)->SetIntArrayRegion(env, range, 0, 3, values);
+                    return 1;
+                }
+            }
+        }
+        // Not a zerocopy notification, just skip it.
+    }
+}
 // JNI Registered Methods End
 
 // JNI Method Registration Table Begin
@@ -670,11 +831,14 @@ static const JNINativeMethod fixed_method_table[] = {
   { "getIpMulticastLoop", "(IZ)I", (void * ) netty_epoll_linuxsocket_getIpMulticastLoop },
   { "setTcpCork", "(II)V", (void *) netty_epoll_linuxsocket_setTcpCork },
   { "setSoBusyPoll", "(II)V", (void *) netty_epoll_linuxsocket_setSoBusyPoll },
+  { "setSoZeroCopy", "(II)V", (void *) netty_epoll_linuxsocket_setSoZeroCopy },
+  { "attachReusePortCpuSteering", "(I[I)V", (void *) netty_epoll_linuxsocket_attachReusePortCpuSteering },
   { "setTcpQuickAck", "(II)V", (void *) netty_epoll_linuxsocket_setTcpQuickAck },
   { "setTcpDeferAccept", "(II)V", (void *) netty_epoll_linuxsocket_setTcpDeferAccept },
   { "setTcpNotSentLowAt", "(II)V", (void *) netty_epoll_linuxsocket_setTcpNotSentLowAt },
   { "isTcpCork", "(I)I", (void *) netty_epoll_linuxsocket_isTcpCork },
   { "getSoBusyPoll", "(I)I", (void *) netty_epoll_linuxsocket_getSoBusyPoll },
+  { "isSoZeroCopy", "(I)I", (void *) netty_epoll_linuxsocket_isSoZeroCopy },
   { "getTcpDeferAccept", "(I)I", (void *) netty_epoll_linuxsocket_getTcpDeferAccept },
   { "getTcpNotSentLowAt", "(I)I", (void *) netty_epoll_linuxsocket_getTcpNotSentLowAt },
   { "isTcpQuickAck", "(I)I", (void *) netty_epoll_linuxsocket_isTcpQuickAck },
@@ -695,12 +859,16 @@ static const JNINativeMethod fixed_method_table[] = {
   { "isIpFreeBind", "(I)I", (void *) netty_epoll_linuxsocket_isIpFreeBind },
   { "isIpTransparent", "(I)I", (void *) netty_epoll_linuxsocket_isIpTransparent },
   { "isIpRecvOrigDestAddr", "(I)I", (void *) netty_epoll_linuxsocket_isIpRecvOrigDestAddr },
+  { "setUdpGro", "(II)V", (void *) netty_epoll_linuxsocket_setUdpGro },
+  { "isUdpGro", "(I)I", (void *) netty_epoll_linuxsocket_isUdpGro },
   { "getTcpInfo", "(I[J)V", (void *) netty_epoll_linuxsocket_getTcpInfo },
   { "setTcpMd5Sig", "(IZ[BI[B)V", (void *) netty_epoll_linuxsocket_setTcpMd5Sig },
   { "joinGroup", "(IZ[B[BII)V", (void *) netty_epoll_linuxsocket_joinGroup },
   { "joinSsmGroup", "(IZ[B[BII[B)V", (void *) netty_epoll_linuxsocket_joinSsmGroup },
   { "leaveGroup", "(IZ[B[BII)V", (void *) netty_epoll_linuxsocket_leaveGroup },
-  { "leaveSsmGroup", "(IZ[B[BII[B)V", (void *) netty_epoll_linuxsocket_leaveSsmGroup }
+  { "leaveSsmGroup", "(IZ[B[BII[B)V", (void *) netty_epoll_linuxsocket_leaveSsmGroup },
+  { "sendmsgZeroCopy", "(IJI)J", (void *) netty_epoll_linuxsocket_sendmsgZeroCopy },
+  { "recvZeroCopyNotification", "(I[I)I", (void *) netty_epoll_linuxsocket_recvZeroCopyNotification }
   // "sendFile" has a dynamic signature
 };
 
@@ -36,6 +36,7 @@
 #include <inttypes.h>
 #include <link.h>
 #include <time.h>
+#include <sched.h>
 // Needed to be able to use syscalls directly and so not depend on newer GLIBC versions
 #include <linux/net.h>
 #include <sys/syscall.h>
@@ -54,6 +55,20 @@
 #define TCP_FASTOPEN 23
 #endif
 
+// SOL_UDP and UDP_SEGMENT are defined in linux 4.18 and UDP_GRO in linux 5.0. We define these here so older kernels
+// can compile.
+#ifndef SOL_UDP
+#define SOL_UDP 17
+#endif // SOL_UDP
+
+#ifndef UDP_SEGMENT
+#define UDP_SEGMENT 103
+#endif // UDP_SEGMENT
+
+#ifndef UDP_GRO
+#define UDP_GRO 104
+#endif // UDP_GRO
+
 // optional
 extern int epoll_create1(int flags) __attribute__((weak));
 
@@ -98,6 +113,7 @@ static jfieldID packetScopeIdFieldId = NULL;
 static jfieldID packetPortFieldId = NULL;
 static jfieldID packetMemoryAddressFieldId = NULL;
 static jfieldID packetCountFieldId = NULL;
+static jfieldID packetSegmentSizeFieldId = NULL;
 
 // util methods
 static int getSysctlValue(const char * property, int* returnValue) {
@@ -223,6 +239,93 @@ static void netty_epoll_native_timerFdSetTime(JNIEnv* env, jclass clazz, jint ti
     }
 }
 
+static void netty_epoll_native_setThreadAffinity0(JNIEnv* env, jclass clazz, jintArray cpus) {
+    jsize len = (*env)->GetArrayLength(env, cpus);
+    jint* elements = (*env)->GetIntArrayElements(env, cpus, NULL);
+    if (elements == NULL) {
+        // An OutOfMemoryError was thrown already.
+        return;
+    }
+    int maxCpu = 0;
+    int i;
+    for (i = 0; i < len; i++) {
+        if (elements[i] < 0 || elements[i] == INT_MAX) {
+            // Checked in Java already, but never let maxCpu + 1 overflow.
+            (*env)->ReleaseIntArrayElements(env, cpus, elements, JNI_ABORT);
+            netty_unix_errors_throwIOExceptionErrorNo(env, "sched_setaffinity() failed: ", EINVAL);
+            return;
+        }
+        if (elements[i] > maxCpu) {
+            maxCpu = elements[i];
+        }
+    }
+    cpu_set_t* set = CPU_ALLOC(maxCpu + 1);
+    if (set == NULL) {
+        (*env)->ReleaseIntArrayElements(env, cpus, elements, JNI_ABORT);
+        netty_unix_errors_throwOutOfMemoryError(env);
+        return;
+    }
+    size_t size = CPU_ALLOC_SIZE(maxCpu + 1);
+    CPU_ZERO_S(size, set);
+    for (i = 0; i < len; i++) {
+        CPU_SET_S(elements[i], size, set);
+    }
+    (*env)->ReleaseIntArrayElements(env, cpus, elements, JNI_ABORT);
+
+    // A pid of 0 means the calling thread.
+    int res = sched_setaffinity(0, size, set);
+    int err = errno;
+    CPU_FREE(set);
+    if (res == -1) {
+        netty_unix_errors_throwIOExceptionErrorNo(env, "sched_setaffinity() failed: ", err);
+    }
+}
+
+static jintArray netty_epoll_native_threadAffinity0(JNIEnv* env, jclass clazz) {
+    int numCpus = CPU_SETSIZE;
+    for (;;) {
+        cpu_set_t* set = CPU_ALLOC(numCpus);
+        if (set == NULL) {
+            netty_unix_errors_throwOutOfMemoryError(env);
+            return NULL;
+        }
+        size_t size = CPU_ALLOC_SIZE(numCpus);
+        if (sched_getaffinity(0, size, set) == -1) {
+            int err = errno;
+            CPU_FREE(set);
+            if (err == EINVAL && numCpus < INT_MAX / 2) {
+                // The kernel supports more CPUs, retry with a bigger set.
+                numCpus *= 2;
+                continue;
+            }
+            netty_unix_errors_throwIOExceptionErrorNo(env, "sched_getaffinity() failed: ", err);
+            return NULL;
+        }
+
+        jintArray result = (*env)->NewIntArray(env, CPU_COUNT_S(size, set));
+        if (result != NULL) {
+            jint index = 0;
+            jint cpu;
+            // The size of the set is rounded up, so check all the bits it contains.
+            for (cpu = 0; cpu < (jint) (size * 8); cpu++) {
+                if (CPU_ISSET_S(cpu, size, set)) {
+                    (*env)->SetIntArrayRegion(env, result, index++, 1, &cpu);
+                }
+            }
+        }
+        CPU_FREE(set);
+        return result;
+    }
+}
+
+static jint netty_epoll_native_currentCpu0(JNIEnv* env, jclass clazz) {
+    int cpu = sched_getcpu();
+    if (cpu == -1) {
+        netty_unix_errors_throwIOExceptionErrorNo(env, "sched_getcpu() failed: ", errno);
+    }
+    return cpu;
+}
+
 static jint netty_epoll_native_epollWait(JNIEnv* env, jclass clazz, jint efd, jlong address, jint len, jint timeout) {
     struct epoll_event *ev = (struct epoll_event*) (intptr_t) address;
     int result, err;
@@ -308,6 +411,10 @@ static jint netty_epoll_native_epollCtlDel0(JNIEnv* env, jclass clazz, jint efd,
 static jint netty_epoll_native_sendmmsg0(JNIEnv* env, jclass clazz, jint fd, jboolean ipv6, jobjectArray packets, jint offset, jint len) {
     struct mmsghdr msg[len];
     struct sockaddr_storage addr[len];
+    union {
+        char buf[CMSG_SPACE(sizeof(uint16_t))];
+        struct cmsghdr align;
+    } control[len];
     socklen_t addrSize;
     int i;
 
@@ -332,6 +439,19 @@ static jint netty_epoll_native_sendmmsg0(JNIEnv* env, jclass clazz, jint fd, jbo
 
         msg[i].msg_hdr.msg_iov = (struct iovec*) (intptr_t) (*env)->GetLongField(env, packet, packetMemoryAddressFieldId);
         msg[i].msg_hdr.msg_iovlen = (*env)->GetIntField(env, packet, packetCountFieldId);
+
+        jint segmentSize = (*env)->GetIntField(env, packet, packetSegmentSizeFieldId);
+        if (segmentSize > 0) {
+            // Let the kernel split the data into datagrams of segmentSize bytes (UDP GSO).
+            msg[i].msg_hdr.msg_control = control[i].buf;
+            msg[i].msg_hdr.msg_controllen = sizeof(control[i].buf);
+
+            struct cmsghdr* cm = CMSG_FIRSTHDR(&msg[i].msg_hdr);
+            cm->cmsg_level = SOL_UDP;
+            cm->cmsg_type = UDP_SEGMENT;
+            cm->cmsg_len = CMSG_LEN(sizeof(uint16_t));
+            *((uint16_t*) CMSG_DATA(cm)) = (uint16_t) segmentSize;
+        }
     }
 
     ssize_t res;
@@ -354,6 +474,11 @@ static jint netty_epoll_native_recvmmsg0(JNIEnv* env, jclass clazz, jint fd, jbo
     struct sockaddr_storage addr[len];
     int addrSize = sizeof(addr);
     memset(addr, 0, addrSize);
+    // Only large enough for the UDP_GRO control message, which is always the first one.
+    union {
+        char buf[CMSG_SPACE(sizeof(int))];
+        struct cmsghdr align;
+    } control[len];
 
     int i;
 
@@ -364,6 +489,9 @@ static jint netty_epoll_native_recvmmsg0(JNIEnv* env, jclass clazz, jint fd, jbo
 
         msg[i].msg_hdr.msg_name = addr + i;
         msg[i].msg_hdr.msg_namelen = (socklen_t) addrSize;
+
+        msg[i].msg_hdr.msg_control = control[i].buf;
+        msg[i].msg_hdr.msg_controllen = sizeof(control[i].buf);
     }
 
     ssize_t res;
@@ -385,6 +513,17 @@ static jint netty_epoll_native_recvmmsg0(JNIEnv* env, jclass clazz, jint fd, jbo
 
         (*env)->SetIntField(env, packet, packetCountFieldId, msg[i].msg_len);
 
+        // If UDP_GRO is enabled the kernel may have coalesced multiple datagrams of the same size into one.
+        jint segmentSize = 0;
+        struct cmsghdr* cm;
+        for (cm = CMSG_FIRSTHDR(&msg[i].msg_hdr); cm != NULL; cm = CMSG_NXTHDR(&msg[i].msg_hdr, cm)) {
+            if (cm->cmsg_level == SOL_UDP && cm->cmsg_type == UDP_GRO) {
+                segmentSize = *((int*) CMSG_DATA(cm));
+                break;
+            }
+        }
+        (*env)->SetIntField(env, packet, packetSegmentSizeFieldId, segmentSize);
+
         struct sockaddr_storage* addr = (struct sockaddr_storage*) msg[i].msg_hdr.msg_name;
 
         if (addr->ss_family == AF_INET) {
@@ -457,6 +596,18 @@ static jboolean netty_epoll_native_isSupportingTcpFastopen(JNIEnv* env, jclass c
     return JNI_FALSE;
 }
 
+static jboolean netty_epoll_native_isSupportingUdpSegment(JNIEnv* env, jclass clazz) {
+    int fd = socket(AF_INET, SOCK_DGRAM, 0);
+    if (fd == -1) {
+        return JNI_FALSE;
+    }
+    int optval;
+    socklen_t optlen = sizeof(optval);
+    int res = getsockopt(fd, SOL_UDP, UDP_SEGMENT, &optval, &optlen);
+    close(fd);
+    return res == 0 ? JNI_TRUE : JNI_FALSE;
+}
+
 static jint netty_epoll_native_epollet(JNIEnv* env, jclass clazz) {
     return EPOLLET;
 }
@@ -477,6 +628,10 @@ static jint netty_epoll_native_epollerr(JNIEnv* env, jclass clazz) {
     return EPOLLERR;
 }
 
+static jint netty_epoll_native_errnoENOBUFS(JNIEnv* env, jclass clazz) {
+    return ENOBUFS;
+}
+
 static jint netty_epoll_native_sizeofEpollEvent(JNIEnv* env, jclass clazz) {
     return sizeof(struct epoll_event);
 }
@@ -524,10 +679,12 @@ static const JNINativeMethod statically_referenced_fixed_method_table[] = {
   { "epollout", "()I", (void *) netty_epoll_native_epollout },
   { "epollrdhup", "()I", (void *) netty_epoll_native_epollrdhup },
   { "epollerr", "()I", (void *) netty_epoll_native_epollerr },
+  { "errnoENOBUFS", "()I", (void *) netty_epoll_native_errnoENOBUFS },
   { "tcpMd5SigMaxKeyLen", "()I", (void *) netty_epoll_native_tcpMd5SigMaxKeyLen },
   { "isSupportingSendmmsg", "()Z", (void *) netty_epoll_native_isSupportingSendmmsg },
   { "isSupportingRecvmmsg", "()Z", (void *) netty_epoll_native_isSupportingRecvmmsg },
   { "isSupportingTcpFastopen", "()Z", (void *) netty_epoll_native_isSupportingTcpFastopen },
+  { "isSupportingUdpSegment", "()Z", (void *) netty_epoll_native_isSupportingUdpSegment },
   { "kernelVersion", "()Ljava/lang/String;", (void *) netty_epoll_native_kernelVersion }
 };
 static const jint statically_referenced_fixed_method_table_size = sizeof(statically_referenced_fixed_method_table) / sizeof(statically_referenced_fixed_method_table[0]);
@@ -548,7 +705,10 @@ static const JNINativeMethod fixed_method_table[] = {
   // "sendmmsg0" has a dynamic signature
   { "sizeofEpollEvent", "()I", (void *) netty_epoll_native_sizeofEpollEvent },
   { "offsetofEpollData", "()I", (void *) netty_epoll_native_offsetofEpollData },
-  { "splice0", "(IJIJJ)I", (void *) netty_epoll_native_splice0 }
+  { "splice0", "(IJIJJ)I", (void *) netty_epoll_native_splice0 },
+  { "setThreadAffinity0", "([I)V", (void *) netty_epoll_native_setThreadAffinity0 },
+  { "threadAffinity0", "()[I", (void *) netty_epoll_native_threadAffinity0 },
+  { "currentCpu0", "()I", (void *) netty_epoll_native_currentCpu0 }
 };
 static const jint fixed_method_table_size = sizeof(fixed_method_table) / sizeof(fixed_method_table[0]);
 
@@ -664,6 +824,7 @@ static jint netty_epoll_native_JNI_OnLoad(JNIEnv* env, const char* packagePrefix
     NETTY_GET_FIELD(env, nativeDatagramPacketCls, packetPortFieldId, "port", "I", done);
     NETTY_GET_FIELD(env, nativeDatagramPacketCls, packetMemoryAddressFieldId, "memoryAddress", "J", done);
     NETTY_GET_FIELD(env, nativeDatagramPacketCls, packetCountFieldId, "count", "I", done);
+    NETTY_GET_FIELD(env, nativeDatagramPacketCls, packetSegmentSizeFieldId, "segmentSize", "I", done);
 
     ret = NETTY_JNI_VERSION;
 done:
@@ -696,6 +857,7 @@ done:
         packetPortFieldId = NULL;
         packetMemoryAddressFieldId = NULL;
         packetCountFieldId = NULL;
+        packetSegmentSizeFieldId = NULL;
     }
     return ret;
 }
@@ -714,6 +876,7 @@ static void netty_epoll_native_JNI_OnUnLoad(JNIEnv* env) {
     packetPortFieldId = NULL;
     packetMemoryAddressFieldId = NULL;
     packetCountFieldId = NULL;
+    packetSegmentSizeFieldId = NULL;
 }
 
 // Invoked by the JVM when statically linked
@@ -393,6 +393,14 @@ abstract class AbstractEpollChannel extends AbstractChannel implements UnixChann
          */
         abstract void epollInReady();
 
+        /**
+         * Called once EPOLLERR event is ready to be processed, before {@link #epollOutReady()} and
+         * {@link #epollInReady()}.
+         */
+        void epollErrReady() {
+            // NOOP
+        }
+
         final void epollInBefore() {
             maybeMoreDataToRead = false;
         }
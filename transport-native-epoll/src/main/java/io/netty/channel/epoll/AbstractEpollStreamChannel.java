@@ -37,6 +37,7 @@ import io.netty.channel.unix.SocketWritableByteChannel;
 import io.netty.channel.unix.UnixChannelUtil;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.UnstableApi;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
@@ -48,6 +49,7 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.WritableByteChannel;
 import java.util.Queue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import static io.netty.channel.internal.ChannelUtils.MAX_BYTES_PER_GATHERING_WRITE_ATTEMPTED_LOW_THRESHOLD;
 import static io.netty.channel.internal.ChannelUtils.WRITE_STATUS_SNDBUF_FULL;
@@ -61,6 +63,9 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             " (expected: " + StringUtil.simpleClassName(ByteBuf.class) + ", " +
                     StringUtil.simpleClassName(DefaultFileRegion.class) + ')';
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(AbstractEpollStreamChannel.class);
+    // How long to wait on close for the kernel to complete the MSG_ZEROCOPY sends which still reference our memory.
+    private static final long ZEROCOPY_CLOSE_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(Math.max(0,
+            SystemPropertyUtil.getLong("io.netty.channel.epoll.zeroCopyCloseTimeoutMillis", 1000)));
 
     private final Runnable flushTask = new Runnable() {
         @Override
@@ -77,6 +82,8 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
     private FileDescriptor pipeOut;
 
     private WritableByteChannel byteChannel;
+    // Lazy init if we need to write with MSG_ZEROCOPY
+    private EpollZeroCopyQueue zeroCopyQueue;
 
     protected AbstractEpollStreamChannel(Channel parent, int fd) {
         this(parent, new LinuxSocket(fd));
@@ -236,7 +243,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
     }
 
     /**
-     * Write bytes form the given {@link ByteBuf} to the underlying {@link java.nio.channels.Channel}.
+     * Write bytes from the given {@link ByteBuf} to the underlying {@link java.nio.channels.Channel}.
      * @param in the collection which contains objects to write.
      * @param buf the {@link ByteBuf} from which the bytes should be written
      * @return The value that should be decremented from the write quantum which starts at
@@ -265,6 +272,77 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         }
     }
 
+    /**
+     * Write bytes from the given {@link ByteBuf} to the underlying {@link java.nio.channels.Channel} with
+     * {@code MSG_ZEROCOPY}. Once written completely the {@link ByteBuf} is removed from the
+     * {@link ChannelOutboundBuffer}, but only released once the kernel signals that it does not reference its memory
+     * anymore.
+     * @param in the collection which contains objects to write.
+     * @param buf the {@link ByteBuf} from which the bytes should be written
+     * @return The value that should be decremented from the write quantum which starts at
+     * {@link ChannelConfig#getWriteSpinCount()}. The typical use cases are as follows:
+     * <ul>
+     *     <li>1 - if a single call to write data was made to the OS</li>
+     *     <li>{@link ChannelUtils#WRITE_STATUS_SNDBUF_FULL} - if an attempt to write data was made to the OS, but
+     *     no data was accepted</li>
+     * </ul>
+     */
+    private int writeBytesZeroCopy(ChannelOutboundBuffer in, ByteBuf buf) throws IOException {
+        EpollZeroCopyQueue queue = zeroCopyQueue;
+        if (queue == null) {
+            zeroCopyQueue = queue = new EpollZeroCopyQueue();
+        }
+        IovArray array = ((EpollEventLoop) eventLoop()).cleanIovArray();
+        array.maxBytes(config().getMaxBytesPerGatheringWrite());
+        array.add(buf, buf.readerIndex(), buf.readableBytes());
+
+        long localWrittenBytes = socket.sendmsgZeroCopy(array.memoryAddress(0), array.count());
+        if (localWrittenBytes > 0) {
+            queue.sent(buf);
+        } else if (localWrittenBytes < 0) {
+            // ENOBUFS: the kernel can not pin more memory for this socket until it completed some of the previous
+            // sends, so just copy the bytes this time.
+            localWrittenBytes = socket.writevAddresses(array.memoryAddress(0), array.count());
+        }
+        if (localWrittenBytes == 0) {
+            return WRITE_STATUS_SNDBUF_FULL;
+        }
+        adjustMaxBytesPerGatheringWrite(array.size(), localWrittenBytes, array.maxBytes());
+
+        in.progress(localWrittenBytes);
+        if (localWrittenBytes < buf.readableBytes()) {
+            buf.skipBytes((int) localWrittenBytes);
+        } else if (queue.isWriting(buf)) {
+            queue.written(buf, in.removeAndDetach());
+        } else {
+            in.remove();
+        }
+        return 1;
+    }
+
+    /**
+     * Returns {@code true} if the given message must be written via
+     * {@link #writeBytesZeroCopy(ChannelOutboundBuffer, ByteBuf)}.
+     */
+    private boolean isZeroCopyWrite(Object msg, int zeroCopyThreshold) {
+        if (!(msg instanceof ByteBuf)) {
+            return false;
+        }
+        ByteBuf buf = (ByteBuf) msg;
+        // Once parts of a buffer were sent with MSG_ZEROCOPY the rest must be sent the same way, as otherwise it
+        // would be released before the kernel completed the send.
+        return zeroCopyThreshold > 0 && buf.readableBytes() >= zeroCopyThreshold ||
+                zeroCopyQueue != null && zeroCopyQueue.isWriting(buf);
+    }
+
+    /**
+     * Returns the minimum number of readable bytes a {@link ByteBuf} must have to be written with
+     * {@code MSG_ZEROCOPY}, or {@code -1} if {@code MSG_ZEROCOPY} is not used.
+     */
+    int zeroCopyThreshold() {
+        return -1;
+    }
+
     private void adjustMaxBytesPerGatheringWrite(long attempted, long written, long oldMaxBytesPerGatheringWrite) {
         // By default we track the SO_SNDBUF when ever it is explicitly set. However some OSes may dynamically change
         // SO_SNDBUF (and other characteristics that determine how much data can be written at once) so we should try
@@ -415,10 +493,13 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
     @Override
     protected void doWrite(ChannelOutboundBuffer in) throws Exception {
         int writeSpinCount = config().getWriteSpinCount();
+        final int zeroCopyThreshold = zeroCopyThreshold();
         do {
             final int msgCount = in.size();
-            // Do gathering write if the outbound buffer entries start with more than one ByteBuf.
-            if (msgCount > 1 && in.current() instanceof ByteBuf) {
+            if (msgCount > 0 && isZeroCopyWrite(in.current(), zeroCopyThreshold)) {
+                writeSpinCount -= writeBytesZeroCopy(in, (ByteBuf) in.current());
+            } else if (msgCount > 1 && in.current() instanceof ByteBuf) {
+                // Do gathering write if the outbound buffer entries start with more than one ByteBuf.
                 writeSpinCount -= doWriteMultiple(in);
             } else if (msgCount == 0) {
                 // Wrote all messages.
@@ -533,6 +614,10 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
     @Override
     protected final void doShutdownOutput() throws Exception {
         socket.shutdown(false, true);
+        if (zeroCopyQueue != null) {
+            // The ChannelOutboundBuffer releases a buffer which was only partially sent with MSG_ZEROCOPY.
+            zeroCopyQueue.abandonWriting();
+        }
     }
 
     private void shutdownInput0(final ChannelPromise promise) {
@@ -668,12 +753,94 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
     @Override
     protected void doClose() throws Exception {
         try {
+            awaitZeroCopyNotifications();
             // Calling super.doClose() first so spliceTo(...) will fail on next call.
             super.doClose();
         } finally {
             safeClosePipe(pipeIn);
             safeClosePipe(pipeOut);
             clearSpliceQueue();
+            releaseZeroCopyQueue();
+        }
+    }
+
+    private boolean hasPendingZeroCopySends() {
+        return zeroCopyQueue != null && zeroCopyQueue.hasPendingSends();
+    }
+
+    /**
+     * Reads the {@code MSG_ZEROCOPY} notifications. If this is not done in the {@link EventLoop}, which is the case if
+     * the close was moved to another {@link Executor} because of {@code SO_LINGER}, waits up to
+     * {@code io.netty.channel.epoll.zeroCopyCloseTimeoutMillis} for all sends to complete. Otherwise
+     * {@link ZeroCopyCompletionExecutor} already waited for them.
+     */
+    private void awaitZeroCopyNotifications() {
+        EpollZeroCopyQueue queue = zeroCopyQueue;
+        if (queue == null) {
+            return;
+        }
+        boolean wait = !eventLoop().inEventLoop();
+        long deadline = System.nanoTime() + ZEROCOPY_CLOSE_TIMEOUT_NANOS;
+        try {
+            for (;;) {
+                queue.readNotifications(socket);
+                if (!wait || !queue.hasPendingSends() || deadline - System.nanoTime() <= 0) {
+                    break;
+                }
+                // The completions are only reported once the peer acknowledged the bytes, so poll from time to time.
+                Thread.sleep(1);
+            }
+        } catch (IOException e) {
+            logger.debug("Error while reading the MSG_ZEROCOPY notifications", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void releaseZeroCopyQueue() {
+        EpollZeroCopyQueue queue = zeroCopyQueue;
+        if (queue != null) {
+            // The kernel may still send from the memory of buffers with pending sends after the close, and there is
+            // no way to find out when it is done once the socket was closed. Releasing them would let the allocator
+            // hand this memory to someone else while it is still on the wire, so they are leaked instead.
+            int leaked = queue.close();
+            if (leaked > 0) {
+                logger.warn("Leaked {} buffer(s) of {} as the kernel did not complete their MSG_ZEROCOPY sends " +
+                        "before the close.", leaked, this);
+            }
+        }
+    }
+
+    /**
+     * Runs the close (or shutdown) in the {@link EventLoop} once the kernel completed all the {@code MSG_ZEROCOPY}
+     * sends of the channel, or once {@code io.netty.channel.epoll.zeroCopyCloseTimeoutMillis} passed. The error queue
+     * is polled without blocking the {@link EventLoop}.
+     */
+    private final class ZeroCopyCompletionExecutor implements Executor, Runnable {
+        private final long deadline = System.nanoTime() + ZEROCOPY_CLOSE_TIMEOUT_NANOS;
+        private Runnable task;
+
+        @Override
+        public void execute(Runnable task) {
+            this.task = task;
+            eventLoop().execute(this);
+        }
+
+        @Override
+        public void run() {
+            try {
+                zeroCopyQueue.readNotifications(socket);
+            } catch (IOException e) {
+                logger.debug("Error while reading the MSG_ZEROCOPY notifications", e);
+                task.run();
+                return;
+            }
+            if (zeroCopyQueue.hasPendingSends() && deadline - System.nanoTime() > 0) {
+                // The completions are only reported once the peer acknowledged the bytes.
+                eventLoop().schedule(this, 1, TimeUnit.MILLISECONDS);
+            } else {
+                task.run();
+            }
         }
     }
 
@@ -707,12 +874,28 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
     }
 
     class EpollStreamUnsafe extends AbstractEpollUnsafe {
-        // Overridden here just to be able to access this method from AbstractEpollStreamChannel
         @Override
         protected Executor prepareToClose() {
+            // The kernel may still reference the memory of buffers written with MSG_ZEROCOPY, so give it some time to
+            // complete these sends before the buffers are released. The queue is only accessed in the EventLoop, so
+            // this is skipped if shutdownInput() calls this method from another thread.
+            if (eventLoop().inEventLoop() && isOpen() && hasPendingZeroCopySends()) {
+                return new ZeroCopyCompletionExecutor();
+            }
             return super.prepareToClose();
         }
 
+        @Override
+        void epollErrReady() {
+            if (zeroCopyQueue != null) {
+                try {
+                    zeroCopyQueue.readNotifications(socket);
+                } catch (IOException e) {
+                    pipeline().fireExceptionCaught(e);
+                }
+            }
+        }
+
         private void handleReadException(ChannelPipeline pipeline, ByteBuf byteBuf, Throwable cause, boolean close,
                 EpollRecvByteAllocatorHandle allocHandle) {
             if (byteBuf != null) {
@@ -26,7 +26,6 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.DefaultAddressedEnvelope;
 import io.netty.channel.socket.DatagramChannel;
-import io.netty.channel.socket.DatagramChannelConfig;
 import io.netty.channel.socket.DatagramPacket;
 import io.netty.channel.socket.InternetProtocolFamily;
 import io.netty.channel.unix.DatagramSocketAddress;
@@ -48,6 +47,7 @@ import java.net.NetworkInterface;
 import java.net.PortUnreachableException;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.util.List;
 
 import static io.netty.channel.epoll.LinuxSocket.newSocketDgram;
 
@@ -295,8 +295,9 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
             }
 
             try {
-                // Check if sendmmsg(...) is supported which is only the case for GLIBC 2.14+
-                if (Native.IS_SUPPORTING_SENDMMSG && in.size() > 1) {
+                // Check if sendmmsg(...) is supported which is only the case for GLIBC 2.14+. A
+                // SegmentedDatagramPacket is always written via sendmmsg(...) as it needs to pass the segment size.
+                if (Native.IS_SUPPORTING_SENDMMSG && in.size() > 1 || msg instanceof SegmentedDatagramPacket) {
                     NativeDatagramPacketArray array = cleanDatagramPacketArray();
                     array.add(in, isConnected());
                     int cnt = array.count();
@@ -401,6 +402,16 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
 
     @Override
     protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof SegmentedDatagramPacket) {
+            if (!SegmentedDatagramPacket.isSupported()) {
+                throw new UnsupportedOperationException(
+                        "unsupported message type: " + StringUtil.simpleClassName(msg) + EXPECTED_TYPES);
+            }
+            SegmentedDatagramPacket packet = (SegmentedDatagramPacket) msg;
+            ByteBuf content = packet.content();
+            return UnixChannelUtil.isBufferCopyNeededForWrite(content) ?
+                    packet.replace(newDirectBuffer(packet, content)) : msg;
+        }
         if (msg instanceof DatagramPacket) {
             DatagramPacket packet = (DatagramPacket) msg;
             ByteBuf content = packet.content();
@@ -462,7 +473,7 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
         @Override
         void epollInReady() {
             assert eventLoop().inEventLoop();
-            DatagramChannelConfig config = config();
+            EpollDatagramChannelConfig config = config();
             if (shouldBreakEpollInReady(config)) {
                 clearEpollIn0();
                 return;
@@ -490,7 +501,13 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
                                 0;
 
                         try {
-                            if (numDatagram <= 1) {
+                            if (numDatagram <= 1 && config.isUdpGro() && Native.IS_SUPPORTING_RECVMMSG) {
+                                // Only recvmmsg(...) tells us the segment size of datagrams the kernel coalesced,
+                                // so use it even if we only read a single (possibly coalesced) datagram.
+                                int writable = datagramSize == 0 ? byteBuf.writableBytes() :
+                                        Math.min(byteBuf.writableBytes(), datagramSize);
+                                read = scatteringRead(allocHandle, byteBuf, writable, 1);
+                            } else if (numDatagram <= 1) {
                                 if (connected) {
                                     read = connectedRead(allocHandle, byteBuf, datagramSize);
                                 } else {
@@ -604,7 +621,7 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
             int bytesReceived = received * datagramSize;
             byteBuf.writerIndex(bytesReceived);
             InetSocketAddress local = localAddress();
-            if (received == 1) {
+            if (received == 1 && packets[0].segmentSize() == 0) {
                 // Single packet fast-path
                 DatagramPacket packet = packets[0].newDatagramPacket(byteBuf, local);
                 allocHandle.lastBytesRead(datagramSize);
@@ -620,13 +637,13 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
             bufferPackets = RecyclableArrayList.newInstance();
             for (int i = 0; i < received; i++) {
                 DatagramPacket packet = packets[i].newDatagramPacket(byteBuf.readRetainedSlice(datagramSize), local);
-                bufferPackets.add(packet);
+                addDatagramPackets(bufferPackets, packet, packets[i].segmentSize());
             }
 
             allocHandle.lastBytesRead(bytesReceived);
-            allocHandle.incMessagesRead(received);
+            allocHandle.incMessagesRead(bufferPackets.size());
 
-            for (int i = 0; i < received; i++) {
+            for (int i = 0; i < bufferPackets.size(); i++) {
                 pipeline().fireChannelRead(bufferPackets.set(i, Unpooled.EMPTY_BUFFER));
             }
             bufferPackets.recycle();
@@ -645,6 +662,27 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
         }
     }
 
+    /**
+     * Add the given {@link DatagramPacket} to the {@link List}. If the kernel coalesced multiple datagrams into it
+     * ({@code UDP_GRO}) it is split into one {@link DatagramPacket} per datagram, which all share the same
+     * {@link ByteBuf}.
+     */
+    private static void addDatagramPackets(List<Object> packets, DatagramPacket packet, int segmentSize) {
+        ByteBuf content = packet.content();
+        if (segmentSize <= 0 || content.readableBytes() <= segmentSize) {
+            packets.add(packet);
+            return;
+        }
+        try {
+            while (content.isReadable()) {
+                packets.add(new DatagramPacket(content.readRetainedSlice(Math.min(content.readableBytes(),
+                        segmentSize)), packet.recipient(), packet.sender()));
+            }
+        } finally {
+            packet.release();
+        }
+    }
+
     private boolean read(EpollRecvByteAllocatorHandle allocHandle, ByteBuf byteBuf, int maxDatagramPacketSize)
             throws IOException {
         try {
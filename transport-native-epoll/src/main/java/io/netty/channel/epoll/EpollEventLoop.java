@@ -15,8 +15,10 @@
  */
 package io.netty.channel.epoll;
 
+import io.netty.channel.Channel;
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.EventLoopMetrics;
 import io.netty.channel.EventLoopTaskQueueFactory;
 import io.netty.channel.SelectStrategy;
 import io.netty.channel.SingleThreadEventLoop;
@@ -26,6 +28,8 @@ import io.netty.channel.unix.IovArray;
 import io.netty.util.IntSupplier;
 import io.netty.util.collection.IntObjectHashMap;
 import io.netty.util.collection.IntObjectMap;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
 import io.netty.util.concurrent.RejectedExecutionHandler;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PlatformDependent;
@@ -33,8 +37,12 @@ import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static java.lang.Math.min;
@@ -80,6 +88,7 @@ class EpollEventLoop extends SingleThreadEventLoop {
     private final AtomicLong nextWakeupNanos = new AtomicLong(AWAKE);
     private boolean pendingWakeup;
     private volatile int ioRatio = 50;
+    private volatile int[] cpuAffinity;
 
     // See http://man7.org/linux/man-pages/man2/timerfd_create.2.html.
     private static final long MAX_SCHEDULED_TIMERFD_NS = 999999999;
@@ -184,6 +193,10 @@ class EpollEventLoop extends SingleThreadEventLoop {
         if (!inEventLoop && nextWakeupNanos.getAndSet(AWAKE) != AWAKE) {
             // write to the evfd which will then wake-up epoll_wait(...)
             Native.eventFdWrite(eventFd.intValue(), 1L);
+            EventLoopMetrics metrics = metrics();
+            if (metrics != null) {
+                metrics.recordWakeup();
+            }
         }
     }
 
@@ -271,11 +284,65 @@ class EpollEventLoop extends SingleThreadEventLoop {
         this.ioRatio = ioRatio;
     }
 
+    /**
+     * Pin the thread of this event loop to the given CPUs. The returned {@link Future} is notified once this was
+     * done by the thread itself, with the affinity it had before which can be given to
+     * {@link #restoreCpuAffinity(CpuAffinity)}.
+     */
+    Future<CpuAffinity> setCpuAffinity(final int[] cpus) {
+        return submitAffinityTask(new Callable<CpuAffinity>() {
+            @Override
+            public CpuAffinity call() throws IOException {
+                CpuAffinity previous = new CpuAffinity(Native.threadAffinity(), cpuAffinity);
+                Native.setThreadAffinity(cpus);
+                cpuAffinity = cpus;
+                return previous;
+            }
+        });
+    }
+
+    /**
+     * Restore the affinity which was returned by {@link #setCpuAffinity(int[])}.
+     */
+    Future<CpuAffinity> restoreCpuAffinity(final CpuAffinity previous) {
+        return submitAffinityTask(new Callable<CpuAffinity>() {
+            @Override
+            public CpuAffinity call() throws IOException {
+                Native.setThreadAffinity(previous.allowedCpus);
+                cpuAffinity = previous.pinnedCpus;
+                return previous;
+            }
+        });
+    }
+
+    private Future<CpuAffinity> submitAffinityTask(Callable<CpuAffinity> task) {
+        try {
+            return submit(task);
+        } catch (RejectedExecutionException e) {
+            // This event loop is shutting down, so its own executor can not notify the listeners anymore.
+            return GlobalEventExecutor.INSTANCE.newFailedFuture(e);
+        }
+    }
+
+    /**
+     * Returns the CPUs the thread of this event loop was pinned to, or {@code null} if it was not pinned.
+     */
+    int[] cpuAffinity() {
+        int[] cpus = cpuAffinity;
+        return cpus == null ? null : cpus.clone();
+    }
+
     @Override
     public int registeredChannels() {
         return channels.size();
     }
 
+    @Override
+    public List<Channel> registeredChannelsSnapshot() {
+        assert inEventLoop();
+        return new ArrayList<Channel>(channels.values());
+    }
+
     private int epollWait(long deadlineNanos) throws IOException {
         if (deadlineNanos == NONE) {
             return Native.epollWait(epollFd, events, timerFd, Integer.MAX_VALUE, 0); // disarm timer
@@ -307,6 +374,7 @@ class EpollEventLoop extends SingleThreadEventLoop {
     protected void run() {
         long prevDeadlineNanos = NONE;
         for (;;) {
+            final EventLoopMetrics metrics = metrics();
             try {
                 int strategy = selectStrategy.calculateStrategy(selectNowSupplier, hasTasks());
                 switch (strategy) {
@@ -342,6 +410,7 @@ class EpollEventLoop extends SingleThreadEventLoop {
                         nextWakeupNanos.set(curDeadlineNanos);
                         try {
                             if (!hasTasks()) {
+                                final long selectStartTime = metrics != null ? System.nanoTime() : 0;
                                 if (curDeadlineNanos == prevDeadlineNanos) {
                                     // No timer activity needed
                                     strategy = epollWaitNoTimerChange();
@@ -350,6 +419,9 @@ class EpollEventLoop extends SingleThreadEventLoop {
                                     prevDeadlineNanos = curDeadlineNanos;
                                     strategy = epollWait(curDeadlineNanos);
                                 }
+                                if (metrics != null) {
+                                    metrics.selectTime().record(System.nanoTime() - selectStartTime);
+                                }
                             }
                         } finally {
                             // Try get() first to avoid much more expensive CAS in the case we
@@ -364,11 +436,15 @@ class EpollEventLoop extends SingleThreadEventLoop {
 
                 final int ioRatio = this.ioRatio;
                 if (ioRatio == 100) {
+                    final long ioStartTime = metrics != null && strategy > 0 ? System.nanoTime() : 0;
                     try {
                         if (strategy > 0 && processReady(events, strategy)) {
                             prevDeadlineNanos = NONE;
                         }
                     } finally {
+                        if (metrics != null && strategy > 0) {
+                            metrics.ioTime().record(System.nanoTime() - ioStartTime);
+                        }
                         // Ensure we always run tasks.
                         runAllTasks();
                     }
@@ -381,6 +457,9 @@ class EpollEventLoop extends SingleThreadEventLoop {
                     } finally {
                         // Ensure we always run tasks.
                         final long ioTime = System.nanoTime() - ioStartTime;
+                        if (metrics != null) {
+                            metrics.ioTime().record(ioTime);
+                        }
                         runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
                     }
                 } else {
@@ -434,6 +513,15 @@ class EpollEventLoop extends SingleThreadEventLoop {
 
     // Returns true if a timerFd event was encountered
     private boolean processReady(EpollEventArray events, int ready) {
+        workStarted();
+        try {
+            return processReady0(events, ready);
+        } finally {
+            workCompleted();
+        }
+    }
+
+    private boolean processReady0(EpollEventArray events, int ready) {
         boolean timerFired = false;
         for (int i = 0; i < ready; i ++) {
             final int fd = events.fd(i);
@@ -452,6 +540,12 @@ class EpollEventLoop extends SingleThreadEventLoop {
                     // past.
                     AbstractEpollUnsafe unsafe = (AbstractEpollUnsafe) ch.unsafe();
 
+                    // Check EPOLLERR first so the completion notifications of MSG_ZEROCOPY writes are read, and the
+                    // written buffers released, before more data is written.
+                    if ((ev & Native.EPOLLERR) != 0) {
+                        unsafe.epollErrReady();
+                    }
+
                     // First check for EPOLLOUT as we may need to fail the connect ChannelPromise before try
                     // to read from the file descriptor.
                     // See https://github.com/netty/netty/issues/3785
@@ -547,4 +641,18 @@ class EpollEventLoop extends SingleThreadEventLoop {
             events.free();
         }
     }
+
+    /**
+     * The CPUs the thread of an {@link EpollEventLoop} was allowed to run on, and the CPUs reported by
+     * {@link #cpuAffinity()}, at the time it was pinned.
+     */
+    static final class CpuAffinity {
+        final int[] allowedCpus;
+        final int[] pinnedCpus;
+
+        CpuAffinity(int[] allowedCpus, int[] pinnedCpus) {
+            this.allowedCpus = allowedCpus;
+            this.pinnedCpus = pinnedCpus;
+        }
+    }
 }
@@ -21,18 +21,39 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.channel.EventLoopTaskQueueFactory;
 import io.netty.channel.MultithreadEventLoopGroup;
 import io.netty.channel.SelectStrategyFactory;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.EventExecutorChooserFactory;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
 import io.netty.util.concurrent.RejectedExecutionHandler;
 import io.netty.util.concurrent.RejectedExecutionHandlers;
+import io.netty.util.internal.ThrowableUtil;
+import io.netty.util.internal.UnstableApi;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.netty.util.internal.ObjectUtil.checkNonEmpty;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
 
 /**
  * {@link EventLoopGroup} which uses epoll under the covers. Because of this
  * it only works on linux.
  */
 public final class EpollEventLoopGroup extends MultithreadEventLoopGroup {
+    // Upper bound for CPU ids, far above what the kernel supports (CONFIG_NR_CPUS is at most 8192) but low enough
+    // that the cpu_set_t which is allocated for the highest id stays small.
+    static final int MAX_CPUS = 1 << 16;
+
     {
         // Ensure JNI is initialized by the time this class is loaded.
         Epoll.ensureAvailability();
@@ -144,6 +165,148 @@ public final class EpollEventLoopGroup extends MultithreadEventLoopGroup {
         }
     }
 
+    /**
+     * Pin each {@link EventLoop} of this group to a single CPU. The CPUs are assigned round-robin in the iteration
+     * order of this group, so the n-th {@link EventLoop} is pinned to {@code cpus[n % cpus.length]}. If no CPUs are
+     * given, the CPUs the calling thread is allowed to run on are used.
+     * <p>
+     * The resulting mapping is reported by {@link #cpuAffinity()}, which is also what
+     * {@link EpollServerSocketChannelConfig#setReusePortCpuSteering(boolean)} uses to steer connections to the
+     * {@link EventLoop} running on the CPU which received them. A failure is handled like in
+     * {@link #setCpuSetAffinity(int[]...)}.
+     *
+     * @return a {@link Future} which is notified once all {@link EventLoop}s were pinned.
+     */
+    @UnstableApi
+    public Future<Void> setCpuAffinity(int... cpus) {
+        checkNotNull(cpus, "cpus");
+        if (cpus.length == 0) {
+            try {
+                cpus = Native.threadAffinity();
+            } catch (IOException e) {
+                return GlobalEventExecutor.INSTANCE.newFailedFuture(e);
+            }
+        }
+        int[][] cpuSets = new int[cpus.length][];
+        for (int i = 0; i < cpus.length; i++) {
+            cpuSets[i] = new int[] { cpus[i] };
+        }
+        return setCpuSetAffinity(cpuSets);
+    }
+
+    /**
+     * Pin each {@link EventLoop} of this group to a set of CPUs, among which the OS may still move it. The n-th
+     * {@link EventLoop} in the iteration order of this group is pinned to {@code cpuSets[n % cpuSets.length]}.
+     *
+     * <p>
+     * If one of the {@link EventLoop}s can not be pinned, for example because a CPU does not exist or this group is
+     * shutting down, the {@link EventLoop}s which were pinned already are restored to the affinity they had before,
+     * so {@link #cpuAffinity()} does not report a partial mapping.
+     *
+     * @return a {@link Future} which is notified once all {@link EventLoop}s were pinned, or fails once the others
+     *         were restored.
+     */
+    @UnstableApi
+    public Future<Void> setCpuSetAffinity(int[]... cpuSets) {
+        checkNonEmpty(cpuSets, "cpuSets");
+        for (int[] cpuSet : cpuSets) {
+            checkNotNull(cpuSet, "cpuSet");
+            if (cpuSet.length == 0) {
+                throw new IllegalArgumentException("cpuSets contains an empty set");
+            }
+            for (int cpu : cpuSet) {
+                if (cpu < 0 || cpu >= MAX_CPUS) {
+                    throw new IllegalArgumentException("cpu: " + cpu + " (expected: 0 <= cpu < " + MAX_CPUS + ')');
+                }
+            }
+        }
+
+        final Promise<Void> promise = GlobalEventExecutor.INSTANCE.newPromise();
+        final List<EpollEventLoop> eventLoops = new ArrayList<EpollEventLoop>();
+        final List<Future<EpollEventLoop.CpuAffinity>> futures = new ArrayList<Future<EpollEventLoop.CpuAffinity>>();
+        int i = 0;
+        for (EventExecutor executor : this) {
+            EpollEventLoop eventLoop = (EpollEventLoop) executor;
+            eventLoops.add(eventLoop);
+            futures.add(eventLoop.setCpuAffinity(cpuSets[i++ % cpuSets.length].clone()));
+        }
+        whenAllDone(futures, new Runnable() {
+            @Override
+            public void run() {
+                Throwable cause = null;
+                for (Future<EpollEventLoop.CpuAffinity> future : futures) {
+                    if (!future.isSuccess()) {
+                        cause = future.cause();
+                        break;
+                    }
+                }
+                if (cause == null) {
+                    promise.setSuccess(null);
+                    return;
+                }
+                // Do not leave a partial mapping behind, restore the EventLoops which were pinned already.
+                final Throwable failure = cause;
+                final List<Future<EpollEventLoop.CpuAffinity>> restores =
+                        new ArrayList<Future<EpollEventLoop.CpuAffinity>>();
+                for (int j = 0; j < futures.size(); j++) {
+                    Future<EpollEventLoop.CpuAffinity> future = futures.get(j);
+                    if (future.isSuccess()) {
+                        restores.add(eventLoops.get(j).restoreCpuAffinity(future.getNow()));
+                    }
+                }
+                whenAllDone(restores, new Runnable() {
+                    @Override
+                    public void run() {
+                        for (Future<EpollEventLoop.CpuAffinity> restore : restores) {
+                            if (!restore.isSuccess()) {
+                                ThrowableUtil.addSuppressed(failure, restore.cause());
+                            }
+                        }
+                        promise.setFailure(failure);
+                    }
+                });
+            }
+        });
+        return promise;
+    }
+
+    private static void whenAllDone(List<? extends Future<?>> futures, final Runnable task) {
+        if (futures.isEmpty()) {
+            task.run();
+            return;
+        }
+        final AtomicInteger remaining = new AtomicInteger(futures.size());
+        FutureListener<Object> listener = new FutureListener<Object>() {
+            @Override
+            public void operationComplete(Future<Object> future) {
+                if (remaining.decrementAndGet() == 0) {
+                    task.run();
+                }
+            }
+        };
+        for (Future<?> future : futures) {
+            future.addListener(listener);
+        }
+    }
+
+    /**
+     * Returns the CPUs each {@link EventLoop} of this group was pinned to via {@link #setCpuAffinity(int...)} or
+     * {@link #setCpuSetAffinity(int[]...)}, in the iteration order of this group. {@link EventLoop}s which were not
+     * pinned are not contained.
+     */
+    @UnstableApi
+    public Map<EventLoop, int[]> cpuAffinity() {
+        Map<EventLoop, int[]> affinity = new LinkedHashMap<EventLoop, int[]>();
+        for (EventExecutor executor : this) {
+            EpollEventLoop eventLoop = (EpollEventLoop) executor;
+            int[] cpus = eventLoop.cpuAffinity();
+            if (cpus != null) {
+                affinity.put(eventLoop, cpus);
+            }
+        }
+        return Collections.unmodifiableMap(affinity);
+    }
+
     @Override
     protected EventLoop newChild(Executor executor, Object... args) throws Exception {
         EventLoopTaskQueueFactory queueFactory = args.length == 4 ? (EventLoopTaskQueueFactory) args[3] : null;
@@ -17,12 +17,16 @@ package io.netty.channel.epoll;
 
 import io.netty.channel.Channel;
 import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
 import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.EmptyArrays;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
@@ -72,9 +76,48 @@ public final class EpollServerSocketChannel extends AbstractEpollServerChannel i
             socket.setTcpFastOpen(config.getTcpFastopen());
         }
         socket.listen(config.getBacklog());
+        if (config.isReusePortCpuSteering()) {
+            socket.attachReusePortCpuSteering(cpuToSocketIndex());
+        }
         active = true;
     }
 
+    /**
+     * Maps each CPU an {@link EpollEventLoop} of the group was pinned to onto the position of that
+     * {@link EpollEventLoop} in the group, which is the index of its socket in the {@code SO_REUSEPORT} group when
+     * bound via {@link io.netty.bootstrap.ServerBootstrap#bindPerChildEventLoop(SocketAddress)}. CPUs which are not
+     * mapped have the value {@code -1}.
+     */
+    private int[] cpuToSocketIndex() {
+        EventLoopGroup group = eventLoop().parent();
+        if (!(group instanceof EpollEventLoopGroup)) {
+            return EmptyArrays.EMPTY_INTS;
+        }
+        Map<EventLoop, int[]> affinity = ((EpollEventLoopGroup) group).cpuAffinity();
+        int maxCpu = -1;
+        for (int[] cpus : affinity.values()) {
+            for (int cpu : cpus) {
+                maxCpu = Math.max(maxCpu, cpu);
+            }
+        }
+        int[] cpuToIndex = new int[maxCpu + 1];
+        Arrays.fill(cpuToIndex, -1);
+        int index = 0;
+        for (EventExecutor executor : group) {
+            int[] cpus = affinity.get(executor);
+            if (cpus != null) {
+                for (int cpu : cpus) {
+                    // If the sets overlap the first EventLoop wins.
+                    if (cpuToIndex[cpu] == -1) {
+                        cpuToIndex[cpu] = index;
+                    }
+                }
+            }
+            index++;
+        }
+        return cpuToIndex;
+    }
+
     @Override
     public InetSocketAddress remoteAddress() {
         return (InetSocketAddress) super.remoteAddress();
@@ -30,6 +30,8 @@ import java.util.Map;
 public final class EpollServerSocketChannelConfig extends EpollServerChannelConfig
         implements ServerSocketChannelConfig {
 
+    private volatile boolean reusePortCpuSteering;
+
     EpollServerSocketChannelConfig(EpollServerSocketChannel channel) {
         super(channel);
 
@@ -42,7 +44,8 @@ public final class EpollServerSocketChannelConfig extends EpollServerChannelConf
     @Override
     public Map<ChannelOption<?>, Object> getOptions() {
         return getOptions(super.getOptions(), EpollChannelOption.SO_REUSEPORT, EpollChannelOption.IP_FREEBIND,
-            EpollChannelOption.IP_TRANSPARENT, EpollChannelOption.TCP_DEFER_ACCEPT);
+            EpollChannelOption.IP_TRANSPARENT, EpollChannelOption.TCP_DEFER_ACCEPT,
+            EpollChannelOption.REUSEPORT_CPU_STEERING);
     }
 
     @SuppressWarnings("unchecked")
@@ -60,6 +63,9 @@ public final class EpollServerSocketChannelConfig extends EpollServerChannelConf
         if (option == EpollChannelOption.TCP_DEFER_ACCEPT) {
             return (T) Integer.valueOf(getTcpDeferAccept());
         }
+        if (option == EpollChannelOption.REUSEPORT_CPU_STEERING) {
+            return (T) Boolean.valueOf(isReusePortCpuSteering());
+        }
         return super.getOption(option);
     }
 
@@ -79,6 +85,8 @@ public final class EpollServerSocketChannelConfig extends EpollServerChannelConf
             setTcpMd5Sig(m);
         } else if (option == EpollChannelOption.TCP_DEFER_ACCEPT) {
             setTcpDeferAccept((Integer) value);
+        } else if (option == EpollChannelOption.REUSEPORT_CPU_STEERING) {
+            setReusePortCpuSteering((Boolean) value);
         } else {
             return super.setOption(option, value);
         }
@@ -213,6 +221,35 @@ public final class EpollServerSocketChannelConfig extends EpollServerChannelConf
         }
     }
 
+    /**
+     * Returns {@code true} if connections are steered to the socket of the {@code SO_REUSEPORT} group which matches
+     * the CPU that received them.
+     */
+    public boolean isReusePortCpuSteering() {
+        return reusePortCpuSteering;
+    }
+
+    /**
+     * If {@code true} is used a classic BPF program is attached via {@code SO_ATTACH_REUSEPORT_CBPF} once the
+     * {@link EpollServerSocketChannel} is bound, which selects the socket of the {@code SO_REUSEPORT} group that
+     * belongs to the CPU which received the connection request. The mapping is built from
+     * {@link EpollEventLoopGroup#cpuAffinity()} of the group the channel is registered with: every CPU an
+     * {@link EpollEventLoop} is pinned to maps to the socket with the same index as that {@link EpollEventLoop} has
+     * in the group. Connection requests received on other CPUs are distributed by the kernel as usual.
+     * Default is disabled.
+     * <p>
+     * The sockets are indexed in the order they were bound, so this is meant to be used with
+     * {@link io.netty.bootstrap.ServerBootstrap#bindPerChildEventLoop(java.net.SocketAddress)} and
+     * {@link #setReusePort(boolean)}, after the {@link EpollEventLoop}s were pinned via
+     * {@link EpollEventLoopGroup#setCpuAffinity(int...)}. Each connection is then accepted and served by the
+     * {@link EpollEventLoop} which is running on the CPU that received it. Closing one of the sockets changes the
+     * order of the others. Needs Linux 4.6 or later.
+     */
+    public EpollServerSocketChannelConfig setReusePortCpuSteering(boolean reusePortCpuSteering) {
+        this.reusePortCpuSteering = reusePortCpuSteering;
+        return this;
+    }
+
     /**
      * Returns {@code true} if <a href="http://man7.org/linux/man-pages/man7/ip.7.html">IP_FREEBIND</a> is enabled,
      * {@code false} otherwise.
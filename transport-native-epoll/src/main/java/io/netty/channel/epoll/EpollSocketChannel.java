@@ -105,6 +105,11 @@ public final class EpollSocketChannel extends AbstractEpollStreamChannel impleme
         return (ServerSocketChannel) super.parent();
     }
 
+    @Override
+    int zeroCopyThreshold() {
+        return config.zeroCopyThreshold();
+    }
+
     @Override
     protected AbstractEpollUnsafe newUnsafe() {
         return new EpollSocketChannelUnsafe();
@@ -129,7 +134,7 @@ public final class EpollSocketChannel extends AbstractEpollStreamChannel impleme
                 // getSoLinger() may produce an exception. In this case we just return null.
                 // See https://github.com/netty/netty/issues/4449
             }
-            return null;
+            return super.prepareToClose();
         }
     }
 
@@ -36,9 +36,16 @@ import static io.netty.channel.ChannelOption.SO_RCVBUF;
 import static io.netty.channel.ChannelOption.SO_REUSEADDR;
 import static io.netty.channel.ChannelOption.SO_SNDBUF;
 import static io.netty.channel.ChannelOption.TCP_NODELAY;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
 
 public final class EpollSocketChannelConfig extends EpollChannelConfig implements SocketChannelConfig {
+    // The kernel documentation states that MSG_ZEROCOPY is generally only effective for writes of more than ~10KB,
+    // as below that the cost of pinning the pages and of the notification exceeds the cost of the copy.
+    private static final int DEFAULT_ZEROCOPY_THRESHOLD = 16 * 1024;
+
     private volatile boolean allowHalfClosure;
+    private volatile boolean zeroCopy;
+    private volatile int zeroCopyThreshold = DEFAULT_ZEROCOPY_THRESHOLD;
 
     /**
      * Creates a new instance.
@@ -60,7 +67,8 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
                 ALLOW_HALF_CLOSURE, EpollChannelOption.TCP_CORK, EpollChannelOption.TCP_NOTSENT_LOWAT,
                 EpollChannelOption.TCP_KEEPCNT, EpollChannelOption.TCP_KEEPIDLE, EpollChannelOption.TCP_KEEPINTVL,
                 EpollChannelOption.TCP_MD5SIG, EpollChannelOption.TCP_QUICKACK, EpollChannelOption.IP_TRANSPARENT,
-                EpollChannelOption.TCP_FASTOPEN_CONNECT, EpollChannelOption.SO_BUSY_POLL);
+                EpollChannelOption.TCP_FASTOPEN_CONNECT, EpollChannelOption.SO_BUSY_POLL,
+                EpollChannelOption.SO_ZEROCOPY, EpollChannelOption.ZEROCOPY_THRESHOLD);
     }
 
     @SuppressWarnings("unchecked")
@@ -120,6 +128,12 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
         if (option == EpollChannelOption.SO_BUSY_POLL) {
             return (T) Integer.valueOf(getSoBusyPoll());
         }
+        if (option == EpollChannelOption.SO_ZEROCOPY) {
+            return (T) Boolean.valueOf(isSoZeroCopy());
+        }
+        if (option == EpollChannelOption.ZEROCOPY_THRESHOLD) {
+            return (T) Integer.valueOf(getZeroCopyThreshold());
+        }
         return super.getOption(option);
     }
 
@@ -167,6 +181,10 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
             setTcpFastOpenConnect((Boolean) value);
         } else if (option == EpollChannelOption.SO_BUSY_POLL) {
             setSoBusyPoll((Integer) value);
+        } else if (option == EpollChannelOption.SO_ZEROCOPY) {
+            setSoZeroCopy((Boolean) value);
+        } else if (option == EpollChannelOption.ZEROCOPY_THRESHOLD) {
+            setZeroCopyThreshold((Integer) value);
         } else {
             return super.setOption(option, value);
         }
@@ -406,6 +424,61 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
         }
     }
 
+    /**
+     * Set the {@code SO_ZEROCOPY} option on the socket. Requires Linux kernel 4.14 or later. If enabled buffers of at
+     * least {@link #getZeroCopyThreshold()} bytes are written with {@code MSG_ZEROCOPY}, so the kernel sends them
+     * from their memory instead of copying them into the socket buffer. These buffers are only released, and their
+     * {@link io.netty.channel.ChannelPromise}s only notified, once the kernel signals that it does not reference the
+     * memory anymore. See the
+     * <a href="https://www.kernel.org/doc/html/latest/networking/msg_zerocopy.html">kernel documentation</a> for
+     * more details.
+     */
+    public EpollSocketChannelConfig setSoZeroCopy(boolean zeroCopy) {
+        try {
+            ((EpollSocketChannel) channel).socket.setSoZeroCopy(zeroCopy);
+            this.zeroCopy = zeroCopy;
+            return this;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Returns {@code true} if {@code SO_ZEROCOPY} is enabled, {@code false} otherwise.
+     */
+    public boolean isSoZeroCopy() {
+        try {
+            return ((EpollSocketChannel) channel).socket.isSoZeroCopy();
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Set the minimum number of readable bytes a buffer must have to be written with {@code MSG_ZEROCOPY} if
+     * {@code SO_ZEROCOPY} is enabled. Smaller buffers are copied, as pinning their memory and reading the completion
+     * notification costs more than the copy.
+     */
+    public EpollSocketChannelConfig setZeroCopyThreshold(int zeroCopyThreshold) {
+        this.zeroCopyThreshold = checkPositive(zeroCopyThreshold, "zeroCopyThreshold");
+        return this;
+    }
+
+    /**
+     * Returns the minimum number of readable bytes a buffer must have to be written with {@code MSG_ZEROCOPY}.
+     */
+    public int getZeroCopyThreshold() {
+        return zeroCopyThreshold;
+    }
+
+    /**
+     * Returns the minimum number of readable bytes a buffer must have to be written with {@code MSG_ZEROCOPY}, or
+     * {@code -1} if {@code SO_ZEROCOPY} is disabled.
+     */
+    int zeroCopyThreshold() {
+        return zeroCopy ? zeroCopyThreshold : -1;
+    }
+
     /**
      * Set the {@code TCP_NOTSENT_LOWAT} option on the socket. See {@code man 7 tcp} for more details.
      * @param tcpNotSentLowAt is a uint32_t
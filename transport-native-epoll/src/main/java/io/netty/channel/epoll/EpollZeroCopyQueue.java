@@ -0,0 +1,225 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.VoidChannelPromise;
+import io.netty.util.internal.PromiseNotificationUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+
+/**
+ * Keeps track of the {@link ByteBuf}s which were written with {@code MSG_ZEROCOPY} and so may still be referenced by
+ * the kernel.
+ * <p>
+ * The kernel assigns a sequential 32-bit id to every {@code sendmsg(...)} call with {@code MSG_ZEROCOPY} which
+ * transferred data, and reports completed ranges of ids through the error queue of the socket. A {@link ByteBuf} (and
+ * its {@link ChannelPromise}) is only released once all the calls which referenced its memory were completed.
+ * <p>
+ * This class is not thread-safe and must only be used from the {@link EpollEventLoop} of the channel.
+ */
+final class EpollZeroCopyQueue {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(EpollZeroCopyQueue.class);
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<Entry>();
+    private final int[] notification = new int[3];
+    private int nextId;
+
+    EpollZeroCopyQueue() {
+        this(0);
+    }
+
+    // Only used in tests to start with a specific id.
+    EpollZeroCopyQueue(int nextId) {
+        this.nextId = nextId;
+    }
+
+    /**
+     * Returns {@code true} if parts of the given {@link ByteBuf} were sent but it was not completely written yet.
+     */
+    boolean isWriting(ByteBuf buf) {
+        Entry tail = entries.peekLast();
+        return tail != null && tail.buf == buf && !tail.written;
+    }
+
+    /**
+     * Must be called after each {@code sendmsg(...)} call with {@code MSG_ZEROCOPY} which sent data from the given
+     * {@link ByteBuf}.
+     */
+    void sent(ByteBuf buf) {
+        int id = nextId++;
+        if (isWriting(buf)) {
+            Entry tail = entries.peekLast();
+            tail.count++;
+            tail.pending++;
+        } else {
+            entries.add(new Entry(buf, id));
+        }
+    }
+
+    /**
+     * Must be called once the given {@link ByteBuf} was completely written. The ownership of the {@link ByteBuf} and
+     * the {@link ChannelPromise} is transferred to this queue.
+     */
+    void written(ByteBuf buf, ChannelPromise promise) {
+        assert isWriting(buf);
+        Entry tail = entries.peekLast();
+        tail.written = true;
+        tail.promise = promise;
+        releaseCompleted();
+    }
+
+    /**
+     * Must be called if the {@link ByteBuf} which is being written will not be written completely, as the
+     * {@link io.netty.channel.ChannelOutboundBuffer} releases it then. It is retained until the kernel completed its
+     * sends.
+     */
+    void abandonWriting() {
+        Entry tail = entries.peekLast();
+        if (tail != null && !tail.written) {
+            tail.buf.retain();
+            tail.written = true;
+            releaseCompleted();
+        }
+    }
+
+    /**
+     * Read all the completion notifications from the error queue of the socket and release all the {@link ByteBuf}s
+     * which are not referenced by the kernel anymore.
+     */
+    void readNotifications(LinuxSocket socket) throws IOException {
+        while (socket.recvZeroCopyNotification(notification)) {
+            complete(notification[0], notification[1]);
+        }
+    }
+
+    /**
+     * Returns {@code true} if the kernel did not report all the {@code sendmsg(...)} calls as completed yet, and so
+     * may still reference the memory of some {@link ByteBuf}s.
+     */
+    boolean hasPendingSends() {
+        for (Entry entry : entries) {
+            if (entry.pending != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Must be called once the socket was closed. All the {@link ChannelPromise}s are notified, as the socket accepted
+     * the bytes of their {@link ByteBuf}s. The kernel may still send from the memory of the {@link ByteBuf}s with
+     * pending sends, so these are never released to not hand their memory to someone else. A {@link ByteBuf} which
+     * was not completely written is still owned by the {@link io.netty.channel.ChannelOutboundBuffer}, so it is
+     * retained once more if it has pending sends.
+     *
+     * @return the number of {@link ByteBuf}s which are leaked because of pending sends.
+     */
+    int close() {
+        int leaked = 0;
+        for (;;) {
+            Entry entry = entries.poll();
+            if (entry == null) {
+                break;
+            }
+            if (entry.pending == 0) {
+                if (entry.written) {
+                    entry.release();
+                }
+            } else {
+                leaked++;
+                if (entry.written) {
+                    entry.notifyPromise();
+                } else {
+                    entry.buf.retain();
+                }
+            }
+        }
+        return leaked;
+    }
+
+    /**
+     * Mark the {@code sendmsg(...)} calls with the ids in the range {@code [lo, hi]} as completed and release all the
+     * {@link ByteBuf}s which are not referenced by the kernel anymore.
+     */
+    void complete(int lo, int hi) {
+        Entry head = entries.peek();
+        if (head == null) {
+            return;
+        }
+        // Every id is only reported once, and the head is only removed once all its ids were reported. So all the
+        // reported ids are at or after the first id of the head, which allows to handle the wrap-around of the ids by
+        // computing everything relative to it.
+        long first = (lo - head.firstId) & 0xFFFFFFFFL;
+        long last = (hi - head.firstId) & 0xFFFFFFFFL;
+        for (Entry entry : entries) {
+            long entryFirst = (entry.firstId - head.firstId) & 0xFFFFFFFFL;
+            if (entryFirst > last) {
+                break;
+            }
+            long overlap = Math.min(last, entryFirst + entry.count - 1) - Math.max(first, entryFirst) + 1;
+            if (overlap > 0) {
+                entry.pending -= (int) overlap;
+            }
+        }
+        releaseCompleted();
+    }
+
+    private void releaseCompleted() {
+        for (;;) {
+            Entry head = entries.peek();
+            if (head == null || !head.written || head.pending != 0) {
+                break;
+            }
+            entries.poll();
+            head.release();
+        }
+    }
+
+    private static final class Entry {
+        final ByteBuf buf;
+        ChannelPromise promise;
+        // The sendmsg(...) calls for this buffer used the ids [firstId, firstId + count).
+        final int firstId;
+        int count;
+        // The number of these calls which were not completed yet.
+        int pending;
+        boolean written;
+
+        Entry(ByteBuf buf, int firstId) {
+            this.buf = buf;
+            this.firstId = firstId;
+            count = 1;
+            pending = 1;
+        }
+
+        void release() {
+            buf.release();
+            notifyPromise();
+        }
+
+        void notifyPromise() {
+            if (promise != null) {
+                PromiseNotificationUtil.trySuccess(promise, null,
+                        promise instanceof VoidChannelPromise ? null : logger);
+            }
+        }
+    }
+}
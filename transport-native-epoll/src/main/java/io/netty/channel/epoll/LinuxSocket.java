@@ -168,6 +168,10 @@ final class LinuxSocket extends Socket {
         setSoBusyPoll(intValue(), loopMicros);
     }
 
+    void setSoZeroCopy(boolean zeroCopy) throws IOException {
+        setSoZeroCopy(intValue(), zeroCopy ? 1 : 0);
+    }
+
     void setTcpNotSentLowAt(long tcpNotSentLowAt) throws IOException {
         if (tcpNotSentLowAt < 0 || tcpNotSentLowAt > MAX_UINT32_T) {
             throw new IllegalArgumentException("tcpNotSentLowAt must be a uint32_t");
@@ -175,6 +179,10 @@ final class LinuxSocket extends Socket {
         setTcpNotSentLowAt(intValue(), (int) tcpNotSentLowAt);
     }
 
+    void attachReusePortCpuSteering(int[] cpuToIndex) throws IOException {
+        attachReusePortCpuSteering(intValue(), cpuToIndex);
+    }
+
     void setTcpFastOpen(int tcpFastopenBacklog) throws IOException {
         setTcpFastOpen(intValue(), tcpFastopenBacklog);
     }
@@ -215,6 +223,10 @@ final class LinuxSocket extends Socket {
         setIpRecvOrigDestAddr(intValue(), enabled ? 1 : 0);
     }
 
+    void setUdpGro(boolean gro) throws IOException {
+        setUdpGro(intValue(), gro ? 1 : 0);
+    }
+
     int getTimeToLive() throws IOException {
         return getTimeToLive(intValue());
     }
@@ -244,6 +256,10 @@ final class LinuxSocket extends Socket {
         return isTcpQuickAck(intValue()) != 0;
     }
 
+    boolean isSoZeroCopy() throws IOException {
+        return isSoZeroCopy(intValue()) != 0;
+    }
+
     long getTcpNotSentLowAt() throws IOException {
         return getTcpNotSentLowAt(intValue()) & MAX_UINT32_T;
     }
@@ -276,6 +292,10 @@ final class LinuxSocket extends Socket {
         return isIpRecvOrigDestAddr(intValue()) != 0;
     }
 
+    boolean isUdpGro() throws IOException {
+        return isUdpGro(intValue()) != 0;
+    }
+
     PeerCredentials getPeerCredentials() throws IOException {
         return getPeerCredentials(intValue());
     }
@@ -288,6 +308,35 @@ final class LinuxSocket extends Socket {
         setIpMulticastLoop(intValue(), ipv6, loopbackModeDisabled ? 0 : 1);
     }
 
+    /**
+     * Writes the given iovecs with {@code MSG_ZEROCOPY}. Returns the number of bytes written, or {@code -1} if the
+     * kernel could not pin more memory for zero copy sends and the data must be written with a copy instead.
+     */
+    long sendmsgZeroCopy(long iovAddress, int iovcnt) throws IOException {
+        long res = sendmsgZeroCopy(intValue(), iovAddress, iovcnt);
+        if (res >= 0) {
+            return res;
+        }
+        if (res == Native.ERRNO_ENOBUFS_NEGATIVE) {
+            return -1;
+        }
+        return ioResult("sendmsg", (int) res);
+    }
+
+    /**
+     * Reads the next zero copy completion notification from the error queue. On success the first and the last id of
+     * the completed sends are stored in {@code range[0]} and {@code range[1]}, and {@code range[2]} is {@code 1} if the
+     * kernel copied the data anyway. Returns {@code false} if no notification is queued.
+     */
+    boolean recvZeroCopyNotification(int[] range) throws IOException {
+        int res = recvZeroCopyNotification(intValue(), range);
+        if (res > 0) {
+            return true;
+        }
+        ioResult("recvmsg", res);
+        return false;
+    }
+
     long sendFile(DefaultFileRegion src, long baseOffset, long offset, long length) throws IOException {
         // Open the file-region as it may be created via the lazy constructor. This is needed as we directly access
         // the FileChannel field via JNI.
@@ -351,6 +400,8 @@ final class LinuxSocket extends Socket {
                                           int scopeId, int interfaceIndex) throws IOException;
     private static native void leaveSsmGroup(int fd, boolean ipv6, byte[] group, byte[] interfaceAddress,
                                              int scopeId, int interfaceIndex, byte[] source) throws IOException;
+    private static native long sendmsgZeroCopy(int fd, long iovAddress, int iovcnt);
+    private static native int recvZeroCopyNotification(int fd, int[] range);
     private static native long sendFile(int socketFd, DefaultFileRegion src, long baseOffset,
                                         long offset, long length) throws IOException;
 
@@ -358,6 +409,7 @@ final class LinuxSocket extends Socket {
     private static native int isTcpQuickAck(int fd) throws IOException;
     private static native int isTcpCork(int fd) throws IOException;
     private static native int getSoBusyPoll(int fd) throws IOException;
+    private static native int isSoZeroCopy(int fd) throws IOException;
     private static native int getTcpNotSentLowAt(int fd) throws IOException;
     private static native int getTcpKeepIdle(int fd) throws IOException;
     private static native int getTcpKeepIntvl(int fd) throws IOException;
@@ -367,6 +419,7 @@ final class LinuxSocket extends Socket {
     private static native int isIpFreeBind(int fd) throws IOException;
     private static native int isIpTransparent(int fd) throws IOException;
     private static native int isIpRecvOrigDestAddr(int fd) throws IOException;
+    private static native int isUdpGro(int fd) throws IOException;
     private static native void getTcpInfo(int fd, long[] array) throws IOException;
     private static native PeerCredentials getPeerCredentials(int fd) throws IOException;
     private static native int isTcpFastOpenConnect(int fd) throws IOException;
@@ -375,6 +428,8 @@ final class LinuxSocket extends Socket {
     private static native void setTcpQuickAck(int fd, int quickAck) throws IOException;
     private static native void setTcpCork(int fd, int tcpCork) throws IOException;
     private static native void setSoBusyPoll(int fd, int loopMicros) throws IOException;
+    private static native void setSoZeroCopy(int fd, int zeroCopy) throws IOException;
+    private static native void attachReusePortCpuSteering(int fd, int[] cpuToIndex) throws IOException;
     private static native void setTcpNotSentLowAt(int fd, int tcpNotSentLowAt) throws IOException;
     private static native void setTcpFastOpen(int fd, int tcpFastopenBacklog) throws IOException;
     private static native void setTcpFastOpenConnect(int fd, int tcpFastOpenConnect) throws IOException;
@@ -385,6 +440,7 @@ final class LinuxSocket extends Socket {
     private static native void setIpFreeBind(int fd, int freeBind) throws IOException;
     private static native void setIpTransparent(int fd, int transparent) throws IOException;
     private static native void setIpRecvOrigDestAddr(int fd, int transparent) throws IOException;
+    private static native void setUdpGro(int fd, int gro) throws IOException;
     private static native void setTcpMd5Sig(
             int fd, boolean ipv6, byte[] address, int scopeId, byte[] key) throws IOException;
     private static native void setInterface(
@@ -33,9 +33,11 @@ import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.epolle
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.epollin;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.epollout;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.epollrdhup;
+import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.errnoENOBUFS;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.isSupportingRecvmmsg;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.isSupportingSendmmsg;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.isSupportingTcpFastopen;
+import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.isSupportingUdpSegment;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.kernelVersion;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.tcpMd5SigMaxKeyLen;
 import static io.netty.channel.unix.Errors.ioResult;
@@ -85,9 +87,11 @@ public final class Native {
     public static final int EPOLLRDHUP = epollrdhup();
     public static final int EPOLLET = epollet();
     public static final int EPOLLERR = epollerr();
+    static final int ERRNO_ENOBUFS_NEGATIVE = -errnoENOBUFS();
 
     public static final boolean IS_SUPPORTING_SENDMMSG = isSupportingSendmmsg();
     static final boolean IS_SUPPORTING_RECVMMSG = isSupportingRecvmmsg();
+    static final boolean IS_SUPPORTING_UDP_SEGMENT = isSupportingUdpSegment();
 
     public static final boolean IS_SUPPORTING_TCP_FASTOPEN = isSupportingTcpFastopen();
     public static final int TCP_MD5SIG_MAXKEYLEN = tcpMd5SigMaxKeyLen();
@@ -234,6 +238,32 @@ public final class Native {
     private static native int recvmmsg0(
             int fd, boolean ipv6, NativeDatagramPacketArray.NativeDatagramPacket[] msgs, int offset, int len);
 
+    // Thread affinity related
+    /**
+     * Pin the calling thread to the given CPUs.
+     */
+    static void setThreadAffinity(int[] cpus) throws IOException {
+        setThreadAffinity0(cpus);
+    }
+
+    /**
+     * Returns the CPUs the calling thread is allowed to run on.
+     */
+    static int[] threadAffinity() throws IOException {
+        return threadAffinity0();
+    }
+
+    /**
+     * Returns the CPU the calling thread is currently running on.
+     */
+    static int currentCpu() throws IOException {
+        return currentCpu0();
+    }
+
+    private static native void setThreadAffinity0(int[] cpus) throws IOException;
+    private static native int[] threadAffinity0() throws IOException;
+    private static native int currentCpu0() throws IOException;
+
     // epoll_event related
     public static native int sizeofEpollEvent();
     public static native int offsetofEpollData();
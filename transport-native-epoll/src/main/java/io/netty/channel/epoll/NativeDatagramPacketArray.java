@@ -55,10 +55,10 @@ final class NativeDatagramPacketArray {
     }
 
     boolean addWritable(ByteBuf buf, int index, int len) {
-        return add0(buf, index, len, null);
+        return add0(buf, index, len, 0, null);
     }
 
-    private boolean add0(ByteBuf buf, int index, int len, InetSocketAddress recipient) {
+    private boolean add0(ByteBuf buf, int index, int len, int segmentSize, InetSocketAddress recipient) {
         if (count == packets.length) {
             // We already filled up to UIO_MAX_IOV messages. This is the max allowed per
             // recvmmsg(...) / sendmmsg(...) call, we will try again later.
@@ -73,7 +73,7 @@ final class NativeDatagramPacketArray {
             return false;
         }
         NativeDatagramPacket p = packets[count];
-        p.init(iovArray.memoryAddress(offset), iovArray.count() - offset, recipient);
+        p.init(iovArray.memoryAddress(offset), iovArray.count() - offset, segmentSize, recipient);
 
         count++;
         return true;
@@ -115,11 +115,20 @@ final class NativeDatagramPacketArray {
             if (msg instanceof DatagramPacket) {
                 DatagramPacket packet = (DatagramPacket) msg;
                 ByteBuf buf = packet.content();
-                return add0(buf, buf.readerIndex(), buf.readableBytes(), packet.recipient());
+                int segmentSize = 0;
+                if (packet instanceof SegmentedDatagramPacket) {
+                    int seg = ((SegmentedDatagramPacket) packet).segmentSize();
+                    // We only need to tell the kernel that we want to use UDP_SEGMENT if there are multiple
+                    // segments in the packet.
+                    if (buf.readableBytes() > seg) {
+                        segmentSize = seg;
+                    }
+                }
+                return add0(buf, buf.readerIndex(), buf.readableBytes(), segmentSize, packet.recipient());
             }
             if (msg instanceof ByteBuf && connected) {
                 ByteBuf buf = (ByteBuf) msg;
-                return add0(buf, buf.readerIndex(), buf.readableBytes(), null);
+                return add0(buf, buf.readerIndex(), buf.readableBytes(), 0, null);
             }
             return false;
         }
@@ -141,9 +150,13 @@ final class NativeDatagramPacketArray {
         private int scopeId;
         private int port;
 
-        private void init(long memoryAddress, int count, InetSocketAddress recipient) {
+        // The UDP_SEGMENT size to send the data with, or the UDP_GRO size of the received data. 0 if not used.
+        private int segmentSize;
+
+        private void init(long memoryAddress, int count, int segmentSize, InetSocketAddress recipient) {
             this.memoryAddress = memoryAddress;
             this.count = count;
+            this.segmentSize = segmentSize;
 
             if (recipient == null) {
                 this.scopeId = 0;
@@ -163,6 +176,14 @@ final class NativeDatagramPacketArray {
             }
         }
 
+        /**
+         * Returns the size of the datagrams the kernel coalesced into the received data if {@code UDP_GRO} is used,
+         * {@code 0} otherwise.
+         */
+        int segmentSize() {
+            return segmentSize;
+        }
+
         DatagramPacket newDatagramPacket(ByteBuf buffer, InetSocketAddress localAddress) throws UnknownHostException {
             final InetAddress address;
             if (addrLen == ipv4Bytes.length) {
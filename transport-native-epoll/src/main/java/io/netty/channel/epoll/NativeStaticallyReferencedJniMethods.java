@@ -35,6 +35,7 @@ final class NativeStaticallyReferencedJniMethods {
     static native int epollrdhup();
     static native int epollet();
     static native int epollerr();
+    static native int errnoENOBUFS();
     static native long ssizeMax();
     static native int tcpMd5SigMaxKeyLen();
     static native int iovMax();
@@ -42,5 +43,6 @@ final class NativeStaticallyReferencedJniMethods {
     static native boolean isSupportingSendmmsg();
     static native boolean isSupportingRecvmmsg();
     static native boolean isSupportingTcpFastopen();
+    static native boolean isSupportingUdpSegment();
     static native String kernelVersion();
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EpollCpuAffinityTest {
+
+    private static final int NUM_LOOPS = 3;
+
+    private EpollEventLoopGroup group;
+    private int[] allowedCpus;
+
+    @Before
+    public void setUp() throws Exception {
+        group = new EpollEventLoopGroup(NUM_LOOPS);
+        allowedCpus = Native.threadAffinity();
+    }
+
+    @After
+    public void tearDown() {
+        group.shutdownGracefully();
+    }
+
+    @Test(timeout = 10000)
+    public void testRoundRobinAcrossAllowedCpus() throws Exception {
+        assertTrue(group.cpuAffinity().isEmpty());
+        group.setCpuAffinity().sync();
+
+        Map<EventLoop, int[]> affinity = group.cpuAffinity();
+        assertEquals(NUM_LOOPS, affinity.size());
+        int i = 0;
+        for (Map.Entry<EventLoop, int[]> entry : affinity.entrySet()) {
+            int[] expected = { allowedCpus[i++ % allowedCpus.length] };
+            assertArrayEquals(expected, entry.getValue());
+            assertRunsOn(entry.getKey(), expected);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testCpuSets() throws Exception {
+        int[] cpuSet = allowedCpus.length == 1 ? allowedCpus
+                : new int[] { allowedCpus[0], allowedCpus[allowedCpus.length - 1] };
+        group.setCpuSetAffinity(cpuSet).sync();
+
+        for (Map.Entry<EventLoop, int[]> entry : group.cpuAffinity().entrySet()) {
+            assertArrayEquals(cpuSet, entry.getValue());
+            assertRunsOn(entry.getKey(), cpuSet);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testMappingFollowsIterationOrder() throws Exception {
+        group.setCpuAffinity(allowedCpus[0]).sync();
+
+        Iterator<EventExecutor> executors = group.iterator();
+        for (EventLoop eventLoop : group.cpuAffinity().keySet()) {
+            assertEquals(executors.next(), eventLoop);
+        }
+        assertFalse(executors.hasNext());
+    }
+
+    @Test(timeout = 10000)
+    public void testUnknownCpuFails() throws Exception {
+        Future<Void> future = group.setCpuAffinity(EpollEventLoopGroup.MAX_CPUS - 1).await();
+        assertFalse(future.isSuccess());
+        assertTrue(group.cpuAffinity().isEmpty());
+    }
+
+    @Test(timeout = 10000)
+    public void testPartialFailureRestoresAffinity() throws Exception {
+        // The second EventLoop can not be pinned, the first and the third can.
+        Future<Void> future = group.setCpuSetAffinity(
+                new int[] { allowedCpus[0] }, new int[] { EpollEventLoopGroup.MAX_CPUS - 1 }).await();
+        assertFalse(future.isSuccess());
+        assertTrue(group.cpuAffinity().isEmpty());
+        for (EventExecutor executor : group) {
+            assertRunsOn((EventLoop) executor, allowedCpus);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testShutdownGroupFailsTheFuture() throws Exception {
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        Future<Void> future = group.setCpuAffinity(allowedCpus[0]).await();
+        assertTrue(future.cause() instanceof RejectedExecutionException);
+        assertTrue(group.cpuAffinity().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeCpu() {
+        group.setCpuAffinity(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooHighCpu() {
+        group.setCpuAffinity(EpollEventLoopGroup.MAX_CPUS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxIntCpu() {
+        group.setCpuSetAffinity(new int[] { 0, Integer.MAX_VALUE });
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullCpus() {
+        group.setCpuAffinity((int[]) null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyCpuSet() {
+        group.setCpuSetAffinity(new int[0]);
+    }
+
+    private static void assertRunsOn(EventLoop eventLoop, final int[] cpus) throws Exception {
+        int[] allowed = eventLoop.submit(new Callable<int[]>() {
+            @Override
+            public int[] call() throws Exception {
+                int cpu = Native.currentCpu();
+                if (Arrays.binarySearch(cpus, cpu) < 0) {
+                    throw new AssertionError("running on CPU " + cpu + ", expected one of " + Arrays.toString(cpus));
+                }
+                return Native.threadAffinity();
+            }
+        }).sync().getNow();
+        assertArrayEquals(cpus, allowed);
+    }
+}
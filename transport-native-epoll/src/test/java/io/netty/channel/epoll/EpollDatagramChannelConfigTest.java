@@ -15,9 +15,12 @@
  */
 package io.netty.channel.epoll;
 
+import io.netty.channel.ChannelException;
 import org.junit.Test;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNoException;
 
 public class EpollDatagramChannelConfigTest {
 
@@ -29,4 +32,23 @@ public class EpollDatagramChannelConfigTest {
         assertTrue(channel.config().getOption(EpollChannelOption.IP_FREEBIND));
         channel.fd().close();
     }
+
+    @Test
+    public void testUdpGro() throws Exception {
+        Epoll.ensureAvailability();
+        EpollDatagramChannel channel = new EpollDatagramChannel();
+        try {
+            assertFalse(channel.config().getOption(EpollChannelOption.UDP_GRO));
+            try {
+                channel.config().setOption(EpollChannelOption.UDP_GRO, true);
+            } catch (ChannelException e) {
+                // UDP_GRO requires Linux 5.0 or later.
+                assumeNoException(e);
+            }
+            assertTrue(channel.config().getOption(EpollChannelOption.UDP_GRO));
+            assertTrue(channel.socket.isUdpGro());
+        } finally {
+            channel.fd().close();
+        }
+    }
 }
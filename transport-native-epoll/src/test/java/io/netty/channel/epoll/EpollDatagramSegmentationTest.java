@@ -0,0 +1,148 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.NetUtil;
+import io.netty.util.internal.PlatformDependent;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class EpollDatagramSegmentationTest {
+
+    private static final int SEGMENT_SIZE = 1200;
+    private static final int NUM_SEGMENTS = 20;
+
+    private static EventLoopGroup group;
+
+    @BeforeClass
+    public static void setUp() {
+        assumeTrue(SegmentedDatagramPacket.isSupported());
+        group = new EpollEventLoopGroup(1);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (group != null) {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testSegmentedWrite() throws Throwable {
+        testSegmentedDatagramPacket(false);
+    }
+
+    @Test(timeout = 10000)
+    public void testSegmentedWriteAndGroRead() throws Throwable {
+        testSegmentedDatagramPacket(true);
+    }
+
+    private static void testSegmentedDatagramPacket(boolean gro) throws Throwable {
+        // The last segment is smaller.
+        final byte[] bytes = new byte[SEGMENT_SIZE * NUM_SEGMENTS - SEGMENT_SIZE / 2];
+        PlatformDependent.threadLocalRandom().nextBytes(bytes);
+
+        final CountDownLatch latch = new CountDownLatch(NUM_SEGMENTS);
+        final AtomicReference<Throwable> errorRef = new AtomicReference<Throwable>();
+        final List<ByteBuf> received = Collections.synchronizedList(new ArrayList<ByteBuf>());
+
+        Bootstrap sb = new Bootstrap().group(group).channel(EpollDatagramChannel.class);
+        if (gro) {
+            sb.option(EpollChannelOption.UDP_GRO, true);
+            sb.option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(64 * 1024));
+        }
+        sb.handler(new SimpleChannelInboundHandler<DatagramPacket>() {
+            @Override
+            protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg) {
+                received.add(msg.content().retain());
+                latch.countDown();
+            }
+
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                errorRef.compareAndSet(null, cause);
+            }
+        });
+        Bootstrap cb = new Bootstrap().group(group).channel(EpollDatagramChannel.class)
+                .handler(new ChannelInboundHandlerAdapter());
+
+        Channel sc = null;
+        Channel cc = null;
+        try {
+            sc = sb.bind(NetUtil.LOCALHOST4, 0).sync().channel();
+            // UDP_GRO requires Linux 5.0 or later.
+            assumeTrue(((EpollDatagramChannel) sc).config().isUdpGro() == gro);
+            cc = cb.bind(NetUtil.LOCALHOST4, 0).sync().channel();
+
+            InetSocketAddress addr = (InetSocketAddress) sc.localAddress();
+            ByteBuf buf = cc.alloc().directBuffer(bytes.length).writeBytes(bytes);
+            cc.writeAndFlush(new SegmentedDatagramPacket(buf, SEGMENT_SIZE, addr)).sync();
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertNull(errorRef.get());
+            assertEquals(NUM_SEGMENTS, received.size());
+
+            byte[] receivedBytes = new byte[bytes.length];
+            int offset = 0;
+            for (ByteBuf content : received) {
+                int length = Math.min(SEGMENT_SIZE, bytes.length - offset);
+                assertEquals(length, content.readableBytes());
+                if (gro) {
+                    // The kernel coalesced all segments, so these are slices of the same buffer.
+                    assertEquals(received.get(0).memoryAddress() + offset, content.memoryAddress());
+                }
+                content.readBytes(receivedBytes, offset, length);
+                offset += length;
+            }
+            assertArrayEquals(bytes, receivedBytes);
+        } finally {
+            for (ByteBuf content : received) {
+                content.release();
+            }
+            if (cc != null) {
+                cc.close().sync();
+            }
+            if (sc != null) {
+                sc.close().sync();
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.unix.HugePageChunkProvider;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EpollHugePageChunkProviderTest {
+
+    private static final int CHUNK_SIZE = 8192 << 11;
+
+    @BeforeClass
+    public static void loadNativeLibrary() {
+        // The native methods are registered when the epoll native library is loaded.
+        Epoll.ensureAvailability();
+    }
+
+    @Test
+    public void testTransparentHugePages() {
+        HugePageChunkProvider provider = new HugePageChunkProvider(false);
+        testAllocate(provider);
+        assertEquals(1, provider.numTransparentHugePageChunks());
+        assertEquals(0, provider.numHugeTlbChunks());
+        assertEquals(0, provider.numFallbackChunks());
+    }
+
+    @Test
+    public void testHugeTlbFallsBack() {
+        // Depending on vm.nr_hugepages this is either served from the reserved huge pages or falls back to
+        // transparent huge pages, but it must never fail.
+        HugePageChunkProvider provider = new HugePageChunkProvider(true);
+        testAllocate(provider);
+        assertEquals(1, provider.numHugeTlbChunks() + provider.numTransparentHugePageChunks());
+        assertEquals(0, provider.numFallbackChunks());
+    }
+
+    private static void testAllocate(HugePageChunkProvider provider) {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                true, 0, 1, 8192, 11, 0, 0, false, 0, false, provider);
+        ByteBuf buffer = allocator.directBuffer(CHUNK_SIZE);
+        assertTrue(buffer.isDirect());
+        for (int i = 0; i < CHUNK_SIZE; i += 4096) {
+            buffer.setInt(i, i);
+        }
+        for (int i = 0; i < CHUNK_SIZE; i += 4096) {
+            assertEquals(i, buffer.getInt(i));
+        }
+        // The chunk is only used by this buffer, so releasing it unmaps the memory again.
+        assertTrue(buffer.release());
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.NetUtil;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNoException;
+
+public class EpollReusePortCpuSteeringTest {
+
+    private static final int MAX_LOOPS = 4;
+    private static final int CONNECTIONS_PER_LOOP = 8;
+
+    private static EpollEventLoopGroup group;
+    private static int numLoops;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        int[] allowedCpus = Native.threadAffinity();
+        numLoops = Math.min(MAX_LOOPS, allowedCpus.length);
+        group = new EpollEventLoopGroup(numLoops);
+        // Pin every EventLoop to its own CPU, which is what the steering program is built from.
+        group.setCpuAffinity(Arrays.copyOf(allowedCpus, numLoops)).sync();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        group.shutdownGracefully();
+    }
+
+    @Test(timeout = 10000)
+    public void testAcceptOnEventLoopOfReceivingCpu() throws Throwable {
+        final int numConnections = numLoops * CONNECTIONS_PER_LOOP;
+        final CountDownLatch childLatch = new CountDownLatch(numConnections);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final Map<Integer, EventLoop> childLoops = new ConcurrentHashMap<Integer, EventLoop>();
+
+        ServerBootstrap sb = new ServerBootstrap();
+        sb.group(group).channel(EpollServerSocketChannel.class);
+        sb.option(EpollChannelOption.SO_REUSEPORT, true);
+        sb.option(EpollChannelOption.REUSEPORT_CPU_STEERING, true);
+        sb.childHandler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                if (ch.eventLoop() != ch.parent().eventLoop()) {
+                    error.compareAndSet(null, new AssertionError("child not on the acceptor EventLoop"));
+                }
+                childLoops.put(((InetSocketAddress) ch.remoteAddress()).getPort(), ch.eventLoop());
+                childLatch.countDown();
+            }
+        });
+
+        Future<ChannelGroup> future = sb.bindPerChildEventLoop(NetUtil.LOCALHOST, 0).awaitUninterruptibly();
+        if (!future.isSuccess() && isReusePortCbpfUnsupported(future.cause())) {
+            assumeNoException(future.cause());
+        }
+        ChannelGroup acceptors = future.syncUninterruptibly().getNow();
+        try {
+            assertEquals(numLoops, acceptors.size());
+            Set<EventExecutor> loops = new HashSet<EventExecutor>();
+            int port = -1;
+            for (Channel acceptor : acceptors) {
+                EpollServerSocketChannel channel = (EpollServerSocketChannel) acceptor;
+                assertTrue(channel.config().isReusePort());
+                assertTrue(channel.config().isReusePortCpuSteering());
+                assertTrue(loops.add(channel.eventLoop()));
+                if (port == -1) {
+                    port = channel.localAddress().getPort();
+                } else {
+                    assertEquals(port, channel.localAddress().getPort());
+                }
+            }
+
+            // Connect from every EventLoop. Over loopback the connection request is received on the CPU the
+            // connecting thread runs on, so it must be accepted by the EventLoop pinned to that same CPU.
+            ChannelGroup clients = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+            for (EventExecutor executor : group) {
+                Bootstrap cb = new Bootstrap();
+                cb.group((EventLoop) executor).channel(EpollSocketChannel.class);
+                cb.handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) { }
+                });
+                for (int i = 0; i < CONNECTIONS_PER_LOOP; i++) {
+                    clients.add(cb.connect(new InetSocketAddress(NetUtil.LOCALHOST, port)).syncUninterruptibly()
+                            .channel());
+                }
+            }
+            try {
+                assertTrue(childLatch.await(5, TimeUnit.SECONDS));
+                assertNull(error.get());
+                for (Channel client : clients) {
+                    int clientPort = ((InetSocketAddress) client.localAddress()).getPort();
+                    assertSame(client.eventLoop(), childLoops.get(clientPort));
+                }
+            } finally {
+                clients.close().syncUninterruptibly();
+            }
+        } finally {
+            acceptors.close().syncUninterruptibly();
+        }
+    }
+
+    private static boolean isReusePortCbpfUnsupported(Throwable cause) {
+        // SO_ATTACH_REUSEPORT_CBPF needs Linux 4.6 or later. Older kernels fail with ENOPROTOOPT or EINVAL, any
+        // other failure is a real one.
+        String message = cause.getMessage();
+        return cause instanceof ChannelException && message != null && message.startsWith("setsockopt() failed: ")
+                && (message.endsWith("Protocol not available") || message.endsWith("Invalid argument"));
+    }
+}
@@ -70,6 +70,16 @@ public class EpollServerSocketChannelConfigTest {
         assertTrue(ch.config().isReusePort());
     }
 
+    @Test
+    public void testReusePortCpuSteering() {
+        assertFalse(ch.config().isReusePortCpuSteering());
+        ch.config().setReusePortCpuSteering(true);
+        assertTrue(ch.config().isReusePortCpuSteering());
+        assertTrue(ch.config().getOption(EpollChannelOption.REUSEPORT_CPU_STEERING));
+        ch.config().setReusePortCpuSteering(false);
+        assertFalse(ch.config().isReusePortCpuSteering());
+    }
+
     @Test
     public void testFreeBind() {
         ch.config().setFreeBind(false);
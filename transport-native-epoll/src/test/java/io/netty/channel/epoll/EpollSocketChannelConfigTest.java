@@ -134,6 +134,26 @@ public class EpollSocketChannelConfigTest {
         assertTrue(ch.config().isTcpQuickAck());
     }
 
+    @Test
+    public void testSoZeroCopy() {
+        try {
+            ch.config().setSoZeroCopy(true);
+        } catch (ChannelException e) {
+            // SO_ZEROCOPY requires Linux 4.14 or later.
+            assumeNoException(e);
+        }
+        assertTrue(ch.config().isSoZeroCopy());
+        ch.config().setSoZeroCopy(false);
+        assertFalse(ch.config().isSoZeroCopy());
+    }
+
+    @Test
+    public void testZeroCopyThreshold() {
+        assertEquals(16 * 1024, ch.config().getZeroCopyThreshold());
+        ch.config().setOption(EpollChannelOption.ZEROCOPY_THRESHOLD, 4096);
+        assertEquals(4096, (int) ch.config().getOption(EpollChannelOption.ZEROCOPY_THRESHOLD));
+    }
+
     @Test
     public void testSetOptionWhenClosed() {
         ch.close().syncUninterruptibly();
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.util.NetUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class EpollSocketZeroCopyTest {
+
+    private static final int THRESHOLD = 4096;
+    private static final Random random = new Random();
+    private static final byte[] data = new byte[4 * 1024 * 1024];
+
+    private static EventLoopGroup group;
+
+    static {
+        random.nextBytes(data);
+    }
+
+    @BeforeClass
+    public static void setUp() {
+        group = new EpollEventLoopGroup(2);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        group.shutdownGracefully();
+    }
+
+    @Test(timeout = 30000)
+    public void testZeroCopyWrite() throws Throwable {
+        final ByteBuf received = Unpooled.buffer(data.length);
+        final CountDownLatch receivedLatch = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+        ServerBootstrap sb = new ServerBootstrap();
+        sb.group(group).channel(EpollServerSocketChannel.class);
+        sb.childHandler(new SimpleChannelInboundHandler<ByteBuf>() {
+            @Override
+            protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                received.writeBytes(msg);
+                if (!received.isWritable()) {
+                    receivedLatch.countDown();
+                }
+            }
+
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                error.compareAndSet(null, cause);
+                ctx.close();
+            }
+        });
+        Channel sc = sb.bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+
+        Bootstrap cb = new Bootstrap();
+        cb.group(group).channel(EpollSocketChannel.class);
+        cb.option(EpollChannelOption.ZEROCOPY_THRESHOLD, THRESHOLD);
+        cb.handler(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                error.compareAndSet(null, cause);
+                ctx.close();
+            }
+        });
+        EpollSocketChannel cc = (EpollSocketChannel) cb.connect(sc.localAddress()).syncUninterruptibly().channel();
+        try {
+            cc.config().setSoZeroCopy(true);
+        } catch (Exception e) {
+            // SO_ZEROCOPY requires Linux 4.14 or later.
+            cc.close().syncUninterruptibly();
+            sc.close().syncUninterruptibly();
+            assumeTrue(false);
+        }
+        assertTrue(cc.config().isSoZeroCopy());
+
+        final List<ByteBuf> buffers = new ArrayList<ByteBuf>();
+        final List<ChannelFuture> futures = new ArrayList<ChannelFuture>();
+        int offset = 0;
+        int i = 0;
+        while (offset < data.length) {
+            // Mix buffers below and above the threshold.
+            int length = i++ % 3 == 0 ? THRESHOLD / 2 : 64 * 1024 + random.nextInt(1024);
+            length = Math.min(data.length - offset, length);
+            final ByteBuf buf = Unpooled.directBuffer(length).writeBytes(data, offset, length);
+            offset += length;
+            buffers.add(buf);
+            ChannelFuture future = cc.write(buf);
+            future.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    // The buffer must only be released once the write completed.
+                    if (buf.refCnt() != 0) {
+                        error.compareAndSet(null, new AssertionError("buffer not released: " + buf.refCnt()));
+                    }
+                }
+            });
+            futures.add(future);
+        }
+        cc.flush();
+
+        assertTrue(receivedLatch.await(20, TimeUnit.SECONDS));
+        for (ChannelFuture future : futures) {
+            future.syncUninterruptibly();
+        }
+        for (ByteBuf buf : buffers) {
+            assertEquals(0, buf.refCnt());
+        }
+        assertArrayEquals(data, received.array());
+        received.release();
+
+        cc.close().syncUninterruptibly();
+        sc.close().syncUninterruptibly();
+        assertNull(error.get());
+    }
+
+    @Test(timeout = 30000)
+    public void testCloseWaitsForZeroCopySends() throws Throwable {
+        // Small enough to be accepted by the socket at once.
+        final int length = 64 * 1024;
+        final ByteBuf received = Unpooled.buffer(length);
+        final CountDownLatch receivedLatch = new CountDownLatch(1);
+
+        ServerBootstrap sb = new ServerBootstrap();
+        sb.group(group).channel(EpollServerSocketChannel.class);
+        sb.childHandler(new SimpleChannelInboundHandler<ByteBuf>() {
+            @Override
+            protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                received.writeBytes(msg);
+                if (!received.isWritable()) {
+                    receivedLatch.countDown();
+                }
+            }
+        });
+        Channel sc = sb.bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+
+        Bootstrap cb = new Bootstrap();
+        cb.group(group).channel(EpollSocketChannel.class);
+        cb.option(EpollChannelOption.ZEROCOPY_THRESHOLD, THRESHOLD);
+        cb.option(ChannelOption.SO_SNDBUF, 4 * length);
+        cb.handler(new ChannelInboundHandlerAdapter());
+        final EpollSocketChannel cc =
+                (EpollSocketChannel) cb.connect(sc.localAddress()).syncUninterruptibly().channel();
+        try {
+            cc.config().setSoZeroCopy(true);
+        } catch (Exception e) {
+            // SO_ZEROCOPY requires Linux 4.14 or later.
+            cc.close().syncUninterruptibly();
+            sc.close().syncUninterruptibly();
+            assumeTrue(false);
+        }
+
+        final ByteBuf buf = Unpooled.directBuffer(length).writeBytes(data, 0, length);
+        final AtomicReference<ChannelFuture> writeFuture = new AtomicReference<ChannelFuture>();
+        cc.eventLoop().submit(new Runnable() {
+            @Override
+            public void run() {
+                // Close right after the write, while the kernel may not have completed the sends yet.
+                writeFuture.set(cc.writeAndFlush(buf));
+                cc.close();
+            }
+        }).syncUninterruptibly();
+        cc.closeFuture().syncUninterruptibly();
+
+        // The close waited for the sends to complete, so the buffer was released and all bytes were sent.
+        assertTrue(writeFuture.get().syncUninterruptibly().isSuccess());
+        assertEquals(0, buf.refCnt());
+        assertTrue(receivedLatch.await(20, TimeUnit.SECONDS));
+        assertArrayEquals(Arrays.copyOf(data, length), received.array());
+        received.release();
+        sc.close().syncUninterruptibly();
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EpollZeroCopyQueueTest {
+
+    @Test
+    public void testReleaseOnceAllSendsCompleted() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        EpollZeroCopyQueue queue = new EpollZeroCopyQueue();
+        ByteBuf buf = Unpooled.directBuffer(8);
+        ChannelPromise promise = new DefaultChannelPromise(channel);
+
+        // Two partial sends with the ids 0 and 1.
+        queue.sent(buf);
+        assertTrue(queue.isWriting(buf));
+        queue.sent(buf);
+        queue.written(buf, promise);
+        assertFalse(queue.isWriting(buf));
+
+        queue.complete(0, 0);
+        assertEquals(1, buf.refCnt());
+        assertFalse(promise.isDone());
+
+        queue.complete(1, 1);
+        assertEquals(0, buf.refCnt());
+        assertTrue(promise.isSuccess());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testNotReleasedBeforeWritten() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        EpollZeroCopyQueue queue = new EpollZeroCopyQueue();
+        ByteBuf buf = Unpooled.directBuffer(8);
+        ChannelPromise promise = new DefaultChannelPromise(channel);
+
+        queue.sent(buf);
+        queue.complete(0, 0);
+        // The rest of the buffer was not sent yet, so it must not be released.
+        assertEquals(1, buf.refCnt());
+        assertTrue(queue.isWriting(buf));
+
+        queue.sent(buf);
+        queue.written(buf, promise);
+        assertEquals(1, buf.refCnt());
+        queue.complete(1, 1);
+        assertEquals(0, buf.refCnt());
+        assertTrue(promise.isSuccess());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testReleaseInOrder() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        EpollZeroCopyQueue queue = new EpollZeroCopyQueue();
+        ByteBuf buf1 = Unpooled.directBuffer(8);
+        ByteBuf buf2 = Unpooled.directBuffer(8);
+        ByteBuf buf3 = Unpooled.directBuffer(8);
+        ChannelPromise promise1 = new DefaultChannelPromise(channel);
+        ChannelPromise promise2 = new DefaultChannelPromise(channel);
+        ChannelPromise promise3 = new DefaultChannelPromise(channel);
+
+        queue.sent(buf1);
+        queue.written(buf1, promise1);
+        queue.sent(buf2);
+        queue.sent(buf2);
+        queue.written(buf2, promise2);
+        queue.sent(buf3);
+        queue.written(buf3, promise3);
+
+        // Complete the sends of the second and third buffer first.
+        queue.complete(2, 3);
+        assertEquals(1, buf3.refCnt());
+        assertFalse(promise3.isDone());
+
+        // One range which covers the first and the rest of the second buffer.
+        queue.complete(0, 1);
+        assertEquals(0, buf1.refCnt());
+        assertEquals(0, buf2.refCnt());
+        assertEquals(0, buf3.refCnt());
+        assertTrue(promise1.isSuccess());
+        assertTrue(promise2.isSuccess());
+        assertTrue(promise3.isSuccess());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testIdWrapAround() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        EpollZeroCopyQueue queue = new EpollZeroCopyQueue(-2);
+        ByteBuf buf1 = Unpooled.directBuffer(8);
+        ByteBuf buf2 = Unpooled.directBuffer(8);
+        ChannelPromise promise1 = new DefaultChannelPromise(channel);
+        ChannelPromise promise2 = new DefaultChannelPromise(channel);
+
+        // The ids 0xFFFFFFFE and 0xFFFFFFFF.
+        queue.sent(buf1);
+        queue.sent(buf1);
+        queue.written(buf1, promise1);
+        // The ids 0 and 1.
+        queue.sent(buf2);
+        queue.sent(buf2);
+        queue.written(buf2, promise2);
+
+        queue.complete(-2, 0);
+        assertEquals(0, buf1.refCnt());
+        assertTrue(promise1.isSuccess());
+        assertEquals(1, buf2.refCnt());
+        assertFalse(promise2.isDone());
+
+        queue.complete(1, 1);
+        assertEquals(0, buf2.refCnt());
+        assertTrue(promise2.isSuccess());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testClose() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        EpollZeroCopyQueue queue = new EpollZeroCopyQueue();
+        ByteBuf buf1 = Unpooled.directBuffer(8);
+        ByteBuf buf2 = Unpooled.directBuffer(8);
+        ByteBuf buf3 = Unpooled.directBuffer(8);
+        ChannelPromise promise1 = new DefaultChannelPromise(channel);
+        ChannelPromise promise2 = new DefaultChannelPromise(channel);
+
+        queue.sent(buf1);
+        queue.written(buf1, promise1);
+        queue.sent(buf2);
+        queue.written(buf2, promise2);
+        queue.sent(buf3);
+        queue.complete(0, 0);
+        assertEquals(0, buf1.refCnt());
+        assertTrue(queue.hasPendingSends());
+
+        // buf2 and buf3 may still be referenced by the kernel, so they must never be released.
+        assertEquals(2, queue.close());
+        assertTrue(promise2.isSuccess());
+        assertEquals(1, buf2.refCnt());
+        // buf3 is still owned by the ChannelOutboundBuffer which releases it once.
+        assertEquals(2, buf3.refCnt());
+        assertFalse(queue.hasPendingSends());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testCloseWithoutPendingSends() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        EpollZeroCopyQueue queue = new EpollZeroCopyQueue();
+        ByteBuf buf = Unpooled.directBuffer(8);
+
+        queue.sent(buf);
+        queue.complete(0, 0);
+        assertFalse(queue.hasPendingSends());
+
+        // The buffer was not completely written, so it is still owned by the ChannelOutboundBuffer.
+        assertEquals(0, queue.close());
+        assertEquals(1, buf.refCnt());
+        buf.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testAbandonWriting() {
+        EpollZeroCopyQueue queue = new EpollZeroCopyQueue();
+        ByteBuf buf = Unpooled.directBuffer(8);
+
+        queue.sent(buf);
+        queue.abandonWriting();
+        assertFalse(queue.isWriting(buf));
+        // Released by the ChannelOutboundBuffer, but still retained until the send completed.
+        buf.release();
+        assertEquals(1, buf.refCnt());
+
+        queue.complete(0, 0);
+        assertEquals(0, buf.refCnt());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+#ifndef NETTY_IO_URING_H_
+#define NETTY_IO_URING_H_
+
+#include <stdint.h>
+
+// The io_uring ABI as defined by linux/io_uring.h. We define it here so we can build on distributions which ship
+// older kernel headers, the availability is checked at runtime.
+// See https://github.com/torvalds/linux/blob/v5.6/include/uapi/linux/io_uring.h
+
+// All architectures use the same syscall numbers for io_uring.
+#ifndef __NR_io_uring_setup
+#define __NR_io_uring_setup 425
+#endif
+#ifndef __NR_io_uring_enter
+#define __NR_io_uring_enter 426
+#endif
+#ifndef __NR_io_uring_register
+#define __NR_io_uring_register 427
+#endif
+
+#define NETTY_IORING_OFF_SQ_RING  0ULL
+#define NETTY_IORING_OFF_CQ_RING  0x8000000ULL
+#define NETTY_IORING_OFF_SQES     0x10000000ULL
+
+#define NETTY_IORING_FEAT_SINGLE_MMAP (1U << 0)
+#define NETTY_IORING_ENTER_GETEVENTS  (1U << 0)
+#define NETTY_IORING_REGISTER_PROBE   8
+#define NETTY_IO_URING_OP_SUPPORTED   (1U << 0)
+
+#define NETTY_IORING_OP_WRITEV          2
+#define NETTY_IORING_OP_POLL_ADD        6
+#define NETTY_IORING_OP_SENDMSG         9
+#define NETTY_IORING_OP_RECVMSG         10
+#define NETTY_IORING_OP_TIMEOUT         11
+#define NETTY_IORING_OP_TIMEOUT_REMOVE  12
+#define NETTY_IORING_OP_ACCEPT          13
+#define NETTY_IORING_OP_ASYNC_CANCEL    14
+#define NETTY_IORING_OP_CONNECT         16
+#define NETTY_IORING_OP_READ            22
+
+struct netty_io_sqring_offsets {
+    uint32_t head;
+    uint32_t tail;
+    uint32_t ring_mask;
+    uint32_t ring_entries;
+    uint32_t flags;
+    uint32_t dropped;
+    uint32_t array;
+    uint32_t resv1;
+    uint64_t resv2;
+};
+
+struct netty_io_cqring_offsets {
+    uint32_t head;
+    uint32_t tail;
+    uint32_t ring_mask;
+    uint32_t ring_entries;
+    uint32_t overflow;
+    uint32_t cqes;
+    uint32_t flags;
+    uint32_t resv1;
+    uint64_t resv2;
+};
+
+struct netty_io_uring_params {
+    uint32_t sq_entries;
+    uint32_t cq_entries;
+    uint32_t flags;
+    uint32_t sq_thread_cpu;
+    uint32_t sq_thread_idle;
+    uint32_t features;
+    uint32_t wq_fd;
+    uint32_t resv[3];
+    struct netty_io_sqring_offsets sq_off;
+    struct netty_io_cqring_offsets cq_off;
+};
+
+struct netty_io_uring_sqe {
+    uint8_t opcode;
+    uint8_t flags;
+    uint16_t ioprio;
+    int32_t fd;
+    uint64_t off;
+    uint64_t addr;
+    uint32_t len;
+    uint32_t op_flags;
+    uint64_t user_data;
+    uint64_t pad[3];
+};
+
+struct netty_io_uring_cqe {
+    uint64_t user_data;
+    int32_t res;
+    uint32_t flags;
+};
+
+struct netty_io_uring_probe_op {
+    uint8_t op;
+    uint8_t resv;
+    uint16_t flags;
+    uint32_t resv2;
+};
+
+struct netty_io_uring_probe {
+    uint8_t last_op;
+    uint8_t ops_len;
+    uint16_t resv;
+    uint32_t resv2[3];
+    struct netty_io_uring_probe_op ops[0];
+};
+
+struct netty_kernel_timespec {
+    int64_t tv_sec;
+    long long tv_nsec;
+};
+
+#endif /* NETTY_IO_URING_H_ */
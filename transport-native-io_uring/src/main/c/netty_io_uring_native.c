@@ -0,0 +1,517 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+#define _GNU_SOURCE
+#include <jni.h>
+#include <stdint.h>
+#include <stdlib.h>
+#include <string.h>
+#include <errno.h>
+#include <poll.h>
+#include <sys/eventfd.h>
+#include <sys/mman.h>
+#include <sys/types.h>
+#include <sys/socket.h>
+#include <sys/uio.h>
+#include <netinet/in.h>
+#include <unistd.h>
+#include <stddef.h>
+#include <link.h>
+// Needed to be able to use syscalls directly and so not depend on newer GLIBC versions
+#include <sys/syscall.h>
+
+#include "netty_io_uring.h"
+#include "netty_unix_buffer.h"
+#include "netty_unix_errors.h"
+#include "netty_unix_filedescriptor.h"
+#include "netty_unix_jni.h"
+#include "netty_unix_limits.h"
+#include "netty_unix_socket.h"
+#include "netty_unix_util.h"
+
+// The number of values returned by ioUringSetup(...), must be kept in sync with RingBuffer.
+#define NETTY_IO_URING_SETUP_VALUES 18
+
+// util methods
+static int sys_io_uring_setup(uint32_t entries, struct netty_io_uring_params* params) {
+    return (int) syscall(__NR_io_uring_setup, entries, params);
+}
+
+static int sys_io_uring_enter(int ringFd, uint32_t toSubmit, uint32_t minComplete, uint32_t flags) {
+    return (int) syscall(__NR_io_uring_enter, ringFd, toSubmit, minComplete, flags, NULL, 0);
+}
+
+static int sys_io_uring_register(int ringFd, uint32_t opcode, void* arg, uint32_t nrArgs) {
+    return (int) syscall(__NR_io_uring_register, ringFd, opcode, arg, nrArgs);
+}
+
+// JNI Registered Methods Begin
+static jlongArray netty_io_uring_native_ioUringSetup(JNIEnv* env, jclass clazz, jint entries) {
+    struct netty_io_uring_params params;
+    memset(&params, 0, sizeof(params));
+
+    int ringFd = sys_io_uring_setup((uint32_t) entries, &params);
+    if (ringFd < 0) {
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "io_uring_setup() failed: ", errno);
+        return NULL;
+    }
+
+    size_t sqRingSize = params.sq_off.array + params.sq_entries * sizeof(uint32_t);
+    size_t cqRingSize = params.cq_off.cqes + params.cq_entries * sizeof(struct netty_io_uring_cqe);
+    size_t sqesSize = params.sq_entries * sizeof(struct netty_io_uring_sqe);
+    int singleMmap = (params.features & NETTY_IORING_FEAT_SINGLE_MMAP) != 0;
+    if (singleMmap) {
+        // The submission and completion queue share one mapping, so we need to map the bigger of both.
+        if (cqRingSize > sqRingSize) {
+            sqRingSize = cqRingSize;
+        }
+        cqRingSize = sqRingSize;
+    }
+
+    int err;
+    void* sqRing = mmap(NULL, sqRingSize, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, ringFd,
+            NETTY_IORING_OFF_SQ_RING);
+    if (sqRing == MAP_FAILED) {
+        err = errno;
+        close(ringFd);
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "mmap() of the submission queue failed: ", err);
+        return NULL;
+    }
+
+    void* cqRing = sqRing;
+    if (!singleMmap) {
+        cqRing = mmap(NULL, cqRingSize, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, ringFd,
+                NETTY_IORING_OFF_CQ_RING);
+        if (cqRing == MAP_FAILED) {
+            err = errno;
+            munmap(sqRing, sqRingSize);
+            close(ringFd);
+            netty_unix_errors_throwChannelExceptionErrorNo(env, "mmap() of the completion queue failed: ", err);
+            return NULL;
+        }
+    }
+
+    void* sqes = mmap(NULL, sqesSize, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, ringFd,
+            NETTY_IORING_OFF_SQES);
+    if (sqes == MAP_FAILED) {
+        err = errno;
+        if (!singleMmap) {
+            munmap(cqRing, cqRingSize);
+        }
+        munmap(sqRing, sqRingSize);
+        close(ringFd);
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "mmap() of the submission queue entries failed: ", err);
+        return NULL;
+    }
+
+    // We always submit the entries in the order of the ring, so the indirection array can be filled once.
+    uint32_t* sqArray = (uint32_t*) ((char*) sqRing + params.sq_off.array);
+    uint32_t i;
+    for (i = 0; i < params.sq_entries; i++) {
+        sqArray[i] = i;
+    }
+
+    jlong values[NETTY_IO_URING_SETUP_VALUES] = {
+        ringFd,
+        (jlong) sqRing,
+        (jlong) sqRingSize,
+        (jlong) ((char*) sqRing + params.sq_off.head),
+        (jlong) ((char*) sqRing + params.sq_off.tail),
+        (jlong) ((char*) sqRing + params.sq_off.ring_mask),
+        (jlong) ((char*) sqRing + params.sq_off.ring_entries),
+        (jlong) ((char*) sqRing + params.sq_off.flags),
+        (jlong) sqes,
+        (jlong) sqesSize,
+        (jlong) cqRing,
+        (jlong) cqRingSize,
+        (jlong) ((char*) cqRing + params.cq_off.head),
+        (jlong) ((char*) cqRing + params.cq_off.tail),
+        (jlong) ((char*) cqRing + params.cq_off.ring_mask),
+        (jlong) ((char*) cqRing + params.cq_off.ring_entries),
+        (jlong) ((char*) cqRing + params.cq_off.cqes),
+        params.features
+    };
+
+    jlongArray array = (*env)->NewLongArray(env, NETTY_IO_URING_SETUP_VALUES);
+    if (array == NULL) {
+        // An OutOfMemoryError is pending.
+        munmap(sqes, sqesSize);
+        if (!singleMmap) {
+            munmap(cqRing, cqRingSize);
+        }
+        munmap(sqRing, sqRingSize);
+        close(ringFd);
+        return NULL;
+    }
+    (*env)->SetLongArrayRegion(env, array, 0, NETTY_IO_URING_SETUP_VALUES, values);
+    return array;
+}
+
+static jint netty_io_uring_native_ioUringEnter(JNIEnv* env, jclass clazz, jint ringFd, jint toSubmit,
+        jint minComplete, jint flags) {
+    int res;
+    int err;
+    do {
+        res = sys_io_uring_enter(ringFd, (uint32_t) toSubmit, (uint32_t) minComplete, (uint32_t) flags);
+        // keep on entering if it was interrupted
+    } while (res == -1 && ((err = errno) == EINTR));
+
+    if (res < 0) {
+        return -err;
+    }
+    return (jint) res;
+}
+
+static void netty_io_uring_native_ioUringExit(JNIEnv* env, jclass clazz, jint ringFd, jlong sqRing,
+        jlong sqRingSize, jlong cqRing, jlong cqRingSize, jlong sqes, jlong sqesSize) {
+    munmap((void*) sqes, (size_t) sqesSize);
+    if (cqRing != sqRing) {
+        munmap((void*) cqRing, (size_t) cqRingSize);
+    }
+    munmap((void*) sqRing, (size_t) sqRingSize);
+    if (close(ringFd) < 0) {
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "close() of the io_uring failed: ", errno);
+    }
+}
+
+static jboolean netty_io_uring_native_ioUringProbe(JNIEnv* env, jclass clazz, jint ringFd, jintArray ops) {
+    // There are less than 256 opcodes, which is the maximum the probe can report.
+    size_t probeSize = sizeof(struct netty_io_uring_probe) + 256 * sizeof(struct netty_io_uring_probe_op);
+    struct netty_io_uring_probe* probe = calloc(1, probeSize);
+    if (probe == NULL) {
+        netty_unix_errors_throwOutOfMemoryError(env);
+        return JNI_FALSE;
+    }
+    // Probing was added together with most of the opcodes we need (linux 5.6), so a failure means
+    // the kernel is too old.
+    if (sys_io_uring_register(ringFd, NETTY_IORING_REGISTER_PROBE, probe, 256) < 0) {
+        free(probe);
+        return JNI_FALSE;
+    }
+
+    jboolean supported = JNI_TRUE;
+    jsize len = (*env)->GetArrayLength(env, ops);
+    jint* elements = (*env)->GetIntArrayElements(env, ops, NULL);
+    if (elements == NULL) {
+        free(probe);
+        return JNI_FALSE;
+    }
+    jsize i;
+    for (i = 0; i < len; i++) {
+        jint op = elements[i];
+        if (op > probe->last_op || (probe->ops[op].flags & NETTY_IO_URING_OP_SUPPORTED) == 0) {
+            supported = JNI_FALSE;
+            break;
+        }
+    }
+    (*env)->ReleaseIntArrayElements(env, ops, elements, JNI_ABORT);
+    free(probe);
+    return supported;
+}
+
+static jint netty_io_uring_native_eventFd(JNIEnv* env, jclass clazz) {
+    jint eventFD = eventfd(0, EFD_CLOEXEC | EFD_NONBLOCK);
+
+    if (eventFD < 0) {
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "eventfd() failed: ", errno);
+    }
+    return eventFD;
+}
+
+static void netty_io_uring_native_eventFdWrite(JNIEnv* env, jclass clazz, jint fd, jlong value) {
+    uint64_t val;
+
+    for (;;) {
+        jint ret = eventfd_write(fd, (eventfd_t) value);
+
+        if (ret < 0) {
+            // We need to read before we can write again, let's try to read and then write again and if this
+            // fails we will bail out.
+            //
+            // See http://man7.org/linux/man-pages/man2/eventfd.2.html.
+            if (errno == EAGAIN) {
+                if (eventfd_read(fd, &val) == 0 || errno == EAGAIN) {
+                    // Try again
+                    continue;
+                }
+                netty_unix_errors_throwChannelExceptionErrorNo(env, "eventfd_read(...) failed: ", errno);
+            } else {
+                netty_unix_errors_throwChannelExceptionErrorNo(env, "eventfd_write(...) failed: ", errno);
+            }
+        }
+        break;
+    }
+}
+
+static jint netty_io_uring_native_etime(JNIEnv* env, jclass clazz) {
+    return ETIME;
+}
+
+static jint netty_io_uring_native_ecanceled(JNIEnv* env, jclass clazz) {
+    return ECANCELED;
+}
+
+static jint netty_io_uring_native_pollin(JNIEnv* env, jclass clazz) {
+    return POLLIN;
+}
+
+static jint netty_io_uring_native_pollout(JNIEnv* env, jclass clazz) {
+    return POLLOUT;
+}
+
+static jint netty_io_uring_native_acceptFlags(JNIEnv* env, jclass clazz) {
+    return SOCK_NONBLOCK | SOCK_CLOEXEC;
+}
+
+static jint netty_io_uring_native_afInet(JNIEnv* env, jclass clazz) {
+    return AF_INET;
+}
+
+static jint netty_io_uring_native_afInet6(JNIEnv* env, jclass clazz) {
+    return AF_INET6;
+}
+
+static jint netty_io_uring_native_sizeofSockaddrIn(JNIEnv* env, jclass clazz) {
+    return sizeof(struct sockaddr_in);
+}
+
+static jint netty_io_uring_native_sizeofSockaddrIn6(JNIEnv* env, jclass clazz) {
+    return sizeof(struct sockaddr_in6);
+}
+
+static jint netty_io_uring_native_sockaddrInOffsetofSinFamily(JNIEnv* env, jclass clazz) {
+    return offsetof(struct sockaddr_in, sin_family);
+}
+
+static jint netty_io_uring_native_sockaddrInOffsetofSinPort(JNIEnv* env, jclass clazz) {
+    return offsetof(struct sockaddr_in, sin_port);
+}
+
+static jint netty_io_uring_native_sockaddrInOffsetofSinAddr(JNIEnv* env, jclass clazz) {
+    return offsetof(struct sockaddr_in, sin_addr);
+}
+
+static jint netty_io_uring_native_sockaddrIn6OffsetofSin6Port(JNIEnv* env, jclass clazz) {
+    return offsetof(struct sockaddr_in6, sin6_port);
+}
+
+static jint netty_io_uring_native_sockaddrIn6OffsetofSin6Addr(JNIEnv* env, jclass clazz) {
+    return offsetof(struct sockaddr_in6, sin6_addr);
+}
+
+static jint netty_io_uring_native_sockaddrIn6OffsetofSin6ScopeId(JNIEnv* env, jclass clazz) {
+    return offsetof(struct sockaddr_in6, sin6_scope_id);
+}
+
+static jint netty_io_uring_native_sizeofMsghdr(JNIEnv* env, jclass clazz) {
+    return sizeof(struct msghdr);
+}
+
+static jint netty_io_uring_native_msghdrOffsetofMsgName(JNIEnv* env, jclass clazz) {
+    return offsetof(struct msghdr, msg_name);
+}
+
+static jint netty_io_uring_native_msghdrOffsetofMsgNamelen(JNIEnv* env, jclass clazz) {
+    return offsetof(struct msghdr, msg_namelen);
+}
+
+static jint netty_io_uring_native_msghdrOffsetofMsgIov(JNIEnv* env, jclass clazz) {
+    return offsetof(struct msghdr, msg_iov);
+}
+
+static jint netty_io_uring_native_msghdrOffsetofMsgIovlen(JNIEnv* env, jclass clazz) {
+    return offsetof(struct msghdr, msg_iovlen);
+}
+
+static jint netty_io_uring_native_sizeofIovec(JNIEnv* env, jclass clazz) {
+    return sizeof(struct iovec);
+}
+// JNI Registered Methods End
+
+// JNI Method Registration Table Begin
+static const JNINativeMethod statically_referenced_fixed_method_table[] = {
+  { "etime", "()I", (void *) netty_io_uring_native_etime },
+  { "ecanceled", "()I", (void *) netty_io_uring_native_ecanceled },
+  { "pollin", "()I", (void *) netty_io_uring_native_pollin },
+  { "pollout", "()I", (void *) netty_io_uring_native_pollout },
+  { "acceptFlags", "()I", (void *) netty_io_uring_native_acceptFlags },
+  { "afInet", "()I", (void *) netty_io_uring_native_afInet },
+  { "afInet6", "()I", (void *) netty_io_uring_native_afInet6 },
+  { "sizeofSockaddrIn", "()I", (void *) netty_io_uring_native_sizeofSockaddrIn },
+  { "sizeofSockaddrIn6", "()I", (void *) netty_io_uring_native_sizeofSockaddrIn6 },
+  { "sockaddrInOffsetofSinFamily", "()I", (void *) netty_io_uring_native_sockaddrInOffsetofSinFamily },
+  { "sockaddrInOffsetofSinPort", "()I", (void *) netty_io_uring_native_sockaddrInOffsetofSinPort },
+  { "sockaddrInOffsetofSinAddr", "()I", (void *) netty_io_uring_native_sockaddrInOffsetofSinAddr },
+  { "sockaddrIn6OffsetofSin6Port", "()I", (void *) netty_io_uring_native_sockaddrIn6OffsetofSin6Port },
+  { "sockaddrIn6OffsetofSin6Addr", "()I", (void *) netty_io_uring_native_sockaddrIn6OffsetofSin6Addr },
+  { "sockaddrIn6OffsetofSin6ScopeId", "()I", (void *) netty_io_uring_native_sockaddrIn6OffsetofSin6ScopeId },
+  { "sizeofMsghdr", "()I", (void *) netty_io_uring_native_sizeofMsghdr },
+  { "msghdrOffsetofMsgName", "()I", (void *) netty_io_uring_native_msghdrOffsetofMsgName },
+  { "msghdrOffsetofMsgNamelen", "()I", (void *) netty_io_uring_native_msghdrOffsetofMsgNamelen },
+  { "msghdrOffsetofMsgIov", "()I", (void *) netty_io_uring_native_msghdrOffsetofMsgIov },
+  { "msghdrOffsetofMsgIovlen", "()I", (void *) netty_io_uring_native_msghdrOffsetofMsgIovlen },
+  { "sizeofIovec", "()I", (void *) netty_io_uring_native_sizeofIovec }
+};
+static const jint statically_referenced_fixed_method_table_size = sizeof(statically_referenced_fixed_method_table) / sizeof(statically_referenced_fixed_method_table[0]);
+static const JNINativeMethod fixed_method_table[] = {
+  { "ioUringSetup", "(I)[J", (void *) netty_io_uring_native_ioUringSetup },
+  { "ioUringEnter", "(IIII)I", (void *) netty_io_uring_native_ioUringEnter },
+  { "ioUringExit", "(IJJJJJJ)V", (void *) netty_io_uring_native_ioUringExit },
+  { "ioUringProbe", "(I[I)Z", (void *) netty_io_uring_native_ioUringProbe },
+  { "eventFd", "()I", (void *) netty_io_uring_native_eventFd },
+  { "eventFdWrite", "(IJ)V", (void *) netty_io_uring_native_eventFdWrite }
+};
+static const jint fixed_method_table_size = sizeof(fixed_method_table) / sizeof(fixed_method_table[0]);
+// JNI Method Registration Table End
+
+static jint netty_io_uring_native_JNI_OnLoad(JNIEnv* env, const char* packagePrefix) {
+    int ret = JNI_ERR;
+    int limitsOnLoadCalled = 0;
+    int errorsOnLoadCalled = 0;
+    int filedescriptorOnLoadCalled = 0;
+    int socketOnLoadCalled = 0;
+    int bufferOnLoadCalled = 0;
+
+    // We must register the statically referenced methods first!
+    if (netty_unix_util_register_natives(env,
+            packagePrefix,
+            "io/netty/channel/uring/NativeStaticallyReferencedJniMethods",
+            statically_referenced_fixed_method_table,
+            statically_referenced_fixed_method_table_size) != 0) {
+        goto done;
+    }
+    // Register the methods which are not referenced by static member variables
+    if (netty_unix_util_register_natives(env,
+            packagePrefix,
+            "io/netty/channel/uring/Native",
+            fixed_method_table,
+            fixed_method_table_size) != 0) {
+        goto done;
+    }
+    // Load all c modules that we depend upon
+    if (netty_unix_limits_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
+        goto done;
+    }
+    limitsOnLoadCalled = 1;
+
+    if (netty_unix_errors_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
+        goto done;
+    }
+    errorsOnLoadCalled = 1;
+
+    if (netty_unix_filedescriptor_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
+        goto done;
+    }
+    filedescriptorOnLoadCalled = 1;
+
+    if (netty_unix_socket_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
+        goto done;
+    }
+    socketOnLoadCalled = 1;
+
+    if (netty_unix_buffer_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
+        goto done;
+    }
+    bufferOnLoadCalled = 1;
+
+    ret = NETTY_JNI_VERSION;
+done:
+    if (ret == JNI_ERR) {
+        if (limitsOnLoadCalled == 1) {
+            netty_unix_limits_JNI_OnUnLoad(env);
+        }
+        if (errorsOnLoadCalled == 1) {
+            netty_unix_errors_JNI_OnUnLoad(env);
+        }
+        if (filedescriptorOnLoadCalled == 1) {
+            netty_unix_filedescriptor_JNI_OnUnLoad(env);
+        }
+        if (socketOnLoadCalled == 1) {
+            netty_unix_socket_JNI_OnUnLoad(env);
+        }
+        if (bufferOnLoadCalled == 1) {
+            netty_unix_buffer_JNI_OnUnLoad(env);
+        }
+    }
+    return ret;
+}
+
+static void netty_io_uring_native_JNI_OnUnLoad(JNIEnv* env) {
+    netty_unix_limits_JNI_OnUnLoad(env);
+    netty_unix_errors_JNI_OnUnLoad(env);
+    netty_unix_filedescriptor_JNI_OnUnLoad(env);
+    netty_unix_socket_JNI_OnUnLoad(env);
+    netty_unix_buffer_JNI_OnUnLoad(env);
+}
+
+// Invoked by the JVM when statically linked
+static jint JNI_OnLoad_netty_transport_native_io_uring0(JavaVM* vm, void* reserved) {
+    JNIEnv* env;
+    if ((*vm)->GetEnv(vm, (void**) &env, NETTY_JNI_VERSION) != JNI_OK) {
+        return JNI_ERR;
+    }
+    char* packagePrefix = NULL;
+#ifndef NETTY_BUILD_STATIC
+    Dl_info dlinfo;
+    jint status = 0;
+    // We need to use an address of a function that is uniquely part of this library, so choose a static
+    // function. See https://github.com/netty/netty/issues/4840.
+    if (!dladdr((void*) netty_io_uring_native_JNI_OnUnLoad, &dlinfo)) {
+        fprintf(stderr, "FATAL: transport-native-io_uring JNI call to dladdr failed!\n");
+        return JNI_ERR;
+    }
+    packagePrefix = netty_unix_util_parse_package_prefix(dlinfo.dli_fname, "netty_transport_native_io_uring", &status);
+    if (status == JNI_ERR) {
+        fprintf(stderr, "FATAL: transport-native-io_uring JNI encountered unexpected dlinfo.dli_fname: %s\n", dlinfo.dli_fname);
+        return JNI_ERR;
+    }
+#endif /* NETTY_BUILD_STATIC */
+    jint ret = netty_io_uring_native_JNI_OnLoad(env, packagePrefix);
+
+    free(packagePrefix);
+    return ret;
+}
+
+static void JNI_OnUnload_netty_transport_native_io_uring0(JavaVM* vm, void* reserved) {
+    JNIEnv* env;
+    if ((*vm)->GetEnv(vm, (void**) &env, NETTY_JNI_VERSION) != JNI_OK) {
+        // Something is wrong but nothing we can do about this :(
+        return;
+    }
+    netty_io_uring_native_JNI_OnUnLoad(env);
+}
+
+// We build with -fvisibility=hidden so ensure we mark everything that needs to be visible with JNIEXPORT
+// http://mail.openjdk.java.net/pipermail/core-libs-dev/2013-February/014549.html
+
+// Invoked by the JVM when statically linked
+JNIEXPORT jint JNI_OnLoad_netty_transport_native_io_uring(JavaVM* vm, void* reserved) {
+    return JNI_OnLoad_netty_transport_native_io_uring0(vm, reserved);
+}
+
+// Invoked by the JVM when statically linked
+JNIEXPORT void JNI_OnUnload_netty_transport_native_io_uring(JavaVM* vm, void* reserved) {
+    JNI_OnUnload_netty_transport_native_io_uring0(vm, reserved);
+}
+
+#ifndef NETTY_BUILD_STATIC
+JNIEXPORT jint JNI_OnLoad(JavaVM* vm, void* reserved) {
+    return JNI_OnLoad_netty_transport_native_io_uring0(vm, reserved);
+}
+
+JNIEXPORT void JNI_OnUnload(JavaVM* vm, void* reserved) {
+    JNI_OnUnload_netty_transport_native_io_uring0(vm, reserved);
+}
+#endif /* NETTY_BUILD_STATIC */
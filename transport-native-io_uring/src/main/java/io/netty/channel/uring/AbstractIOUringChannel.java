@@ -0,0 +1,740 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.AbstractChannel;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.channel.socket.ChannelInputShutdownReadComplete;
+import io.netty.channel.socket.SocketChannelConfig;
+import io.netty.channel.unix.Buffer;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.Socket;
+import io.netty.channel.unix.UnixChannel;
+import io.netty.util.ReferenceCountUtil;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AlreadyConnectedException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ConnectionPendingException;
+import java.nio.channels.NotYetConnectedException;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.channel.unix.UnixChannelUtil.computeRemoteAddr;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * Base class of the io_uring channels. Instead of being notified about the readiness of its socket, a channel
+ * submits its reads, writes, accepts and connects to the {@link IOUringEventLoop} and is called back once they
+ * completed. At most one operation of each kind is in flight per channel, which is tracked in {@link #ioState}.
+ */
+abstract class AbstractIOUringChannel extends AbstractChannel implements UnixChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false);
+
+    // The operations which are submitted and did not complete yet.
+    static final int READ_SCHEDULED = 1;
+    static final int WRITE_SCHEDULED = 1 << 1;
+    static final int CONNECT_SCHEDULED = 1 << 2;
+    static final int POLL_IN_SCHEDULED = 1 << 3;
+    static final int POLL_OUT_SCHEDULED = 1 << 4;
+
+    final LinuxSocket socket;
+    /**
+     * The future of the current connection attempt.  If not null, subsequent
+     * connection attempts will fail.
+     */
+    private ChannelPromise connectPromise;
+    private ScheduledFuture<?> connectTimeoutFuture;
+    private SocketAddress requestedRemoteAddress;
+    // The sockaddr the kernel reads while the connect is in flight.
+    private ByteBuffer remoteAddressMemory;
+
+    private volatile SocketAddress local;
+    private volatile SocketAddress remote;
+
+    int ioState;
+    // Set while the operations are cancelled, no new operations must be submitted in the meantime.
+    boolean cancelling;
+    boolean inputClosedSeenErrorOnRead;
+
+    protected volatile boolean active;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            // Calling flush0 directly to ensure we not try to flush messages that were added via write(...) in the
+            // meantime.
+            ((AbstractIOUringUnsafe) unsafe()).flush0();
+        }
+    };
+
+    AbstractIOUringChannel(Channel parent, LinuxSocket fd, boolean active) {
+        super(parent);
+        this.socket = checkNotNull(fd, "fd");
+        this.active = active;
+        if (active) {
+            // Directly cache the remote and local addresses
+            // See https://github.com/netty/netty/issues/2359
+            this.local = fd.localAddress();
+            this.remote = fd.remoteAddress();
+        }
+    }
+
+    AbstractIOUringChannel(Channel parent, LinuxSocket fd, SocketAddress remote) {
+        super(parent);
+        this.socket = checkNotNull(fd, "fd");
+        this.active = true;
+        // Directly cache the remote and local addresses
+        // See https://github.com/netty/netty/issues/2359
+        this.remote = remote;
+        this.local = fd.localAddress();
+    }
+
+    static boolean isSoErrorZero(Socket fd) {
+        try {
+            return fd.getSoError() == 0;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    final boolean isScheduled(int op) {
+        return (ioState & op) != 0;
+    }
+
+    final boolean hasScheduledOperations() {
+        return ioState != 0;
+    }
+
+    final IOUringSubmissionQueue submissionQueue() {
+        return ((IOUringEventLoop) eventLoop()).submissionQueue();
+    }
+
+    final void schedulePollIn() {
+        assert !isScheduled(POLL_IN_SCHEDULED);
+        if (cancelling) {
+            return;
+        }
+        ioState |= POLL_IN_SCHEDULED;
+        submissionQueue().addPoll(socket.intValue(), Native.POLLIN);
+    }
+
+    final void schedulePollOut() {
+        assert !isScheduled(POLL_OUT_SCHEDULED);
+        if (cancelling) {
+            return;
+        }
+        ioState |= POLL_OUT_SCHEDULED;
+        submissionQueue().addPoll(socket.intValue(), Native.POLLOUT);
+    }
+
+    @Override
+    public final FileDescriptor fd() {
+        return socket;
+    }
+
+    @Override
+    public abstract IOUringChannelConfig config();
+
+    @Override
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        active = false;
+        // Even if we allow half closed sockets we should give up on reading. Otherwise we may allow a read attempt on a
+        // socket which has not even been connected yet. This has been observed to block during unit tests.
+        inputClosedSeenErrorOnRead = true;
+        try {
+            ChannelPromise promise = connectPromise;
+            if (promise != null) {
+                // Use tryFailure() instead of setFailure() to avoid the race against cancel().
+                promise.tryFailure(new ClosedChannelException());
+                connectPromise = null;
+            }
+
+            ScheduledFuture<?> future = connectTimeoutFuture;
+            if (future != null) {
+                future.cancel(false);
+                connectTimeoutFuture = null;
+            }
+
+            if (isRegistered()) {
+                // Need to check if we are on the EventLoop as doClose() may be triggered by the GlobalEventExecutor
+                // if SO_LINGER is used.
+                //
+                // See https://github.com/netty/netty/issues/7159
+                EventLoop loop = eventLoop();
+                if (loop.inEventLoop()) {
+                    doDeregister();
+                } else {
+                    loop.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                doDeregister();
+                            } catch (Throwable cause) {
+                                pipeline().fireExceptionCaught(cause);
+                            }
+                        }
+                    });
+                }
+            }
+        } finally {
+            socket.close();
+            freeRemoteAddressMemory();
+        }
+    }
+
+    private void freeRemoteAddressMemory() {
+        // The kernel may only still read the address if the channel is closed outside of the event loop, in which
+        // case we keep it until the channel is collected.
+        if (remoteAddressMemory != null && !isScheduled(CONNECT_SCHEDULED)) {
+            Buffer.free(remoteAddressMemory);
+            remoteAddressMemory = null;
+        }
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception {
+        doClose();
+    }
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return loop instanceof IOUringEventLoop;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return socket.isOpen();
+    }
+
+    @Override
+    protected void doRegister() throws Exception {
+        ((IOUringEventLoop) eventLoop()).add(this);
+        ChannelOutboundBuffer in = unsafe().outboundBuffer();
+        if (in != null && !in.isEmpty()) {
+            // A write was cancelled when the channel was deregistered from its previous EventLoop, continue it.
+            eventLoop().execute(flushTask);
+        }
+    }
+
+    @Override
+    protected void doDeregister() throws Exception {
+        IOUringEventLoop loop = (IOUringEventLoop) eventLoop();
+        if (hasScheduledOperations()) {
+            // The operations still reference the memory of this channel, so cancel them and wait until they
+            // completed before the channel is moved or closed.
+            cancelling = true;
+            try {
+                cancelScheduledOperations(loop.submissionQueue());
+                loop.drain(this);
+            } finally {
+                cancelling = false;
+            }
+        }
+        loop.remove(this);
+    }
+
+    private void cancelScheduledOperations(IOUringSubmissionQueue submissionQueue) {
+        int fd = socket.intValue();
+        if (isScheduled(READ_SCHEDULED)) {
+            submissionQueue.addCancel(fd, IOUringSubmissionQueue.userData(fd, readOp(), 0));
+        }
+        if (isScheduled(WRITE_SCHEDULED)) {
+            submissionQueue.addCancel(fd, IOUringSubmissionQueue.userData(fd, writeOp(), 0));
+        }
+        if (isScheduled(CONNECT_SCHEDULED)) {
+            submissionQueue.addCancel(fd, IOUringSubmissionQueue.userData(fd, Native.IORING_OP_CONNECT, 0));
+        }
+        if (isScheduled(POLL_IN_SCHEDULED)) {
+            submissionQueue.addCancel(fd,
+                    IOUringSubmissionQueue.userData(fd, Native.IORING_OP_POLL_ADD, Native.POLLIN));
+        }
+        if (isScheduled(POLL_OUT_SCHEDULED)) {
+            submissionQueue.addCancel(fd,
+                    IOUringSubmissionQueue.userData(fd, Native.IORING_OP_POLL_ADD, Native.POLLOUT));
+        }
+    }
+
+    @Override
+    protected final void doBeginRead() throws Exception {
+        // Channel.read() or ChannelHandlerContext.read() was called
+        final AbstractIOUringUnsafe unsafe = (AbstractIOUringUnsafe) unsafe();
+        unsafe.readPending = true;
+
+        if (socket.isInputShutdown()) {
+            if (!inputClosedSeenErrorOnRead && isAllowHalfClosure(config())) {
+                inputClosedSeenErrorOnRead = true;
+                pipeline().fireUserEventTriggered(ChannelInputShutdownReadComplete.INSTANCE);
+            }
+            return;
+        }
+        // If a read or a poll is in flight its completion will pick up readPending.
+        if (!isScheduled(READ_SCHEDULED | POLL_IN_SCHEDULED)) {
+            unsafe.scheduleFirstRead();
+        }
+    }
+
+    private static boolean isAllowHalfClosure(ChannelConfig config) {
+        return config instanceof SocketChannelConfig &&
+                ((SocketChannelConfig) config).isAllowHalfClosure();
+    }
+
+    @Override
+    protected abstract AbstractIOUringUnsafe newUnsafe();
+
+    /**
+     * The opcode this channel uses to read, the cancel of a read must reference it.
+     */
+    abstract byte readOp();
+
+    /**
+     * The opcode this channel uses to write, the cancel of a write must reference it.
+     */
+    abstract byte writeOp();
+
+    /**
+     * Returns an off-heap copy of the specified {@link ByteBuf}, and releases the original one.
+     */
+    protected final ByteBuf newDirectBuffer(ByteBuf buf) {
+        return newDirectBuffer(buf, buf);
+    }
+
+    /**
+     * Returns an off-heap copy of the specified {@link ByteBuf}, and releases the specified holder.
+     * The caller must ensure that the holder releases the original {@link ByteBuf} when the holder is released by
+     * this method.
+     */
+    protected final ByteBuf newDirectBuffer(Object holder, ByteBuf buf) {
+        final int readableBytes = buf.readableBytes();
+        if (readableBytes == 0) {
+            ReferenceCountUtil.release(holder);
+            return Unpooled.EMPTY_BUFFER;
+        }
+
+        final ByteBufAllocator alloc = alloc();
+        if (alloc.isDirectBufferPooled()) {
+            return newDirectBuffer0(holder, buf, alloc, readableBytes);
+        }
+
+        final ByteBuf directBuf = ByteBufUtil.threadLocalDirectBuffer();
+        if (directBuf == null) {
+            return newDirectBuffer0(holder, buf, alloc, readableBytes);
+        }
+
+        directBuf.writeBytes(buf, buf.readerIndex(), readableBytes);
+        ReferenceCountUtil.safeRelease(holder);
+        return directBuf;
+    }
+
+    private static ByteBuf newDirectBuffer0(Object holder, ByteBuf buf, ByteBufAllocator alloc, int capacity) {
+        final ByteBuf directBuf = alloc.directBuffer(capacity);
+        directBuf.writeBytes(buf, buf.readerIndex(), capacity);
+        ReferenceCountUtil.safeRelease(holder);
+        return directBuf;
+    }
+
+    /**
+     * Returns the address of the first writable byte of the given direct {@link ByteBuf}.
+     */
+    static long writableMemoryAddress(ByteBuf buf) {
+        if (buf.hasMemoryAddress()) {
+            return buf.memoryAddress() + buf.writerIndex();
+        }
+        ByteBuffer nioBuf = buf.internalNioBuffer(buf.writerIndex(), buf.writableBytes());
+        return Buffer.memoryAddress(nioBuf) + nioBuf.position();
+    }
+
+    protected static void checkResolvable(InetSocketAddress addr) {
+        if (addr.isUnresolved()) {
+            throw new UnresolvedAddressException();
+        }
+    }
+
+    protected abstract class AbstractIOUringUnsafe extends AbstractUnsafe {
+        boolean readPending;
+
+        /**
+         * Starts a new read loop by submitting the first read.
+         */
+        abstract void scheduleFirstRead();
+
+        /**
+         * Called once the read submitted by this channel completed.
+         */
+        abstract void readComplete(int res);
+
+        /**
+         * Called once the write submitted by this channel completed.
+         */
+        abstract void writeComplete(int res);
+
+        /**
+         * Dispatches the completion of an operation of this channel.
+         */
+        final void handle(int res, byte op, int data) {
+            if (op == Native.IORING_OP_POLL_ADD) {
+                if (data == Native.POLLIN) {
+                    ioState &= ~POLL_IN_SCHEDULED;
+                    pollInComplete(res);
+                } else {
+                    ioState &= ~POLL_OUT_SCHEDULED;
+                    pollOutComplete(res);
+                }
+            } else if (op == Native.IORING_OP_CONNECT) {
+                ioState &= ~CONNECT_SCHEDULED;
+                connectComplete(res);
+            } else if (op == readOp()) {
+                ioState &= ~READ_SCHEDULED;
+                readComplete(res);
+            } else if (op == writeOp()) {
+                ioState &= ~WRITE_SCHEDULED;
+                writeComplete(res);
+            }
+        }
+
+        private void pollInComplete(int res) {
+            if (res < 0 || !isActive()) {
+                // Cancelled, the channel is closing.
+                return;
+            }
+            if (readPending || config().isAutoRead()) {
+                scheduleFirstRead();
+            }
+        }
+
+        private void pollOutComplete(int res) {
+            if (res < 0 || !isOpen()) {
+                // Cancelled, the channel is closing.
+                return;
+            }
+            if (connectPromise != null) {
+                // pending connect which is now complete so handle it.
+                finishConnect();
+            } else if (!socket.isOutputShutdown()) {
+                // directly call super.flush0() to force a flush now
+                super.flush0();
+            }
+        }
+
+        @Override
+        protected final void flush0() {
+            // Flush immediately only when there's no write in flight.
+            // If there is one, its completion will call flush0() again.
+            if (!isScheduled(WRITE_SCHEDULED | POLL_OUT_SCHEDULED)) {
+                super.flush0();
+            }
+        }
+
+        /**
+         * Called once the write completed, continues with the messages which were flushed in the meantime.
+         */
+        final void writeCompleteFlush() {
+            if (!isScheduled(POLL_OUT_SCHEDULED)) {
+                super.flush0();
+            }
+        }
+
+        /**
+         * Shutdown the input side of the channel.
+         */
+        void shutdownInput(boolean rdHup) {
+            if (!socket.isInputShutdown()) {
+                if (isAllowHalfClosure(config())) {
+                    try {
+                        socket.shutdown(true, false);
+                    } catch (IOException ignored) {
+                        // We attempted to shutdown and failed, which means the input has already effectively been
+                        // shutdown.
+                        fireEventAndClose(ChannelInputShutdownEvent.INSTANCE);
+                        return;
+                    } catch (NotYetConnectedException ignore) {
+                        // We attempted to shutdown and failed, which means the input has already effectively been
+                        // shutdown.
+                    }
+                    readPending = false;
+                    pipeline().fireUserEventTriggered(ChannelInputShutdownEvent.INSTANCE);
+                } else {
+                    close(voidPromise());
+                }
+            } else if (!rdHup && !inputClosedSeenErrorOnRead) {
+                // A read that was scheduled before the input was shutdown may see the EOF again, and doBeginRead()
+                // may have fired the event already.
+                inputClosedSeenErrorOnRead = true;
+                pipeline().fireUserEventTriggered(ChannelInputShutdownReadComplete.INSTANCE);
+            }
+        }
+
+        private void fireEventAndClose(Object evt) {
+            pipeline().fireUserEventTriggered(evt);
+            close(voidPromise());
+        }
+
+        @Override
+        public void connect(
+                final SocketAddress remoteAddress, final SocketAddress localAddress, final ChannelPromise promise) {
+            if (!promise.setUncancellable() || !ensureOpen(promise)) {
+                return;
+            }
+
+            try {
+                if (connectPromise != null) {
+                    throw new ConnectionPendingException();
+                }
+
+                boolean wasActive = isActive();
+                if (doConnect(remoteAddress, localAddress)) {
+                    fulfillConnectPromise(promise, wasActive);
+                } else {
+                    connectPromise = promise;
+                    requestedRemoteAddress = remoteAddress;
+
+                    // Schedule connect timeout.
+                    int connectTimeoutMillis = config().getConnectTimeoutMillis();
+                    if (connectTimeoutMillis > 0) {
+                        connectTimeoutFuture = eventLoop().schedule(new Runnable() {
+                            @Override
+                            public void run() {
+                                ChannelPromise connectPromise = AbstractIOUringChannel.this.connectPromise;
+                                ConnectTimeoutException cause =
+                                        new ConnectTimeoutException("connection timed out: " + remoteAddress);
+                                if (connectPromise != null && connectPromise.tryFailure(cause)) {
+                                    close(voidPromise());
+                                }
+                            }
+                        }, connectTimeoutMillis, TimeUnit.MILLISECONDS);
+                    }
+
+                    promise.addListener(new ChannelFutureListener() {
+                        @Override
+                        public void operationComplete(ChannelFuture future) throws Exception {
+                            if (future.isCancelled()) {
+                                if (connectTimeoutFuture != null) {
+                                    connectTimeoutFuture.cancel(false);
+                                }
+                                connectPromise = null;
+                                close(voidPromise());
+                            }
+                        }
+                    });
+                }
+            } catch (Throwable t) {
+                closeIfClosed();
+                promise.tryFailure(annotateConnectException(t, remoteAddress));
+            }
+        }
+
+        private void fulfillConnectPromise(ChannelPromise promise, boolean wasActive) {
+            if (promise == null) {
+                // Closed via cancellation and the promise has been notified already.
+                return;
+            }
+            active = true;
+
+            // Get the state as trySuccess() may trigger an ChannelFutureListener that will close the Channel.
+            // We still need to ensure we call fireChannelActive() in this case.
+            boolean active = isActive();
+
+            // trySuccess() will return false if a user cancelled the connection attempt.
+            boolean promiseSet = promise.trySuccess();
+
+            // Regardless if the connection attempt was cancelled, channelActive() event should be triggered,
+            // because what happened is what happened.
+            if (!wasActive && active) {
+                pipeline().fireChannelActive();
+            }
+
+            // If a user cancelled the connection attempt, close the channel, which is followed by channelInactive().
+            if (!promiseSet) {
+                close(voidPromise());
+            }
+        }
+
+        private void fulfillConnectPromise(ChannelPromise promise, Throwable cause) {
+            if (promise == null) {
+                // Closed via cancellation and the promise has been notified already.
+                return;
+            }
+
+            // Use tryFailure() instead of setFailure() to avoid the race against cancel().
+            promise.tryFailure(cause);
+            closeIfClosed();
+        }
+
+        /**
+         * Called once the connect submitted by this channel completed.
+         */
+        private void connectComplete(int res) {
+            freeRemoteAddressMemory();
+            if (connectPromise == null) {
+                // Cancelled or timed out, the channel is closed already.
+                return;
+            }
+            if (res == Errors.ERRNO_EINPROGRESS_NEGATIVE || res == Errors.ERRNO_EAGAIN_NEGATIVE ||
+                    res == Errors.ERROR_EALREADY_NEGATIVE) {
+                // Older kernels don't wait for non-blocking sockets, so wait until the socket is writable.
+                schedulePollOut();
+                return;
+            }
+            if (res < 0) {
+                Throwable cause = new ConnectException(Errors.newIOException("connect", res).getMessage());
+                completeConnect(cause);
+            } else {
+                completeConnect(null);
+            }
+        }
+
+        private void finishConnect() {
+            // Note this method is invoked by the event loop only if the connection attempt was
+            // neither cancelled nor timed out.
+
+            assert eventLoop().inEventLoop();
+
+            try {
+                if (!socket.finishConnect()) {
+                    schedulePollOut();
+                    return;
+                }
+                completeConnect(null);
+            } catch (Throwable t) {
+                completeConnect(t);
+            }
+        }
+
+        private void completeConnect(Throwable cause) {
+            try {
+                if (cause == null) {
+                    boolean wasActive = isActive();
+                    if (requestedRemoteAddress instanceof InetSocketAddress) {
+                        remote = computeRemoteAddr((InetSocketAddress) requestedRemoteAddress, socket.remoteAddress());
+                    }
+                    requestedRemoteAddress = null;
+                    local = socket.localAddress();
+                    fulfillConnectPromise(connectPromise, wasActive);
+                } else {
+                    fulfillConnectPromise(connectPromise, annotateConnectException(cause, requestedRemoteAddress));
+                }
+            } finally {
+                // Check for null as the connectTimeoutFuture is only created if a connectTimeoutMillis > 0 is used
+                // See https://github.com/netty/netty/issues/1770
+                if (connectTimeoutFuture != null) {
+                    connectTimeoutFuture.cancel(false);
+                }
+                connectPromise = null;
+            }
+        }
+    }
+
+    @Override
+    protected void doBind(SocketAddress local) throws Exception {
+        if (local instanceof InetSocketAddress) {
+            checkResolvable((InetSocketAddress) local);
+        }
+        socket.bind(local);
+        this.local = socket.localAddress();
+    }
+
+    /**
+     * Connect to the remote peer
+     */
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        if (localAddress instanceof InetSocketAddress) {
+            checkResolvable((InetSocketAddress) localAddress);
+        }
+
+        if (!(remoteAddress instanceof InetSocketAddress)) {
+            throw new UnsupportedOperationException("unsupported address type: " + remoteAddress);
+        }
+        InetSocketAddress remoteSocketAddr = (InetSocketAddress) remoteAddress;
+        checkResolvable(remoteSocketAddr);
+
+        if (remote != null) {
+            // Check if already connected before trying to connect. This is needed as connect(...) will not return -1
+            // and set errno to EISCONN if a previous connect(...) attempt was setting errno to EINPROGRESS and finished
+            // later.
+            throw new AlreadyConnectedException();
+        }
+
+        if (localAddress != null) {
+            socket.bind(localAddress);
+        }
+
+        boolean success = false;
+        try {
+            if (remoteAddressMemory == null) {
+                remoteAddressMemory = Buffer.allocateDirectWithNativeOrder(SockaddrIn.MAX_SIZE);
+            }
+            long memory = Buffer.memoryAddress(remoteAddressMemory);
+            int length = SockaddrIn.write(socket.isIPv6(), memory, remoteSocketAddr);
+            ioState |= CONNECT_SCHEDULED;
+            submissionQueue().addConnect(socket.intValue(), memory, length, 0);
+            success = true;
+        } finally {
+            if (!success) {
+                doClose();
+            }
+        }
+        // We always need to set the localAddress even if not connected yet as the bind already took place.
+        //
+        // See https://github.com/netty/netty/issues/3463
+        local = socket.localAddress();
+        return false;
+    }
+
+    void resetCachedAddresses() {
+        local = socket.localAddress();
+        remote = socket.remoteAddress();
+    }
+
+    @Override
+    protected SocketAddress localAddress0() {
+        return local;
+    }
+
+    @Override
+    protected SocketAddress remoteAddress0() {
+        return remote;
+    }
+}
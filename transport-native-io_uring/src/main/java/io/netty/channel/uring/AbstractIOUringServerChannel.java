@@ -0,0 +1,170 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.unix.Errors;
+import io.netty.util.UncheckedBooleanSupplier;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+abstract class AbstractIOUringServerChannel extends AbstractIOUringChannel implements ServerChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false, 16);
+
+    AbstractIOUringServerChannel(LinuxSocket fd) {
+        this(fd, isSoErrorZero(fd));
+    }
+
+    AbstractIOUringServerChannel(LinuxSocket fd, boolean active) {
+        super(null, fd, active);
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    protected InetSocketAddress remoteAddress0() {
+        return null;
+    }
+
+    @Override
+    protected AbstractIOUringUnsafe newUnsafe() {
+        return new IOUringServerSocketUnsafe();
+    }
+
+    @Override
+    final byte readOp() {
+        return Native.IORING_OP_ACCEPT;
+    }
+
+    @Override
+    final byte writeOp() {
+        // Never submitted, ServerChannels don't write.
+        return -1;
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    abstract Channel newChildChannel(int fd) throws Exception;
+
+    final class IOUringServerSocketUnsafe extends AbstractIOUringUnsafe {
+
+        @Override
+        public void connect(SocketAddress socketAddress, SocketAddress socketAddress2, ChannelPromise channelPromise) {
+            // Connect not supported by ServerChannel implementations
+            channelPromise.setFailure(new UnsupportedOperationException());
+        }
+
+        @Override
+        void scheduleFirstRead() {
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            allocHandle.reset(config());
+            allocHandle.attemptedBytesRead(1);
+            scheduleAccept();
+        }
+
+        private void scheduleAccept() {
+            if (cancelling) {
+                return;
+            }
+            ioState |= READ_SCHEDULED;
+            submissionQueue().addAccept(socket.intValue(), 0);
+        }
+
+        @Override
+        void readComplete(int res) {
+            if (res == Native.ERRNO_ECANCELED_NEGATIVE || !isActive()) {
+                // The channel was closed or deregistered while the accept was in flight.
+                return;
+            }
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            final ChannelPipeline pipeline = pipeline();
+            if (res == Errors.ERRNO_EAGAIN_NEGATIVE) {
+                // No connection to accept yet, wait until there is one.
+                if (!isScheduled(POLL_IN_SCHEDULED)) {
+                    schedulePollIn();
+                }
+                allocHandle.readComplete();
+                pipeline.fireChannelReadComplete();
+                return;
+            }
+            if (res < 0) {
+                allocHandle.readComplete();
+                pipeline.fireChannelReadComplete();
+                pipeline.fireExceptionCaught(Errors.newIOException("accept", res));
+                return;
+            }
+
+            // lastBytesRead represents the fd. We use lastBytesRead because it must be set so that the
+            // RecvByteBufAllocator.Handle knows if it should try to accept again or not when autoRead is enabled.
+            allocHandle.lastBytesRead(res);
+            allocHandle.incMessagesRead(1);
+            readPending = false;
+            Throwable exception = null;
+            try {
+                pipeline.fireChannelRead(newChildChannel(res));
+            } catch (Throwable t) {
+                exception = t;
+            }
+            if (exception == null && isActive() && continueAccepting(allocHandle)) {
+                scheduleAccept();
+                return;
+            }
+            allocHandle.readComplete();
+            pipeline.fireChannelReadComplete();
+            if (exception != null) {
+                pipeline.fireExceptionCaught(exception);
+            }
+        }
+
+        private boolean continueAccepting(RecvByteBufAllocator.Handle allocHandle) {
+            // There is no way to know if more connections are pending, so keep accepting until the limit of
+            // messages per read is reached.
+            if (allocHandle instanceof RecvByteBufAllocator.ExtendedHandle) {
+                return ((RecvByteBufAllocator.ExtendedHandle) allocHandle)
+                        .continueReading(UncheckedBooleanSupplier.TRUE_SUPPLIER);
+            }
+            return allocHandle.continueReading();
+        }
+
+        @Override
+        void writeComplete(int res) {
+            // Never called, ServerChannels don't write.
+        }
+    }
+
+    @Override
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.IovArray;
+import io.netty.channel.unix.UnixChannelUtil;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+
+abstract class AbstractIOUringStreamChannel extends AbstractIOUringChannel implements DuplexChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false, 16);
+    private static final String EXPECTED_TYPES =
+            " (expected: " + StringUtil.simpleClassName(ByteBuf.class) + ')';
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(AbstractIOUringStreamChannel.class);
+
+    // The iovecs of the write in flight, the kernel reads them until the write completed.
+    private IovArray iovArray;
+    // The failure of the last write, thrown by the next doWrite(...) so it is handled like a failed synchronous write.
+    private IOException writeException;
+
+    AbstractIOUringStreamChannel(Channel parent, LinuxSocket fd, boolean active) {
+        super(parent, fd, active);
+    }
+
+    AbstractIOUringStreamChannel(Channel parent, LinuxSocket fd, SocketAddress remote) {
+        super(parent, fd, remote);
+    }
+
+    @Override
+    protected AbstractIOUringUnsafe newUnsafe() {
+        return new IOUringStreamUnsafe();
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    final byte readOp() {
+        return Native.IORING_OP_READ;
+    }
+
+    @Override
+    final byte writeOp() {
+        return Native.IORING_OP_WRITEV;
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        IOException cause = writeException;
+        if (cause != null) {
+            writeException = null;
+            throw cause;
+        }
+        if (isScheduled(WRITE_SCHEDULED) || cancelling) {
+            return;
+        }
+        IovArray array = iovArray;
+        if (array == null) {
+            iovArray = array = new IovArray();
+        }
+        while (!in.isEmpty()) {
+            array.clear();
+            array.maxBytes(config().getMaxBytesPerGatheringWrite());
+            in.forEachFlushedMessage(array);
+            if (array.count() >= 1) {
+                ioState |= WRITE_SCHEDULED;
+                IOUringSubmissionQueue submissionQueue = submissionQueue();
+                submissionQueue.addWritev(socket.intValue(), array.memoryAddress(0), array.count(), 0);
+                // Hand the write to the kernel right away instead of waiting for the EventLoop to block, as the
+                // handler which flushed it may block the EventLoop itself.
+                submissionQueue.submit();
+                return;
+            }
+            // cnt == 0, which means the outbound buffer contained empty buffers only.
+            in.removeBytes(0);
+        }
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof ByteBuf) {
+            ByteBuf buf = (ByteBuf) msg;
+            return UnixChannelUtil.isBufferCopyNeededForWrite(buf)? newDirectBuffer(buf): buf;
+        }
+
+        throw new UnsupportedOperationException(
+                "unsupported message type: " + StringUtil.simpleClassName(msg) + EXPECTED_TYPES);
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        try {
+            super.doClose();
+        } finally {
+            // The write was cancelled or completed by now if the channel was closed in the EventLoop.
+            if (iovArray != null && !isScheduled(WRITE_SCHEDULED)) {
+                iovArray.release();
+                iovArray = null;
+            }
+        }
+    }
+
+    @Override
+    protected final void doShutdownOutput() throws Exception {
+        socket.shutdown(false, true);
+    }
+
+    private void shutdownInput0(final ChannelPromise promise) {
+        try {
+            socket.shutdown(true, false);
+            promise.setSuccess();
+        } catch (Throwable cause) {
+            promise.setFailure(cause);
+        }
+    }
+
+    @Override
+    public boolean isOutputShutdown() {
+        return socket.isOutputShutdown();
+    }
+
+    @Override
+    public boolean isInputShutdown() {
+        return socket.isInputShutdown();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return socket.isShutdown();
+    }
+
+    @Override
+    public ChannelFuture shutdownOutput() {
+        return shutdownOutput(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdownOutput(final ChannelPromise promise) {
+        EventLoop loop = eventLoop();
+        if (loop.inEventLoop()) {
+            ((AbstractUnsafe) unsafe()).shutdownOutput(promise);
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ((AbstractUnsafe) unsafe()).shutdownOutput(promise);
+                }
+            });
+        }
+
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture shutdownInput() {
+        return shutdownInput(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdownInput(final ChannelPromise promise) {
+        EventLoop loop = eventLoop();
+        if (loop.inEventLoop()) {
+            shutdownInput0(promise);
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    shutdownInput0(promise);
+                }
+            });
+        }
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture shutdown() {
+        return shutdown(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdown(final ChannelPromise promise) {
+        ChannelFuture shutdownOutputFuture = shutdownOutput();
+        if (shutdownOutputFuture.isDone()) {
+            shutdownOutputDone(shutdownOutputFuture, promise);
+        } else {
+            shutdownOutputFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(final ChannelFuture shutdownOutputFuture) throws Exception {
+                    shutdownOutputDone(shutdownOutputFuture, promise);
+                }
+            });
+        }
+        return promise;
+    }
+
+    private void shutdownOutputDone(final ChannelFuture shutdownOutputFuture, final ChannelPromise promise) {
+        ChannelFuture shutdownInputFuture = shutdownInput();
+        if (shutdownInputFuture.isDone()) {
+            shutdownDone(shutdownOutputFuture, shutdownInputFuture, promise);
+        } else {
+            shutdownInputFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture shutdownInputFuture) throws Exception {
+                    shutdownDone(shutdownOutputFuture, shutdownInputFuture, promise);
+                }
+            });
+        }
+    }
+
+    private static void shutdownDone(ChannelFuture shutdownOutputFuture,
+                              ChannelFuture shutdownInputFuture,
+                              ChannelPromise promise) {
+        Throwable shutdownOutputCause = shutdownOutputFuture.cause();
+        Throwable shutdownInputCause = shutdownInputFuture.cause();
+        if (shutdownOutputCause != null) {
+            if (shutdownInputCause != null) {
+                logger.debug("Exception suppressed because a previous exception occurred.",
+                        shutdownInputCause);
+            }
+            promise.setFailure(shutdownOutputCause);
+        } else if (shutdownInputCause != null) {
+            promise.setFailure(shutdownInputCause);
+        } else {
+            promise.setSuccess();
+        }
+    }
+
+    class IOUringStreamUnsafe extends AbstractIOUringUnsafe {
+        // The buffer the read in flight writes into.
+        private ByteBuf readBuffer;
+        // Whether the current read loop read anything, and so needs to fire channelReadComplete().
+        private boolean readInLoop;
+
+        @Override
+        void scheduleFirstRead() {
+            readInLoop = false;
+            recvBufAllocHandle().reset(config());
+            scheduleRead();
+        }
+
+        private void scheduleRead() {
+            if (cancelling) {
+                return;
+            }
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            // we use a direct buffer here as the kernel reads into its memory.
+            ByteBuf byteBuf = config().getAllocator().directBuffer(allocHandle.guess());
+            allocHandle.attemptedBytesRead(byteBuf.writableBytes());
+            readBuffer = byteBuf;
+            ioState |= READ_SCHEDULED;
+            submissionQueue().addRead(socket.intValue(), writableMemoryAddress(byteBuf), byteBuf.writableBytes(), 0);
+        }
+
+        @Override
+        void readComplete(int res) {
+            ByteBuf byteBuf = readBuffer;
+            readBuffer = null;
+            if (res == Native.ERRNO_ECANCELED_NEGATIVE || !isActive()) {
+                // The channel was closed or deregistered while the read was in flight.
+                byteBuf.release();
+                return;
+            }
+            if (res == Errors.ERRNO_EAGAIN_NEGATIVE) {
+                // Nothing to read yet, wait until the socket is readable without holding on to the buffer.
+                byteBuf.release();
+                // Schedule the poll first, so a read() triggered by channelReadComplete() will not read again.
+                if (!isScheduled(POLL_IN_SCHEDULED)) {
+                    schedulePollIn();
+                }
+                if (readInLoop) {
+                    readLoopComplete();
+                }
+                return;
+            }
+
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            final ChannelPipeline pipeline = pipeline();
+            if (res < 0) {
+                handleReadException(pipeline, byteBuf, Errors.newIOException("read", res), allocHandle);
+                return;
+            }
+            if (res == 0) {
+                // There is nothing left to read as we received an EOF.
+                byteBuf.release();
+                allocHandle.lastBytesRead(-1);
+                readPending = false;
+                readLoopComplete();
+                shutdownInput(false);
+                return;
+            }
+
+            byteBuf.writerIndex(byteBuf.writerIndex() + res);
+            allocHandle.lastBytesRead(res);
+            allocHandle.incMessagesRead(1);
+            readPending = false;
+            readInLoop = true;
+            pipeline.fireChannelRead(byteBuf);
+
+            // If the input was shutdown or the channel closed in fireChannelRead(...) we must not read again, the
+            // file descriptor may be reused already.
+            if (allocHandle.continueReading() && isActive() && !socket.isInputShutdown()) {
+                scheduleRead();
+            } else {
+                readLoopComplete();
+            }
+        }
+
+        private void readLoopComplete() {
+            recvBufAllocHandle().readComplete();
+            pipeline().fireChannelReadComplete();
+        }
+
+        private void handleReadException(ChannelPipeline pipeline, ByteBuf byteBuf, Throwable cause,
+                                         RecvByteBufAllocator.Handle allocHandle) {
+            byteBuf.release();
+            allocHandle.readComplete();
+            pipeline.fireChannelReadComplete();
+            pipeline.fireExceptionCaught(cause);
+            shutdownInput(false);
+        }
+
+        @Override
+        void writeComplete(int res) {
+            ChannelOutboundBuffer in = outboundBuffer();
+            if (in == null || res == Native.ERRNO_ECANCELED_NEGATIVE) {
+                // The channel was closed or deregistered while the write was in flight.
+                return;
+            }
+            if (res >= 0) {
+                in.removeBytes(res);
+                writeCompleteFlush();
+            } else if (res == Errors.ERRNO_EAGAIN_NEGATIVE) {
+                // The send buffer is full, continue once the socket is writable again.
+                if (!isScheduled(POLL_OUT_SCHEDULED)) {
+                    schedulePollOut();
+                }
+            } else {
+                writeException = Errors.newIOException("writev", res);
+                writeCompleteFlush();
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * The completion queue of a {@link RingBuffer}.
+ */
+final class IOUringCompletionQueue {
+    // The layout of struct io_uring_cqe.
+    private static final int CQE_SIZE = 16;
+    private static final int CQE_USER_DATA_FIELD = 0;
+    private static final int CQE_RES_FIELD = 8;
+    private static final int CQE_FLAGS_FIELD = 12;
+
+    /**
+     * Is notified about every completed operation.
+     */
+    interface CompletionCallback {
+        void handle(int fd, int res, int flags, byte op, int data);
+    }
+
+    private final int ringFd;
+    private final long kHeadAddress;
+    private final long kTailAddress;
+    private final int ringMask;
+    private final long cqesAddress;
+
+    // The head is only written by us. It is a field and not a local variable in process(...) as the callback may
+    // process completions itself, for example while a channel waits for its cancelled operations.
+    private int head;
+
+    IOUringCompletionQueue(int ringFd, long kHeadAddress, long kTailAddress, long kRingMaskAddress,
+                           long cqesAddress) {
+        this.ringFd = ringFd;
+        this.kHeadAddress = kHeadAddress;
+        this.kTailAddress = kTailAddress;
+        this.cqesAddress = cqesAddress;
+        ringMask = PlatformDependent.getInt(kRingMaskAddress);
+        head = PlatformDependent.getIntVolatile(kHeadAddress);
+    }
+
+    /**
+     * Returns {@code true} if there are completions which were not processed yet.
+     */
+    boolean hasCompletions() {
+        return head != PlatformDependent.getIntVolatile(kTailAddress);
+    }
+
+    /**
+     * Processes all available completions and returns their number.
+     */
+    int process(CompletionCallback callback) {
+        int processed = 0;
+        for (;;) {
+            int tail = PlatformDependent.getIntVolatile(kTailAddress);
+            if (head == tail) {
+                return processed;
+            }
+            // Compare the distance, a callback may have processed completions past the tail we read.
+            while (tail - head > 0) {
+                long cqe = cqesAddress + (long) (head & ringMask) * CQE_SIZE;
+                long userData = PlatformDependent.getLong(cqe + CQE_USER_DATA_FIELD);
+                int res = PlatformDependent.getInt(cqe + CQE_RES_FIELD);
+                int flags = PlatformDependent.getInt(cqe + CQE_FLAGS_FIELD);
+
+                // Release the entry before the callback runs, the kernel can reuse it then.
+                PlatformDependent.putIntOrdered(kHeadAddress, ++head);
+                processed++;
+                callback.handle(IOUringSubmissionQueue.userDataFd(userData), res, flags,
+                        IOUringSubmissionQueue.userDataOp(userData), IOUringSubmissionQueue.userDataData(userData));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "IOUringCompletionQueue(ringFd: " + ringFd + ", head: " + head + ')';
+    }
+}
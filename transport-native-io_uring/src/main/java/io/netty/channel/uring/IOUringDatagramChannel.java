@@ -0,0 +1,531 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.AddressedEnvelope;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultAddressedEnvelope;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.channel.socket.InternetProtocolFamily;
+import io.netty.channel.unix.Buffer;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.IovArray;
+import io.netty.channel.unix.Socket;
+import io.netty.channel.unix.UnixChannelUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.PortUnreachableException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link DatagramChannel} implementation that uses io_uring to receive and send the datagrams with
+ * {@code recvmsg(...)} and {@code sendmsg(...)}. Multicast is not supported.
+ * This can only be used on Linux with an {@link IOUringEventLoopGroup}.
+ */
+@UnstableApi
+public final class IOUringDatagramChannel extends AbstractIOUringChannel implements DatagramChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(true);
+    private static final String EXPECTED_TYPES =
+            " (expected: " + StringUtil.simpleClassName(DatagramPacket.class) + ", " +
+            StringUtil.simpleClassName(AddressedEnvelope.class) + '<' +
+            StringUtil.simpleClassName(ByteBuf.class) + ", " +
+            StringUtil.simpleClassName(InetSocketAddress.class) + ">, " +
+            StringUtil.simpleClassName(ByteBuf.class) + ')';
+
+    private static final int ADDRESS_SIZE = Buffer.addressSize();
+    // The receive memory holds the msghdr, followed by one iovec and the sockaddr of the sender. The send memory
+    // holds the msghdr, followed by the sockaddr of the recipient, the iovecs are in the sendIovArray.
+    private static final int RECV_IOVEC_OFFSET = Native.SIZEOF_MSGHDR;
+    private static final int RECV_SOCKADDR_OFFSET = RECV_IOVEC_OFFSET + Native.SIZEOF_IOVEC;
+    private static final int RECV_MEMORY_SIZE = RECV_SOCKADDR_OFFSET + SockaddrIn.MAX_SIZE;
+    private static final int SEND_SOCKADDR_OFFSET = Native.SIZEOF_MSGHDR;
+    private static final int SEND_MEMORY_SIZE = SEND_SOCKADDR_OFFSET + SockaddrIn.MAX_SIZE;
+
+    private final IOUringDatagramChannelConfig config;
+    private volatile boolean connected;
+
+    // The native memory the kernel uses while the recvmsg and the sendmsg are in flight.
+    private ByteBuffer recvMemory;
+    private ByteBuffer sendMemory;
+    private IovArray sendIovArray;
+
+    /**
+     * Create a new instance which selects the {@link InternetProtocolFamily} to use depending
+     * on the Operation Systems default which will be chosen.
+     */
+    public IOUringDatagramChannel() {
+        this(null);
+    }
+
+    /**
+     * Create a new instance using the given {@link InternetProtocolFamily}. If {@code null} is used it will depend
+     * on the Operation Systems default which will be chosen.
+     */
+    public IOUringDatagramChannel(InternetProtocolFamily family) {
+        super(null, family == null ? LinuxSocket.newSocketDgram() : LinuxSocket.newSocketDgram(family), false);
+        config = new IOUringDatagramChannelConfig(this);
+    }
+
+    @Override
+    public InetSocketAddress remoteAddress() {
+        return (InetSocketAddress) super.remoteAddress();
+    }
+
+    @Override
+    public InetSocketAddress localAddress() {
+        return (InetSocketAddress) super.localAddress();
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    public boolean isActive() {
+        return socket.isOpen() && (config.getActiveOnOpen() && isRegistered() || active);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    private IOException translateForConnected(Errors.NativeIoException e) {
+        // We need to correctly translate connect errors to match NIO behaviour.
+        if (isConnected() && e.expectedErr() == Errors.ERROR_ECONNREFUSED_NEGATIVE) {
+            PortUnreachableException error = new PortUnreachableException(e.getMessage());
+            error.initCause(e);
+            return error;
+        }
+        return e;
+    }
+
+    @Override
+    public ChannelFuture joinGroup(InetAddress multicastAddress) {
+        return joinGroup(multicastAddress, newPromise());
+    }
+
+    @Override
+    public ChannelFuture joinGroup(InetAddress multicastAddress, ChannelPromise promise) {
+        return multicastNotSupported(promise);
+    }
+
+    @Override
+    public ChannelFuture joinGroup(InetSocketAddress multicastAddress, NetworkInterface networkInterface) {
+        return joinGroup(multicastAddress, networkInterface, newPromise());
+    }
+
+    @Override
+    public ChannelFuture joinGroup(
+            InetSocketAddress multicastAddress, NetworkInterface networkInterface, ChannelPromise promise) {
+        return multicastNotSupported(promise);
+    }
+
+    @Override
+    public ChannelFuture joinGroup(
+            InetAddress multicastAddress, NetworkInterface networkInterface, InetAddress source) {
+        return joinGroup(multicastAddress, networkInterface, source, newPromise());
+    }
+
+    @Override
+    public ChannelFuture joinGroup(
+            InetAddress multicastAddress, NetworkInterface networkInterface, InetAddress source,
+            ChannelPromise promise) {
+        return multicastNotSupported(promise);
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(InetAddress multicastAddress) {
+        return leaveGroup(multicastAddress, newPromise());
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(InetAddress multicastAddress, ChannelPromise promise) {
+        return multicastNotSupported(promise);
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(InetSocketAddress multicastAddress, NetworkInterface networkInterface) {
+        return leaveGroup(multicastAddress, networkInterface, newPromise());
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(
+            InetSocketAddress multicastAddress, NetworkInterface networkInterface, ChannelPromise promise) {
+        return multicastNotSupported(promise);
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(
+            InetAddress multicastAddress, NetworkInterface networkInterface, InetAddress source) {
+        return leaveGroup(multicastAddress, networkInterface, source, newPromise());
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(
+            InetAddress multicastAddress, NetworkInterface networkInterface, InetAddress source,
+            ChannelPromise promise) {
+        return multicastNotSupported(promise);
+    }
+
+    @Override
+    public ChannelFuture block(
+            InetAddress multicastAddress, NetworkInterface networkInterface, InetAddress sourceToBlock) {
+        return block(multicastAddress, networkInterface, sourceToBlock, newPromise());
+    }
+
+    @Override
+    public ChannelFuture block(
+            InetAddress multicastAddress, NetworkInterface networkInterface, InetAddress sourceToBlock,
+            ChannelPromise promise) {
+        return multicastNotSupported(promise);
+    }
+
+    @Override
+    public ChannelFuture block(InetAddress multicastAddress, InetAddress sourceToBlock) {
+        return block(multicastAddress, sourceToBlock, newPromise());
+    }
+
+    @Override
+    public ChannelFuture block(InetAddress multicastAddress, InetAddress sourceToBlock, ChannelPromise promise) {
+        return multicastNotSupported(promise);
+    }
+
+    private static ChannelFuture multicastNotSupported(ChannelPromise promise) {
+        promise.setFailure(new UnsupportedOperationException("multicast is not supported"));
+        return promise;
+    }
+
+    @Override
+    protected AbstractIOUringUnsafe newUnsafe() {
+        return new IOUringDatagramChannelUnsafe();
+    }
+
+    @Override
+    byte readOp() {
+        return Native.IORING_OP_RECVMSG;
+    }
+
+    @Override
+    byte writeOp() {
+        return Native.IORING_OP_SENDMSG;
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        if (localAddress instanceof InetSocketAddress) {
+            InetSocketAddress socketAddress = (InetSocketAddress) localAddress;
+            if (socketAddress.getAddress().isAnyLocalAddress() &&
+                    socketAddress.getAddress() instanceof Inet4Address && Socket.isIPv6Preferred()) {
+                localAddress = new InetSocketAddress(LinuxSocket.INET6_ANY, socketAddress.getPort());
+            }
+        }
+        super.doBind(localAddress);
+        active = true;
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        if (isScheduled(WRITE_SCHEDULED) || cancelling) {
+            return;
+        }
+        for (;;) {
+            Object msg = in.current();
+            if (msg == null) {
+                // Wrote all messages.
+                return;
+            }
+            if (scheduleSendmsg(msg)) {
+                return;
+            }
+            // Nothing to send, the message is empty.
+            in.remove();
+        }
+    }
+
+    private boolean scheduleSendmsg(Object msg) {
+        final ByteBuf data;
+        InetSocketAddress remoteAddress;
+        if (msg instanceof AddressedEnvelope) {
+            @SuppressWarnings("unchecked")
+            AddressedEnvelope<ByteBuf, InetSocketAddress> envelope =
+                    (AddressedEnvelope<ByteBuf, InetSocketAddress>) msg;
+            data = envelope.content();
+            remoteAddress = envelope.recipient();
+        } else {
+            data = (ByteBuf) msg;
+            remoteAddress = null;
+        }
+        if (data.readableBytes() == 0) {
+            return false;
+        }
+
+        if (sendMemory == null) {
+            sendMemory = Buffer.allocateDirectWithNativeOrder(SEND_MEMORY_SIZE);
+            sendIovArray = new IovArray();
+        }
+        long msghdr = Buffer.memoryAddress(sendMemory);
+        IovArray array = sendIovArray;
+        array.clear();
+        array.add(data, data.readerIndex(), data.readableBytes());
+
+        PlatformDependent.setMemory(msghdr, Native.SIZEOF_MSGHDR, (byte) 0);
+        if (remoteAddress != null) {
+            long sockaddr = msghdr + SEND_SOCKADDR_OFFSET;
+            int sockaddrLength = SockaddrIn.write(socket.isIPv6(), sockaddr, remoteAddress);
+            putAddress(msghdr + Native.MSGHDR_OFFSETOF_MSG_NAME, sockaddr);
+            PlatformDependent.putInt(msghdr + Native.MSGHDR_OFFSETOF_MSG_NAMELEN, sockaddrLength);
+        }
+        putAddress(msghdr + Native.MSGHDR_OFFSETOF_MSG_IOV, array.memoryAddress(0));
+        putAddress(msghdr + Native.MSGHDR_OFFSETOF_MSG_IOVLEN, array.count());
+
+        ioState |= WRITE_SCHEDULED;
+        IOUringSubmissionQueue submissionQueue = submissionQueue();
+        submissionQueue.addSendmsg(socket.intValue(), msghdr, 0);
+        // Flushed writes are submitted right away, like in AbstractIOUringStreamChannel.
+        submissionQueue.submit();
+        return true;
+    }
+
+    // Writes a pointer or a size_t.
+    private static void putAddress(long address, long value) {
+        if (ADDRESS_SIZE == 8) {
+            PlatformDependent.putLong(address, value);
+        } else {
+            PlatformDependent.putInt(address, (int) value);
+        }
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof DatagramPacket) {
+            DatagramPacket packet = (DatagramPacket) msg;
+            ByteBuf content = packet.content();
+            return UnixChannelUtil.isBufferCopyNeededForWrite(content) ?
+                    new DatagramPacket(newDirectBuffer(packet, content), packet.recipient()) : msg;
+        }
+
+        if (msg instanceof ByteBuf) {
+            ByteBuf buf = (ByteBuf) msg;
+            return UnixChannelUtil.isBufferCopyNeededForWrite(buf)? newDirectBuffer(buf) : buf;
+        }
+
+        if (msg instanceof AddressedEnvelope) {
+            @SuppressWarnings("unchecked")
+            AddressedEnvelope<Object, SocketAddress> e = (AddressedEnvelope<Object, SocketAddress>) msg;
+            if (e.content() instanceof ByteBuf &&
+                (e.recipient() == null || e.recipient() instanceof InetSocketAddress)) {
+
+                ByteBuf content = (ByteBuf) e.content();
+                return UnixChannelUtil.isBufferCopyNeededForWrite(content)?
+                        new DefaultAddressedEnvelope<ByteBuf, InetSocketAddress>(
+                            newDirectBuffer(e, content), (InetSocketAddress) e.recipient()) : e;
+            }
+        }
+
+        throw new UnsupportedOperationException(
+                "unsupported message type: " + StringUtil.simpleClassName(msg) + EXPECTED_TYPES);
+    }
+
+    @Override
+    public IOUringDatagramChannelConfig config() {
+        return config;
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception {
+        socket.disconnect();
+        connected = active = false;
+        resetCachedAddresses();
+    }
+
+    @Override
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        if (localAddress instanceof InetSocketAddress) {
+            checkResolvable((InetSocketAddress) localAddress);
+        }
+        if (remoteAddress instanceof InetSocketAddress) {
+            checkResolvable((InetSocketAddress) remoteAddress);
+        }
+        if (localAddress != null) {
+            socket.bind(localAddress);
+        }
+        // Connecting a datagram socket never blocks, so there is no need to submit it.
+        socket.connect(remoteAddress);
+        connected = true;
+        resetCachedAddresses();
+        return true;
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        try {
+            super.doClose();
+        } finally {
+            connected = false;
+            // The operations were cancelled or completed by now if the channel was closed in the EventLoop.
+            if (recvMemory != null && !isScheduled(READ_SCHEDULED)) {
+                Buffer.free(recvMemory);
+                recvMemory = null;
+            }
+            if (sendMemory != null && !isScheduled(WRITE_SCHEDULED)) {
+                Buffer.free(sendMemory);
+                sendMemory = null;
+                sendIovArray.release();
+                sendIovArray = null;
+            }
+        }
+    }
+
+    final class IOUringDatagramChannelUnsafe extends AbstractIOUringUnsafe {
+        // The buffer the recvmsg in flight writes into.
+        private ByteBuf readBuffer;
+        private boolean readInLoop;
+
+        @Override
+        void scheduleFirstRead() {
+            readInLoop = false;
+            recvBufAllocHandle().reset(config());
+            scheduleRecvmsg();
+        }
+
+        private void scheduleRecvmsg() {
+            if (cancelling) {
+                return;
+            }
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            ByteBuf byteBuf = config().getAllocator().directBuffer(allocHandle.guess());
+            allocHandle.attemptedBytesRead(byteBuf.writableBytes());
+            readBuffer = byteBuf;
+
+            if (recvMemory == null) {
+                recvMemory = Buffer.allocateDirectWithNativeOrder(RECV_MEMORY_SIZE);
+            }
+            long msghdr = Buffer.memoryAddress(recvMemory);
+            long iovec = msghdr + RECV_IOVEC_OFFSET;
+            long sockaddr = msghdr + RECV_SOCKADDR_OFFSET;
+            PlatformDependent.setMemory(msghdr, Native.SIZEOF_MSGHDR, (byte) 0);
+            putAddress(iovec, writableMemoryAddress(byteBuf));
+            putAddress(iovec + ADDRESS_SIZE, byteBuf.writableBytes());
+            putAddress(msghdr + Native.MSGHDR_OFFSETOF_MSG_NAME, sockaddr);
+            PlatformDependent.putInt(msghdr + Native.MSGHDR_OFFSETOF_MSG_NAMELEN, SockaddrIn.MAX_SIZE);
+            putAddress(msghdr + Native.MSGHDR_OFFSETOF_MSG_IOV, iovec);
+            putAddress(msghdr + Native.MSGHDR_OFFSETOF_MSG_IOVLEN, 1);
+
+            ioState |= READ_SCHEDULED;
+            submissionQueue().addRecvmsg(socket.intValue(), msghdr, 0);
+        }
+
+        @Override
+        void readComplete(int res) {
+            ByteBuf byteBuf = readBuffer;
+            readBuffer = null;
+            if (res == Native.ERRNO_ECANCELED_NEGATIVE || !isActive()) {
+                // The channel was closed or deregistered while the recvmsg was in flight.
+                byteBuf.release();
+                return;
+            }
+            if (res == Errors.ERRNO_EAGAIN_NEGATIVE) {
+                byteBuf.release();
+                // Schedule the poll first, so a read() triggered by channelReadComplete() will not read again.
+                if (!isScheduled(POLL_IN_SCHEDULED)) {
+                    schedulePollIn();
+                }
+                if (readInLoop) {
+                    readLoopComplete();
+                }
+                return;
+            }
+
+            final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            final ChannelPipeline pipeline = pipeline();
+            if (res < 0) {
+                byteBuf.release();
+                readLoopComplete();
+                pipeline.fireExceptionCaught(translateForConnected(Errors.newIOException("recvmsg", res)));
+                return;
+            }
+
+            InetSocketAddress sender;
+            try {
+                sender = SockaddrIn.read(Buffer.memoryAddress(recvMemory) + RECV_SOCKADDR_OFFSET);
+            } catch (Throwable t) {
+                byteBuf.release();
+                readLoopComplete();
+                pipeline.fireExceptionCaught(t);
+                return;
+            }
+            byteBuf.writerIndex(byteBuf.writerIndex() + res);
+            allocHandle.lastBytesRead(res);
+            allocHandle.incMessagesRead(1);
+            readPending = false;
+            readInLoop = true;
+            pipeline.fireChannelRead(new DatagramPacket(byteBuf, IOUringDatagramChannel.this.localAddress(), sender));
+
+            if (allocHandle.continueReading() && isActive()) {
+                scheduleRecvmsg();
+            } else {
+                readLoopComplete();
+            }
+        }
+
+        private void readLoopComplete() {
+            recvBufAllocHandle().readComplete();
+            pipeline().fireChannelReadComplete();
+        }
+
+        @Override
+        void writeComplete(int res) {
+            ChannelOutboundBuffer in = outboundBuffer();
+            if (in == null || res == Native.ERRNO_ECANCELED_NEGATIVE) {
+                // The channel was closed or deregistered while the sendmsg was in flight.
+                return;
+            }
+            if (res == Errors.ERRNO_EAGAIN_NEGATIVE) {
+                // The send buffer is full, continue once the socket is writable again.
+                if (!isScheduled(POLL_OUT_SCHEDULED)) {
+                    schedulePollOut();
+                }
+                return;
+            }
+            if (res >= 0) {
+                in.remove();
+            } else {
+                // Continue on write error as a DatagramChannel can write to multiple remote peers
+                //
+                // See https://github.com/netty/netty/issues/2665
+                in.remove(Errors.newIOException("sendmsg", res));
+            }
+            writeCompleteFlush();
+        }
+    }
+}
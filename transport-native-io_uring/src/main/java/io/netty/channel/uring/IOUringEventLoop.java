@@ -0,0 +1,439 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.EventLoopMetrics;
+import io.netty.channel.EventLoopTaskQueueFactory;
+import io.netty.channel.SingleThreadEventLoop;
+import io.netty.channel.unix.Buffer;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.concurrent.RejectedExecutionHandler;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link EventLoop} which uses io_uring under the covers. Only works on Linux!
+ * <p>
+ * All channels of the loop share one {@link RingBuffer}. Their reads, accepts and connects are added to the
+ * submission queue while the loop runs, and handed to the kernel together with a single
+ * {@code io_uring_enter(...)} call once the loop waits for completions again. Writes are submitted as soon as they
+ * are flushed, together with everything which was added before, so they make progress even if a handler blocks the
+ * loop afterwards.
+ */
+final class IOUringEventLoop extends SingleThreadEventLoop implements IOUringCompletionQueue.CompletionCallback {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(IOUringEventLoop.class);
+
+    static {
+        // Ensure JNI is initialized by the time this class is loaded by this time!
+        // We use unix-common methods in this class which are backed by JNI methods.
+        IOUring.ensureAvailability();
+    }
+
+    private static final long AWAKE = -1L;
+    private static final long NONE = Long.MAX_VALUE;
+
+    // The size of struct __kernel_timespec.
+    private static final int TIMESPEC_SIZE = 16;
+    private static final int EVENTFD_BUFFER_SIZE = 8;
+
+    private final RingBuffer ringBuffer;
+    private final IOUringSubmissionQueue submissionQueue;
+    private final IOUringCompletionQueue completionQueue;
+    private final FileDescriptor eventFd;
+    private final IntObjectMap<AbstractIOUringChannel> channels = new IntObjectHashMap<AbstractIOUringChannel>(4096);
+
+    // The memory the eventfd is read into and the timespec of the timeout.
+    private final ByteBuffer eventFdBuffer;
+    private final long eventFdBufferAddress;
+    private final ByteBuffer timeoutBuffer;
+    private final long timeoutBufferAddress;
+
+    // nextWakeupNanos is:
+    //    AWAKE            when EL is awake
+    //    NONE             when EL is waiting with no wakeup scheduled
+    //    other value T    when EL is waiting with wakeup scheduled at time T
+    private final AtomicLong nextWakeupNanos = new AtomicLong(AWAKE);
+    private boolean pendingWakeup;
+    private volatile int ioRatio = 50;
+
+    // The deadline of the timeout which is submitted, and the generation which identifies it in the user_data.
+    private long timeoutDeadlineNanos = NONE;
+    private int timeoutGeneration;
+
+    IOUringEventLoop(EventLoopGroup parent, Executor executor, int ringSize,
+                     RejectedExecutionHandler rejectedExecutionHandler, EventLoopTaskQueueFactory queueFactory) {
+        super(parent, executor, false, newTaskQueue(queueFactory), newTaskQueue(queueFactory),
+                rejectedExecutionHandler);
+        RingBuffer ringBuffer = Native.createRingBuffer(ringSize);
+        boolean success = false;
+        try {
+            eventFd = Native.newEventFd();
+            success = true;
+        } finally {
+            if (!success) {
+                ringBuffer.close();
+            }
+        }
+        this.ringBuffer = ringBuffer;
+        submissionQueue = ringBuffer.submissionQueue();
+        completionQueue = ringBuffer.completionQueue();
+        eventFdBuffer = Buffer.allocateDirectWithNativeOrder(EVENTFD_BUFFER_SIZE);
+        eventFdBufferAddress = Buffer.memoryAddress(eventFdBuffer);
+        timeoutBuffer = Buffer.allocateDirectWithNativeOrder(TIMESPEC_SIZE);
+        timeoutBufferAddress = Buffer.memoryAddress(timeoutBuffer);
+
+        // The read of the eventfd is always in flight, so a write from wakeup(...) completes it.
+        addEventFdRead();
+    }
+
+    private static Queue<Runnable> newTaskQueue(
+            EventLoopTaskQueueFactory queueFactory) {
+        if (queueFactory == null) {
+            return newTaskQueue0(DEFAULT_MAX_PENDING_TASKS);
+        }
+        return queueFactory.newTaskQueue(DEFAULT_MAX_PENDING_TASKS);
+    }
+
+    @Override
+    protected Queue<Runnable> newTaskQueue(int maxPendingTasks) {
+        return newTaskQueue0(maxPendingTasks);
+    }
+
+    private static Queue<Runnable> newTaskQueue0(int maxPendingTasks) {
+        // This event loop never calls takeTask()
+        return maxPendingTasks == Integer.MAX_VALUE ? PlatformDependent.<Runnable>newMpscQueue()
+                : PlatformDependent.<Runnable>newMpscQueue(maxPendingTasks);
+    }
+
+    IOUringSubmissionQueue submissionQueue() {
+        return submissionQueue;
+    }
+
+    @Override
+    protected void wakeup(boolean inEventLoop) {
+        if (!inEventLoop && nextWakeupNanos.getAndSet(AWAKE) != AWAKE) {
+            // write to the evfd which will then complete the pending read of it
+            Native.eventFdWrite(eventFd.intValue(), 1L);
+            EventLoopMetrics metrics = metrics();
+            if (metrics != null) {
+                metrics.recordWakeup();
+            }
+        }
+    }
+
+    @Override
+    protected boolean beforeScheduledTaskSubmitted(long deadlineNanos) {
+        // Note this is also correct for the nextWakeupNanos == -1 (AWAKE) case
+        return deadlineNanos < nextWakeupNanos.get();
+    }
+
+    @Override
+    protected boolean afterScheduledTaskSubmitted(long deadlineNanos) {
+        // Note this is also correct for the nextWakeupNanos == -1 (AWAKE) case
+        return deadlineNanos < nextWakeupNanos.get();
+    }
+
+    /**
+     * Register the given channel with this {@link EventLoop}.
+     */
+    void add(AbstractIOUringChannel ch) {
+        assert inEventLoop();
+        AbstractIOUringChannel old = channels.put(ch.socket.intValue(), ch);
+
+        // We either expect to have no Channel in the map with the same FD or that the FD of the old Channel is already
+        // closed.
+        assert old == null || !old.isOpen();
+    }
+
+    /**
+     * Deregister the given channel from this {@link EventLoop}.
+     */
+    void remove(AbstractIOUringChannel ch) {
+        assert inEventLoop();
+        int fd = ch.socket.intValue();
+
+        AbstractIOUringChannel old = channels.remove(fd);
+        if (old != null && old != ch) {
+            // The Channel mapping was already replaced due FD reuse, put back the stored Channel.
+            channels.put(fd, old);
+
+            // If we found another Channel in the map that is mapped to the same FD the given Channel MUST be closed.
+            assert !ch.isOpen();
+        }
+    }
+
+    /**
+     * Submits the pending operations and processes completions until {@code ch} has no operation in flight anymore.
+     * Completions of other channels are processed as well.
+     */
+    void drain(AbstractIOUringChannel ch) {
+        assert inEventLoop();
+        while (ch.hasScheduledOperations()) {
+            if (!completionQueue.hasCompletions()) {
+                submissionQueue.submitAndWait();
+            }
+            completionQueue.process(this);
+        }
+    }
+
+    /**
+     * Returns the percentage of the desired amount of time spent for I/O in the event loop.
+     */
+    public int getIoRatio() {
+        return ioRatio;
+    }
+
+    /**
+     * Sets the percentage of the desired amount of time spent for I/O in the event loop.  The default value is
+     * {@code 50}, which means the event loop will try to spend the same amount of time for I/O as for non-I/O tasks.
+     */
+    public void setIoRatio(int ioRatio) {
+        if (ioRatio <= 0 || ioRatio > 100) {
+            throw new IllegalArgumentException("ioRatio: " + ioRatio + " (expected: 0 < ioRatio <= 100)");
+        }
+        this.ioRatio = ioRatio;
+    }
+
+    @Override
+    public int registeredChannels() {
+        return channels.size();
+    }
+
+    @Override
+    public List<Channel> registeredChannelsSnapshot() {
+        assert inEventLoop();
+        return new ArrayList<Channel>(channels.values());
+    }
+
+    @Override
+    protected void run() {
+        for (;;) {
+            final EventLoopMetrics metrics = metrics();
+            try {
+                long curDeadlineNanos = nextScheduledTaskDeadlineNanos();
+                if (curDeadlineNanos == -1L) {
+                    curDeadlineNanos = NONE; // nothing on the calendar
+                }
+                nextWakeupNanos.set(curDeadlineNanos);
+                try {
+                    if (!hasTasks() && !completionQueue.hasCompletions()) {
+                        final long waitStartTime = metrics != null ? System.nanoTime() : 0;
+                        if (curDeadlineNanos != timeoutDeadlineNanos) {
+                            updateTimeout(curDeadlineNanos);
+                        }
+                        submissionQueue.submitAndWait();
+                        if (metrics != null) {
+                            metrics.selectTime().record(System.nanoTime() - waitStartTime);
+                        }
+                    } else {
+                        // Hand over what the tasks and handlers added so far, but don't wait.
+                        submissionQueue.submit();
+                    }
+                } finally {
+                    // Try get() first to avoid much more expensive CAS in the case we
+                    // were woken via the wakeup() method (submitted task)
+                    if (nextWakeupNanos.get() == AWAKE || nextWakeupNanos.getAndSet(AWAKE) == AWAKE) {
+                        pendingWakeup = true;
+                    }
+                }
+
+                final int ioRatio = this.ioRatio;
+                if (ioRatio == 100) {
+                    final long ioStartTime = metrics != null ? System.nanoTime() : 0;
+                    try {
+                        processCompletions();
+                    } finally {
+                        if (metrics != null) {
+                            metrics.ioTime().record(System.nanoTime() - ioStartTime);
+                        }
+                        // Ensure we always run tasks.
+                        runAllTasks();
+                    }
+                } else {
+                    final long ioStartTime = System.nanoTime();
+                    try {
+                        processCompletions();
+                    } finally {
+                        // Ensure we always run tasks.
+                        final long ioTime = System.nanoTime() - ioStartTime;
+                        if (metrics != null) {
+                            metrics.ioTime().record(ioTime);
+                        }
+                        runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
+                    }
+                }
+            } catch (Throwable t) {
+                handleLoopException(t);
+            }
+            // Always handle shutdown even if the loop processing threw an exception.
+            try {
+                if (isShuttingDown()) {
+                    closeAll();
+                    if (confirmShutdown()) {
+                        break;
+                    }
+                }
+            } catch (Throwable t) {
+                handleLoopException(t);
+            }
+        }
+    }
+
+    /**
+     * Visible only for testing!
+     */
+    void handleLoopException(Throwable t) {
+        logger.warn("Unexpected exception in the io_uring loop.", t);
+
+        // Prevent possible consecutive immediate failures that lead to
+        // excessive CPU consumption.
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            // Ignore.
+        }
+    }
+
+    private void closeAll() {
+        // Using the intermediate collection to prevent ConcurrentModificationException.
+        // In the `close()` method, the channel is deleted from `channels` map.
+        AbstractIOUringChannel[] localChannels = channels.values().toArray(new AbstractIOUringChannel[0]);
+
+        for (AbstractIOUringChannel ch: localChannels) {
+            ch.unsafe().close(ch.unsafe().voidPromise());
+        }
+    }
+
+    private void processCompletions() {
+        workStarted();
+        try {
+            completionQueue.process(this);
+        } finally {
+            workCompleted();
+        }
+    }
+
+    @Override
+    public void handle(int fd, int res, int flags, byte op, int data) {
+        if (op == Native.IORING_OP_TIMEOUT) {
+            if (data == timeoutGeneration) {
+                // Expired or removed, either way it is not in flight anymore.
+                timeoutDeadlineNanos = NONE;
+            }
+        } else if (op == Native.IORING_OP_TIMEOUT_REMOVE || op == Native.IORING_OP_ASYNC_CANCEL) {
+            // Nothing to do, the cancelled operation completes on its own.
+        } else if (fd == eventFd.intValue()) {
+            handleEventFd(res, op);
+        } else {
+            AbstractIOUringChannel ch = channels.get(fd);
+            if (ch != null) {
+                ((AbstractIOUringChannel.AbstractIOUringUnsafe) ch.unsafe()).handle(res, op, data);
+            }
+        }
+    }
+
+    private void handleEventFd(int res, byte op) {
+        if (op == Native.IORING_OP_READ) {
+            if (res == Errors.ERRNO_EAGAIN_NEGATIVE) {
+                // Older kernels don't wait for the data of non-blocking files, so wait until it is readable.
+                submissionQueue.addPoll(eventFd.intValue(), Native.POLLIN);
+                return;
+            }
+            pendingWakeup = false;
+            if (res < 0 && res != Native.ERRNO_ECANCELED_NEGATIVE) {
+                logger.warn("Failed to read the eventfd: {}", Errors.newIOException("read", res).getMessage());
+            }
+        }
+        if (!isShutdown()) {
+            addEventFdRead();
+        }
+    }
+
+    private void addEventFdRead() {
+        submissionQueue.addRead(eventFd.intValue(), eventFdBufferAddress, EVENTFD_BUFFER_SIZE, 0);
+    }
+
+    private void updateTimeout(long deadlineNanos) {
+        if (timeoutDeadlineNanos != NONE) {
+            submissionQueue.addTimeoutRemove(timeoutUserData());
+        }
+        timeoutGeneration = (timeoutGeneration + 1) & 0xFFFF;
+        timeoutDeadlineNanos = deadlineNanos;
+        if (deadlineNanos != NONE) {
+            long delayNanos = deadlineToDelayNanos(deadlineNanos);
+            // The timespec is copied by the kernel when the entry is submitted.
+            PlatformDependent.putLong(timeoutBufferAddress, delayNanos / TimeUnit.SECONDS.toNanos(1));
+            PlatformDependent.putLong(timeoutBufferAddress + 8, delayNanos % TimeUnit.SECONDS.toNanos(1));
+            submissionQueue.addTimeout(timeoutBufferAddress, timeoutUserData());
+        }
+    }
+
+    private long timeoutUserData() {
+        return IOUringSubmissionQueue.userData(-1, Native.IORING_OP_TIMEOUT, timeoutGeneration);
+    }
+
+    @Override
+    protected void cleanup() {
+        try {
+            // Ensure any in-flight wakeup writes have been performed prior to closing eventFd.
+            if (pendingWakeup) {
+                updateTimeout(nanoTime() + TimeUnit.SECONDS.toNanos(1));
+                while (pendingWakeup && timeoutDeadlineNanos != NONE) {
+                    try {
+                        if (!completionQueue.hasCompletions()) {
+                            submissionQueue.submitAndWait();
+                        }
+                        completionQueue.process(this);
+                    } catch (Throwable t) {
+                        logger.debug("Failed to wait for the last wakeup.", t);
+                        break;
+                    }
+                }
+            }
+            // Closing the ring cancels all operations which are still in flight, like the read of the eventfd.
+            try {
+                ringBuffer.close();
+            } catch (Exception e) {
+                logger.warn("Failed to close the io_uring.", e);
+            }
+            try {
+                eventFd.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close the event fd.", e);
+            }
+        } finally {
+            // release native memory
+            Buffer.free(eventFdBuffer);
+            Buffer.free(timeoutBuffer);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.ChannelException;
+import io.netty.channel.unix.Errors;
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * The submission queue of a {@link RingBuffer}. Operations are only written to the shared memory when they are added
+ * and handed to the kernel in batches by {@link #submit()} or {@link #submitAndWait()}, so many operations cost a
+ * single {@code io_uring_enter(...)} call.
+ * <p>
+ * The {@code user_data} of every operation encodes the file descriptor, the opcode and 16 bits of extra data, see
+ * {@link #userData(int, byte, int)}.
+ */
+final class IOUringSubmissionQueue {
+    // The layout of struct io_uring_sqe.
+    private static final int SQE_SIZE = 64;
+    private static final int SQE_OP_CODE_FIELD = 0;
+    private static final int SQE_FLAGS_FIELD = 1;
+    private static final int SQE_IOPRIO_FIELD = 2;
+    private static final int SQE_FD_FIELD = 4;
+    private static final int SQE_OFFSET_FIELD = 8;
+    private static final int SQE_ADDRESS_FIELD = 16;
+    private static final int SQE_LEN_FIELD = 24;
+    private static final int SQE_OP_FLAGS_FIELD = 28;
+    private static final int SQE_USER_DATA_FIELD = 32;
+    private static final int SQE_PAD_FIELD = 40;
+
+    private final int ringFd;
+    private final long kHeadAddress;
+    private final long kTailAddress;
+    private final int ringMask;
+    private final int ringEntries;
+    private final long sqesAddress;
+
+    // The tail is only written by us, so keep a copy to not read the shared memory.
+    private int tail;
+    // The tail up to which the entries were handed to the kernel.
+    private int submittedTail;
+
+    IOUringSubmissionQueue(int ringFd, long kHeadAddress, long kTailAddress, long kRingMaskAddress,
+                           long kRingEntriesAddress, long sqesAddress) {
+        this.ringFd = ringFd;
+        this.kHeadAddress = kHeadAddress;
+        this.kTailAddress = kTailAddress;
+        this.sqesAddress = sqesAddress;
+        ringMask = PlatformDependent.getInt(kRingMaskAddress);
+        ringEntries = PlatformDependent.getInt(kRingEntriesAddress);
+        tail = submittedTail = PlatformDependent.getIntVolatile(kTailAddress);
+    }
+
+    static long userData(int fd, byte op, int data) {
+        return (long) fd << 32 | (op & 0xFFL) << 16 | data & 0xFFFFL;
+    }
+
+    static int userDataFd(long userData) {
+        return (int) (userData >>> 32);
+    }
+
+    static byte userDataOp(long userData) {
+        return (byte) (userData >>> 16);
+    }
+
+    static int userDataData(long userData) {
+        return (int) (userData & 0xFFFF);
+    }
+
+    void addRead(int fd, long bufferAddress, int length, int data) {
+        enqueue(Native.IORING_OP_READ, fd, 0, bufferAddress, length, 0, userData(fd, Native.IORING_OP_READ, data));
+    }
+
+    void addWritev(int fd, long iovAddress, int iovCount, int data) {
+        enqueue(Native.IORING_OP_WRITEV, fd, 0, iovAddress, iovCount, 0,
+                userData(fd, Native.IORING_OP_WRITEV, data));
+    }
+
+    void addAccept(int fd, int data) {
+        // We don't need the address of the peer here, it is retrieved via getpeername(...) later.
+        enqueue(Native.IORING_OP_ACCEPT, fd, 0, 0, 0, Native.ACCEPT_FLAGS,
+                userData(fd, Native.IORING_OP_ACCEPT, data));
+    }
+
+    void addConnect(int fd, long sockaddrAddress, int sockaddrLength, int data) {
+        enqueue(Native.IORING_OP_CONNECT, fd, sockaddrLength, sockaddrAddress, 0, 0,
+                userData(fd, Native.IORING_OP_CONNECT, data));
+    }
+
+    void addRecvmsg(int fd, long msghdrAddress, int data) {
+        enqueue(Native.IORING_OP_RECVMSG, fd, 0, msghdrAddress, 1, 0, userData(fd, Native.IORING_OP_RECVMSG, data));
+    }
+
+    void addSendmsg(int fd, long msghdrAddress, int data) {
+        enqueue(Native.IORING_OP_SENDMSG, fd, 0, msghdrAddress, 1, 0, userData(fd, Native.IORING_OP_SENDMSG, data));
+    }
+
+    /**
+     * Adds a poll for the given events, the mask is used as data of the {@code user_data}.
+     */
+    void addPoll(int fd, int pollMask) {
+        // The poll mask is a 16 bit field in older kernels, and a 32 bit field with swapped half-words on big endian
+        // systems in newer kernels. Writing it like this is correct in both cases.
+        int opFlags = PlatformDependent.BIG_ENDIAN_NATIVE_ORDER ? Integer.rotateLeft(pollMask, 16) : pollMask;
+        enqueue(Native.IORING_OP_POLL_ADD, fd, 0, 0, 0, opFlags, userData(fd, Native.IORING_OP_POLL_ADD, pollMask));
+    }
+
+    void addTimeout(long timespecAddress, long userData) {
+        enqueue(Native.IORING_OP_TIMEOUT, -1, 0, timespecAddress, 1, 0, userData);
+    }
+
+    void addTimeoutRemove(long timeoutUserData) {
+        enqueue(Native.IORING_OP_TIMEOUT_REMOVE, -1, 0, timeoutUserData, 0, 0,
+                userData(-1, Native.IORING_OP_TIMEOUT_REMOVE, 0));
+    }
+
+    void addCancel(int fd, long userDataToCancel) {
+        enqueue(Native.IORING_OP_ASYNC_CANCEL, -1, 0, userDataToCancel, 0, 0,
+                userData(fd, Native.IORING_OP_ASYNC_CANCEL, 0));
+    }
+
+    private void enqueue(byte op, int fd, long offset, long address, int length, int opFlags, long userData) {
+        if (tail - PlatformDependent.getIntVolatile(kHeadAddress) == ringEntries) {
+            // The queue is full, hand the entries over to the kernel so we can reuse the slots.
+            submit();
+            if (tail - PlatformDependent.getIntVolatile(kHeadAddress) == ringEntries) {
+                throw new ChannelException("io_uring submission queue is full");
+            }
+        }
+        long sqe = sqesAddress + (long) (tail & ringMask) * SQE_SIZE;
+        PlatformDependent.putByte(sqe + SQE_OP_CODE_FIELD, op);
+        PlatformDependent.putByte(sqe + SQE_FLAGS_FIELD, (byte) 0);
+        PlatformDependent.putShort(sqe + SQE_IOPRIO_FIELD, (short) 0);
+        PlatformDependent.putInt(sqe + SQE_FD_FIELD, fd);
+        PlatformDependent.putLong(sqe + SQE_OFFSET_FIELD, offset);
+        PlatformDependent.putLong(sqe + SQE_ADDRESS_FIELD, address);
+        PlatformDependent.putInt(sqe + SQE_LEN_FIELD, length);
+        PlatformDependent.putInt(sqe + SQE_OP_FLAGS_FIELD, opFlags);
+        PlatformDependent.putLong(sqe + SQE_USER_DATA_FIELD, userData);
+        PlatformDependent.setMemory(sqe + SQE_PAD_FIELD, SQE_SIZE - SQE_PAD_FIELD, (byte) 0);
+
+        // The kernel must see the whole entry before it sees the new tail.
+        PlatformDependent.putIntOrdered(kTailAddress, ++tail);
+    }
+
+    /**
+     * Returns {@code true} if there are entries which were not handed to the kernel yet.
+     */
+    boolean hasPending() {
+        return tail != submittedTail;
+    }
+
+    /**
+     * Hands all added entries to the kernel and returns the number of entries consumed.
+     */
+    int submit() {
+        return enter(0, 0);
+    }
+
+    /**
+     * Hands all added entries to the kernel and waits until at least one completion is available.
+     */
+    int submitAndWait() {
+        return enter(1, Native.IORING_ENTER_GETEVENTS);
+    }
+
+    private int enter(int minComplete, int flags) {
+        int toSubmit = tail - submittedTail;
+        if (toSubmit == 0 && minComplete == 0) {
+            return 0;
+        }
+        int res = Native.ioUringEnter(ringFd, toSubmit, minComplete, flags);
+        if (res < 0) {
+            throw new ChannelException(Errors.newIOException("io_uring_enter", res));
+        }
+        submittedTail += res;
+        return res;
+    }
+}
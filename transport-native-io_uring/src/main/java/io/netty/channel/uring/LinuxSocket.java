@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.ChannelException;
+import io.netty.channel.socket.InternetProtocolFamily;
+import io.netty.channel.unix.Socket;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * A socket which provides the protocol family the channels need to encode socket addresses. All the other
+ * operations are provided by the unix-common {@link Socket}.
+ */
+final class LinuxSocket extends Socket {
+    static final InetAddress INET6_ANY = unsafeInetAddrByName("::");
+
+    LinuxSocket(int fd) {
+        super(fd);
+    }
+
+    boolean isIPv6() {
+        return ipv6;
+    }
+
+    public static LinuxSocket newSocketStream() {
+        return new LinuxSocket(newSocketStream0());
+    }
+
+    public static LinuxSocket newSocketDgram() {
+        return new LinuxSocket(newSocketDgram0());
+    }
+
+    public static LinuxSocket newSocketDgram(InternetProtocolFamily family) {
+        return new LinuxSocket(newSocketDgram0(family == InternetProtocolFamily.IPv6));
+    }
+
+    private static InetAddress unsafeInetAddrByName(String inetName) {
+        try {
+            return InetAddress.getByName(inetName);
+        } catch (UnknownHostException uhe) {
+            throw new ChannelException(uhe);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.Socket;
+import io.netty.util.internal.NativeLibraryLoader;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.ThrowableUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.Selector;
+import java.util.Locale;
+
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.acceptFlags;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.afInet;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.afInet6;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ecanceled;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.etime;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.msghdrOffsetofMsgIov;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.msghdrOffsetofMsgIovlen;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.msghdrOffsetofMsgName;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.msghdrOffsetofMsgNamelen;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.pollin;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.pollout;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.sizeofIovec;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.sizeofMsghdr;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.sizeofSockaddrIn;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.sizeofSockaddrIn6;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.sockaddrIn6OffsetofSin6Addr;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.sockaddrIn6OffsetofSin6Port;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.sockaddrIn6OffsetofSin6ScopeId;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.sockaddrInOffsetofSinAddr;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.sockaddrInOffsetofSinFamily;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.sockaddrInOffsetofSinPort;
+
+/**
+ * Native helper methods
+ * <p><strong>Internal usage only!</strong>
+ * <p>Static members which call JNI methods must be defined in {@link NativeStaticallyReferencedJniMethods}.
+ */
+public final class Native {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(Native.class);
+
+    static {
+        Selector selector = null;
+        try {
+            // We call Selector.open() as this will under the hood cause IOUtil to be loaded.
+            // This is a workaround for a possible classloader deadlock that could happen otherwise:
+            //
+            // See https://github.com/netty/netty/issues/10187
+            selector = Selector.open();
+        } catch (IOException ignore) {
+            // Just ignore
+        }
+        try {
+            // First, try calling a side-effect free JNI method to see if the library was already
+            // loaded by the application.
+            sizeofIovec();
+        } catch (UnsatisfiedLinkError ignore) {
+            // The library was not previously loaded, load it now.
+            loadNativeLibrary();
+        } finally {
+            try {
+                if (selector != null) {
+                    selector.close();
+                }
+            } catch (IOException ignore) {
+                // Just ignore
+            }
+        }
+        Socket.initialize();
+    }
+
+    static final int DEFAULT_RING_SIZE = Math.max(64, SystemPropertyUtil.getInt("io.netty.iouring.ringSize", 4096));
+
+    // The opcodes of the operations we submit, see linux/io_uring.h.
+    static final byte IORING_OP_WRITEV = 2;
+    static final byte IORING_OP_POLL_ADD = 6;
+    static final byte IORING_OP_SENDMSG = 9;
+    static final byte IORING_OP_RECVMSG = 10;
+    static final byte IORING_OP_TIMEOUT = 11;
+    static final byte IORING_OP_TIMEOUT_REMOVE = 12;
+    static final byte IORING_OP_ACCEPT = 13;
+    static final byte IORING_OP_ASYNC_CANCEL = 14;
+    static final byte IORING_OP_CONNECT = 16;
+    static final byte IORING_OP_READ = 22;
+
+    static final int IORING_ENTER_GETEVENTS = 1;
+
+    static final int ERRNO_ETIME_NEGATIVE = -etime();
+    static final int ERRNO_ECANCELED_NEGATIVE = -ecanceled();
+    static final int POLLIN = pollin();
+    static final int POLLOUT = pollout();
+    static final int ACCEPT_FLAGS = acceptFlags();
+
+    static final int AF_INET = afInet();
+    static final int AF_INET6 = afInet6();
+    static final int SIZEOF_SOCKADDR_IN = sizeofSockaddrIn();
+    static final int SIZEOF_SOCKADDR_IN6 = sizeofSockaddrIn6();
+    static final int SOCKADDR_IN_OFFSETOF_SIN_FAMILY = sockaddrInOffsetofSinFamily();
+    static final int SOCKADDR_IN_OFFSETOF_SIN_PORT = sockaddrInOffsetofSinPort();
+    static final int SOCKADDR_IN_OFFSETOF_SIN_ADDR = sockaddrInOffsetofSinAddr();
+    static final int SOCKADDR_IN6_OFFSETOF_SIN6_PORT = sockaddrIn6OffsetofSin6Port();
+    static final int SOCKADDR_IN6_OFFSETOF_SIN6_ADDR = sockaddrIn6OffsetofSin6Addr();
+    static final int SOCKADDR_IN6_OFFSETOF_SIN6_SCOPE_ID = sockaddrIn6OffsetofSin6ScopeId();
+    static final int SIZEOF_MSGHDR = sizeofMsghdr();
+    static final int MSGHDR_OFFSETOF_MSG_NAME = msghdrOffsetofMsgName();
+    static final int MSGHDR_OFFSETOF_MSG_NAMELEN = msghdrOffsetofMsgNamelen();
+    static final int MSGHDR_OFFSETOF_MSG_IOV = msghdrOffsetofMsgIov();
+    static final int MSGHDR_OFFSETOF_MSG_IOVLEN = msghdrOffsetofMsgIovlen();
+    static final int SIZEOF_IOVEC = sizeofIovec();
+
+    // The operations this transport needs, checked once when the availability is determined.
+    private static final int[] REQUIRED_OPS = {
+            IORING_OP_WRITEV, IORING_OP_POLL_ADD, IORING_OP_SENDMSG, IORING_OP_RECVMSG, IORING_OP_TIMEOUT,
+            IORING_OP_TIMEOUT_REMOVE, IORING_OP_ACCEPT, IORING_OP_ASYNC_CANCEL, IORING_OP_CONNECT, IORING_OP_READ
+    };
+
+    static RingBuffer createRingBuffer(int ringSize) {
+        long[] values = ioUringSetup(ringSize);
+        IOUringSubmissionQueue submissionQueue = new IOUringSubmissionQueue(
+                (int) values[0], values[3], values[4], values[5], values[6], values[8]);
+        IOUringCompletionQueue completionQueue = new IOUringCompletionQueue(
+                (int) values[0], values[12], values[13], values[14], values[16]);
+        return new RingBuffer((int) values[0], values[1], values[2], values[10], values[11], values[8], values[9],
+                submissionQueue, completionQueue);
+    }
+
+    static boolean isSupportingAllOperations(int ringFd) {
+        return ioUringProbe(ringFd, REQUIRED_OPS);
+    }
+
+    static FileDescriptor newEventFd() {
+        return new FileDescriptor(eventFd());
+    }
+
+    private static native long[] ioUringSetup(int entries);
+    static native int ioUringEnter(int ringFd, int toSubmit, int minComplete, int flags);
+    static native void ioUringExit(int ringFd, long sqRingAddress, long sqRingSize, long cqRingAddress,
+                                   long cqRingSize, long sqesAddress, long sqesSize);
+    private static native boolean ioUringProbe(int ringFd, int[] ops);
+
+    private static native int eventFd();
+    static native void eventFdWrite(int fd, long value);
+
+    private static void loadNativeLibrary() {
+        String name = SystemPropertyUtil.get("os.name").toLowerCase(Locale.UK).trim();
+        if (!name.startsWith("linux")) {
+            throw new IllegalStateException("Only supported on Linux");
+        }
+        String staticLibName = "netty_transport_native_io_uring";
+        String sharedLibName = staticLibName + '_' + PlatformDependent.normalizedArch();
+        ClassLoader cl = PlatformDependent.getClassLoader(Native.class);
+        try {
+            NativeLibraryLoader.load(sharedLibName, cl);
+        } catch (UnsatisfiedLinkError e1) {
+            try {
+                NativeLibraryLoader.load(staticLibName, cl);
+                logger.debug("Failed to load {}", sharedLibName, e1);
+            } catch (UnsatisfiedLinkError e2) {
+                ThrowableUtil.addSuppressed(e1, e2);
+                throw e1;
+            }
+        }
+    }
+
+    private Native() {
+        // utility
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+/**
+ * An io_uring instance with its memory mapped submission and completion queue.
+ */
+final class RingBuffer {
+    private final int ringFd;
+    private final long sqRingAddress;
+    private final long sqRingSize;
+    private final long cqRingAddress;
+    private final long cqRingSize;
+    private final long sqesAddress;
+    private final long sqesSize;
+    private final IOUringSubmissionQueue submissionQueue;
+    private final IOUringCompletionQueue completionQueue;
+    private boolean closed;
+
+    RingBuffer(int ringFd, long sqRingAddress, long sqRingSize, long cqRingAddress, long cqRingSize,
+               long sqesAddress, long sqesSize, IOUringSubmissionQueue submissionQueue,
+               IOUringCompletionQueue completionQueue) {
+        this.ringFd = ringFd;
+        this.sqRingAddress = sqRingAddress;
+        this.sqRingSize = sqRingSize;
+        this.cqRingAddress = cqRingAddress;
+        this.cqRingSize = cqRingSize;
+        this.sqesAddress = sqesAddress;
+        this.sqesSize = sqesSize;
+        this.submissionQueue = submissionQueue;
+        this.completionQueue = completionQueue;
+    }
+
+    int fd() {
+        return ringFd;
+    }
+
+    IOUringSubmissionQueue submissionQueue() {
+        return submissionQueue;
+    }
+
+    IOUringCompletionQueue completionQueue() {
+        return completionQueue;
+    }
+
+    /**
+     * Unmaps the queues and closes the io_uring, which cancels all operations which are still in flight.
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        Native.ioUringExit(ringFd, sqRingAddress, sqRingSize, cqRingAddress, cqRingSize, sqesAddress, sqesSize);
+    }
+}
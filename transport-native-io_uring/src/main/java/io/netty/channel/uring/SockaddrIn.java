@@ -0,0 +1,101 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.unix.NativeInetAddress;
+import io.netty.util.internal.PlatformDependent;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Encodes and decodes {@code struct sockaddr_in} and {@code struct sockaddr_in6} in native memory, as the
+ * operations of io_uring take their addresses from memory and not as arguments of a syscall.
+ */
+final class SockaddrIn {
+    static final int MAX_SIZE = Math.max(Native.SIZEOF_SOCKADDR_IN, Native.SIZEOF_SOCKADDR_IN6);
+
+    private SockaddrIn() { }
+
+    /**
+     * Writes the given address to the memory and returns the length of the written {@code sockaddr}. If the socket
+     * uses IPv6 an IPv4 address is written as IPv4-mapped IPv6 address.
+     */
+    static int write(boolean ipv6, long memory, InetSocketAddress address) {
+        InetAddress inetAddress = address.getAddress();
+        PlatformDependent.setMemory(memory, MAX_SIZE, (byte) 0);
+        // sin_family and sin6_family are at the same position.
+        PlatformDependent.putShort(memory + Native.SOCKADDR_IN_OFFSETOF_SIN_FAMILY,
+                (short) (ipv6 ? Native.AF_INET6 : Native.AF_INET));
+        if (ipv6) {
+            byte[] bytes = inetAddress.getAddress();
+            if (bytes.length == 4) {
+                bytes = NativeInetAddress.ipv4MappedIpv6Address(bytes);
+            }
+            putPort(memory + Native.SOCKADDR_IN6_OFFSETOF_SIN6_PORT, address.getPort());
+            PlatformDependent.copyMemory(bytes, 0, memory + Native.SOCKADDR_IN6_OFFSETOF_SIN6_ADDR, bytes.length);
+            if (inetAddress instanceof Inet6Address) {
+                PlatformDependent.putInt(memory + Native.SOCKADDR_IN6_OFFSETOF_SIN6_SCOPE_ID,
+                        ((Inet6Address) inetAddress).getScopeId());
+            }
+            return Native.SIZEOF_SOCKADDR_IN6;
+        }
+        byte[] bytes = inetAddress.getAddress();
+        if (bytes.length != 4) {
+            throw new IllegalArgumentException("IPv6 address can not be used with an IPv4 socket: " + address);
+        }
+        putPort(memory + Native.SOCKADDR_IN_OFFSETOF_SIN_PORT, address.getPort());
+        PlatformDependent.copyMemory(bytes, 0, memory + Native.SOCKADDR_IN_OFFSETOF_SIN_ADDR, bytes.length);
+        return Native.SIZEOF_SOCKADDR_IN;
+    }
+
+    /**
+     * Reads the address which was written by the kernel to the memory. IPv4-mapped IPv6 addresses are returned as
+     * IPv4 addresses.
+     */
+    static InetSocketAddress read(long memory) throws UnknownHostException {
+        int family = PlatformDependent.getShort(memory + Native.SOCKADDR_IN_OFFSETOF_SIN_FAMILY);
+        if (family == Native.AF_INET6) {
+            byte[] bytes = new byte[16];
+            PlatformDependent.copyMemory(memory + Native.SOCKADDR_IN6_OFFSETOF_SIN6_ADDR, bytes, 0, bytes.length);
+            int port = getPort(memory + Native.SOCKADDR_IN6_OFFSETOF_SIN6_PORT);
+            InetAddress address = InetAddress.getByAddress(bytes);
+            if (address instanceof Inet6Address) {
+                int scopeId = PlatformDependent.getInt(memory + Native.SOCKADDR_IN6_OFFSETOF_SIN6_SCOPE_ID);
+                if (scopeId != 0) {
+                    address = Inet6Address.getByAddress(null, bytes, scopeId);
+                }
+            }
+            return new InetSocketAddress(address, port);
+        }
+        byte[] bytes = new byte[4];
+        PlatformDependent.copyMemory(memory + Native.SOCKADDR_IN_OFFSETOF_SIN_ADDR, bytes, 0, bytes.length);
+        int port = getPort(memory + Native.SOCKADDR_IN_OFFSETOF_SIN_PORT);
+        return new InetSocketAddress(InetAddress.getByAddress(bytes), port);
+    }
+
+    // The port is in network byte order.
+    private static void putPort(long address, int port) {
+        PlatformDependent.putByte(address, (byte) (port >>> 8));
+        PlatformDependent.putByte(address + 1, (byte) port);
+    }
+
+    private static int getPort(long address) {
+        return (PlatformDependent.getByte(address) & 0xFF) << 8 | PlatformDependent.getByte(address + 1) & 0xFF;
+    }
+}
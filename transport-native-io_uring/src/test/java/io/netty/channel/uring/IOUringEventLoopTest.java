@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class IOUringEventLoopTest {
+
+    @BeforeClass
+    public static void loadJNI() {
+        assumeTrue(IOUring.isAvailable());
+    }
+
+    @Test(timeout = 5000)
+    public void testWakeupAndScheduledTasks() throws Exception {
+        EventLoopGroup group = new IOUringEventLoopGroup(1);
+        try {
+            EventLoop loop = group.next();
+            // The first task wakes up the EventLoop which then blocks in io_uring_enter again.
+            assertEquals(1, (int) loop.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return 1;
+                }
+            }).get());
+
+            final AtomicInteger counter = new AtomicInteger();
+            Runnable increment = new Runnable() {
+                @Override
+                public void run() {
+                    counter.incrementAndGet();
+                }
+            };
+            // Schedule tasks in reverse order so the timeout must be replaced by an earlier one.
+            loop.schedule(increment, 200, TimeUnit.MILLISECONDS);
+            loop.schedule(increment, 50, TimeUnit.MILLISECONDS).sync();
+            assertEquals(1, counter.get());
+            loop.schedule(increment, 10, TimeUnit.MILLISECONDS);
+            Thread.sleep(400);
+            assertEquals(3, counter.get());
+        } finally {
+            assertTrue(group.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS).await(2000));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.testsuite.transport.TestsuitePermutation;
+import io.netty.testsuite.transport.socket.SocketFileRegionTest;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assume.assumeTrue;
+
+public class IOUringSocketFileRegionTest extends SocketFileRegionTest {
+
+    private static final String FILE_REGION_NOT_SUPPORTED =
+            "IOUringSocketChannel does not support FileRegion yet, writing one fails with an "
+            + "UnsupportedOperationException";
+
+    @BeforeClass
+    public static void loadJNI() {
+        assumeTrue(IOUring.isAvailable());
+    }
+
+    @Override
+    protected List<TestsuitePermutation.BootstrapComboFactory<ServerBootstrap, Bootstrap>> newFactories() {
+        return IOUringSocketTestPermutation.INSTANCE.socket();
+    }
+
+    @Ignore(FILE_REGION_NOT_SUPPORTED)
+    @Test
+    @Override
+    public void testFileRegion() throws Throwable {
+        super.testFileRegion();
+    }
+
+    @Ignore(FILE_REGION_NOT_SUPPORTED)
+    @Test
+    @Override
+    public void testCustomFileRegion() throws Throwable {
+        super.testCustomFileRegion();
+    }
+
+    @Ignore(FILE_REGION_NOT_SUPPORTED)
+    @Test
+    @Override
+    public void testFileRegionNotAutoRead() throws Throwable {
+        super.testFileRegionNotAutoRead();
+    }
+
+    @Ignore(FILE_REGION_NOT_SUPPORTED)
+    @Test
+    @Override
+    public void testFileRegionVoidPromise() throws Throwable {
+        super.testFileRegionVoidPromise();
+    }
+
+    @Ignore(FILE_REGION_NOT_SUPPORTED)
+    @Test
+    @Override
+    public void testFileRegionVoidPromiseNotAutoRead() throws Throwable {
+        super.testFileRegionVoidPromiseNotAutoRead();
+    }
+
+    @Ignore(FILE_REGION_NOT_SUPPORTED)
+    @Test
+    @Override
+    public void testFileRegionCountLargerThenFile() throws Throwable {
+        super.testFileRegionCountLargerThenFile();
+    }
+}
@@ -15,6 +15,7 @@
  */
 package io.netty.channel.kqueue;
 
+import io.netty.channel.Channel;
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.EventLoopTaskQueueFactory;
@@ -33,6 +34,8 @@ import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
@@ -180,6 +183,15 @@ final class KQueueEventLoop extends SingleThreadEventLoop {
     }
 
     private void processReady(int ready) {
+        workStarted();
+        try {
+            processReady0(ready);
+        } finally {
+            workCompleted();
+        }
+    }
+
+    private void processReady0(int ready) {
         for (int i = 0; i < ready; ++i) {
             final short filter = eventList.filter(i);
             final short flags = eventList.flags(i);
@@ -348,6 +360,12 @@ final class KQueueEventLoop extends SingleThreadEventLoop {
         return channels.size();
     }
 
+    @Override
+    public List<Channel> registeredChannelsSnapshot() {
+        assert inEventLoop();
+        return new ArrayList<Channel>(channels.values());
+    }
+
     @Override
     protected void cleanup() {
         try {
@@ -13,10 +13,18 @@
  * License for the specific language governing permissions and limitations
  * under the License.
  */
+#include <errno.h>
+#include <stdint.h>
+#include <sys/mman.h>
 #include "netty_unix_jni.h"
 #include "netty_unix_util.h"
 #include "netty_unix_buffer.h"
 
+// Some platforms (like macOS) only define MAP_ANON.
+#if !defined(MAP_ANONYMOUS) && defined(MAP_ANON)
+#define MAP_ANONYMOUS MAP_ANON
+#endif
+
 // JNI Registered Methods Begin
 static jlong netty_unix_buffer_memoryAddress0(JNIEnv* env, jclass clazz, jobject buffer) {
     return (jlong) (*env)->GetDirectBufferAddress(env, buffer);
@@ -26,12 +34,63 @@ static jint netty_unix_buffer_addressSize0(JNIEnv* env, jclass clazz) {
    return (jint) sizeof(int*);
 }
 
+static jlong netty_unix_buffer_mmapHugeTlb0(JNIEnv* env, jclass clazz, jlong size) {
+#ifdef MAP_HUGETLB
+    void* addr = mmap(NULL, (size_t) size, PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_ANONYMOUS | MAP_HUGETLB, -1, 0);
+    if (addr == MAP_FAILED) {
+        return -errno;
+    }
+    return (jlong) addr;
+#else
+    return -ENOSYS;
+#endif
+}
+
+static jlong netty_unix_buffer_mmapTransparentHugePages0(JNIEnv* env, jclass clazz, jlong size, jlong alignment) {
+    // Map more than needed so the mapping can be trimmed to start at an address that is aligned to the huge page size,
+    // otherwise the kernel can not back the head and the tail of the mapping with huge pages.
+    size_t len = (size_t) size + (size_t) alignment;
+    char* addr = mmap(NULL, len, PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_ANONYMOUS, -1, 0);
+    if (addr == MAP_FAILED) {
+        return -errno;
+    }
+    char* aligned = (char*) (((uintptr_t) addr + (uintptr_t) alignment - 1) & ~((uintptr_t) alignment - 1));
+    size_t head = (size_t) (aligned - addr);
+    size_t tail = len - head - (size_t) size;
+    if (head > 0) {
+        munmap(addr, head);
+    }
+    if (tail > 0) {
+        munmap(aligned + size, tail);
+    }
+#ifdef MADV_HUGEPAGE
+    // Best effort only as transparent huge pages may be disabled.
+    madvise(aligned, (size_t) size, MADV_HUGEPAGE);
+#endif
+    return (jlong) aligned;
+}
+
+static jint netty_unix_buffer_munmap0(JNIEnv* env, jclass clazz, jlong address, jlong size) {
+    if (munmap((void*) (intptr_t) address, (size_t) size) == -1) {
+        return -errno;
+    }
+    return 0;
+}
+
+static jobject netty_unix_buffer_wrapMemory0(JNIEnv* env, jclass clazz, jlong address, jint capacity) {
+    return (*env)->NewDirectByteBuffer(env, (void*) (intptr_t) address, (jlong) capacity);
+}
+
 // JNI Registered Methods End
 
 // JNI Method Registration Table Begin
 static const JNINativeMethod statically_referenced_fixed_method_table[] = {
   { "memoryAddress0", "(Ljava/nio/ByteBuffer;)J", (void *) netty_unix_buffer_memoryAddress0 },
-  { "addressSize0", "()I", (void *) netty_unix_buffer_addressSize0 }
+  { "addressSize0", "()I", (void *) netty_unix_buffer_addressSize0 },
+  { "mmapHugeTlb0", "(J)J", (void *) netty_unix_buffer_mmapHugeTlb0 },
+  { "mmapTransparentHugePages0", "(JJ)J", (void *) netty_unix_buffer_mmapTransparentHugePages0 },
+  { "munmap0", "(JJ)I", (void *) netty_unix_buffer_munmap0 },
+  { "wrapMemory0", "(JI)Ljava/nio/ByteBuffer;", (void *) netty_unix_buffer_wrapMemory0 }
 };
 static const jint statically_referenced_fixed_method_table_size = sizeof(statically_referenced_fixed_method_table) / sizeof(statically_referenced_fixed_method_table[0]);
 // JNI Method Registration Table End
@@ -65,4 +65,10 @@ public final class Buffer {
     // If Unsafe can not be used we will need to do JNI calls.
     private static native int addressSize0();
     private static native long memoryAddress0(ByteBuffer buffer);
+
+    // Used by HugePageChunkProvider. All return the address or 0 on success and the negative errno on failure.
+    static native long mmapHugeTlb0(long size);
+    static native long mmapTransparentHugePages0(long size, long alignment);
+    static native int munmap0(long address, long size);
+    static native ByteBuffer wrapMemory0(long address, int capacity);
 }
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.unix;
+
+import io.netty.buffer.DirectChunkProvider;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link DirectChunkProvider} which maps the chunks of the direct arenas of a {@link PooledByteBufAllocator} from
+ * anonymous memory that is backed by huge pages, which reduces the TLB pressure when a lot of direct memory is used.
+ *
+ * If {@code useHugeTlb} is {@code true} the chunks are first mapped with {@code MAP_HUGETLB}, which needs huge pages
+ * to be reserved via {@code vm.nr_hugepages}. Otherwise, or if this fails, the chunks are mapped aligned to the huge
+ * page size and advised with {@code MADV_HUGEPAGE} so transparent huge pages are used if enabled. If the native
+ * library is not loaded or mapping fails the {@link PooledByteBufAllocator} falls back to its default allocation.
+ *
+ * The native library is loaded by the native transport, so this should only be used once it is known to be
+ * available (for example via {@code Epoll.isAvailable()}).
+ */
+@UnstableApi
+public final class HugePageChunkProvider implements DirectChunkProvider {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(HugePageChunkProvider.class);
+    private static final long DEFAULT_HUGE_PAGE_SIZE =
+            SystemPropertyUtil.getLong("io.netty.hugePageSize", 2 * 1024 * 1024);
+
+    private final boolean useHugeTlb;
+    private final long hugePageSize;
+    private final LongCounter hugeTlbChunks = PlatformDependent.newLongCounter();
+    private final LongCounter transparentHugePageChunks = PlatformDependent.newLongCounter();
+    private final LongCounter fallbackChunks = PlatformDependent.newLongCounter();
+    private volatile boolean nativeAvailable = true;
+
+    /**
+     * Create a new instance that uses transparent huge pages.
+     */
+    public HugePageChunkProvider() {
+        this(false);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param useHugeTlb {@code true} if chunks should be mapped from the reserved huge pages first.
+     */
+    public HugePageChunkProvider(boolean useHugeTlb) {
+        this(useHugeTlb, DEFAULT_HUGE_PAGE_SIZE);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param useHugeTlb {@code true} if chunks should be mapped from the reserved huge pages first.
+     * @param hugePageSize the size of a huge page of the system, must be a power of two.
+     */
+    public HugePageChunkProvider(boolean useHugeTlb, long hugePageSize) {
+        if (hugePageSize <= 0 || (hugePageSize & hugePageSize - 1) != 0) {
+            throw new IllegalArgumentException("hugePageSize: " + hugePageSize + " (expected: power of two)");
+        }
+        this.useHugeTlb = useHugeTlb;
+        this.hugePageSize = hugePageSize;
+    }
+
+    @Override
+    public ByteBuffer allocateChunk(int capacity) {
+        if (!nativeAvailable) {
+            fallbackChunks.increment();
+            return null;
+        }
+        long mappedSize = mappedSize(capacity);
+        try {
+            long address = -1;
+            if (useHugeTlb) {
+                address = Buffer.mmapHugeTlb0(mappedSize);
+                if (address < 0) {
+                    logger.debug("mmap(MAP_HUGETLB) of {} bytes failed with errno {}, " +
+                            "trying transparent huge pages.", mappedSize, -address);
+                } else {
+                    hugeTlbChunks.increment();
+                }
+            }
+            if (address < 0) {
+                address = Buffer.mmapTransparentHugePages0(mappedSize, hugePageSize);
+                if (address < 0) {
+                    logger.debug("mmap() of {} bytes failed with errno {}, falling back to the default allocation.",
+                            mappedSize, -address);
+                    fallbackChunks.increment();
+                    return null;
+                }
+                transparentHugePageChunks.increment();
+            }
+            ByteBuffer memory = Buffer.wrapMemory0(address, capacity);
+            if (memory == null) {
+                // JNI access to direct buffers is not supported by the JVM.
+                Buffer.munmap0(address, mappedSize);
+                nativeAvailable = false;
+                fallbackChunks.increment();
+            }
+            return memory;
+        } catch (UnsatisfiedLinkError e) {
+            logger.debug("Native library not loaded, falling back to the default allocation.", e);
+            nativeAvailable = false;
+            fallbackChunks.increment();
+            return null;
+        }
+    }
+
+    @Override
+    public void freeChunk(ByteBuffer memory) {
+        int res = Buffer.munmap0(Buffer.memoryAddress(memory), mappedSize(memory.capacity()));
+        if (res < 0) {
+            throw new IllegalStateException(Errors.newIOException("munmap", res));
+        }
+    }
+
+    private long mappedSize(int capacity) {
+        // MAP_HUGETLB needs the length to be a multiple of the huge page size.
+        return (capacity + hugePageSize - 1) & -hugePageSize;
+    }
+
+    /**
+     * Returns the number of chunks that were mapped from the reserved huge pages.
+     */
+    public long numHugeTlbChunks() {
+        return hugeTlbChunks.value();
+    }
+
+    /**
+     * Returns the number of chunks that were mapped and advised to use transparent huge pages.
+     */
+    public long numTransparentHugePageChunks() {
+        return transparentHugePageChunks.value();
+    }
+
+    /**
+     * Returns the number of chunks for which the allocator had to fall back to its default allocation.
+     */
+    public long numFallbackChunks() {
+        return fallbackChunks.value();
+    }
+}
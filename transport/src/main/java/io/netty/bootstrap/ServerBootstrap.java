@@ -25,14 +25,27 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.ServerChannel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
@@ -127,6 +140,80 @@ public class ServerBootstrap extends AbstractBootstrap<ServerBootstrap, ServerCh
         return this;
     }
 
+    /**
+     * Create one {@link ServerChannel} per {@link EventLoop} of the child {@link EventLoopGroup} and bind all of them
+     * to the given {@link SocketAddress}. Each {@link ServerChannel} is registered on its own {@link EventLoop} and
+     * also registers the {@link Channel}s it accepts on it, so a connection is accepted, read and processed by the
+     * same thread. The parent {@link EventLoopGroup} is not used.
+     * <p>
+     * The transport must allow several sockets to be bound to the same address, for example via
+     * {@code option(EpollChannelOption.SO_REUSEPORT, true)}, and the kernel then distributes the connections between
+     * them. The {@link ServerChannel}s are bound one after the other in the iteration order of the child
+     * {@link EventLoopGroup}. If the port of an {@link InetSocketAddress} is {@code 0}, all of them are bound to the
+     * port which was chosen for the first one. The {@link #handler(ChannelHandler)} is added to every
+     * {@link ServerChannel} and so must be {@link ChannelHandler.Sharable}.
+     *
+     * @return a {@link Future} which is notified with a {@link ChannelGroup} containing all the bound
+     *         {@link ServerChannel}s. If one of them fails to bind, the ones which were bound already are closed.
+     */
+    public Future<ChannelGroup> bindPerChildEventLoop(SocketAddress localAddress) {
+        validate();
+        ObjectUtil.checkNotNull(localAddress, "localAddress");
+        List<EventLoop> eventLoops = new ArrayList<EventLoop>();
+        for (EventExecutor executor : childGroup) {
+            eventLoops.add((EventLoop) executor);
+        }
+        ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+        Promise<ChannelGroup> promise = GlobalEventExecutor.INSTANCE.newPromise();
+        bindNext(eventLoops.iterator(), localAddress, channels, promise);
+        return promise;
+    }
+
+    /**
+     * @see #bindPerChildEventLoop(SocketAddress)
+     */
+    public Future<ChannelGroup> bindPerChildEventLoop(int inetPort) {
+        return bindPerChildEventLoop(new InetSocketAddress(inetPort));
+    }
+
+    /**
+     * @see #bindPerChildEventLoop(SocketAddress)
+     */
+    public Future<ChannelGroup> bindPerChildEventLoop(InetAddress inetHost, int inetPort) {
+        return bindPerChildEventLoop(new InetSocketAddress(inetHost, inetPort));
+    }
+
+    private void bindNext(final Iterator<EventLoop> eventLoops, final SocketAddress localAddress,
+                          final ChannelGroup channels, final Promise<ChannelGroup> promise) {
+        if (!eventLoops.hasNext()) {
+            promise.setSuccess(channels);
+            return;
+        }
+        EventLoop eventLoop = eventLoops.next();
+        ServerBootstrap bootstrap = clone();
+        bootstrap.group = eventLoop;
+        bootstrap.childGroup = eventLoop;
+        bootstrap.bind(localAddress).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (!future.isSuccess()) {
+                    channels.close();
+                    promise.setFailure(future.cause());
+                    return;
+                }
+                channels.add(future.channel());
+
+                SocketAddress nextAddress = localAddress;
+                if (localAddress instanceof InetSocketAddress && ((InetSocketAddress) localAddress).getPort() == 0) {
+                    // Bind the others to the same port, which was chosen by the OS.
+                    nextAddress = new InetSocketAddress(((InetSocketAddress) localAddress).getAddress(),
+                            ((InetSocketAddress) future.channel().localAddress()).getPort());
+                }
+                bindNext(eventLoops, nextAddress, channels, promise);
+            }
+        });
+    }
+
     @Override
     void init(Channel channel) {
         setChannelOptions(channel, newOptionsArray(), logger);
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.AdaptiveSpinTaskQueue;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.Queue;
+
+/**
+ * {@link EventLoopTaskQueueFactory} which creates {@link AdaptiveSpinTaskQueue}s. The {@link EventLoop} drains its
+ * tasks in batches, and a {@link DefaultEventLoop} spins briefly before parking and is woken up at most once per
+ * burst of tasks. {@link EventLoop}s which wait for I/O instead of parking in their task queue, like the
+ * {@link io.netty.channel.nio.NioEventLoop}, only make use of the batching.
+ */
+@UnstableApi
+public final class AdaptiveSpinTaskQueueFactory implements EventLoopTaskQueueFactory {
+
+    private final int batchSize;
+    private final int maxSpins;
+
+    /**
+     * Creates a new instance which drains up to {@code 64} tasks at once and spins up to {@code 1024} times.
+     */
+    public AdaptiveSpinTaskQueueFactory() {
+        this(64, 1024);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param batchSize the maximum number of tasks which are taken from the queue at once.
+     * @param maxSpins the maximum number of times the queue is polled before parking, {@code 0} to never spin.
+     */
+    public AdaptiveSpinTaskQueueFactory(int batchSize, int maxSpins) {
+        this.batchSize = ObjectUtil.checkPositive(batchSize, "batchSize");
+        this.maxSpins = ObjectUtil.checkPositiveOrZero(maxSpins, "maxSpins");
+    }
+
+    @Override
+    public Queue<Runnable> newTaskQueue(int maxCapacity) {
+        return new AdaptiveSpinTaskQueue(maxCapacity, batchSize, maxSpins);
+    }
+}
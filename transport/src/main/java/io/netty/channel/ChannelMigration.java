@@ -0,0 +1,179 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Moves a registered {@link Channel} to another {@link EventLoop} while it stays open.
+ * <p>
+ * The {@link Channel} is deregistered from its current {@link EventLoop} and then registered with the new one, so
+ * the {@link ChannelPipeline} sees a {@link ChannelInboundHandler#channelUnregistered(ChannelHandlerContext)}
+ * followed by a {@link ChannelInboundHandler#channelRegistered(ChannelHandlerContext)}, but no
+ * {@code channelInactive} or {@code channelActive}. Messages which were written but not written to the socket yet
+ * stay in the {@link ChannelOutboundBuffer} and are written by the new {@link EventLoop} in the same order.
+ * <p>
+ * Only the {@link Channel} and its outbound messages are moved. Tasks, neither scheduled ones nor operations which
+ * other threads submitted to the old {@link EventLoop}, are not:
+ * <ul>
+ * <li>Tasks which were scheduled on the old {@link EventLoop} stay there and run there. {@link ChannelHandler}s which
+ * schedule tasks for a {@link Channel}, like the ones in {@code io.netty.handler.timeout}, must either cancel them
+ * when the {@link Channel} is deregistered and schedule them again when it is registered, or let them continue on
+ * {@link ChannelHandlerContext#executor()} when they run.</li>
+ * <li>Operations which other threads submitted to the old {@link EventLoop} before or while the {@link Channel} is
+ * moved still run there, possibly concurrently with the new {@link EventLoop} and out of order with the operations
+ * which run there.</li>
+ * </ul>
+ * So there is no guarantee against reordering or lost timers for {@link Channel}s which are used from other threads
+ * or which have scheduled tasks. Only move {@link Channel}s which are only used from their {@link EventLoop} and have
+ * no scheduled tasks, or whose {@link ChannelHandler}s handle the move as described above. This is why
+ * {@link EventLoopRebalancer} only moves {@link Channel}s which opted in with {@link EventLoopRebalancer#MIGRATABLE}.
+ */
+@UnstableApi
+public final class ChannelMigration {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ChannelMigration.class);
+
+    private ChannelMigration() { }
+
+    /**
+     * Moves the {@link Channel} to the given {@link EventLoop}. The returned {@link ChannelFuture} is notified once
+     * the {@link Channel} is registered with it.
+     * <p>
+     * If the {@link EventLoop} is shutting down or is not compatible with the {@link Channel}, the {@link Channel}
+     * is not moved and the {@link ChannelFuture} fails. If the {@link EventLoop} starts to shut down while the
+     * {@link Channel} is moved and rejects it, the {@link Channel} is registered with its old {@link EventLoop} again
+     * and the {@link ChannelFuture} fails. Only if the registration itself fails on the new {@link EventLoop}, for
+     * example because of an I/O error, the {@link Channel} is closed like on any failed registration.
+     */
+    public static ChannelFuture migrate(final Channel channel, final EventLoop target) {
+        ObjectUtil.checkNotNull(channel, "channel");
+        ObjectUtil.checkNotNull(target, "target");
+        final ChannelPromise promise = channel.newPromise();
+        final EventLoop source = channel.eventLoop();
+        if (source.inEventLoop()) {
+            migrate0(channel, source, target, promise);
+        } else {
+            source.execute(new Runnable() {
+                @Override
+                public void run() {
+                    migrate0(channel, source, target, promise);
+                }
+            });
+        }
+        return promise;
+    }
+
+    private static void migrate0(final Channel channel, final EventLoop source, final EventLoop target,
+                                 final ChannelPromise promise) {
+        if (!channel.isOpen()) {
+            promise.setFailure(new ClosedChannelException());
+            return;
+        }
+        if (!channel.isRegistered() || channel.eventLoop() != source) {
+            promise.setFailure(new IllegalStateException("channel is not registered with " + source));
+            return;
+        }
+        if (source == target) {
+            promise.setSuccess();
+            return;
+        }
+        // Check everything which would make the registration fail before the Channel leaves its EventLoop, as a
+        // failed registration closes the Channel.
+        if (target.isShuttingDown()) {
+            promise.setFailure(new RejectedExecutionException("event loop shut down: " + target));
+            return;
+        }
+        if (channel instanceof AbstractChannel && !((AbstractChannel) channel).isCompatible(target)) {
+            promise.setFailure(new IllegalStateException(
+                    "incompatible event loop type: " + target.getClass().getName()));
+            return;
+        }
+
+        channel.deregister().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (!future.isSuccess()) {
+                    promise.setFailure(future.cause());
+                    return;
+                }
+                // Still on the old EventLoop, nothing else ran for the Channel since it was deregistered. Hand the
+                // Channel over ourselves instead of via register(...), which closes it if the EventLoop rejects the
+                // registration task.
+                try {
+                    target.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            register(channel, source, target, promise);
+                        }
+                    });
+                } catch (Throwable cause) {
+                    rollback(channel, source, cause, promise);
+                }
+            }
+        });
+    }
+
+    private static void register(final Channel channel, final EventLoop source, EventLoop target,
+                                 final ChannelPromise promise) {
+        // In the EventLoop, so the registration can not be rejected anymore.
+        target.register(channel).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (future.isSuccess()) {
+                    resumeWrites(channel);
+                    promise.setSuccess();
+                } else {
+                    rollback(channel, source, future.cause(), promise);
+                }
+            }
+        });
+    }
+
+    private static void rollback(Channel channel, EventLoop source, final Throwable cause,
+                                 final ChannelPromise promise) {
+        if (!channel.isOpen() || channel.isRegistered()) {
+            promise.setFailure(cause);
+            return;
+        }
+        source.register(channel).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (future.isSuccess()) {
+                    resumeWrites(future.channel());
+                } else {
+                    logger.warn("Failed to register {} with its old event loop again.", future.channel(),
+                            future.cause());
+                }
+                promise.setFailure(cause);
+            }
+        });
+    }
+
+    private static void resumeWrites(Channel channel) {
+        // The messages which were flushed already may wait for the Channel to become writable, which the new
+        // EventLoop does not know about. Only write these, the unflushed ones must still wait for a flush().
+        Channel.Unsafe unsafe = channel.unsafe();
+        if (unsafe instanceof AbstractChannel.AbstractUnsafe) {
+            ((AbstractChannel.AbstractUnsafe) unsafe).flush0();
+        }
+    }
+}
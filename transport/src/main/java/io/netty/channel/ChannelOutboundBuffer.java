@@ -288,6 +288,34 @@ public final class ChannelOutboundBuffer {
         return remove0(cause, true);
     }
 
+    /**
+     * Will remove the current message like {@link #remove()}, but neither releases the message nor notifies its
+     * {@link ChannelPromise}. The caller takes over the message and must release it and notify the returned
+     * {@link ChannelPromise} later, e.g. once the OS does not reference the written memory anymore. If no flushed
+     * message exists, or the message was cancelled, it will return {@code null}.
+     */
+    public ChannelPromise removeAndDetach() {
+        Entry e = flushedEntry;
+        if (e == null) {
+            clearNioBuffers();
+            return null;
+        }
+        ChannelPromise promise = e.promise;
+        int size = e.pendingSize;
+        boolean cancelled = e.cancelled;
+
+        removeEntry(e);
+
+        if (!cancelled) {
+            decrementPendingOutboundBytes(size, false, true);
+        }
+
+        // recycle the entry
+        e.recycle();
+
+        return cancelled ? null : promise;
+    }
+
     private boolean remove0(Throwable cause, boolean notifyWritability) {
         Entry e = flushedEntry;
         if (e == null) {
@@ -16,7 +16,9 @@
 package io.netty.channel;
 
 import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.RejectedExecutionHandlers;
 
+import java.util.Queue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
 
@@ -46,12 +48,30 @@ public class DefaultEventLoop extends SingleThreadEventLoop {
         super(parent, executor, true);
     }
 
+    /**
+     * Creates a new instance whose task queues are created by the given {@link EventLoopTaskQueueFactory}. The
+     * queues must implement {@link java.util.concurrent.BlockingQueue}.
+     */
+    public DefaultEventLoop(EventLoopGroup parent, Executor executor, EventLoopTaskQueueFactory queueFactory) {
+        super(parent, executor, true, newTaskQueue(queueFactory), newTaskQueue(queueFactory),
+                RejectedExecutionHandlers.reject());
+    }
+
+    private static Queue<Runnable> newTaskQueue(EventLoopTaskQueueFactory queueFactory) {
+        return queueFactory.newTaskQueue(DEFAULT_MAX_PENDING_TASKS);
+    }
+
     @Override
     protected void run() {
         for (;;) {
             Runnable task = takeTask();
             if (task != null) {
-                task.run();
+                workStarted();
+                try {
+                    task.run();
+                } finally {
+                    workCompleted();
+                }
                 updateLastExecutionTime();
             }
 
@@ -15,6 +15,8 @@
  */
 package io.netty.channel;
 
+import io.netty.util.internal.ObjectUtil;
+
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
 
@@ -68,8 +70,22 @@ public class DefaultEventLoopGroup extends MultithreadEventLoopGroup {
         super(nThreads, executor);
     }
 
+    /**
+     * Create a new instance
+     *
+     * @param nThreads          the number of threads to use
+     * @param executor          the Executor to use, or {@code null} if the default should be used.
+     * @param queueFactory      the {@link EventLoopTaskQueueFactory} which creates the task queues, they must
+     *                          implement {@link java.util.concurrent.BlockingQueue}.
+     */
+    public DefaultEventLoopGroup(int nThreads, Executor executor, EventLoopTaskQueueFactory queueFactory) {
+        super(nThreads, executor, ObjectUtil.checkNotNull(queueFactory, "queueFactory"));
+    }
+
     @Override
     protected EventLoop newChild(Executor executor, Object... args) throws Exception {
-        return new DefaultEventLoop(this, executor);
+        EventLoopTaskQueueFactory queueFactory = args.length == 1 ? (EventLoopTaskQueueFactory) args[0] : null;
+        return queueFactory == null ? new DefaultEventLoop(this, executor)
+                : new DefaultEventLoop(this, executor, queueFactory);
     }
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.LoadAwareEventExecutorChooserFactory;
+import io.netty.util.concurrent.LoadAwareEventExecutorChooserFactory.LoadEstimator;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * {@link LoadEstimator} which uses the number of {@link Channel}s registered with a {@link SingleThreadEventLoop}
+ * plus its pending tasks as its load. As the tasks which register new {@link Channel}s are pending until they ran,
+ * {@link Channel}s which are registered at the same time are still spread out.
+ * <p>
+ * Pass {@link #CHOOSER_FACTORY} to the constructor of a {@link MultithreadEventLoopGroup} to let
+ * {@link EventLoopGroup#register(Channel)}, and so the registration of accepted child {@link Channel}s by a
+ * {@link io.netty.bootstrap.ServerBootstrap}, prefer the less loaded {@link EventLoop}s.
+ */
+@UnstableApi
+public final class EventLoopLoadEstimator implements LoadEstimator {
+
+    public static final EventLoopLoadEstimator INSTANCE = new EventLoopLoadEstimator();
+
+    /**
+     * {@link LoadAwareEventExecutorChooserFactory} which uses {@link #INSTANCE}.
+     */
+    public static final LoadAwareEventExecutorChooserFactory CHOOSER_FACTORY =
+            new LoadAwareEventExecutorChooserFactory(INSTANCE);
+
+    private EventLoopLoadEstimator() { }
+
+    @Override
+    public long load(EventExecutor executor) {
+        long load = LoadAwareEventExecutorChooserFactory.PENDING_TASKS.load(executor);
+        if (executor instanceof SingleThreadEventLoop) {
+            // -1 if the EventLoop does not know how many Channels are registered.
+            load += Math.max(0, ((SingleThreadEventLoop) executor).registeredChannels());
+        }
+        return load;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Timings and counters of a {@link SingleThreadEventLoop}, see {@link SingleThreadEventLoop#metrics()}.
+ * <p>
+ * All values are recorded by the thread of the {@link EventLoop} and can be read by any thread at any time. The
+ * values are cumulative since the metrics were enabled, compute the difference of two reads to get a rate.
+ * Times are in nanoseconds.
+ */
+@UnstableApi
+public final class EventLoopMetrics {
+
+    private static final AtomicLongFieldUpdater<EventLoopMetrics> SELECTOR_REBUILDS_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(EventLoopMetrics.class, "selectorRebuilds");
+
+    private final Histogram selectTime = new Histogram();
+    private final Histogram ioTime = new Histogram();
+    private final Histogram taskTime = new Histogram();
+    private final Histogram taskQueueLatency = new Histogram();
+    private final Histogram taskQueueDepth = new Histogram();
+    private final LongCounter wakeups = PlatformDependent.newLongCounter();
+    private volatile long selectorRebuilds;
+
+    EventLoopMetrics() { }
+
+    /**
+     * The time the {@link EventLoop} was blocked waiting for I/O events, tasks or timers per iteration.
+     */
+    public Histogram selectTime() {
+        return selectTime;
+    }
+
+    /**
+     * The time spent processing I/O events per iteration, only recorded for iterations which had I/O events.
+     */
+    public Histogram ioTime() {
+        return ioTime;
+    }
+
+    /**
+     * The time spent running tasks per iteration. Its {@link Histogram#count()} is the number of iterations.
+     */
+    public Histogram taskTime() {
+        return taskTime;
+    }
+
+    /**
+     * The time tasks waited in the task queue before they were run. Only a sample of the tasks is timed, see
+     * {@code io.netty.eventLoop.metrics.queueLatencySampleRate}.
+     */
+    public Histogram taskQueueLatency() {
+        return taskQueueLatency;
+    }
+
+    /**
+     * The number of tasks in the task queue at the start of each iteration.
+     */
+    public Histogram taskQueueDepth() {
+        return taskQueueDepth;
+    }
+
+    /**
+     * The number of times another thread woke up the {@link EventLoop} while it was waiting for I/O events.
+     */
+    public long wakeups() {
+        return wakeups.value();
+    }
+
+    /**
+     * The number of times the selector of the {@link EventLoop} was replaced because it was broken.
+     */
+    public long selectorRebuilds() {
+        return selectorRebuilds;
+    }
+
+    /**
+     * Called by the {@link EventLoop} implementations whenever another thread wakes up the {@link EventLoop}.
+     */
+    public void recordWakeup() {
+        wakeups.increment();
+    }
+
+    /**
+     * Called by the {@link EventLoop} implementations from the thread of the {@link EventLoop} whenever it
+     * rebuilt its selector.
+     */
+    public void recordSelectorRebuild() {
+        SELECTOR_REBUILDS_UPDATER.lazySet(this, selectorRebuilds + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "EventLoopMetrics(selectTime: " + selectTime + ", ioTime: " + ioTime + ", taskTime: " + taskTime +
+                ", taskQueueLatency: " + taskQueueLatency + ", taskQueueDepth: " + taskQueueDepth +
+                ", wakeups: " + wakeups() + ", selectorRebuilds: " + selectorRebuilds + ')';
+    }
+
+    /**
+     * A histogram with one bucket per power of two, so recording a value costs a few stores and the percentiles are
+     * accurate up to a factor of two. Only the thread of the {@link EventLoop} records values.
+     */
+    public static final class Histogram {
+        private static final int BUCKETS = 64;
+
+        private static final AtomicLongFieldUpdater<Histogram> COUNT_UPDATER =
+                AtomicLongFieldUpdater.newUpdater(Histogram.class, "count");
+        private static final AtomicLongFieldUpdater<Histogram> SUM_UPDATER =
+                AtomicLongFieldUpdater.newUpdater(Histogram.class, "sum");
+        private static final AtomicLongFieldUpdater<Histogram> MAX_UPDATER =
+                AtomicLongFieldUpdater.newUpdater(Histogram.class, "max");
+
+        // Bucket 0 counts the values <= 0, bucket i the values in [2^(i-1), 2^i).
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private volatile long count;
+        private volatile long sum;
+        private volatile long max;
+
+        Histogram() { }
+
+        /**
+         * Records a value. Called by the {@link EventLoop} implementations from the thread of the
+         * {@link EventLoop} only.
+         */
+        public void record(long value) {
+            int bucket = value <= 0 ? 0 : BUCKETS - Long.numberOfLeadingZeros(value);
+            // There is a single writer, so ordered stores are enough to publish the new values.
+            buckets.lazySet(bucket, buckets.get(bucket) + 1);
+            COUNT_UPDATER.lazySet(this, count + 1);
+            if (value > 0) {
+                SUM_UPDATER.lazySet(this, sum + value);
+                if (value > max) {
+                    MAX_UPDATER.lazySet(this, value);
+                }
+            }
+        }
+
+        /**
+         * The number of recorded values.
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * The sum of all recorded values.
+         */
+        public long sum() {
+            return sum;
+        }
+
+        /**
+         * The largest recorded value.
+         */
+        public long max() {
+            return max;
+        }
+
+        /**
+         * The mean of all recorded values, or {@code 0} if none were recorded.
+         */
+        public double mean() {
+            long count = this.count;
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Returns an upper bound of the given percentile of the recorded values, which is at most twice as large
+         * as the actual percentile.
+         *
+         * @param percentile the percentile, between {@code 0} and {@code 100}.
+         */
+        public long percentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("percentile: " + percentile + " (expected: 0-100)");
+            }
+            long[] counts = bucketCounts();
+            long total = 0;
+            for (long c: counts) {
+                total += c;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return i == 0 ? 0 : Math.min(max, (1L << i) - 1);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * Returns a copy of the buckets: element {@code 0} is the number of values {@code <= 0} and element
+         * {@code i} the number of values in {@code [2^(i-1), 2^i)}.
+         */
+        public long[] bucketCounts() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+            }
+            return counts;
+        }
+
+        @Override
+        public String toString() {
+            return "(count: " + count + ", mean: " + (long) mean() + ", p99: " + percentile(99) + ", max: " + max +
+                    ')';
+        }
+    }
+}
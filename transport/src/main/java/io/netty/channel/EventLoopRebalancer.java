@@ -0,0 +1,189 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically moves {@link Channel}s from the {@link EventLoop} of a {@link MultithreadEventLoopGroup} which has
+ * the most {@link Channel}s registered to the one which has the fewest, using {@link ChannelMigration}.
+ * <p>
+ * A run does nothing unless the busiest {@link EventLoop} has more than {@code imbalanceThreshold} times the average
+ * number of {@link Channel}s and at least two more than the least busy one. It then moves half of the difference
+ * between the two, but never more than {@code maxMigrationsPerRun} {@link Channel}s. Only active {@link Channel}s
+ * which are not {@link ServerChannel}s and have {@link #MIGRATABLE} set to {@code true} are moved. {@link EventLoop}s
+ * which do not support {@link SingleThreadEventLoop#registeredChannelsSnapshot()} are ignored.
+ */
+@UnstableApi
+public final class EventLoopRebalancer {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(EventLoopRebalancer.class);
+
+    /**
+     * Must be set to {@code true} for a {@link Channel} before it is moved to another {@link EventLoop}, for example
+     * with {@link io.netty.bootstrap.ServerBootstrap#childAttr(AttributeKey, Object)}. {@link ChannelMigration} does
+     * not move operations which other threads submitted to the old {@link EventLoop}, nor tasks scheduled on it, so
+     * only set it for {@link Channel}s which are only used from their {@link EventLoop} and whose
+     * {@link ChannelHandler}s do not rely on scheduled tasks running on the {@link Channel}'s {@link EventLoop}.
+     */
+    public static final AttributeKey<Boolean> MIGRATABLE =
+            AttributeKey.valueOf(EventLoopRebalancer.class, "MIGRATABLE");
+
+    private final Runnable rebalanceTask = new Runnable() {
+        @Override
+        public void run() {
+            rebalance();
+        }
+    };
+
+    private final MultithreadEventLoopGroup group;
+    private final long intervalNanos;
+    private final double imbalanceThreshold;
+    private final int maxMigrationsPerRun;
+    private ScheduledFuture<?> future;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param group the {@link MultithreadEventLoopGroup} whose {@link Channel}s are balanced.
+     * @param interval the time between two runs.
+     * @param unit the {@link TimeUnit} of {@code interval}.
+     * @param imbalanceThreshold how many times the average number of {@link Channel}s the busiest {@link EventLoop}
+     *                           must have before {@link Channel}s are moved, at least {@code 1}.
+     * @param maxMigrationsPerRun the maximum number of {@link Channel}s which are moved by a single run.
+     */
+    public EventLoopRebalancer(MultithreadEventLoopGroup group, long interval, TimeUnit unit,
+                               double imbalanceThreshold, int maxMigrationsPerRun) {
+        this.group = ObjectUtil.checkNotNull(group, "group");
+        intervalNanos = ObjectUtil.checkNotNull(unit, "unit").toNanos(ObjectUtil.checkPositive(interval, "interval"));
+        if (!(imbalanceThreshold >= 1)) {
+            throw new IllegalArgumentException(
+                    "imbalanceThreshold: " + imbalanceThreshold + " (expected: >= 1)");
+        }
+        this.imbalanceThreshold = imbalanceThreshold;
+        this.maxMigrationsPerRun = ObjectUtil.checkPositive(maxMigrationsPerRun, "maxMigrationsPerRun");
+    }
+
+    /**
+     * Starts running periodically on one of the {@link EventLoop}s of the group.
+     */
+    public synchronized void start() {
+        if (future != null) {
+            throw new IllegalStateException("already started");
+        }
+        future = group.next().scheduleAtFixedRate(rebalanceTask, intervalNanos, intervalNanos,
+                TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops the periodic runs. {@link Channel}s which are being moved right now are still moved.
+     */
+    public synchronized void stop() {
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+    }
+
+    /**
+     * Compares the {@link EventLoop}s and starts moving {@link Channel}s if needed. Returns the number of
+     * {@link Channel}s which will be moved at most.
+     */
+    int rebalance() {
+        SingleThreadEventLoop busiest = null;
+        SingleThreadEventLoop leastBusy = null;
+        int max = Integer.MIN_VALUE;
+        int min = Integer.MAX_VALUE;
+        long total = 0;
+        int count = 0;
+        for (EventExecutor executor: group) {
+            if (!(executor instanceof SingleThreadEventLoop) || executor.isShuttingDown()) {
+                continue;
+            }
+            SingleThreadEventLoop loop = (SingleThreadEventLoop) executor;
+            int registered = loop.registeredChannels();
+            if (registered < 0) {
+                continue;
+            }
+            if (registered > max) {
+                max = registered;
+                busiest = loop;
+            }
+            if (registered < min) {
+                min = registered;
+                leastBusy = loop;
+            }
+            total += registered;
+            count++;
+        }
+        if (count < 2 || max - min < 2 || max <= (double) total / count * imbalanceThreshold) {
+            return 0;
+        }
+
+        final int migrations = Math.min((max - min) / 2, maxMigrationsPerRun);
+        final SingleThreadEventLoop source = busiest;
+        final SingleThreadEventLoop target = leastBusy;
+        source.execute(new Runnable() {
+            @Override
+            public void run() {
+                migrate(source, target, migrations);
+            }
+        });
+        return migrations;
+    }
+
+    private static boolean isMigratable(Channel channel) {
+        return channel.hasAttr(MIGRATABLE) && Boolean.TRUE.equals(channel.attr(MIGRATABLE).get());
+    }
+
+    private static void migrate(SingleThreadEventLoop source, EventLoop target, int migrations) {
+        List<Channel> channels;
+        try {
+            channels = source.registeredChannelsSnapshot();
+        } catch (UnsupportedOperationException e) {
+            return;
+        }
+        List<Channel> candidates = new ArrayList<Channel>(migrations);
+        for (Channel channel: channels) {
+            if (candidates.size() == migrations) {
+                break;
+            }
+            if (!(channel instanceof ServerChannel) && isMigratable(channel) && channel.isActive() &&
+                    channel.eventLoop() == source) {
+                candidates.add(channel);
+            }
+        }
+        for (Channel channel: candidates) {
+            ChannelMigration.migrate(channel, target).addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    if (!future.isSuccess() && future.channel().isOpen() && logger.isDebugEnabled()) {
+                        logger.debug("Failed to move {} to another event loop.", future.channel(), future.cause());
+                    }
+                }
+            });
+        }
+    }
+}
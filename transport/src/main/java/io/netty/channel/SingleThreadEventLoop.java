@@ -19,12 +19,15 @@ import io.netty.util.concurrent.RejectedExecutionHandler;
 import io.netty.util.concurrent.RejectedExecutionHandlers;
 import io.netty.util.concurrent.SingleThreadEventExecutor;
 import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.UnstableApi;
 
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Abstract base class for {@link EventLoop}s that execute all its submitted tasks in a single thread.
@@ -35,7 +38,16 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
     protected static final int DEFAULT_MAX_PENDING_TASKS = Math.max(16,
             SystemPropertyUtil.getInt("io.netty.eventLoop.maxPendingTasks", Integer.MAX_VALUE));
 
+    private static final boolean METRICS_ENABLED =
+            SystemPropertyUtil.getBoolean("io.netty.eventLoop.metrics", false);
+    private static final int QUEUE_LATENCY_SAMPLE_RATE = Math.max(1,
+            SystemPropertyUtil.getInt("io.netty.eventLoop.metrics.queueLatencySampleRate", 64));
+
+    private static final AtomicReferenceFieldUpdater<SingleThreadEventLoop, EventLoopMetrics> METRICS_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(SingleThreadEventLoop.class, EventLoopMetrics.class, "metrics");
+
     private final Queue<Runnable> tailTasks;
+    private volatile EventLoopMetrics metrics = METRICS_ENABLED ? new EventLoopMetrics() : null;
 
     protected SingleThreadEventLoop(EventLoopGroup parent, ThreadFactory threadFactory, boolean addTaskWakesUp) {
         this(parent, threadFactory, addTaskWakesUp, DEFAULT_MAX_PENDING_TASKS, RejectedExecutionHandlers.reject());
@@ -48,21 +60,21 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
     protected SingleThreadEventLoop(EventLoopGroup parent, ThreadFactory threadFactory,
                                     boolean addTaskWakesUp, int maxPendingTasks,
                                     RejectedExecutionHandler rejectedExecutionHandler) {
-        super(parent, threadFactory, addTaskWakesUp, maxPendingTasks, rejectedExecutionHandler);
+        super(parent, threadFactory, addTaskWakesUp, maxPendingTasks, unwrapping(rejectedExecutionHandler));
         tailTasks = newTaskQueue(maxPendingTasks);
     }
 
     protected SingleThreadEventLoop(EventLoopGroup parent, Executor executor,
                                     boolean addTaskWakesUp, int maxPendingTasks,
                                     RejectedExecutionHandler rejectedExecutionHandler) {
-        super(parent, executor, addTaskWakesUp, maxPendingTasks, rejectedExecutionHandler);
+        super(parent, executor, addTaskWakesUp, maxPendingTasks, unwrapping(rejectedExecutionHandler));
         tailTasks = newTaskQueue(maxPendingTasks);
     }
 
     protected SingleThreadEventLoop(EventLoopGroup parent, Executor executor,
                                     boolean addTaskWakesUp, Queue<Runnable> taskQueue, Queue<Runnable> tailTaskQueue,
                                     RejectedExecutionHandler rejectedExecutionHandler) {
-        super(parent, executor, addTaskWakesUp, taskQueue, rejectedExecutionHandler);
+        super(parent, executor, addTaskWakesUp, taskQueue, unwrapping(rejectedExecutionHandler));
         tailTasks = ObjectUtil.checkNotNull(tailTaskQueue, "tailTaskQueue");
     }
 
@@ -130,6 +142,54 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
         return tailTasks.remove(ObjectUtil.checkNotNull(task, "task"));
     }
 
+    @Override
+    protected void addTask(Runnable task) {
+        EventLoopMetrics metrics = this.metrics;
+        if (metrics != null && task != null && (QUEUE_LATENCY_SAMPLE_RATE == 1 ||
+                PlatformDependent.threadLocalRandom().nextInt(QUEUE_LATENCY_SAMPLE_RATE) == 0)) {
+            task = new QueueLatencyRecordingTask(task, metrics);
+        }
+        super.addTask(task);
+    }
+
+    @Override
+    protected boolean removeTask(Runnable task) {
+        ObjectUtil.checkNotNull(task, "task");
+        // The task may have been wrapped by addTask(...), which is found by comparing it with another wrapper.
+        return super.removeTask(task) ||
+                metrics != null && super.removeTask(new QueueLatencyRecordingTask(task, null));
+    }
+
+    @Override
+    protected boolean runAllTasks() {
+        EventLoopMetrics metrics = this.metrics;
+        if (metrics == null) {
+            return super.runAllTasks();
+        }
+        metrics.taskQueueDepth().record(pendingTasks());
+        long startTime = System.nanoTime();
+        try {
+            return super.runAllTasks();
+        } finally {
+            metrics.taskTime().record(System.nanoTime() - startTime);
+        }
+    }
+
+    @Override
+    protected boolean runAllTasks(long timeoutNanos) {
+        EventLoopMetrics metrics = this.metrics;
+        if (metrics == null) {
+            return super.runAllTasks(timeoutNanos);
+        }
+        metrics.taskQueueDepth().record(pendingTasks());
+        long startTime = System.nanoTime();
+        try {
+            return super.runAllTasks(timeoutNanos);
+        } finally {
+            metrics.taskTime().record(System.nanoTime() - startTime);
+        }
+    }
+
     @Override
     protected void afterRunningAllTasks() {
         runAllTasksFrom(tailTasks);
@@ -154,4 +214,97 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
     public int registeredChannels() {
         return -1;
     }
+
+    /**
+     * Returns a snapshot of the {@link Channel}s registered with this {@link EventLoop}. Must be called from the
+     * {@link EventLoop} itself.
+     *
+     * @throws UnsupportedOperationException if the operation is not supported.
+     */
+    @UnstableApi
+    public List<Channel> registeredChannelsSnapshot() {
+        throw new UnsupportedOperationException("registeredChannelsSnapshot");
+    }
+
+    /**
+     * Returns the {@link EventLoopMetrics} of this {@link EventLoop}, or {@code null} if they are not enabled. They
+     * are enabled for all {@link EventLoop}s by {@code -Dio.netty.eventLoop.metrics=true} or for this one by
+     * {@link #enableMetrics()}.
+     */
+    @UnstableApi
+    public final EventLoopMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Starts recording {@link EventLoopMetrics} for this {@link EventLoop} if it does not yet, and returns them.
+     * All {@link SingleThreadEventLoop}s record the task queue latency and depth and the time spent running tasks,
+     * the time spent waiting for and processing I/O and the wakeups are recorded by the implementations which
+     * support it, like {@code NioEventLoop} and {@code EpollEventLoop}.
+     */
+    @UnstableApi
+    public final EventLoopMetrics enableMetrics() {
+        EventLoopMetrics metrics = this.metrics;
+        if (metrics == null) {
+            METRICS_UPDATER.compareAndSet(this, null, new EventLoopMetrics());
+            metrics = this.metrics;
+        }
+        return metrics;
+    }
+
+    private static RejectedExecutionHandler unwrapping(RejectedExecutionHandler rejectedExecutionHandler) {
+        return new UnwrappingRejectedExecutionHandler(
+                ObjectUtil.checkNotNull(rejectedExecutionHandler, "rejectedHandler"));
+    }
+
+    /**
+     * Passes the task which was submitted, and not the {@link QueueLatencyRecordingTask} it may have been wrapped in,
+     * to the {@link RejectedExecutionHandler}.
+     */
+    private static final class UnwrappingRejectedExecutionHandler implements RejectedExecutionHandler {
+        private final RejectedExecutionHandler handler;
+
+        UnwrappingRejectedExecutionHandler(RejectedExecutionHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void rejected(Runnable task, SingleThreadEventExecutor executor) {
+            if (task instanceof QueueLatencyRecordingTask) {
+                task = ((QueueLatencyRecordingTask) task).task;
+            }
+            handler.rejected(task, executor);
+        }
+    }
+
+    /**
+     * Records how long the wrapped task waited in the task queue. Two instances are equal if they wrap the same task,
+     * so {@link #removeTask(Runnable)} can find the wrapper of a task.
+     */
+    private static final class QueueLatencyRecordingTask implements Runnable {
+        private final Runnable task;
+        private final EventLoopMetrics metrics;
+        private final long queuedNanos = System.nanoTime();
+
+        QueueLatencyRecordingTask(Runnable task, EventLoopMetrics metrics) {
+            this.task = task;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void run() {
+            metrics.taskQueueLatency().record(System.nanoTime() - queuedNanos);
+            task.run();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof QueueLatencyRecordingTask && ((QueueLatencyRecordingTask) o).task == task;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(task);
+        }
+    }
 }
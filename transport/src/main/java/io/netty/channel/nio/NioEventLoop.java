@@ -19,6 +19,7 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelException;
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopException;
+import io.netty.channel.EventLoopMetrics;
 import io.netty.channel.EventLoopTaskQueueFactory;
 import io.netty.channel.SelectStrategy;
 import io.netty.channel.SingleThreadEventLoop;
@@ -44,6 +45,7 @@ import java.security.PrivilegedAction;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Executor;
@@ -369,6 +371,20 @@ public final class NioEventLoop extends SingleThreadEventLoop {
         return selector.keys().size() - cancelledKeys;
     }
 
+    @Override
+    public List<Channel> registeredChannelsSnapshot() {
+        assert inEventLoop();
+        Set<SelectionKey> keys = selector.keys();
+        List<Channel> channels = new ArrayList<Channel>(keys.size());
+        for (SelectionKey key: keys) {
+            Object attachment = key.attachment();
+            if (key.isValid() && attachment instanceof AbstractNioChannel) {
+                channels.add((Channel) attachment);
+            }
+        }
+        return channels;
+    }
+
     private void rebuildSelector0() {
         final Selector oldSelector = selector;
         final SelectorTuple newSelectorTuple;
@@ -426,6 +442,10 @@ public final class NioEventLoop extends SingleThreadEventLoop {
             }
         }
 
+        EventLoopMetrics metrics = metrics();
+        if (metrics != null) {
+            metrics.recordSelectorRebuild();
+        }
         if (logger.isInfoEnabled()) {
             logger.info("Migrated " + nChannels + " channel(s) to the new Selector.");
         }
@@ -435,6 +455,7 @@ public final class NioEventLoop extends SingleThreadEventLoop {
     protected void run() {
         int selectCnt = 0;
         for (;;) {
+            final EventLoopMetrics metrics = metrics();
             try {
                 int strategy;
                 try {
@@ -454,7 +475,13 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                         nextWakeupNanos.set(curDeadlineNanos);
                         try {
                             if (!hasTasks()) {
-                                strategy = select(curDeadlineNanos);
+                                if (metrics == null) {
+                                    strategy = select(curDeadlineNanos);
+                                } else {
+                                    final long selectStartTime = System.nanoTime();
+                                    strategy = select(curDeadlineNanos);
+                                    metrics.selectTime().record(System.nanoTime() - selectStartTime);
+                                }
                             }
                         } finally {
                             // This update is just to help block unnecessary selector wakeups
@@ -481,7 +508,16 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                 if (ioRatio == 100) {
                     try {
                         if (strategy > 0) {
-                            processSelectedKeys();
+                            if (metrics == null) {
+                                processSelectedKeys();
+                            } else {
+                                final long ioStartTime = System.nanoTime();
+                                try {
+                                    processSelectedKeys();
+                                } finally {
+                                    metrics.ioTime().record(System.nanoTime() - ioStartTime);
+                                }
+                            }
                         }
                     } finally {
                         // Ensure we always run tasks.
@@ -494,6 +530,9 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                     } finally {
                         // Ensure we always run tasks.
                         final long ioTime = System.nanoTime() - ioStartTime;
+                        if (metrics != null) {
+                            metrics.ioTime().record(ioTime);
+                        }
                         ranTasks = runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
                     }
                 } else {
@@ -572,10 +611,15 @@ public final class NioEventLoop extends SingleThreadEventLoop {
     }
 
     private void processSelectedKeys() {
-        if (selectedKeys != null) {
-            processSelectedKeysOptimized();
-        } else {
-            processSelectedKeysPlain(selector.selectedKeys());
+        workStarted();
+        try {
+            if (selectedKeys != null) {
+                processSelectedKeysOptimized();
+            } else {
+                processSelectedKeysPlain(selector.selectedKeys());
+            }
+        } finally {
+            workCompleted();
         }
     }
 
@@ -775,6 +819,10 @@ public final class NioEventLoop extends SingleThreadEventLoop {
     protected void wakeup(boolean inEventLoop) {
         if (!inEventLoop && nextWakeupNanos.getAndSet(AWAKE) != AWAKE) {
             selector.wakeup();
+            EventLoopMetrics metrics = metrics();
+            if (metrics != null) {
+                metrics.recordWakeup();
+            }
         }
     }
 
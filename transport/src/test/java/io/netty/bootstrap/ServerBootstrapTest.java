@@ -23,16 +23,23 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.DefaultEventLoopGroup;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.local.LocalAddress;
 import io.netty.channel.local.LocalChannel;
 import io.netty.channel.local.LocalEventLoopGroup;
 import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
 import org.junit.Test;
 
+import java.util.HashSet;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -137,4 +144,75 @@ public class ServerBootstrapTest {
             group.shutdownGracefully();
         }
     }
+
+    @Test(timeout = 5000)
+    public void testBindPerChildEventLoop() throws Exception {
+        final int numLoops = 3;
+        final CountDownLatch childLatch = new CountDownLatch(numLoops);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+        EventLoopGroup parentGroup = new DefaultEventLoopGroup(1);
+        EventLoopGroup childGroup = new DefaultEventLoopGroup(numLoops);
+        ChannelGroup acceptors = null;
+        try {
+            ServerBootstrap sb = new ServerBootstrap();
+            sb.channel(LocalServerChannel.class)
+                    .group(parentGroup, childGroup)
+                    .childHandler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) {
+                            // The child must be served by the EventLoop of the acceptor which accepted it.
+                            if (ch.eventLoop() != ch.parent().eventLoop()) {
+                                error.compareAndSet(null, new AssertionError("child not on the acceptor EventLoop"));
+                            }
+                            childLatch.countDown();
+                        }
+                    });
+            acceptors = sb.bindPerChildEventLoop(LocalAddress.ANY).syncUninterruptibly().getNow();
+            assertEquals(numLoops, acceptors.size());
+
+            Set<EventExecutor> loops = new HashSet<EventExecutor>();
+            for (Channel acceptor : acceptors) {
+                assertTrue(acceptor.isActive());
+                assertTrue(loops.add(acceptor.eventLoop()));
+                assertTrue(acceptor.eventLoop().parent() == childGroup);
+            }
+
+            for (Channel acceptor : acceptors) {
+                Bootstrap cb = new Bootstrap();
+                cb.group(parentGroup)
+                        .channel(LocalChannel.class)
+                        .handler(new ChannelInboundHandlerAdapter());
+                cb.connect(acceptor.localAddress()).syncUninterruptibly();
+            }
+            childLatch.await();
+            assertNull(error.get());
+        } finally {
+            if (acceptors != null) {
+                acceptors.close().syncUninterruptibly();
+            }
+            parentGroup.shutdownGracefully();
+            childGroup.shutdownGracefully();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testBindPerChildEventLoopFailureClosesBound() throws Exception {
+        EventLoopGroup group = new DefaultEventLoopGroup(2);
+        try {
+            ServerBootstrap sb = new ServerBootstrap();
+            sb.channel(LocalServerChannel.class)
+                    .group(group)
+                    .childHandler(new ChannelInboundHandlerAdapter());
+            // Local addresses can not be shared, so the second bind fails.
+            LocalAddress addr = new LocalAddress(UUID.randomUUID().toString());
+            Future<ChannelGroup> future = sb.bindPerChildEventLoop(addr).awaitUninterruptibly();
+            assertFalse(future.isSuccess());
+
+            // The first acceptor must have been closed again.
+            sb.bind(addr).syncUninterruptibly().channel().close().syncUninterruptibly();
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.concurrent.DefaultEventExecutorChooserFactory;
+import io.netty.util.concurrent.RejectedExecutionHandlers;
+import org.junit.Test;
+
+import java.nio.channels.spi.SelectorProvider;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveSpinTaskQueueFactoryTest {
+
+    @Test(timeout = 10000)
+    public void testDefaultEventLoop() throws Exception {
+        EventLoopGroup group = new DefaultEventLoopGroup(1, null, new AdaptiveSpinTaskQueueFactory(8, 128));
+        try {
+            runTasks(group.next());
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testNioEventLoop() throws Exception {
+        EventLoopGroup group = new NioEventLoopGroup(1, null, DefaultEventExecutorChooserFactory.INSTANCE,
+                SelectorProvider.provider(), DefaultSelectStrategyFactory.INSTANCE,
+                RejectedExecutionHandlers.reject(), new AdaptiveSpinTaskQueueFactory());
+        try {
+            runTasks(group.next());
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    private static void runTasks(final EventLoop loop) throws Exception {
+        final int producers = 3;
+        final int tasks = 5000;
+        final CountDownLatch latch = new CountDownLatch(producers * tasks + 1);
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+        for (int i = 0; i < producers; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < tasks; i++) {
+                        loop.execute(task);
+                    }
+                }
+            }).start();
+        }
+        loop.schedule(task, 10, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+}
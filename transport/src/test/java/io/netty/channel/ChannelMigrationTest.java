@@ -0,0 +1,308 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultEventExecutorChooserFactory;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.RejectedExecutionHandlers;
+import io.netty.util.concurrent.ThreadPerTaskExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ChannelMigrationTest {
+
+    private NioEventLoopGroup serverGroup;
+    private NioEventLoopGroup childGroup;
+    private NioEventLoopGroup clientGroup;
+    private Channel serverChannel;
+    private final BlockingQueue<Channel> accepted = new LinkedBlockingQueue<Channel>();
+    private final BlockingQueue<Integer> received = new LinkedBlockingQueue<Integer>();
+
+    @Before
+    public void setUp() {
+        serverGroup = new NioEventLoopGroup(1);
+        childGroup = new NioEventLoopGroup(2);
+        clientGroup = new NioEventLoopGroup(2);
+        serverChannel = new ServerBootstrap()
+                .group(serverGroup, childGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new Receiver())
+                .childOption(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(4))
+                .bind(new InetSocketAddress(0)).syncUninterruptibly().channel();
+    }
+
+    @After
+    public void tearDown() {
+        serverChannel.close().syncUninterruptibly();
+        clientGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        childGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        serverGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    private Channel connect(EventLoop loop) {
+        return connect(loop, false);
+    }
+
+    private Channel connect(EventLoop loop, boolean migratable) {
+        return new Bootstrap()
+                .group(loop)
+                .channel(NioSocketChannel.class)
+                .handler(new ChannelInboundHandlerAdapter())
+                .attr(EventLoopRebalancer.MIGRATABLE, migratable)
+                .connect(serverChannel.localAddress()).syncUninterruptibly().channel();
+    }
+
+    private static EventLoop otherLoop(EventLoopGroup group, EventLoop loop) {
+        for (EventExecutor executor: group) {
+            if (executor != loop) {
+                return (EventLoop) executor;
+            }
+        }
+        throw new AssertionError();
+    }
+
+    @Test(timeout = 10000)
+    public void testMigrateKeepsReadingAndWriting() throws Exception {
+        final Channel client = connect(clientGroup.next());
+        Channel child = accepted.take();
+        EventLoop target = otherLoop(childGroup, child.eventLoop());
+
+        client.writeAndFlush(Unpooled.buffer().writeInt(1)).syncUninterruptibly();
+        assertEquals(1, (int) received.take());
+
+        ChannelMigration.migrate(child, target).syncUninterruptibly();
+        assertSame(target, child.eventLoop());
+        assertTrue(child.isActive());
+
+        // Reading continues on the new EventLoop.
+        client.writeAndFlush(Unpooled.buffer().writeInt(2)).syncUninterruptibly();
+        assertEquals(2, (int) received.take());
+
+        // Writing as well, also for the client which is moved in the middle of a burst of writes.
+        final EventLoop clientTarget = otherLoop(clientGroup, client.eventLoop());
+        ChannelFuture migrated = client.eventLoop().submit(new Callable<ChannelFuture>() {
+            @Override
+            public ChannelFuture call() {
+                for (int i = 3; i < 1003; i++) {
+                    client.write(Unpooled.buffer().writeInt(i));
+                    if (i == 500) {
+                        client.flush();
+                    }
+                }
+                ChannelFuture future = ChannelMigration.migrate(client, clientTarget);
+                client.flush();
+                return future;
+            }
+        }).syncUninterruptibly().getNow();
+        migrated.syncUninterruptibly();
+        assertSame(clientTarget, client.eventLoop());
+        client.writeAndFlush(Unpooled.buffer().writeInt(1003)).syncUninterruptibly();
+        for (int i = 3; i <= 1003; i++) {
+            assertEquals(i, (int) received.take());
+        }
+
+        client.close().syncUninterruptibly();
+    }
+
+    @Test(timeout = 10000)
+    public void testMigrateClosedChannel() throws Exception {
+        Channel client = connect(clientGroup.next());
+        client.close().syncUninterruptibly();
+        ChannelFuture future = ChannelMigration.migrate(client, otherLoop(clientGroup, client.eventLoop())).await();
+        assertFalse(future.isSuccess());
+        assertTrue(future.cause() instanceof ClosedChannelException);
+    }
+
+    @Test(timeout = 10000)
+    public void testMigrateToSameEventLoop() {
+        Channel client = connect(clientGroup.next());
+        EventLoop loop = client.eventLoop();
+        ChannelMigration.migrate(client, loop).syncUninterruptibly();
+        assertSame(loop, client.eventLoop());
+        assertTrue(client.isRegistered());
+        client.close().syncUninterruptibly();
+    }
+
+    @Test(timeout = 10000)
+    public void testMigrateToShutdownEventLoop() throws Exception {
+        Channel client = connect(clientGroup.next());
+        EventLoop loop = client.eventLoop();
+        NioEventLoopGroup targetGroup = new NioEventLoopGroup(1);
+        targetGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+
+        ChannelFuture future = ChannelMigration.migrate(client, targetGroup.next()).await();
+        assertFalse(future.isSuccess());
+        assertTrue(future.cause() instanceof RejectedExecutionException);
+        assertSame(loop, client.eventLoop());
+        assertTrue(client.isRegistered());
+        assertTrue(client.isActive());
+        client.writeAndFlush(Unpooled.buffer().writeInt(1)).syncUninterruptibly();
+        assertEquals(1, (int) received.take());
+        client.close().syncUninterruptibly();
+    }
+
+    @Test(timeout = 10000)
+    public void testMigrateToRejectingEventLoopRollsBack() throws Exception {
+        Channel client = connect(clientGroup.next());
+        EventLoop loop = client.eventLoop();
+        NioEventLoopGroup targetGroup = new NioEventLoopGroup(1,
+                new ThreadPerTaskExecutor(new DefaultThreadFactory(NioEventLoopGroup.class)),
+                DefaultEventExecutorChooserFactory.INSTANCE, SelectorProvider.provider(),
+                DefaultSelectStrategyFactory.INSTANCE, RejectedExecutionHandlers.reject(),
+                new EventLoopTaskQueueFactory() {
+                    @Override
+                    public Queue<Runnable> newTaskQueue(int maxCapacity) {
+                        return new LinkedBlockingQueue<Runnable>(1);
+                    }
+                });
+        try {
+            // Keep the EventLoop busy and fill its queue, so it rejects the Channel without shutting down.
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            EventLoop target = targetGroup.next();
+            target.execute(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            started.await();
+            target.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // Only fills the queue.
+                }
+            });
+
+            ChannelFuture future = ChannelMigration.migrate(client, target).await();
+            release.countDown();
+            assertFalse(future.isSuccess());
+            assertTrue(future.cause() instanceof RejectedExecutionException);
+            assertSame(loop, client.eventLoop());
+            assertTrue(client.isRegistered());
+            assertTrue(client.isActive());
+            client.writeAndFlush(Unpooled.buffer().writeInt(1)).syncUninterruptibly();
+            assertEquals(1, (int) received.take());
+            client.close().syncUninterruptibly();
+        } finally {
+            targetGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testRebalance() throws Exception {
+        EventLoop busiest = clientGroup.next();
+        EventLoop leastBusy = otherLoop(clientGroup, busiest);
+        List<Channel> clients = new ArrayList<Channel>();
+        clients.add(connect(busiest));
+        clients.add(connect(leastBusy));
+        EventLoopRebalancer rebalancer = new EventLoopRebalancer(clientGroup, 1, TimeUnit.HOURS, 1.5, 16);
+        assertEquals(0, rebalancer.rebalance());
+
+        for (int i = 0; i < 4; i++) {
+            clients.add(connect(busiest));
+        }
+        // Channels which did not opt in are never moved.
+        assertEquals(2, rebalancer.rebalance());
+        busiest.submit(new Runnable() {
+            @Override
+            public void run() {
+                // Runs after the migrations were started.
+            }
+        }).syncUninterruptibly();
+        assertEquals(1, countOn(clients, leastBusy));
+
+        for (int i = 0; i < 4; i++) {
+            clients.add(connect(busiest, true));
+        }
+        // 9 channels against 1, so half of the difference is moved. Only the ones which opted in are candidates.
+        assertEquals(4, rebalancer.rebalance());
+        while (countOn(clients, leastBusy) < 5) {
+            Thread.sleep(10);
+        }
+        assertEquals(5, countOn(clients, busiest));
+        for (Channel client: clients) {
+            if (client.eventLoop() == leastBusy && client != clients.get(1)) {
+                assertTrue(client.attr(EventLoopRebalancer.MIGRATABLE).get());
+            }
+        }
+        for (Channel client: clients) {
+            assertTrue(client.isActive());
+            client.writeAndFlush(Unpooled.buffer().writeInt(42)).syncUninterruptibly();
+            assertEquals(42, (int) received.take());
+            client.close().syncUninterruptibly();
+        }
+    }
+
+    @ChannelHandler.Sharable
+    private final class Receiver extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            accepted.add(ctx.channel());
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ByteBuf buf = (ByteBuf) msg;
+            while (buf.isReadable(4)) {
+                received.add(buf.readInt());
+            }
+            buf.release();
+        }
+    }
+
+    private static int countOn(List<Channel> channels, EventLoop loop) {
+        int count = 0;
+        for (Channel channel: channels) {
+            if (channel.eventLoop() == loop) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -238,6 +238,27 @@ public class ChannelOutboundBufferTest {
         }
     }
 
+    @Test
+    public void testRemoveAndDetach() {
+        TestChannel channel = new TestChannel();
+        ChannelOutboundBuffer buffer = new ChannelOutboundBuffer(channel);
+        assertNull(buffer.removeAndDetach());
+
+        ByteBuf buf = directBuffer().writeZero(16);
+        ChannelPromise promise = channel.newPromise();
+        buffer.addMessage(buf, buf.readableBytes(), promise);
+        buffer.addFlush();
+        assertSame(promise, buffer.removeAndDetach());
+
+        // The message is neither released nor the promise notified, this is up to the caller now.
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.totalPendingWriteBytes());
+        assertEquals(1, buf.refCnt());
+        assertFalse(promise.isDone());
+        assertTrue(buf.release());
+        release(buffer);
+    }
+
     @Test
     public void testWritability() {
         final StringBuilder buf = new StringBuilder();
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.RejectedExecutionHandler;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EventLoopMetricsTest {
+
+    @Test
+    public void testHistogram() {
+        EventLoopMetrics.Histogram histogram = new EventLoopMetrics().taskTime();
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(0, histogram.mean(), 0);
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        histogram.record(0);
+        assertEquals(101, histogram.count());
+        assertEquals(5050, histogram.sum());
+        assertEquals(100, histogram.max());
+        assertEquals(50, histogram.mean(), 0);
+
+        assertEquals(0, histogram.percentile(0));
+        // 51 is the median, which is in [32, 64).
+        assertEquals(63, histogram.percentile(50));
+        // Never more than the largest value.
+        assertEquals(100, histogram.percentile(99));
+        assertEquals(100, histogram.percentile(100));
+
+        long[] buckets = histogram.bucketCounts();
+        assertEquals(1, buckets[0]);
+        assertEquals(1, buckets[1]);
+        assertEquals(2, buckets[2]);
+        assertEquals(37, buckets[7]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        new EventLoopMetrics().taskTime().percentile(101);
+    }
+
+    @Test(timeout = 10000)
+    public void testDefaultEventLoopRecordsQueueLatency() throws Exception {
+        DefaultEventLoopGroup group = new DefaultEventLoopGroup(1);
+        try {
+            final SingleThreadEventLoop loop = (SingleThreadEventLoop) group.next();
+            EventLoopMetrics metrics = loop.enableMetrics();
+            for (int i = 0; i < 1000; i++) {
+                loop.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        return null;
+                    }
+                }).syncUninterruptibly();
+            }
+            assertTrue(metrics.taskQueueLatency().count() > 0);
+            assertTrue(metrics.taskQueueLatency().max() > 0);
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Test
+    public void testSampledTasksKeepTheirIdentity() {
+        final List<Runnable> rejected = new ArrayList<Runnable>();
+        // Never started, so all the tasks stay in the queue.
+        SingleThreadEventLoop loop = new SingleThreadEventLoop(null, new DefaultThreadFactory("metrics"), true, 512,
+                new RejectedExecutionHandler() {
+                    @Override
+                    public void rejected(Runnable task, SingleThreadEventExecutor executor) {
+                        rejected.add(task);
+                    }
+                }) {
+            @Override
+            protected void run() {
+            }
+        };
+        loop.enableMetrics();
+
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        for (int i = 0; i < 1024; i++) {
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                }
+            };
+            tasks.add(task);
+            loop.addTask(task);
+        }
+        // The RejectedExecutionHandler and removeTask(...) see the submitted tasks, even the ones which were sampled.
+        assertEquals(512, rejected.size());
+        for (int i = 0; i < 512; i++) {
+            assertSame(tasks.get(512 + i), rejected.get(i));
+            assertTrue(loop.removeTask(tasks.get(i)));
+        }
+        assertEquals(0, loop.pendingTasks());
+    }
+}
@@ -20,6 +20,8 @@ import io.netty.channel.Channel;
 import io.netty.channel.DefaultSelectStrategyFactory;
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.EventLoopLoadEstimator;
+import io.netty.channel.EventLoopMetrics;
 import io.netty.channel.EventLoopTaskQueueFactory;
 import io.netty.channel.SelectStrategy;
 import io.netty.channel.SelectStrategyFactory;
@@ -41,6 +43,8 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.SelectorProvider;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
@@ -337,4 +341,78 @@ public class NioEventLoopTest extends AbstractEventLoopTest {
         }
     }
 
+    @Test
+    public void testRegisterWithLeastLoadedEventLoop() {
+        NioEventLoopGroup group = new NioEventLoopGroup(2, null, EventLoopLoadEstimator.CHOOSER_FACTORY,
+                SelectorProvider.provider(), DefaultSelectStrategyFactory.INSTANCE, RejectedExecutionHandlers.reject());
+        EventLoop loaded = group.next();
+        List<Channel> channels = new ArrayList<Channel>();
+        try {
+            for (int i = 0; i < 3; i++) {
+                channels.add(loaded.register(new NioServerSocketChannel()).syncUninterruptibly().channel());
+            }
+            assertEquals(3, ((SingleThreadEventLoop) loaded).registeredChannels());
+            for (int i = 0; i < 3; i++) {
+                Channel channel = group.register(new NioServerSocketChannel()).syncUninterruptibly().channel();
+                channels.add(channel);
+                assertNotSame(loaded, channel.eventLoop());
+            }
+        } finally {
+            for (Channel channel : channels) {
+                channel.close().syncUninterruptibly();
+            }
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testMetrics() throws Exception {
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        NioEventLoop loop = (NioEventLoop) group.next();
+        try {
+            assertNull(loop.metrics());
+            EventLoopMetrics metrics = loop.enableMetrics();
+            assertSame(metrics, loop.metrics());
+            assertSame(metrics, loop.enableMetrics());
+
+            final CountDownLatch latch = new CountDownLatch(1000);
+            for (int i = 0; i < 1000; i++) {
+                loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        latch.countDown();
+                    }
+                });
+                if (i % 100 == 0) {
+                    // Give the EventLoop the chance to block in select() so it has to be woken up.
+                    Thread.sleep(1);
+                }
+            }
+            latch.await();
+            // Let the EventLoop finish its iteration so that all of it is recorded.
+            loop.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).syncUninterruptibly();
+
+            assertTrue(metrics.selectTime().count() > 0);
+            assertTrue(metrics.taskTime().count() > 0);
+            assertTrue(metrics.taskTime().sum() > 0);
+            assertTrue(metrics.taskQueueDepth().count() > 0);
+            assertTrue(metrics.taskQueueLatency().count() > 0);
+            assertTrue(metrics.wakeups() > 0);
+            assertEquals(0, metrics.selectorRebuilds());
+
+            loop.rebuildSelector();
+            loop.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).syncUninterruptibly();
+            assertEquals(1, metrics.selectorRebuilds());
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
 }